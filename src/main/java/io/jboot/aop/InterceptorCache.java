@@ -27,6 +27,9 @@ public class InterceptorCache {
 
     private static final Map<MethodKey, Interceptor[]> cache = new SyncWriteMap<>(2048, 0.25F);
 
+    // 每次 clear 之后加 1，用于让已经绑定到代理类里的拦截器链重新构建
+    private static volatile int version = 0;
+
     public static void put(MethodKey methodKey, Interceptor[] inters) {
         Objects.requireNonNull(methodKey, "methodKey can not be null");
         Objects.requireNonNull(inters, "inters can not be null");
@@ -51,6 +54,11 @@ public class InterceptorCache {
 
     public static void clear() {
         cache.clear();
+        version++;
+    }
+
+    public static int getVersion() {
+        return version;
     }
 
 
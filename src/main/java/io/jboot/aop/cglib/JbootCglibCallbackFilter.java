@@ -0,0 +1,84 @@
+/**
+ * Copyright (c) 2015-2021, Michael Yang 杨福海 (fuhai999@gmail.com).
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.jboot.aop.cglib;
+
+import net.sf.cglib.core.MethodWrapper;
+import net.sf.cglib.proxy.Callback;
+import net.sf.cglib.proxy.CallbackFilter;
+import net.sf.cglib.proxy.Enhancer;
+import net.sf.cglib.proxy.NoOp;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 每个被代理的 class 对应一个 JbootCglibCallbackFilter，在创建代理类的时候为每个方法分配一个 callback，
+ * Object 的方法（toString、hashCode 等）直接使用 NoOp，不经过任何拦截器
+ */
+public class JbootCglibCallbackFilter implements CallbackFilter {
+
+    private static final Set<String> excludedMethodName = buildExcludedMethodName();
+
+    private final Map<Object, Integer> methodIndexes = new HashMap<>();
+    private final Callback[] callbacks;
+
+    public JbootCglibCallbackFilter(Class<?> targetClass) {
+        List<Method> methods = new ArrayList<>();
+        if (targetClass.isInterface()) {
+            Enhancer.getMethods(Object.class, new Class[]{targetClass}, methods);
+        } else {
+            Enhancer.getMethods(targetClass, null, methods);
+        }
+
+        List<Callback> callbackList = new ArrayList<>(methods.size() + 1);
+        callbackList.add(NoOp.INSTANCE);
+
+        for (Method method : methods) {
+            if (excludedMethodName.contains(method.getName())) {
+                continue;
+            }
+            methodIndexes.put(MethodWrapper.create(method), callbackList.size());
+            callbackList.add(new JbootCglibMethodCallback(targetClass, method));
+        }
+
+        this.callbacks = callbackList.toArray(new Callback[0]);
+    }
+
+    @Override
+    public int accept(Method method) {
+        Integer index = methodIndexes.get(MethodWrapper.create(method));
+        return index != null ? index : 0;
+    }
+
+    public Callback[] getCallbacks() {
+        return callbacks;
+    }
+
+
+    private static Set<String> buildExcludedMethodName() {
+        Set<String> excludedMethodName = new HashSet<String>(64, 0.25F);
+        Method[] methods = Object.class.getDeclaredMethods();
+        for (Method m : methods) {
+            excludedMethodName.add(m.getName());
+        }
+        return excludedMethodName;
+    }
+}
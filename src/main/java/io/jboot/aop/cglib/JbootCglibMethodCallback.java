@@ -0,0 +1,94 @@
+/**
+ * Copyright (c) 2015-2021, Michael Yang 杨福海 (fuhai999@gmail.com).
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.jboot.aop.cglib;
+
+import com.jfinal.aop.Interceptor;
+import com.jfinal.aop.InterceptorManager;
+import com.jfinal.aop.Invocation;
+import io.jboot.aop.InterceptorBuilderManager;
+import io.jboot.aop.InterceptorCache;
+import net.sf.cglib.proxy.MethodInterceptor;
+import net.sf.cglib.proxy.MethodProxy;
+
+import java.lang.reflect.Method;
+
+/**
+ * 绑定到代理类某个方法上的 callback，拦截器链在第一次调用时构建并保存在 callback 中，
+ * 之后的调用不再需要通过 InterceptorCache 去查找
+ * <p>
+ * 不能在创建代理类的时候构建拦截器链：拦截器通过 @Inject 注入它所拦截的 service 时，会导致无限递归
+ */
+public class JbootCglibMethodCallback implements MethodInterceptor {
+
+    private static final InterceptorManager interManager = InterceptorManager.me();
+    private static final InterceptorBuilderManager builderManager = InterceptorBuilderManager.me();
+
+    private final Class<?> targetClass;
+    private final Method method;
+    private volatile Chain chain;
+
+    public JbootCglibMethodCallback(Class<?> targetClass, Method method) {
+        this.targetClass = targetClass;
+        this.method = method;
+    }
+
+    @Override
+    public Object intercept(Object target, Method method, Object[] args, MethodProxy methodProxy) throws Throwable {
+        Chain chain = getChain();
+
+        if (chain.inters.length == 0) {
+            return methodProxy.invokeSuper(target, args);
+        }
+
+        Invocation invocation = new Invocation(target, method, chain.inters,
+                x -> methodProxy.invokeSuper(target, x), args);
+        invocation.invoke();
+        return invocation.getReturnValue();
+    }
+
+    private Chain getChain() {
+        Chain chain = this.chain;
+
+        // 第一次调用，或者 InterceptorBuilder 发生了变化，需要重新构建拦截器链
+        if (chain == null || chain.version != InterceptorCache.getVersion()) {
+            chain = this.chain = buildChain();
+        }
+        return chain;
+    }
+
+    private Chain buildChain() {
+        int version = InterceptorCache.getVersion();
+        Interceptor[] inters = interManager.buildServiceMethodInterceptor(targetClass, method);
+        inters = builderManager.build(targetClass, method, inters);
+        return new Chain(version, inters);
+    }
+
+    public Interceptor[] getInterceptors() {
+        return getChain().inters;
+    }
+
+
+    private static class Chain {
+
+        private final int version;
+        private final Interceptor[] inters;
+
+        Chain(int version, Interceptor[] inters) {
+            this.version = version;
+            this.inters = inters;
+        }
+    }
+}
@@ -16,8 +16,11 @@
 package io.jboot.aop.cglib;
 
 import com.jfinal.proxy.ProxyFactory;
+import net.sf.cglib.proxy.Enhancer;
 import net.sf.cglib.proxy.MethodInterceptor;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 
 /**
@@ -35,7 +38,15 @@ public class JbootCglibProxyFactory extends ProxyFactory {
     /**
      * 方便在单元测试的时候，可以对任意 class 进行 Mock
      */
-    private static Function<Class<?>,MethodInterceptor> methodInterceptor = aClass -> new JbootCglibCallback();
+    private static final Function<Class<?>, MethodInterceptor> DEFAULT_METHOD_INTERCEPTOR = aClass -> new JbootCglibCallback();
+
+    private static Function<Class<?>,MethodInterceptor> methodInterceptor = DEFAULT_METHOD_INTERCEPTOR;
+
+    /**
+     * 每个 class 的 CallbackFilter，拦截器链在第一次创建代理对象的时候就构建好，
+     * 之后同一个 class 的代理对象共用同一组 callback
+     */
+    private static final Map<Class<?>, JbootCglibCallbackFilter> callbackFilters = new ConcurrentHashMap<>();
 
     public static Function<Class<?>, MethodInterceptor> getMethodInterceptor() {
         return methodInterceptor;
@@ -47,7 +58,21 @@ public class JbootCglibProxyFactory extends ProxyFactory {
 
     @Override
     public <T> T get(Class<T> target) {
-        return (T) net.sf.cglib.proxy.Enhancer.create(target, methodInterceptor.apply(target));
+        // 自定义了 MethodInterceptor（例如单元测试时的 Mock），每次调用都通过 MethodInterceptor 来查找拦截器
+        if (methodInterceptor != DEFAULT_METHOD_INTERCEPTOR) {
+            return (T) Enhancer.create(target, methodInterceptor.apply(target));
+        }
+
+        // 构建拦截器链的时候可能会创建其他代理对象，所以不能使用 computeIfAbsent
+        JbootCglibCallbackFilter callbackFilter = callbackFilters.get(target);
+        if (callbackFilter == null) {
+            callbackFilter = new JbootCglibCallbackFilter(target);
+            JbootCglibCallbackFilter existFilter = callbackFilters.putIfAbsent(target, callbackFilter);
+            if (existFilter != null) {
+                callbackFilter = existFilter;
+            }
+        }
+        return (T) Enhancer.create(target, null, callbackFilter, callbackFilter.getCallbacks());
     }
 
 
@@ -17,6 +17,7 @@ package io.jboot.app.undertow;
 
 import com.jfinal.server.undertow.UndertowConfig;
 import com.jfinal.server.undertow.UndertowServer;
+import io.undertow.servlet.api.FilterInfo;
 
 import javax.servlet.ServletException;
 
@@ -35,6 +36,17 @@ public class JbootUndertowServer extends UndertowServer {
 //        HttpContentTypes.init(deploymentInfo);
     }
 
+    @Override
+    protected void configJFinalFilter() {
+        super.configJFinalFilter();
+
+        //网关异步代理需要 request.startAsync()，要求 JFinalFilter 支持异步
+        FilterInfo filterInfo = deploymentInfo.getFilters().get("jfinal");
+        if (filterInfo != null) {
+            filterInfo.setAsyncSupported(true);
+        }
+    }
+
     @Override
     protected void doStop() throws ServletException {
         super.doStop();
@@ -20,6 +20,11 @@ public class AopCache {
         getAopCache().removeCurrentCacheNamePrefix();
     }
 
+    public static String getCurrentPrefix() {
+        JbootCache cache = getAopCache();
+        return cache instanceof JbootCacheBase ? ((JbootCacheBase) cache).getCurrentCacheNamePrefix() : null;
+    }
+
     static JbootCache getAopCache() {
         if (aopCache == null) {
             synchronized (AopCache.class) {
@@ -110,6 +115,27 @@ public class AopCache {
     }
 
 
+    /**
+     * 缓存未命中时加载数据，并发加载同一个 key 时只会执行一次 dataLoader
+     * 和 get 方法不同，dataLoader 抛出的异常会直接抛出，缓存本身的异常只记录日志
+     */
+    public static <T> T load(String cacheName, Object key, IDataLoader dataLoader, int liveSeconds) {
+        AopDataLoader aopDataLoader = new AopDataLoader(dataLoader);
+        try {
+            JbootCache cache = getAopCache();
+            if (cache instanceof JbootCacheBase) {
+                return ((JbootCacheBase) cache).load(cacheName, key, aopDataLoader, liveSeconds);
+            }
+            return cache.get(cacheName, key, aopDataLoader, liveSeconds);
+        } catch (AopDataLoadException ex) {
+            throw (RuntimeException) ex.getCause();
+        } catch (Exception ex) {
+            LOG.error(ex.toString(), ex);
+            return (T) (aopDataLoader.loaded ? aopDataLoader.value : dataLoader.load());
+        }
+    }
+
+
     public static Integer getTtl(String cacheName, Object key) {
         try {
             return getAopCache().getTtl(cacheName, key);
@@ -127,4 +153,35 @@ public class AopCache {
             LOG.error(ex.toString(), ex);
         }
     }
+
+
+    private static class AopDataLoader implements IDataLoader {
+
+        private final IDataLoader dataLoader;
+        private boolean loaded = false;
+        private Object value;
+
+        AopDataLoader(IDataLoader dataLoader) {
+            this.dataLoader = dataLoader;
+        }
+
+        @Override
+        public Object load() {
+            try {
+                value = dataLoader.load();
+            } catch (RuntimeException ex) {
+                throw new AopDataLoadException(ex);
+            }
+            loaded = true;
+            return value;
+        }
+    }
+
+
+    private static class AopDataLoadException extends RuntimeException {
+
+        AopDataLoadException(RuntimeException cause) {
+            super(cause);
+        }
+    }
 }
@@ -0,0 +1,103 @@
+/**
+ * Copyright (c) 2015-2021, Michael Yang 杨福海 (fuhai999@gmail.com).
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.jboot.components.cache;
+
+import java.io.Serializable;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 开启 @Cacheable 的 staleWhileRevalidate 或者 refreshAheadBeta 之后，缓存中存放的数据
+ * 除了数据本身以外，还记录了写入时间、有效时间和方法执行的耗时，以便判断是否需要提前刷新
+ */
+public class AopCacheObject implements Serializable {
+
+    private Object value;
+    private int liveSeconds;
+    private long cachetime;
+    private long computeMillis;
+
+    public AopCacheObject() {
+    }
+
+    public AopCacheObject(Object value, int liveSeconds, long computeMillis) {
+        this.value = value;
+        this.liveSeconds = liveSeconds;
+        this.computeMillis = computeMillis;
+        this.cachetime = System.currentTimeMillis();
+    }
+
+    public Object getValue() {
+        return value;
+    }
+
+    public void setValue(Object value) {
+        this.value = value;
+    }
+
+    public int getLiveSeconds() {
+        return liveSeconds;
+    }
+
+    public void setLiveSeconds(int liveSeconds) {
+        this.liveSeconds = liveSeconds;
+    }
+
+    public long getCachetime() {
+        return cachetime;
+    }
+
+    public void setCachetime(long cachetime) {
+        this.cachetime = cachetime;
+    }
+
+    public long getComputeMillis() {
+        return computeMillis;
+    }
+
+    public void setComputeMillis(long computeMillis) {
+        this.computeMillis = computeMillis;
+    }
+
+    public long getExpireTime() {
+        return cachetime + liveSeconds * 1000L;
+    }
+
+    /**
+     * 是否已经过了有效期（在 staleWhileRevalidate 时间内，缓存里依然存在）
+     *
+     * @return
+     */
+    public boolean isStale() {
+        return System.currentTimeMillis() >= getExpireTime();
+    }
+
+    /**
+     * XFetch：now - computeMillis * beta * ln(random) >= expireTime 时提前刷新
+     *
+     * @param beta
+     * @return
+     */
+    public boolean isRefreshAhead(double beta) {
+        if (beta <= 0) {
+            return false;
+        }
+        double random = ThreadLocalRandom.current().nextDouble();
+        if (random == 0) {
+            return true;
+        }
+        return System.currentTimeMillis() - computeMillis * beta * Math.log(random) >= getExpireTime();
+    }
+}
@@ -0,0 +1,31 @@
+/**
+ * Copyright (c) 2015-2021, Michael Yang 杨福海 (fuhai999@gmail.com).
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.jboot.components.cache;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * 批量加载数据，配合 JbootCache.getAll 使用，只会传入缓存中不存在的 key
+ */
+public interface IDataBatchLoader {
+
+    /**
+     * @param keys 缓存中不存在的 key
+     * @return key 和数据的对应关系，没有数据的 key 可以不返回
+     */
+    public Map load(Collection keys);
+}
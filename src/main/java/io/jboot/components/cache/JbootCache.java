@@ -17,7 +17,11 @@ package io.jboot.components.cache;
 
 import com.jfinal.plugin.ehcache.IDataLoader;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 
 public interface JbootCache extends com.jfinal.plugin.activerecord.cache.ICache {
@@ -45,6 +49,87 @@ public interface JbootCache extends com.jfinal.plugin.activerecord.cache.ICache
 
     public <T> T get(String cacheName, Object key, IDataLoader dataLoader, int liveSeconds);
 
+    /**
+     * 批量获取缓存，返回的 map 中只包含缓存中存在的 key
+     * 默认逐个调用 get，内置的缓存实现会复写为批量操作
+     */
+    public default <T> Map<Object, T> getAll(String cacheName, Collection keys) {
+        Map<Object, T> result = new HashMap<>();
+        for (Object key : keys) {
+            T value = get(cacheName, key);
+            if (value != null) {
+                result.put(key, value);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 批量获取缓存，缓存中不存在的 key 通过 dataLoader 一次性加载并放入缓存
+     */
+    public default <T> Map<Object, T> getAll(String cacheName, Collection keys, IDataBatchLoader dataLoader, int liveSeconds) {
+        Map<Object, T> result = getAll(cacheName, keys);
+        if (result.size() == keys.size()) {
+            return result;
+        }
+
+        List<Object> missingKeys = new ArrayList<>(keys.size() - result.size());
+        for (Object key : keys) {
+            if (!result.containsKey(key)) {
+                missingKeys.add(key);
+            }
+        }
+        if (missingKeys.isEmpty()) {
+            return result;
+        }
+
+        Map<Object, T> loadedValues = dataLoader.load(missingKeys);
+        if (loadedValues == null || loadedValues.isEmpty()) {
+            return result;
+        }
+
+        Map<Object, T> cacheValues = new HashMap<>(loadedValues.size());
+        for (Map.Entry<Object, T> entry : loadedValues.entrySet()) {
+            if (entry.getValue() != null) {
+                cacheValues.put(entry.getKey(), entry.getValue());
+            }
+        }
+        putAll(cacheName, cacheValues, liveSeconds);
+        result.putAll(cacheValues);
+        return result;
+    }
+
+    public default void putAll(String cacheName, Map map) {
+        putAll(cacheName, map, 0);
+    }
+
+    /**
+     * 批量放入缓存，值为 null 的 key 不放入
+     * 默认逐个调用 put，内置的缓存实现会复写为批量操作
+     */
+    public default void putAll(String cacheName, Map map, int liveSeconds) {
+        for (Object entryObject : map.entrySet()) {
+            Map.Entry entry = (Map.Entry) entryObject;
+            if (entry.getValue() == null) {
+                continue;
+            }
+            if (liveSeconds > 0) {
+                put(cacheName, entry.getKey(), entry.getValue(), liveSeconds);
+            } else {
+                put(cacheName, entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * 默认逐个调用 remove，内置的缓存实现会复写为批量操作
+     */
+    public default void removeAll(String cacheName, Collection keys) {
+        for (Object key : keys) {
+            remove(cacheName, key);
+        }
+    }
+
     public Integer getTtl(String cacheName, Object key);
 
     public void setTtl(String cacheName, Object key, int seconds);
@@ -16,12 +16,28 @@
 package io.jboot.components.cache;
 
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.jfinal.plugin.ehcache.IDataLoader;
+import io.jboot.Jboot;
 import io.jboot.utils.StrUtil;
 
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
 public abstract class JbootCacheBase implements JbootCache {
 
     private ThreadLocal<String> CACHE_NAME_PREFIX_TL = new ThreadLocal<>();
 
+    // 正在加载中的数据，同一个 cacheName + key 在同一时刻只会有一个线程去执行 IDataLoader.load()
+    private final Map<LoadingKey, LoadingFlight> loadingFlights = new ConcurrentHashMap<>();
+
+    private final Counter hitCounter = createCounter("hit");
+    private final Counter missCounter = createCounter("miss");
+    private final Counter coalescedCounter = createCounter("coalesced");
+
     @Override
     public JbootCache setCurrentCacheNamePrefix(String cacheNamePrefix) {
         if (StrUtil.isNotBlank(cacheNamePrefix)) {
@@ -37,6 +53,10 @@ public abstract class JbootCacheBase implements JbootCache {
         CACHE_NAME_PREFIX_TL.remove();
     }
 
+    public String getCurrentCacheNamePrefix() {
+        return CACHE_NAME_PREFIX_TL.get();
+    }
+
 
     protected String buildCacheName(String cacheName) {
         String cacheNamePrefix = CACHE_NAME_PREFIX_TL.get();
@@ -51,6 +71,109 @@ public abstract class JbootCacheBase implements JbootCache {
     }
 
 
+    @Override
+    public <T> T get(String cacheName, Object key, IDataLoader dataLoader) {
+        return get(cacheName, key, dataLoader, 0);
+    }
+
+
+    @Override
+    public <T> T get(String cacheName, Object key, IDataLoader dataLoader, int liveSeconds) {
+        T value = get(cacheName, key);
+        if (value != null) {
+            hitCounter.inc();
+            return value;
+        }
+        return load(cacheName, key, dataLoader, liveSeconds);
+    }
+
+
+    /**
+     * 在缓存未命中的时候加载数据，并发情况下同一个 cacheName + key 只有一个线程会执行 dataLoader，
+     * 其他线程会等待该线程加载完成，并共享其结果
+     *
+     * @param cacheName
+     * @param key
+     * @param dataLoader
+     * @param liveSeconds 小于等于 0 时永久有效
+     * @param <T>
+     * @return
+     */
+    public <T> T load(String cacheName, Object key, IDataLoader dataLoader, int liveSeconds) {
+        missCounter.inc();
+
+        LoadingKey loadingKey = new LoadingKey(buildCacheName(cacheName), key);
+        LoadingFlight flight = new LoadingFlight();
+        LoadingFlight existFlight = loadingFlights.putIfAbsent(loadingKey, flight);
+
+        if (existFlight != null) {
+            // 同一个线程在 dataLoader 里再次加载同一个 key，直接执行，避免自己等待自己
+            if (existFlight.owner == Thread.currentThread()) {
+                return (T) doLoad(cacheName, key, dataLoader, liveSeconds);
+            }
+            coalescedCounter.inc();
+            return (T) existFlight.await();
+        }
+
+        try {
+            // 可能在本线程检查缓存之后，上一个加载刚刚完成
+            Object value = get(cacheName, key);
+            if (value == null) {
+                value = doLoad(cacheName, key, dataLoader, liveSeconds);
+            }
+            flight.future.complete(value);
+            return (T) value;
+        } catch (Throwable ex) {
+            flight.future.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            loadingFlights.remove(loadingKey, flight);
+        }
+    }
+
+
+    /**
+     * 执行 dataLoader 并把结果放入缓存，子类可以复写该方法来实现集群下的加载控制
+     *
+     * @param cacheName
+     * @param key
+     * @param dataLoader
+     * @param liveSeconds
+     * @return
+     */
+    protected Object doLoad(String cacheName, Object key, IDataLoader dataLoader, int liveSeconds) {
+        Object value = dataLoader.load();
+        if (value != null) {
+            if (liveSeconds > 0) {
+                put(cacheName, key, value, liveSeconds);
+            } else {
+                put(cacheName, key, value);
+            }
+        }
+        return value;
+    }
+
+
+    /**
+     * 在 JbootCache 默认实现的基础上统计命中和未命中的数量
+     */
+    @Override
+    public <T> Map<Object, T> getAll(String cacheName, Collection keys, IDataBatchLoader dataLoader, int liveSeconds) {
+        boolean[] loaded = new boolean[1];
+        Map<Object, T> result = JbootCache.super.getAll(cacheName, keys, missingKeys -> {
+            loaded[0] = true;
+            hitCounter.inc(keys.size() - missingKeys.size());
+            missCounter.inc(missingKeys.size());
+            return dataLoader.load(missingKeys);
+        }, liveSeconds);
+
+        if (!loaded[0]) {
+            hitCounter.inc(result.size());
+        }
+        return result;
+    }
+
+
     @Override
     public void refresh(String cacheName, Object key) {
 
@@ -60,4 +183,76 @@ public abstract class JbootCacheBase implements JbootCache {
     public void refresh(String cacheName) {
 
     }
+
+
+    public long getHitCount() {
+        return hitCounter.getCount();
+    }
+
+    public long getMissCount() {
+        return missCounter.getCount();
+    }
+
+    public long getCoalescedCount() {
+        return coalescedCounter.getCount();
+    }
+
+
+    private Counter createCounter(String name) {
+        MetricRegistry metricRegistry = Jboot.getMetric();
+        return metricRegistry == null
+                ? new Counter()
+                : metricRegistry.counter("jboot.cache." + getClass().getSimpleName() + "." + name);
+    }
+
+
+    private static class LoadingKey {
+
+        private final String cacheName;
+        private final Object key;
+
+        LoadingKey(String cacheName, Object key) {
+            this.cacheName = cacheName;
+            this.key = key;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof LoadingKey)) {
+                return false;
+            }
+            LoadingKey that = (LoadingKey) o;
+            return cacheName.equals(that.cacheName) && Objects.equals(key, that.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * cacheName.hashCode() + Objects.hashCode(key);
+        }
+    }
+
+
+    private static class LoadingFlight {
+
+        private final Thread owner = Thread.currentThread();
+        private final CompletableFuture<Object> future = new CompletableFuture<>();
+
+        Object await() {
+            try {
+                return future.join();
+            } catch (CompletionException ex) {
+                Throwable cause = ex.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw ex;
+            }
+        }
+    }
 }
@@ -43,6 +43,10 @@ public class JbootCacheConfig {
     private String aopCacheType;
     private String aopCacheDefaultCacheNamePrefix;
 
+    // @Cacheable 开启 staleWhileRevalidate 或者 refreshAheadBeta 时，后台刷新缓存的线程数和队列大小
+    private int aopCacheRefreshThreads = 4;
+    private int aopCacheRefreshQueueSize = 1000;
+
     public String getType() {
         return type;
     }
@@ -86,6 +90,22 @@ public class JbootCacheConfig {
         this.aopCacheType = aopCacheType;
     }
 
+    public int getAopCacheRefreshThreads() {
+        return aopCacheRefreshThreads;
+    }
+
+    public void setAopCacheRefreshThreads(int aopCacheRefreshThreads) {
+        this.aopCacheRefreshThreads = aopCacheRefreshThreads;
+    }
+
+    public int getAopCacheRefreshQueueSize() {
+        return aopCacheRefreshQueueSize;
+    }
+
+    public void setAopCacheRefreshQueueSize(int aopCacheRefreshQueueSize) {
+        this.aopCacheRefreshQueueSize = aopCacheRefreshQueueSize;
+    }
+
     private static JbootCacheConfig me;
 
     public static JbootCacheConfig getInstance() {
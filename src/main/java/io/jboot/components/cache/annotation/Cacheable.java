@@ -61,6 +61,25 @@ public @interface Cacheable {
      */
     boolean returnCopyEnable() default false;
 
+    /**
+     * 缓存过期后，仍然可以返回旧数据的时间，单位秒
+     * 在这段时间内，返回旧数据的同时会在后台异步刷新缓存，调用方不需要等待方法执行
+     * 只有在 liveSeconds 有效（大于 0）的时候生效
+     *
+     * @return
+     */
+    int staleWhileRevalidate() default 0;
+
+    /**
+     * 提前刷新的系数（XFetch 算法的 beta 值），0 为不开启，一般配置为 1
+     * 开启后，缓存在快要过期的时候会按照一定的概率提前在后台刷新，方法执行的越慢，越容易提前刷新，
+     * 这样集群中的节点会在不同的时间进行刷新，避免缓存同时过期
+     * 只有在 liveSeconds 有效（大于 0）的时候生效
+     *
+     * @return
+     */
+    double refreshAheadBeta() default 0;
+
     /**
      * 在什么情况下不进行缓存
      * 这里编写的是 JFinal 模板引擎的表达式
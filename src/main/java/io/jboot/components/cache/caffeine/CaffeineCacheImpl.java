@@ -16,12 +16,9 @@
 package io.jboot.components.cache.caffeine;
 
 import com.github.benmanes.caffeine.cache.Cache;
-import com.jfinal.plugin.ehcache.IDataLoader;
 import io.jboot.components.cache.JbootCacheBase;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
 
@@ -99,34 +96,48 @@ public class CaffeineCacheImpl extends JbootCacheBase {
     }
 
     @Override
-    public <T> T get(String cacheName, Object key, IDataLoader dataLoader) {
-        Cache cache = getCache(cacheName);
-        CaffeineCacheObject data = (CaffeineCacheObject) cache.getIfPresent(key);
-        if (data == null || data.isDue()) {
-            Object newValue = dataLoader.load();
-            if (newValue != null) {
-                data = new CaffeineCacheObject(newValue);
-                putData(cache, key, data);
+    public <T> Map<Object, T> getAll(String cacheName, Collection keys) {
+        Map<Object, T> result = new HashMap<>();
+        Cache cache = getCacheOnly(cacheName);
+        if (cache == null) {
+            return result;
+        }
+
+        Map<Object, Object> datas = cache.getAllPresent(keys);
+        for (Map.Entry<Object, Object> entry : datas.entrySet()) {
+            CaffeineCacheObject data = (CaffeineCacheObject) entry.getValue();
+            if (data.isDue()) {
+                cache.invalidate(entry.getKey());
+            } else {
+                result.put(entry.getKey(), (T) data.getValue());
             }
-            return (T) newValue;
-        } else {
-            return (T) data.getValue();
         }
+        return result;
     }
 
     @Override
-    public <T> T get(String cacheName, Object key, IDataLoader dataLoader, int liveSeconds) {
-        Cache cache = getCache(cacheName);
-        CaffeineCacheObject data = (CaffeineCacheObject) cache.getIfPresent(key);
-        if (data == null || data.isDue()) {
-            Object newValue = dataLoader.load();
-            if (newValue != null) {
-                data = new CaffeineCacheObject(newValue, liveSeconds);
-                putData(cache, key, data);
+    public void putAll(String cacheName, Map map, int liveSeconds) {
+        long cachetime = System.currentTimeMillis();
+        Map<Object, CaffeineCacheObject> datas = new HashMap<>(map.size());
+        for (Object entryObject : map.entrySet()) {
+            Map.Entry entry = (Map.Entry) entryObject;
+            if (entry.getValue() == null) {
+                continue;
             }
-            return (T) newValue;
-        } else {
-            return (T) data.getValue();
+            CaffeineCacheObject data = liveSeconds > 0
+                    ? new CaffeineCacheObject(entry.getValue(), liveSeconds)
+                    : new CaffeineCacheObject(entry.getValue());
+            data.setCachetime(cachetime);
+            datas.put(entry.getKey(), data);
+        }
+        getCache(cacheName).putAll(datas);
+    }
+
+    @Override
+    public void removeAll(String cacheName, Collection keys) {
+        Cache cache = getCacheOnly(cacheName);
+        if (cache != null) {
+            cache.invalidateAll(keys);
         }
     }
 
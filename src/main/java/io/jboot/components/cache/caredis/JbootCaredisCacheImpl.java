@@ -27,8 +27,7 @@ import io.jboot.support.redis.JbootRedis;
 import io.jboot.utils.StrUtil;
 import redis.clients.jedis.BinaryJedisPubSub;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -132,35 +131,64 @@ public class JbootCaredisCacheImpl extends JbootCacheBase {
     }
 
     @Override
-    public <T> T get(String cacheName, Object key, IDataLoader dataLoader) {
-        T value = get(cacheName, key);
-        if (value != null) {
-            return value;
+    public <T> Map<Object, T> getAll(String cacheName, Collection keys) {
+        Map<Object, T> result = caffeineCacheImpl.getAll(cacheName, keys);
+        if (result.size() == keys.size()) {
+            return result;
         }
 
-        value = (T) dataLoader.load();
-        if (value != null) {
-            put(cacheName, key, value);
+        List<Object> missingKeys = new ArrayList<>(keys.size() - result.size());
+        for (Object key : keys) {
+            if (!result.containsKey(key)) {
+                missingKeys.add(key);
+            }
         }
-        return value;
+
+        Map<Object, T> redisValues = redisCacheImpl.getAll(cacheName, missingKeys);
+        if (redisValues.isEmpty()) {
+            return result;
+        }
+
+        Map<Object, Integer> ttls = redisCacheImpl.getTtls(cacheName, redisValues.keySet());
+        for (Map.Entry<Object, T> entry : redisValues.entrySet()) {
+            Integer ttl = ttls.get(entry.getKey());
+            if (ttl != null && ttl > 0) {
+                caffeineCacheImpl.put(cacheName, entry.getKey(), entry.getValue(), ttl);
+            } else {
+                caffeineCacheImpl.put(cacheName, entry.getKey(), entry.getValue());
+            }
+        }
+
+        result.putAll(redisValues);
+        return result;
     }
 
     @Override
-    public <T> T get(String cacheName, Object key, IDataLoader dataLoader, int liveSeconds) {
-        if (liveSeconds <= 0) {
-            return get(cacheName, key, dataLoader);
+    public void putAll(String cacheName, Map map, int liveSeconds) {
+        try {
+            caffeineCacheImpl.putAll(cacheName, map, liveSeconds);
+            redisCacheImpl.putAll(cacheName, map, liveSeconds);
+        } finally {
+            publishMessage(JbootCaredisMessage.ACTION_REMOVE_KEYS, cacheName, new ArrayList<>(map.keySet()));
         }
+    }
 
-        T value = get(cacheName, key);
-        if (value != null) {
-            return value;
+    @Override
+    public void removeAll(String cacheName, Collection keys) {
+        try {
+            caffeineCacheImpl.removeAll(cacheName, keys);
+            redisCacheImpl.removeAll(cacheName, keys);
+        } finally {
+            publishMessage(JbootCaredisMessage.ACTION_REMOVE_KEYS, cacheName, new ArrayList<>(keys));
         }
+    }
 
-        value = (T) dataLoader.load();
-        if (value != null) {
-            put(cacheName, key, value, liveSeconds);
+    @Override
+    protected Object doLoad(String cacheName, Object key, IDataLoader dataLoader, int liveSeconds) {
+        if (!redisCacheImpl.isClusterLoadEnable()) {
+            return super.doLoad(cacheName, key, dataLoader, liveSeconds);
         }
-        return value;
+        return redisCacheImpl.loadWithLease(this, cacheName, key, () -> super.doLoad(cacheName, key, dataLoader, liveSeconds));
     }
 
     @Override
@@ -249,6 +277,9 @@ public class JbootCaredisCacheImpl extends JbootCacheBase {
             case JbootCaredisMessage.ACTION_REMOVE_ALL:
                 caffeineCacheImpl.removeAll(message.getCacheName());
                 break;
+            case JbootCaredisMessage.ACTION_REMOVE_KEYS:
+                caffeineCacheImpl.removeAll(message.getCacheName(), (Collection) message.getKey());
+                break;
         }
     }
 
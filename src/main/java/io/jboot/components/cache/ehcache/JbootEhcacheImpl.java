@@ -17,7 +17,6 @@ package io.jboot.components.cache.ehcache;
 
 import com.jfinal.kit.PathKit;
 import com.jfinal.log.Log;
-import com.jfinal.plugin.ehcache.IDataLoader;
 import io.jboot.Jboot;
 import io.jboot.components.cache.JbootCacheBase;
 import io.jboot.utils.StrUtil;
@@ -26,8 +25,7 @@ import net.sf.ehcache.CacheManager;
 import net.sf.ehcache.Element;
 import net.sf.ehcache.event.CacheEventListener;
 
-import java.util.Arrays;
-import java.util.List;
+import java.util.*;
 
 
 public class JbootEhcacheImpl extends JbootCacheBase {
@@ -117,26 +115,37 @@ public class JbootEhcacheImpl extends JbootCacheBase {
     }
 
     @Override
-    public <T> T get(String cacheName, Object key, IDataLoader dataLoader) {
-        Object data = get(cacheName, key);
-        if (data == null) {
-            data = dataLoader.load();
-            put(cacheName, key, data);
+    public <T> Map<Object, T> getAll(String cacheName, Collection keys) {
+        Map<Object, T> result = new HashMap<>();
+        Map<Object, Element> elements = getOrAddCache(cacheName).getAll(keys);
+        for (Map.Entry<Object, Element> entry : elements.entrySet()) {
+            if (entry.getValue() != null) {
+                result.put(entry.getKey(), (T) entry.getValue().getObjectValue());
+            }
         }
-        return (T) data;
+        return result;
     }
 
     @Override
-    public <T> T get(String cacheName, Object key, IDataLoader dataLoader, int liveSeconds) {
-        if (liveSeconds <= 0) {
-            return get(cacheName, key, dataLoader);
-        }
-        Object data = get(cacheName, key);
-        if (data == null) {
-            data = dataLoader.load();
-            put(cacheName, key, data, liveSeconds);
+    public void putAll(String cacheName, Map map, int liveSeconds) {
+        List<Element> elements = new ArrayList<>(map.size());
+        for (Object entryObject : map.entrySet()) {
+            Map.Entry entry = (Map.Entry) entryObject;
+            if (entry.getValue() == null) {
+                continue;
+            }
+            Element element = new Element(entry.getKey(), entry.getValue());
+            if (liveSeconds > 0) {
+                element.setTimeToLive(liveSeconds);
+            }
+            elements.add(element);
         }
-        return (T) data;
+        getOrAddCache(cacheName).putAll(elements);
+    }
+
+    @Override
+    public void removeAll(String cacheName, Collection keys) {
+        getOrAddCache(cacheName).removeAll(keys);
     }
 
     @Override
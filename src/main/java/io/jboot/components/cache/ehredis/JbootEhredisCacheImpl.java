@@ -31,8 +31,7 @@ import net.sf.ehcache.Element;
 import net.sf.ehcache.event.CacheEventListener;
 import redis.clients.jedis.BinaryJedisPubSub;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -138,35 +137,64 @@ public class JbootEhredisCacheImpl extends JbootCacheBase implements CacheEventL
     }
 
     @Override
-    public <T> T get(String cacheName, Object key, IDataLoader dataLoader) {
-        T value = get(cacheName, key);
-        if (value != null) {
-            return value;
+    public <T> Map<Object, T> getAll(String cacheName, Collection keys) {
+        Map<Object, T> result = ehcacheImpl.getAll(cacheName, keys);
+        if (result.size() == keys.size()) {
+            return result;
         }
 
-        value = (T) dataLoader.load();
-        if (value != null) {
-            put(cacheName, key, value);
+        List<Object> missingKeys = new ArrayList<>(keys.size() - result.size());
+        for (Object key : keys) {
+            if (!result.containsKey(key)) {
+                missingKeys.add(key);
+            }
         }
-        return value;
+
+        Map<Object, T> redisValues = redisCacheImpl.getAll(cacheName, missingKeys);
+        if (redisValues.isEmpty()) {
+            return result;
+        }
+
+        Map<Object, Integer> ttls = redisCacheImpl.getTtls(cacheName, redisValues.keySet());
+        for (Map.Entry<Object, T> entry : redisValues.entrySet()) {
+            Integer ttl = ttls.get(entry.getKey());
+            if (ttl != null && ttl > 0) {
+                ehcacheImpl.put(cacheName, entry.getKey(), entry.getValue(), ttl);
+            } else {
+                ehcacheImpl.put(cacheName, entry.getKey(), entry.getValue());
+            }
+        }
+
+        result.putAll(redisValues);
+        return result;
     }
 
     @Override
-    public <T> T get(String cacheName, Object key, IDataLoader dataLoader, int liveSeconds) {
-        if (liveSeconds <= 0) {
-            return get(cacheName, key, dataLoader);
+    public void putAll(String cacheName, Map map, int liveSeconds) {
+        try {
+            ehcacheImpl.putAll(cacheName, map, liveSeconds);
+            redisCacheImpl.putAll(cacheName, map, liveSeconds);
+        } finally {
+            publishMessage(JbootEhredisMessage.ACTION_REMOVE_KEYS, cacheName, new ArrayList<>(map.keySet()));
         }
+    }
 
-        T value = get(cacheName, key);
-        if (value != null) {
-            return value;
+    @Override
+    public void removeAll(String cacheName, Collection keys) {
+        try {
+            ehcacheImpl.removeAll(cacheName, keys);
+            redisCacheImpl.removeAll(cacheName, keys);
+        } finally {
+            publishMessage(JbootEhredisMessage.ACTION_REMOVE_KEYS, cacheName, new ArrayList<>(keys));
         }
+    }
 
-        value = (T) dataLoader.load();
-        if (value != null) {
-            put(cacheName, key, value, liveSeconds);
+    @Override
+    protected Object doLoad(String cacheName, Object key, IDataLoader dataLoader, int liveSeconds) {
+        if (!redisCacheImpl.isClusterLoadEnable()) {
+            return super.doLoad(cacheName, key, dataLoader, liveSeconds);
         }
-        return value;
+        return redisCacheImpl.loadWithLease(this, cacheName, key, () -> super.doLoad(cacheName, key, dataLoader, liveSeconds));
     }
 
     @Override
@@ -250,6 +278,9 @@ public class JbootEhredisCacheImpl extends JbootCacheBase implements CacheEventL
             case JbootEhredisMessage.ACTION_REMOVE_ALL:
                 ehcacheImpl.removeAll(message.getCacheName());
                 break;
+            case JbootEhredisMessage.ACTION_REMOVE_KEYS:
+                ehcacheImpl.removeAll(message.getCacheName(), (Collection) message.getKey());
+                break;
         }
     }
 
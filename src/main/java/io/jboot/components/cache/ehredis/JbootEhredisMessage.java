@@ -23,6 +23,7 @@ public class JbootEhredisMessage implements Serializable {
     public static final int ACTION_PUT = 1;
     public static final int ACTION_REMOVE = 2;
     public static final int ACTION_REMOVE_ALL = 3;
+    public static final int ACTION_REMOVE_KEYS = 4; // key 为需要删除的 key 集合
 
     private String clientId;
     private int action;
@@ -21,6 +21,7 @@ import com.jfinal.aop.Invocation;
 import com.jfinal.plugin.activerecord.Page;
 import io.jboot.Jboot;
 import io.jboot.components.cache.AopCache;
+import io.jboot.components.cache.AopCacheObject;
 import io.jboot.components.cache.annotation.Cacheable;
 import io.jboot.db.model.JbootModel;
 import io.jboot.exception.JbootException;
@@ -63,31 +64,68 @@ public class CacheableInterceptor implements Interceptor {
         Utils.ensureCachenameAvailable(method, cacheName);
         String cacheKey = Utils.buildCacheKey(AnnotationUtil.get(cacheable.key()), targetClass, method, inv.getArgs());
 
+        int liveSeconds = Utils.getLiveSeconds(cacheable.liveSeconds());
+
+        // 开启了 staleWhileRevalidate 或 refreshAheadBeta，缓存中存放的是 AopCacheObject
+        boolean refreshEnable = liveSeconds > 0
+                && !inv.isActionInvocation()
+                && (cacheable.staleWhileRevalidate() > 0 || cacheable.refreshAheadBeta() > 0);
+
+        int cacheLiveSeconds = refreshEnable ? liveSeconds + Math.max(cacheable.staleWhileRevalidate(), 0) : liveSeconds;
+
+        // 后台刷新线程执行的方法，直接执行并更新缓存
+        if (refreshEnable && CacheableRefresher.takeRefreshing(cacheName, cacheKey)) {
+            Object data = invokeForCache(inv, cacheable, liveSeconds, true);
+            if (data != null) {
+                Utils.putDataToCache(cacheName, cacheKey, data, cacheLiveSeconds);
+            }
+            return;
+        }
+
         Object data = AopCache.get(cacheName, cacheKey);
-        if (data != null) {
-            if (NULL_VALUE.equals(data)) {
-                inv.setReturnValue(null);
-            } else if (cacheable.returnCopyEnable()) {
-                inv.setReturnValue(getCopyObject(inv, data));
-            } else {
-                inv.setReturnValue(data);
+        if (data == null) {
+            //并发情况下，同一个 key 只有一个线程会执行目标方法，其他线程等待并共享其结果
+            data = AopCache.load(cacheName, cacheKey, () -> invokeForCache(inv, cacheable, liveSeconds, refreshEnable), cacheLiveSeconds);
+        } else if (refreshEnable && data instanceof AopCacheObject) {
+            AopCacheObject cacheObject = (AopCacheObject) data;
+            if (cacheObject.isStale() || cacheObject.isRefreshAhead(cacheable.refreshAheadBeta())) {
+                CacheableRefresher.refresh(cacheName, cacheKey, inv);
             }
+        }
+
+        if (data instanceof AopCacheObject) {
+            data = ((AopCacheObject) data).getValue();
+        }
+
+        if (data == null || NULL_VALUE.equals(data)) {
+            inv.setReturnValue(null);
+        } else if (cacheable.returnCopyEnable()) {
+            //当启用返回 copy 值的时候，返回的内容应该是一个进行copy之后的值
+            inv.setReturnValue(getCopyObject(inv, data));
         } else {
-            inv.invoke();
-            data = inv.getReturnValue();
-            if (data != null) {
+            inv.setReturnValue(data);
+        }
+    }
 
-                Utils.putDataToCache(cacheName, cacheKey, data, cacheable.liveSeconds());
 
-                //当启用返回 copy 值的时候，返回的内容应该是一个进行copy之后的值
-                if (cacheable.returnCopyEnable()) {
-                    inv.setReturnValue(getCopyObject(inv, data));
-                }
+    /**
+     * 执行目标方法，并返回需要放入缓存的数据，返回 null 表示不需要缓存
+     */
+    private Object invokeForCache(Invocation inv, Cacheable cacheable, int liveSeconds, boolean refreshEnable) {
+        long startTime = System.currentTimeMillis();
+        inv.invoke();
 
-            } else if (cacheable.nullCacheEnable()) {
-                Utils.putDataToCache(cacheName, cacheKey, NULL_VALUE, cacheable.liveSeconds());
+        Object value = inv.getReturnValue();
+        if (value == null) {
+            if (!cacheable.nullCacheEnable()) {
+                return null;
             }
+            value = NULL_VALUE;
         }
+
+        return refreshEnable
+                ? new AopCacheObject(value, liveSeconds, System.currentTimeMillis() - startTime)
+                : value;
     }
 
 
@@ -0,0 +1,108 @@
+/**
+ * Copyright (c) 2015-2021, Michael Yang 杨福海 (fuhai999@gmail.com).
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.jboot.components.cache.interceptor;
+
+import com.jfinal.aop.Invocation;
+import com.jfinal.log.Log;
+import io.jboot.Jboot;
+import io.jboot.components.cache.AopCache;
+import io.jboot.components.cache.JbootCacheConfig;
+import io.jboot.utils.NamedThreadFactory;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Set;
+import java.util.concurrent.*;
+
+/**
+ * 在后台异步刷新 @Cacheable 的缓存，同一个缓存在同一时刻只会有一个刷新任务
+ * <p>
+ * 刷新时通过代理对象重新调用方法，经过和前台调用相同的拦截器链（例如切换数据源、@Tx 等），
+ * 由 CacheableInterceptor 识别出刷新线程后跳过缓存执行并更新缓存
+ * <p>
+ * 注意：刷新在后台线程中执行，调用方线程中的 ThreadLocal 数据（除了缓存名称的前缀）不会带到刷新线程，
+ * 方法的返回值依赖这些数据时（例如请求中的租户信息），不要开启 staleWhileRevalidate 和 refreshAheadBeta
+ */
+class CacheableRefresher {
+
+    private static final Log LOG = Log.getLog(CacheableRefresher.class);
+
+    private static final JbootCacheConfig CONFIG = Jboot.config(JbootCacheConfig.class);
+
+    private static final ThreadPoolExecutor REFRESH_POOL = new ThreadPoolExecutor(
+            CONFIG.getAopCacheRefreshThreads(), CONFIG.getAopCacheRefreshThreads(),
+            60L, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(CONFIG.getAopCacheRefreshQueueSize()),
+            new NamedThreadFactory("jboot-cache-refresh", true),
+            new ThreadPoolExecutor.AbortPolicy());
+
+    static {
+        REFRESH_POOL.allowCoreThreadTimeOut(true);
+    }
+
+    private static final Set<String> REFRESHING_KEYS = ConcurrentHashMap.newKeySet();
+
+    // 当前线程正在刷新的缓存 key，拦截器遇到该 key 时直接执行方法并更新缓存
+    private static final ThreadLocal<String> CURRENT_REFRESH_KEY = new ThreadLocal<>();
+
+
+    static void refresh(String cacheName, String cacheKey, Invocation inv) {
+        String refreshKey = cacheName + ":" + cacheKey;
+        if (!REFRESHING_KEYS.add(refreshKey)) {
+            return;
+        }
+
+        Object target = inv.getTarget();
+        Method method = inv.getMethod();
+        Object[] args = inv.getArgs();
+        String cacheNamePrefix = AopCache.getCurrentPrefix();
+
+        try {
+            REFRESH_POOL.execute(() -> {
+                AopCache.setCurrentPrefix(cacheNamePrefix);
+                try {
+                    CURRENT_REFRESH_KEY.set(refreshKey);
+                    // 方法不是 public 时也可以调用，代理类复写了该方法，调用依然会经过拦截器
+                    method.setAccessible(true);
+                    method.invoke(target, args);
+                } catch (Throwable ex) {
+                    Throwable cause = ex instanceof InvocationTargetException ? ex.getCause() : ex;
+                    LOG.error("refresh cache error, cacheName: " + cacheName + ", cacheKey: " + cacheKey, cause);
+                } finally {
+                    CURRENT_REFRESH_KEY.remove();
+                    AopCache.clearCurrentPrefix();
+                    REFRESHING_KEYS.remove(refreshKey);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            // 刷新队列已满，放弃本次刷新，等待下一次请求再触发
+            REFRESHING_KEYS.remove(refreshKey);
+        }
+    }
+
+
+    /**
+     * 当前线程是否正在刷新该缓存，是的话会清除标识，以免方法内部调用的其他 @Cacheable 方法也跳过缓存
+     */
+    static boolean takeRefreshing(String cacheName, String cacheKey) {
+        String refreshKey = CURRENT_REFRESH_KEY.get();
+        if (refreshKey != null && refreshKey.equals(cacheName + ":" + cacheKey)) {
+            CURRENT_REFRESH_KEY.remove();
+            return true;
+        }
+        return false;
+    }
+}
@@ -196,8 +196,12 @@ class Utils {
 
     private static final JbootCacheConfig CONFIG = Jboot.config(JbootCacheConfig.class);
 
+    static int getLiveSeconds(int liveSeconds) {
+        return liveSeconds > 0 ? liveSeconds : CONFIG.getAopCacheLiveSeconds();
+    }
+
     static void putDataToCache(String cacheName, String cacheKey, Object data, int liveSeconds) {
-        liveSeconds = liveSeconds > 0 ? liveSeconds : CONFIG.getAopCacheLiveSeconds();
+        liveSeconds = getLiveSeconds(liveSeconds);
         if (liveSeconds > 0) {
             AopCache.put(cacheName, cacheKey, data, liveSeconds);
         } else {
@@ -15,7 +15,6 @@
  */
 package io.jboot.components.cache.j2cache;
 
-import com.jfinal.plugin.ehcache.IDataLoader;
 import io.jboot.components.cache.JbootCacheBase;
 import io.jboot.exception.JbootException;
 import net.oschina.j2cache.CacheChannel;
@@ -66,32 +65,6 @@ public class J2cacheImpl extends JbootCacheBase {
         J2Cache.getChannel().clear(cacheName);
     }
 
-    @Override
-    public <T> T get(String cacheName, Object key, IDataLoader dataLoader) {
-        Object value = get(cacheName, key);
-        if (value == null) {
-            value = dataLoader.load();
-            if (value != null) {
-                put(cacheName, key, value);
-            }
-        }
-        return (T) value;
-    }
-
-    @Override
-    public <T> T get(String cacheName, Object key, IDataLoader dataLoader, int liveSeconds) {
-        if (liveSeconds <= 0) {
-            return get(cacheName, key, dataLoader);
-        }
-
-        Object data = get(cacheName, key);
-        if (data == null) {
-            data = dataLoader.load();
-            put(cacheName, key, data, liveSeconds);
-        }
-        return (T) data;
-    }
-
     private Method sendEvictCmdMethod;
 
     @Override
@@ -17,9 +17,10 @@ package io.jboot.components.cache.none;
 
 
 import com.jfinal.plugin.ehcache.IDataLoader;
+import io.jboot.components.cache.IDataBatchLoader;
 import io.jboot.components.cache.JbootCache;
 
-import java.util.List;
+import java.util.*;
 
 /**
  * noneCache 存在的目的：方便通过配置文件的方式关闭缓存功能
@@ -70,6 +71,32 @@ public class NoneCacheImpl implements JbootCache {
         return (T) dataLoader.load();
     }
 
+    @Override
+    public <T> Map<Object, T> getAll(String cacheName, Collection keys) {
+        return new HashMap<>();
+    }
+
+    @Override
+    public <T> Map<Object, T> getAll(String cacheName, Collection keys, IDataBatchLoader dataLoader, int liveSeconds) {
+        Map<Object, T> result = dataLoader.load(keys);
+        return result != null ? result : new HashMap<>();
+    }
+
+    @Override
+    public void putAll(String cacheName, Map map) {
+        //do nothing
+    }
+
+    @Override
+    public void putAll(String cacheName, Map map, int liveSeconds) {
+        //do nothing
+    }
+
+    @Override
+    public void removeAll(String cacheName, Collection keys) {
+        //do nothing
+    }
+
     @Override
     public Integer getTtl(String cacheName, Object key) {
         return null;
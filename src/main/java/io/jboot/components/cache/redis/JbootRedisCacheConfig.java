@@ -30,6 +30,18 @@ public class JbootRedisCacheConfig extends JbootRedisConfig {
      */
     private String globalKeyPrefix;
 
+    /**
+     * 是否开启集群加载，开启后缓存失效时，整个集群只有一个节点会去执行 IDataLoader.load()
+     * 其他节点等待该节点加载完成后直接读取缓存
+     */
+    private boolean clusterLoadEnable = false;
+
+    /**
+     * 集群加载时，加载节点持有租约的时间，单位毫秒
+     * 超过该时间没有加载完成，其他节点会自行加载
+     */
+    private long clusterLoadLeaseMillis = 3000;
+
     public String getGlobalKeyPrefix() {
         return globalKeyPrefix;
     }
@@ -37,4 +49,20 @@ public class JbootRedisCacheConfig extends JbootRedisConfig {
     public void setGlobalKeyPrefix(String globalKeyPrefix) {
         this.globalKeyPrefix = globalKeyPrefix;
     }
+
+    public boolean isClusterLoadEnable() {
+        return clusterLoadEnable;
+    }
+
+    public void setClusterLoadEnable(boolean clusterLoadEnable) {
+        this.clusterLoadEnable = clusterLoadEnable;
+    }
+
+    public long getClusterLoadLeaseMillis() {
+        return clusterLoadLeaseMillis;
+    }
+
+    public void setClusterLoadLeaseMillis(long clusterLoadLeaseMillis) {
+        this.clusterLoadLeaseMillis = clusterLoadLeaseMillis;
+    }
 }
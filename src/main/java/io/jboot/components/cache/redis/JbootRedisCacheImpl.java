@@ -17,6 +17,7 @@ package io.jboot.components.cache.redis;
 
 import com.jfinal.plugin.ehcache.IDataLoader;
 import io.jboot.Jboot;
+import io.jboot.components.cache.JbootCache;
 import io.jboot.support.redis.JbootRedis;
 import io.jboot.support.redis.JbootRedisManager;
 import io.jboot.components.cache.JbootCacheBase;
@@ -34,6 +35,17 @@ public class JbootRedisCacheImpl extends JbootCacheBase {
     private JbootRedisCacheConfig cacheConfig;
     private static String redisCacheNamesKey = "jboot_cache_names";
     private String globalKeyPrefix = "";
+    private String leaseKeyPrefix = "jboot_cache_lease:";
+
+    private static final String LEASE_ACQUIRE_SCRIPT = "return redis.call('set', KEYS[1], ARGV[1], 'NX', 'PX', ARGV[2])";
+    private static final String LEASE_RELEASE_SCRIPT = "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end";
+    // 加载的数据为 null 时，把租约替换为 null 标记，等待的节点看到后直接返回 null
+    private static final String LEASE_NULL_SCRIPT = "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('set', KEYS[1], ARGV[2], 'PX', ARGV[3]) else return 0 end";
+    // 0：租约已经释放，1：租约还在，2：null 标记
+    private static final String LEASE_STATE_SCRIPT = "local v = redis.call('get', KEYS[1]) if not v then return 0 elseif v == ARGV[1] then return 2 else return 1 end";
+    private static final String LEASE_NULL_MARKER = "jboot_cache_lease_null";
+    private static final long LEASE_NULL_MILLIS = 500;
+    private static final long LEASE_POLL_MILLIS = 50;
 
 
     public JbootRedisCacheImpl() {
@@ -41,6 +53,7 @@ public class JbootRedisCacheImpl extends JbootCacheBase {
         if (StrUtil.isNotBlank(cacheConfig.getGlobalKeyPrefix())) {
             globalKeyPrefix = cacheConfig.getGlobalKeyPrefix() + ":";
             redisCacheNamesKey = globalKeyPrefix + redisCacheNamesKey;
+            leaseKeyPrefix = globalKeyPrefix + leaseKeyPrefix;
         }
 
         if (cacheConfig.isConfigOk()) {
@@ -116,13 +129,79 @@ public class JbootRedisCacheImpl extends JbootCacheBase {
 
 
     @Override
-    public <T> T get(String cacheName, Object key, IDataLoader dataLoader) {
-        Object data = get(cacheName, key);
-        if (data == null) {
-            data = dataLoader.load();
-            put(cacheName, key, data);
+    protected Object doLoad(String cacheName, Object key, IDataLoader dataLoader, int liveSeconds) {
+        if (!cacheConfig.isClusterLoadEnable()) {
+            return super.doLoad(cacheName, key, dataLoader, liveSeconds);
         }
-        return (T) data;
+        return loadWithLease(this, cacheName, key, () -> super.doLoad(cacheName, key, dataLoader, liveSeconds));
+    }
+
+
+    public boolean isClusterLoadEnable() {
+        return cacheConfig.isClusterLoadEnable();
+    }
+
+
+    /**
+     * 通过 redis 租约控制集群中只有一个节点去执行 dataLoader，
+     * 未获得租约的节点轮询 cache 直到数据出现，或者租约到期后自行加载；
+     * 加载的数据为 null 时，租约会被替换为短时间的 null 标记，等待的节点直接返回 null，
+     * 加载失败时租约被释放，等待的节点立即自行加载
+     *
+     * @param cache      轮询数据时使用的缓存，二级缓存时传入二级缓存本身
+     * @param cacheName
+     * @param key
+     * @param dataLoader 加载数据并放入缓存
+     * @return
+     */
+    public Object loadWithLease(JbootCache cache, String cacheName, Object key, IDataLoader dataLoader) {
+        String leaseKey = leaseKeyPrefix + buildKey(cacheName, key);
+        String leaseValue = StrUtil.uuid();
+        long leaseMillis = cacheConfig.getClusterLoadLeaseMillis();
+
+        Object acquired = redis.eval(LEASE_ACQUIRE_SCRIPT, 1, leaseKey, leaseValue, String.valueOf(leaseMillis));
+        if (acquired != null) {
+            boolean loadedNull = false;
+            try {
+                Object value = dataLoader.load();
+                loadedNull = value == null;
+                return value;
+            } finally {
+                if (loadedNull) {
+                    redis.eval(LEASE_NULL_SCRIPT, 1, leaseKey, leaseValue, LEASE_NULL_MARKER, String.valueOf(LEASE_NULL_MILLIS));
+                } else {
+                    redis.eval(LEASE_RELEASE_SCRIPT, 1, leaseKey, leaseValue);
+                }
+            }
+        }
+
+        long deadline = System.currentTimeMillis() + leaseMillis;
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(LEASE_POLL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            // 先获取租约的状态再获取数据：租约释放之前数据已经放入缓存
+            Object state = redis.eval(LEASE_STATE_SCRIPT, 1, leaseKey, LEASE_NULL_MARKER);
+            int leaseState = state instanceof Number ? ((Number) state).intValue() : 1;
+            if (leaseState == 2) {
+                return null;
+            }
+
+            Object value = cache.get(cacheName, key);
+            if (value != null) {
+                return value;
+            }
+
+            if (leaseState == 0) {
+                // 租约已经释放但没有数据，获得租约的节点加载失败了（或者数据已经被删除）
+                break;
+            }
+        }
+
+        return dataLoader.load();
     }
 
 
@@ -145,17 +224,81 @@ public class JbootRedisCacheImpl extends JbootCacheBase {
     }
 
     @Override
-    public <T> T get(String cacheName, Object key, IDataLoader dataLoader, int liveSeconds) {
-        if (liveSeconds <= 0) {
-            return get(cacheName, key, dataLoader);
+    public <T> Map<Object, T> getAll(String cacheName, Collection keys) {
+        Map<Object, T> result = new HashMap<>();
+        if (keys == null || keys.isEmpty()) {
+            return result;
+        }
+
+        List<Object> keyList = new ArrayList<>(keys);
+        List values = redis.mget(buildKeys(cacheName, keyList));
+        for (int i = 0; i < keyList.size(); i++) {
+            Object value = values.get(i);
+            if (value != null) {
+                result.put(keyList.get(i), (T) value);
+            }
         }
+        return result;
+    }
+
+
+    @Override
+    public void putAll(String cacheName, Map map, int liveSeconds) {
+        Map<Object, Object> keysValues = new HashMap<>(map.size());
+        for (Object entryObject : map.entrySet()) {
+            Map.Entry entry = (Map.Entry) entryObject;
+            // redis 不能存放 null 值
+            if (entry.getValue() != null) {
+                keysValues.put(buildKey(cacheName, entry.getKey()), entry.getValue());
+            }
+        }
+
+        if (keysValues.isEmpty()) {
+            return;
+        }
+
+        redis.msetex(keysValues, liveSeconds);
+        redis.sadd(redisCacheNamesKey, cacheName);
+    }
+
+
+    @Override
+    public void removeAll(String cacheName, Collection keys) {
+        if (keys == null || keys.isEmpty()) {
+            return;
+        }
+        redis.del(buildKeys(cacheName, keys));
+    }
+
+
+    /**
+     * 批量获取剩余的有效时间，单位秒，不存在或者永久有效的 key 不返回
+     */
+    public Map<Object, Integer> getTtls(String cacheName, Collection keys) {
+        Map<Object, Integer> result = new HashMap<>();
+        if (keys == null || keys.isEmpty()) {
+            return result;
+        }
+
+        List<Object> keyList = new ArrayList<>(keys);
+        List<Long> ttls = redis.mttl(buildKeys(cacheName, keyList));
+        for (int i = 0; i < keyList.size(); i++) {
+            Long ttl = ttls.get(i);
+            if (ttl != null && ttl > 0) {
+                result.put(keyList.get(i), ttl.intValue());
+            }
+        }
+        return result;
+    }
+
 
-        Object data = get(cacheName, key);
-        if (data == null) {
-            data = dataLoader.load();
-            put(cacheName, key, data, liveSeconds);
+    private Object[] buildKeys(String cacheName, Collection keys) {
+        Object[] redisKeys = new Object[keys.size()];
+        int index = 0;
+        for (Object key : keys) {
+            redisKeys[index++] = buildKey(cacheName, key);
         }
-        return (T) data;
+        return redisKeys;
     }
 
 
@@ -24,6 +24,7 @@ public class JbootEvent implements Serializable {
     private final long timestamp;
     private String action;
     private Object data;
+    private Object key;
 
     public JbootEvent(String action, Object data) {
         this.action = action;
@@ -31,6 +32,16 @@ public class JbootEvent implements Serializable {
         this.timestamp = System.currentTimeMillis();
     }
 
+    /**
+     * @param action
+     * @param data
+     * @param key    用于 @EventConfig(ordered = true) 或者 coalesceMillis 的监听器，相同 key 的事件按顺序执行或者合并
+     */
+    public JbootEvent(String action, Object data, Object key) {
+        this(action, data);
+        this.key = key;
+    }
+
     @SuppressWarnings("unchecked")
     public <M> M getData() {
         return (M) data;
@@ -40,6 +51,13 @@ public class JbootEvent implements Serializable {
         return action;
     }
 
+    /**
+     * 未设置 key 时，以 action 作为 key
+     */
+    public Object getKey() {
+        return key != null ? key : action;
+    }
+
 
     public long getTimestamp() {
         return this.timestamp;
@@ -48,7 +66,7 @@ public class JbootEvent implements Serializable {
 
     @Override
     public String toString() {
-        return "JbootEvent [timestamp=" + timestamp + ", action=" + action + ", data=" + data + "]";
+        return "JbootEvent [timestamp=" + timestamp + ", action=" + action + ", key=" + key + ", data=" + data + "]";
     }
 
 }
@@ -0,0 +1,28 @@
+/**
+ * Copyright (c) 2015-2021, Michael Yang 杨福海 (fuhai999@gmail.com).
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.jboot.components.event;
+
+import java.util.List;
+
+/**
+ * 批量接收事件的监听器，配合 @EventConfig(coalesceMillis = xx) 使用，
+ * 时间窗口内相同 key 的事件会合并后通过 onEvents 一次性收到
+ */
+public interface JbootEventBatchListener extends JbootEventListener {
+
+    void onEvents(List<JbootEvent> events);
+
+}
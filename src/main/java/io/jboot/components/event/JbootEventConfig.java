@@ -0,0 +1,97 @@
+/**
+ * Copyright (c) 2015-2021, Michael Yang 杨福海 (fuhai999@gmail.com).
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.jboot.components.event;
+
+import io.jboot.app.config.annotation.ConfigModel;
+
+@ConfigModel(prefix = "jboot.event")
+public class JbootEventConfig {
+
+    public static final String POLICY_BOUNDED = "bounded";
+    public static final String POLICY_VIRTUAL = "virtual";
+
+    public static final String REJECT_CALLER_RUNS = "callerRuns";
+    public static final String REJECT_ABORT = "abort";
+    public static final String REJECT_DISCARD = "discard";
+    public static final String REJECT_DISCARD_OLDEST = "discardOldest";
+
+    /**
+     * 异步监听器的执行策略：bounded 或者 virtual（需要 JDK 21+，不支持时使用 bounded）
+     */
+    private String asyncPolicy = POLICY_BOUNDED;
+
+    /**
+     * bounded 策略的线程数量，小于等于 0 时为 CPU 核数 * 4
+     */
+    private int asyncThreads = 0;
+
+    /**
+     * bounded 策略等待执行的最大数量；virtual 策略为同时执行的最大数量
+     */
+    private int asyncQueueSize = 10000;
+
+    /**
+     * 队列满了之后的处理策略：callerRuns、abort、discard、discardOldest
+     * virtual 策略下，callerRuns 为等待，其他为丢弃
+     */
+    private String rejectPolicy = REJECT_CALLER_RUNS;
+
+    /**
+     * @EventConfig(ordered = true) 的监听器使用的线程数量，相同 key 的事件总是在同一个线程中执行
+     * 每个线程最多等待执行 asyncQueueSize / orderedThreads 个事件，超出后发布事件的线程等待
+     */
+    private int orderedThreads = 8;
+
+    public String getAsyncPolicy() {
+        return asyncPolicy;
+    }
+
+    public void setAsyncPolicy(String asyncPolicy) {
+        this.asyncPolicy = asyncPolicy;
+    }
+
+    public int getAsyncThreads() {
+        return asyncThreads;
+    }
+
+    public void setAsyncThreads(int asyncThreads) {
+        this.asyncThreads = asyncThreads;
+    }
+
+    public int getAsyncQueueSize() {
+        return asyncQueueSize;
+    }
+
+    public void setAsyncQueueSize(int asyncQueueSize) {
+        this.asyncQueueSize = asyncQueueSize;
+    }
+
+    public String getRejectPolicy() {
+        return rejectPolicy;
+    }
+
+    public void setRejectPolicy(String rejectPolicy) {
+        this.rejectPolicy = rejectPolicy;
+    }
+
+    public int getOrderedThreads() {
+        return orderedThreads;
+    }
+
+    public void setOrderedThreads(int orderedThreads) {
+        this.orderedThreads = orderedThreads;
+    }
+}
@@ -15,6 +15,9 @@
  */
 package io.jboot.components.event;
 
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.jfinal.log.Log;
 import io.jboot.Jboot;
 import io.jboot.core.weight.WeightUtil;
@@ -27,23 +30,60 @@ import java.util.concurrent.*;
 
 public class JbootEventManager {
 
+    // 以 * 结尾的 action 为前缀订阅，单独的 * 订阅所有的 action
+    private static final String WILDCARD = "*";
+
+    // 最多缓存的 action 数量，超出后未缓存的 action 每次发布时重新匹配
+    private static final int MAX_CACHED_ACTIONS = 10000;
+
     private final ExecutorService threadPool;
-    private final Map<String, List<JbootEventListener>> asyncListenerMap;
-    private final Map<String, List<JbootEventListener>> listenerMap;
+    private final Semaphore virtualPermits;
+    private final boolean waitWhenFull;
+    private final JbootEventConfig config;
+    private volatile ThreadPoolExecutor[] orderedExecutors;
+    // 每个顺序执行队列可以等待的数量，在 orderedExecutors 之前赋值
+    private Semaphore[] orderedPermits;
+    private volatile ScheduledExecutorService scheduler;
+    private final MetricRegistry metricRegistry = Jboot.getMetric();
     private static final Log log = Log.getLog(JbootEventManager.class);
 
+    // 注册信息和 action -> 监听器 的快照，注册和取消注册时整体替换，发布事件时只读
+    private volatile Registry registry = new Registry(Collections.emptyList(), Collections.emptyMap());
+
     private static JbootEventManager manager;
 
     public JbootEventManager() {
-        threadPool = new ThreadPoolExecutor(0, Integer.MAX_VALUE,
-                60L, TimeUnit.SECONDS,
-                new SynchronousQueue<>(), new NamedThreadFactory("jboot-event"));
-        asyncListenerMap = new ConcurrentHashMap<>();
-        listenerMap = new ConcurrentHashMap<>();
-
+        this(Jboot.config(JbootEventConfig.class));
         initListeners();
     }
 
+    /**
+     * 不扫描监听器，只能手动注册，一般用于测试或者单独创建的事件管理器
+     */
+    public JbootEventManager(JbootEventConfig config) {
+        this.config = config;
+        int queueSize = Math.max(config.getAsyncQueueSize(), 1);
+
+        ExecutorService virtualExecutor = JbootEventConfig.POLICY_VIRTUAL.equals(config.getAsyncPolicy())
+                ? createVirtualExecutor() : null;
+        if (virtualExecutor != null) {
+            threadPool = virtualExecutor;
+            virtualPermits = new Semaphore(queueSize);
+        } else {
+            int threads = config.getAsyncThreads() > 0
+                    ? config.getAsyncThreads()
+                    : Runtime.getRuntime().availableProcessors() * 4;
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+                    60L, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(queueSize), new NamedThreadFactory("jboot-event"),
+                    createRejectedHandler(config.getRejectPolicy()));
+            executor.allowCoreThreadTimeOut(true);
+            threadPool = executor;
+            virtualPermits = null;
+        }
+        waitWhenFull = JbootEventConfig.REJECT_CALLER_RUNS.equals(config.getRejectPolicy());
+    }
+
     public static JbootEventManager me() {
         if (manager == null) {
             manager = ClassUtil.singleton(JbootEventManager.class);
@@ -61,10 +101,12 @@ public class JbootEventManager {
         }
     }
 
-    public void unRegisterListener(Class<? extends JbootEventListener> listenerClass) {
+    public synchronized void unRegisterListener(Class<? extends JbootEventListener> listenerClass) {
 
-        deleteListner(listenerMap, listenerClass);
-        deleteListner(asyncListenerMap, listenerClass);
+        List<Registration> registrations = new ArrayList<>(registry.registrations);
+        if (registrations.removeIf(registration -> registration.listener.getClass() == listenerClass)) {
+            registry = registry.rebuild(registrations);
+        }
 
         if (Jboot.isDevMode()) {
             log.debug(String.format("listener[%s]-->>unRegisterListener.", listenerClass));
@@ -72,20 +114,6 @@ public class JbootEventManager {
 
     }
 
-    private void deleteListner(Map<String, List<JbootEventListener>> map, Class<? extends JbootEventListener> listenerClass) {
-        for (Map.Entry<String, List<JbootEventListener>> entry : map.entrySet()) {
-            JbootEventListener deleteListener = null;
-            for (JbootEventListener listener : entry.getValue()) {
-                if (listener.getClass() == listenerClass) {
-                    deleteListener = listener;
-                }
-            }
-            if (deleteListener != null) {
-                entry.getValue().remove(deleteListener);
-            }
-        }
-    }
-
     public void registerListener(Class<? extends JbootEventListener> listenerClass) {
 
         if (listenerClass == null) {
@@ -113,7 +141,8 @@ public class JbootEventManager {
             return;
         }
 
-        registerListener(listener, listenerAnnotation.async(), actions);
+        registerListener(listener, listenerAnnotation.async(), listenerAnnotation.ordered()
+                , listenerAnnotation.coalesceMillis(), actions);
 
     }
 
@@ -130,28 +159,34 @@ public class JbootEventManager {
      * @param actions
      */
     public void registerListener(JbootEventListener eventListener, boolean async, String... actions) {
+        registerListener(eventListener, async, false, 0, actions);
+    }
 
-        for (String action : actions) {
-            List<JbootEventListener> list = async ? asyncListenerMap.get(action) : listenerMap.get(action);
-
-            if (null == list) {
-                list = new ArrayList<>();
-            }
-
-            if (list.contains(eventListener)) {
-                continue;
-            }
-
-            list.add(eventListener);
+    /**
+     * 手动注册 EventListener
+     *
+     * @param eventListener
+     * @param async
+     * @param ordered        异步执行时，相同 key 的事件是否按顺序执行
+     * @param coalesceMillis 大于 0 时，相同 key 的事件在该时间窗口内合并之后异步执行一次
+     * @param actions
+     */
+    public synchronized void registerListener(JbootEventListener eventListener, boolean async, boolean ordered
+            , int coalesceMillis, String... actions) {
 
-            WeightUtil.sort(list);
+        // 发布事件时只是入队，由 KeyedEventDelivery 在后台执行
+        JbootEventListener invoker = (async && ordered) || coalesceMillis > 0
+                ? new KeyedEventDelivery(this, eventListener, async && ordered, coalesceMillis)
+                : eventListener;
 
-            if (async) {
-                asyncListenerMap.put(action, list);
-            } else {
-                listenerMap.put(action, list);
+        List<Registration> registrations = new ArrayList<>(registry.registrations);
+        for (String action : actions) {
+            Registration registration = new Registration(eventListener, invoker, async, action);
+            if (!registrations.contains(registration)) {
+                registrations.add(registration);
             }
         }
+        registry = registry.rebuild(registrations);
 
         if (Jboot.isDevMode()) {
             log.debug(String.format("listener[%s]-->>registered.", eventListener));
@@ -160,63 +195,344 @@ public class JbootEventManager {
 
 
     private boolean listenerHasRegisterBefore(Class<? extends JbootEventListener> listenerClass) {
-        return findFromMap(listenerClass, listenerMap)
-                || findFromMap(listenerClass, asyncListenerMap);
-    }
-
-    private boolean findFromMap(Class<? extends JbootEventListener> listenerClass, Map<String, List<JbootEventListener>> map) {
-        for (Map.Entry<String, List<JbootEventListener>> entry : map.entrySet()) {
-            List<JbootEventListener> listeners = entry.getValue();
-            if (listeners == null || listeners.isEmpty()) {
-                continue;
-            }
-            for (JbootEventListener ml : listeners) {
-                if (listenerClass == ml.getClass()) {
-                    return true;
-                }
+        for (Registration registration : registry.registrations) {
+            if (registration.listener.getClass() == listenerClass) {
+                return true;
             }
         }
         return false;
     }
 
+
+    /**
+     * 获取 action 对应的监听器，未缓存的 action 在第一次发布时匹配并缓存
+     */
+    private ActionListeners getActionListeners(String action) {
+        Registry current = registry;
+        ActionListeners actionListeners = current.actions.get(action);
+        if (actionListeners != null) {
+            return actionListeners;
+        }
+
+        // 期间重新注册过监听器时，缓存在旧的快照里，不影响新的快照
+        return current.actions.size() < MAX_CACHED_ACTIONS
+                ? current.actions.computeIfAbsent(action, current::resolve)
+                : current.resolve(action);
+    }
+
+
     public void pulish(final JbootEvent event) {
-        String action = event.getAction();
+        ActionListeners actionListeners = getActionListeners(event.getAction());
+        if (actionListeners.publishMeter != null) {
+            actionListeners.publishMeter.mark();
+        }
 
-        List<JbootEventListener> syncListeners = listenerMap.get(action);
-        if (syncListeners != null && !syncListeners.isEmpty()) {
-            invokeListeners(event, syncListeners);
+        if (actionListeners.syncListeners.length > 0) {
+            invokeListeners(event, actionListeners);
         }
 
-        List<JbootEventListener> listeners = asyncListenerMap.get(action);
-        if (listeners != null && !listeners.isEmpty()) {
-            invokeListenersAsync(event, listeners);
+        if (actionListeners.asyncListeners.length > 0) {
+            invokeListenersAsync(event, actionListeners);
         }
 
     }
 
-    private void invokeListeners(final JbootEvent event, List<JbootEventListener> syncListeners) {
-        for (final JbootEventListener listener : syncListeners) {
-            try {
-                listener.onEvent(event);
-            } catch (Throwable e) {
-                log.error(String.format("listener[%s] onEvent is error! ", listener.getClass()), e);
-            }
+    private void invokeListeners(final JbootEvent event, ActionListeners actionListeners) {
+        for (final JbootEventListener listener : actionListeners.syncListeners) {
+            invokeListener(event, listener, actionListeners.latencyTimer);
+        }
+    }
+
+    private void invokeListenersAsync(final JbootEvent event, ActionListeners actionListeners) {
+        for (final JbootEventListener listener : actionListeners.asyncListeners) {
+            executeAsync(() -> invokeListener(event, listener, actionListeners.latencyTimer), event.getAction(), listener);
         }
     }
 
-    private void invokeListenersAsync(final JbootEvent event, List<JbootEventListener> listeners) {
-        for (final JbootEventListener listener : listeners) {
+    void executeAsync(Runnable runnable, String action, JbootEventListener listener) {
+        if (virtualPermits == null) {
+            threadPool.execute(runnable);
+            return;
+        }
+
+        if (waitWhenFull) {
+            virtualPermits.acquireUninterruptibly();
+        } else if (!virtualPermits.tryAcquire()) {
+            log.warn(String.format("event[%s] is discarded for listener[%s], because too many events are executing.", action, listener.getClass()));
+            return;
+        }
+
+        try {
             threadPool.execute(() -> {
                 try {
-                    listener.onEvent(event);
-                } catch (Throwable e) {
-                    log.error(String.format("listener[%s] onEvent is error! ", listener.getClass()), e);
+                    runnable.run();
+                } finally {
+                    virtualPermits.release();
                 }
             });
+        } catch (RejectedExecutionException ex) {
+            virtualPermits.release();
+            throw ex;
+        }
+    }
+
+    /**
+     * 在 hash 对应的单线程中执行，相同 hash 的任务按提交顺序执行
+     * <p>
+     * 队列满了之后发布事件的线程等待队列空出位置，不能由发布事件的线程执行，否则会打乱顺序；
+     * 顺序执行的线程和合并事件的线程不等待，直接进入队列，避免等待自己或者多个队列之间互相等待
+     */
+    void executeOrdered(int hash, Runnable runnable) {
+        ThreadPoolExecutor[] executors = getOrderedExecutors();
+        int index = (hash & Integer.MAX_VALUE) % executors.length;
+        Semaphore permits = orderedPermits[index];
+        boolean needPermit = !Boolean.TRUE.equals(IN_DELIVERY_THREAD.get());
+        if (needPermit) {
+            try {
+                permits.acquire();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException(ex);
+            }
+        }
+
+        try {
+            executors[index].execute(() -> {
+                if (needPermit) {
+                    permits.release();
+                }
+                IN_DELIVERY_THREAD.set(Boolean.TRUE);
+                runnable.run();
+            });
+        } catch (RejectedExecutionException ex) {
+            if (needPermit) {
+                permits.release();
+            }
+            throw ex;
+        }
+    }
+
+    void schedule(Runnable runnable, long delay, TimeUnit unit) {
+        // 合并窗口内每个 key 最多只有一批事件，合并之后提交到顺序执行的队列时不等待
+        getScheduler().schedule(() -> {
+            IN_DELIVERY_THREAD.set(Boolean.TRUE);
+            runnable.run();
+        }, delay, unit);
+    }
+
+    static void invokeListener(JbootEvent event, JbootEventListener listener, Timer latencyTimer) {
+        long startTime = latencyTimer == null ? 0 : System.nanoTime();
+        try {
+            listener.onEvent(event);
+        } catch (Throwable e) {
+            log.error(String.format("listener[%s] onEvent is error! ", listener.getClass()), e);
+        } finally {
+            if (latencyTimer != null) {
+                latencyTimer.update(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    static void invokeBatchListener(List<JbootEvent> events, JbootEventBatchListener listener) {
+        try {
+            listener.onEvents(events);
+        } catch (Throwable e) {
+            log.error(String.format("listener[%s] onEvents is error! ", listener.getClass()), e);
+        }
+    }
+
+    private ThreadPoolExecutor[] getOrderedExecutors() {
+        if (orderedExecutors == null) {
+            synchronized (this) {
+                if (orderedExecutors == null) {
+                    int threads = Math.max(config.getOrderedThreads(), 1);
+                    int laneQueueSize = Math.max(config.getAsyncQueueSize() / threads, 1);
+                    ThreadPoolExecutor[] executors = new ThreadPoolExecutor[threads];
+                    Semaphore[] permits = new Semaphore[threads];
+                    NamedThreadFactory threadFactory = new NamedThreadFactory("jboot-event-ordered", true);
+                    for (int i = 0; i < threads; i++) {
+                        // 队列的长度由 orderedPermits 限制，顺序执行的线程提交时不受限制
+                        executors[i] = new ThreadPoolExecutor(1, 1,
+                                0L, TimeUnit.MILLISECONDS,
+                                new LinkedBlockingQueue<>(), threadFactory);
+                        permits[i] = new Semaphore(laneQueueSize);
+                    }
+                    orderedPermits = permits;
+                    orderedExecutors = executors;
+                }
+            }
+        }
+        return orderedExecutors;
+    }
+
+    // 当前线程是否是顺序执行或者合并事件的线程，用于在监听器里再次发布事件时避免等待自己（或者互相等待）
+    private static final ThreadLocal<Boolean> IN_DELIVERY_THREAD = new ThreadLocal<>();
+
+    private ScheduledExecutorService getScheduler() {
+        if (scheduler == null) {
+            synchronized (this) {
+                if (scheduler == null) {
+                    scheduler = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("jboot-event-coalesce", true));
+                }
+            }
         }
+        return scheduler;
     }
 
     public ExecutorService getThreadPool() {
         return threadPool;
     }
+
+
+    private static RejectedExecutionHandler createRejectedHandler(String rejectPolicy) {
+        if (JbootEventConfig.REJECT_ABORT.equals(rejectPolicy)) {
+            return new ThreadPoolExecutor.AbortPolicy();
+        } else if (JbootEventConfig.REJECT_DISCARD.equals(rejectPolicy)) {
+            return new ThreadPoolExecutor.DiscardPolicy();
+        } else if (JbootEventConfig.REJECT_DISCARD_OLDEST.equals(rejectPolicy)) {
+            return new ThreadPoolExecutor.DiscardOldestPolicy();
+        } else {
+            return new ThreadPoolExecutor.CallerRunsPolicy();
+        }
+    }
+
+
+    /**
+     * 通过反射创建虚拟线程的执行器，JDK 21 之前的版本返回 null
+     */
+    private static ExecutorService createVirtualExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (Exception ex) {
+            log.warn("virtual thread is not supported in current jdk, use bounded async policy instead.");
+            return null;
+        }
+    }
+
+
+    /**
+     * 注册信息
+     */
+    private static class Registration {
+
+        private final JbootEventListener listener;
+        // 发布事件时实际调用的监听器，按 key 顺序执行或者合并时为 KeyedEventDelivery
+        private final JbootEventListener invoker;
+        private final boolean async;
+        private final String action;
+
+        Registration(JbootEventListener listener, JbootEventListener invoker, boolean async, String action) {
+            this.listener = listener;
+            this.invoker = invoker;
+            this.async = async;
+            this.action = action;
+        }
+
+        boolean matches(String action) {
+            if (this.action.endsWith(WILDCARD)) {
+                return action.startsWith(this.action.substring(0, this.action.length() - 1));
+            }
+            return this.action.equals(action);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Registration)) {
+                return false;
+            }
+            Registration that = (Registration) o;
+            return listener.equals(that.listener) && async == that.async && action.equals(that.action);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(listener, async, action);
+        }
+    }
+
+
+    /**
+     * 某个 action 的全部监听器，已经按照 @Weight 排序
+     */
+    private static class ActionListeners {
+
+        private final JbootEventListener[] syncListeners;
+        private final JbootEventListener[] asyncListeners;
+        private final Meter publishMeter;
+        private final Timer latencyTimer;
+
+        /**
+         * @param metricName 只有直接注册过的 action 单独统计，其他 action（没有监听器或者只通过通配符匹配）统计到 other，
+         *                   避免 action 的数量没有上限时 metric 的数量也没有上限
+         */
+        ActionListeners(List<JbootEventListener> syncListeners, List<JbootEventListener> asyncListeners, MetricRegistry metricRegistry, String metricName) {
+            this.syncListeners = syncListeners.toArray(new JbootEventListener[0]);
+            this.asyncListeners = asyncListeners.toArray(new JbootEventListener[0]);
+            this.publishMeter = metricRegistry == null ? null : metricRegistry.meter("jboot.event." + metricName + ".publish");
+            this.latencyTimer = metricRegistry == null ? null : metricRegistry.timer("jboot.event." + metricName + ".latency");
+        }
+    }
+
+
+    /**
+     * 注册快照，注册信息不可变，actions 只会追加缓存
+     */
+    private class Registry {
+
+        private final List<Registration> registrations;
+        private final Map<String, ActionListeners> actions;
+
+        Registry(List<Registration> registrations, Map<String, ActionListeners> actions) {
+            this.registrations = registrations;
+            this.actions = new ConcurrentHashMap<>(actions);
+        }
+
+        /**
+         * 根据新的注册信息，重新计算已经缓存的 action 以及直接注册的 action
+         */
+        Registry rebuild(List<Registration> newRegistrations) {
+            Registry registry = new Registry(Collections.unmodifiableList(newRegistrations), Collections.emptyMap());
+            Map<String, ActionListeners> newActions = new HashMap<>();
+            for (Registration registration : newRegistrations) {
+                if (!registration.action.endsWith(WILDCARD)) {
+                    newActions.put(registration.action, registry.resolve(registration.action));
+                }
+            }
+            for (String action : actions.keySet()) {
+                if (!newActions.containsKey(action)) {
+                    newActions.put(action, registry.resolve(action));
+                }
+            }
+            return new Registry(registry.registrations, newActions);
+        }
+
+        ActionListeners resolve(String action) {
+            List<JbootEventListener> syncListeners = new ArrayList<>();
+            List<JbootEventListener> asyncListeners = new ArrayList<>();
+            Map<JbootEventListener, JbootEventListener> invokers = new IdentityHashMap<>();
+            boolean registered = false;
+            for (Registration registration : registrations) {
+                if (registration.matches(action)) {
+                    registered |= registration.action.equals(action);
+                    // KeyedEventDelivery 在发布线程中只做入队
+                    List<JbootEventListener> list = registration.async && registration.invoker == registration.listener
+                            ? asyncListeners : syncListeners;
+                    if (!list.contains(registration.listener)) {
+                        list.add(registration.listener);
+                        invokers.put(registration.listener, registration.invoker);
+                    }
+                }
+            }
+
+            // 按照原始监听器的 @Weight 排序
+            WeightUtil.sort(syncListeners);
+            WeightUtil.sort(asyncListeners);
+            syncListeners.replaceAll(invokers::get);
+            asyncListeners.replaceAll(invokers::get);
+            return new ActionListeners(syncListeners, asyncListeners, metricRegistry, registered ? action : "other");
+        }
+    }
 }
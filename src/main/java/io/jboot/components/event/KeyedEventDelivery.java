@@ -0,0 +1,99 @@
+/**
+ * Copyright (c) 2015-2021, Michael Yang 杨福海 (fuhai999@gmail.com).
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.jboot.components.event;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按 key 顺序执行、按时间窗口合并事件的监听器包装，发布事件时只做入队，监听器在后台线程中执行
+ */
+class KeyedEventDelivery implements JbootEventListener {
+
+    private final JbootEventManager manager;
+    private final JbootEventListener listener;
+    private final boolean ordered;
+    private final int coalesceMillis;
+
+    // 合并窗口内，还未执行的事件
+    private final Map<Object, List<JbootEvent>> buffers = new ConcurrentHashMap<>();
+
+    KeyedEventDelivery(JbootEventManager manager, JbootEventListener listener, boolean ordered, int coalesceMillis) {
+        this.manager = manager;
+        this.listener = listener;
+        this.ordered = ordered;
+        this.coalesceMillis = coalesceMillis;
+    }
+
+    @Override
+    public void onEvent(JbootEvent event) {
+        Object key = event.getKey();
+        if (coalesceMillis <= 0) {
+            dispatch(key, Collections.singletonList(event));
+            return;
+        }
+
+        boolean[] newWindow = new boolean[1];
+        buffers.compute(key, (k, events) -> {
+            if (events == null) {
+                events = new ArrayList<>();
+                newWindow[0] = true;
+            }
+            events.add(event);
+            return events;
+        });
+
+        // 窗口内的第一个事件，窗口结束后执行整批事件
+        if (newWindow[0]) {
+            manager.schedule(() -> {
+                List<JbootEvent> events = buffers.remove(key);
+                if (events != null) {
+                    dispatch(key, events);
+                }
+            }, coalesceMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void dispatch(Object key, List<JbootEvent> events) {
+        Runnable runnable = () -> invoke(events);
+        if (ordered) {
+            manager.executeOrdered(31 * System.identityHashCode(listener) + key.hashCode(), runnable);
+        } else {
+            manager.executeAsync(runnable, events.get(0).getAction(), listener);
+        }
+    }
+
+    private void invoke(List<JbootEvent> events) {
+        if (listener instanceof JbootEventBatchListener && coalesceMillis > 0) {
+            JbootEventManager.invokeBatchListener(events, (JbootEventBatchListener) listener);
+        } else if (coalesceMillis > 0) {
+            // 合并之后只保留最后一个事件
+            JbootEventManager.invokeListener(events.get(events.size() - 1), listener, null);
+        } else {
+            for (JbootEvent event : events) {
+                JbootEventManager.invokeListener(event, listener, null);
+            }
+        }
+    }
+
+    public JbootEventListener getListener() {
+        return listener;
+    }
+}
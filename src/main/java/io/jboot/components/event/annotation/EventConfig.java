@@ -24,4 +24,15 @@ import java.lang.annotation.*;
 public @interface EventConfig {
 	boolean 	async() 	default true;
 	String[] 	action();
+
+	/**
+	 * 异步执行时，相同 key（JbootEvent.getKey()）的事件按发布顺序依次执行
+	 */
+	boolean 	ordered() 	default false;
+
+	/**
+	 * 大于 0 时，相同 key 的事件在该时间窗口（毫秒）内合并为一批，异步执行一次：
+	 * 实现了 JbootEventBatchListener 的监听器通过 onEvents 收到整批事件，其他监听器只收到最后一个事件
+	 */
+	int 		coalesceMillis() 	default 0;
 }
\ No newline at end of file
@@ -0,0 +1,183 @@
+/**
+ * Copyright (c) 2015-2021, Michael Yang 杨福海 (fuhai999@gmail.com).
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.jboot.components.gateway;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 异步代理时交给代理引擎的 response
+ * <p>
+ * 请求超时之后 AsyncContext 已经结束，response 可能已经被容器回收，后端服务迟到的响应不能再写入，
+ * 写入和结束请求通过同一个锁互斥，finished 设置之后的写入都会被丢弃
+ */
+class GatewayAsyncResponse extends HttpServletResponseWrapper {
+
+    private final AtomicBoolean finished;
+    private final Object lock;
+    private ServletOutputStream outputStream;
+
+    GatewayAsyncResponse(HttpServletResponse response, AtomicBoolean finished, Object lock) {
+        super(response);
+        this.finished = finished;
+        this.lock = lock;
+    }
+
+
+    @Override
+    public boolean isCommitted() {
+        return finished.get() || super.isCommitted();
+    }
+
+    @Override
+    public void setStatus(int sc) {
+        synchronized (lock) {
+            if (!finished.get()) {
+                super.setStatus(sc);
+            }
+        }
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        synchronized (lock) {
+            if (!finished.get()) {
+                super.setHeader(name, value);
+            }
+        }
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        synchronized (lock) {
+            if (!finished.get()) {
+                super.addHeader(name, value);
+            }
+        }
+    }
+
+    @Override
+    public void setContentType(String type) {
+        synchronized (lock) {
+            if (!finished.get()) {
+                super.setContentType(type);
+            }
+        }
+    }
+
+    @Override
+    public void reset() {
+        synchronized (lock) {
+            if (!finished.get()) {
+                super.reset();
+            }
+        }
+    }
+
+    @Override
+    public void sendRedirect(String location) throws IOException {
+        synchronized (lock) {
+            checkNotFinished();
+            super.sendRedirect(location);
+        }
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        synchronized (lock) {
+            checkNotFinished();
+            super.flushBuffer();
+        }
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        // 代理引擎只通过 outputStream 复制响应
+        throw new IllegalStateException("getWriter() is not supported by gateway async response.");
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        synchronized (lock) {
+            checkNotFinished();
+            if (outputStream == null) {
+                outputStream = new GuardedOutputStream(super.getOutputStream());
+            }
+            return outputStream;
+        }
+    }
+
+
+    private void checkNotFinished() throws IOException {
+        if (finished.get()) {
+            throw new IOException("Gateway async request is already finished.");
+        }
+    }
+
+
+    private class GuardedOutputStream extends ServletOutputStream {
+
+        private final ServletOutputStream delegate;
+
+        GuardedOutputStream(ServletOutputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            synchronized (lock) {
+                checkNotFinished();
+                delegate.write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            synchronized (lock) {
+                checkNotFinished();
+                delegate.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            synchronized (lock) {
+                checkNotFinished();
+                delegate.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            // 由容器在请求结束时关闭
+        }
+
+        @Override
+        public boolean isReady() {
+            return delegate.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            delegate.setWriteListener(writeListener);
+        }
+    }
+}
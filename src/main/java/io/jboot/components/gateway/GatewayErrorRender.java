@@ -24,6 +24,8 @@ public interface GatewayErrorRender {
 
     Ret noneHealthUrl = Ret.fail().set("errorCode", 1).set("message", "No healthy url in Gateway.");
     Ret sentinelBlockedError = Ret.fail().set("errorCode", 3).set("message", "Blocked by Sentinel (flow limiting) in Jboot.");
+    Ret tooManyRequestsError = Ret.fail().set("errorCode", 4).set("message", "Too many concurrent requests in Gateway.");
+    Ret timeoutError = Ret.fail().set("errorCode", 5).set("message", "Proxy request timeout in Gateway.");
 
 
     void renderError(Exception error, Ret errorMessage, JbootGatewayConfig config, HttpServletRequest request, HttpServletResponse response);
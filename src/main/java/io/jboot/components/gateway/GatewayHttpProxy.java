@@ -19,25 +19,41 @@ import com.jfinal.log.Log;
 import io.jboot.exception.JbootException;
 import io.jboot.utils.StrUtil;
 
-import javax.net.ssl.*;
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.*;
-import java.net.HttpURLConnection;
-import java.net.ProtocolException;
-import java.net.URL;
+import java.net.ConnectException;
 import java.security.cert.X509Certificate;
 import java.util.*;
-import java.util.zip.GZIPInputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 public class GatewayHttpProxy {
 
     private static final Log LOG = Log.getLog(GatewayHttpProxy.class);
 
+    // 逐跳（hop-by-hop）头，只对当前连接有效，不能转发
+    private static final Set<String> HOP_BY_HOP_HEADERS = new HashSet<>(Arrays.asList(
+            "connection", "keep-alive", "proxy-authenticate", "proxy-authorization", "proxy-connection",
+            "te", "trailer", "trailers", "transfer-encoding", "upgrade"));
+
+    // 幂等的请求方法，失败后可以安全重试
+    private static final Set<String> IDEMPOTENT_METHODS = new HashSet<>(Arrays.asList(
+            "GET", "HEAD", "OPTIONS", "TRACE", "PUT", "DELETE"));
+
+    private static final ThreadLocal<byte[]> BUFFER_TL = new ThreadLocal<>();
+
     private int readTimeOut = 10000; //10s
     private int connectTimeOut = 5000; //5s
     private int retries = 2;
     private String contentType = JbootGatewayConfig.DEFAULT_PROXY_CONTENT_TYPE;
+    private int bufferSize = 16 * 1024;
+    private int retryBodyMaxSize = 64 * 1024;
 
 
     private boolean instanceFollowRedirects = false;
@@ -47,6 +63,12 @@ public class GatewayHttpProxy {
 
     private Exception exception;
 
+    private GatewayProxyEngine engine;
+
+    // 异步代理是否已经取消（例如请求超时），以及取消正在执行的后端请求的方法
+    private volatile boolean asyncCancelled = false;
+    private volatile Runnable asyncCanceller;
+
 
     public GatewayHttpProxy() {
     }
@@ -57,6 +79,9 @@ public class GatewayHttpProxy {
         this.connectTimeOut = config.getProxyConnectTimeout();
         this.retries = config.getProxyRetries();
         this.contentType = config.getProxyContentType();
+        this.bufferSize = config.getProxyBufferSize();
+        this.retryBodyMaxSize = config.getProxyRetryBodyMaxSize();
+        this.engine = config.buildProxyEngine();
     }
 
 
@@ -64,14 +89,26 @@ public class GatewayHttpProxy {
         int triesCount = Math.max(retries, 0);
         Exception exception = null;
 
+        byte[] body;
+        try {
+            body = triesCount > 0 ? readReplayableBody(req) : null;
+        } catch (IOException ex) {
+            this.exception = ex;
+            LOG.error(ex.toString(), ex);
+            return;
+        }
+
+        // 没有 body 或者 body 已被缓存时，才能重放请求
+        boolean replayable = body != null || !hasBody(req);
+
         do {
             try {
                 exception = null;
-                doSendRequest(url, req, resp);
+                doSendRequest(url, req, resp, body);
             } catch (Exception ex) {
                 exception = ex;
             }
-        } while (exception != null && triesCount-- > 0);
+        } while (exception != null && triesCount-- > 0 && canRetry(exception, req, resp, replayable));
 
         if (exception != null) {
             this.exception = exception;
@@ -80,203 +117,302 @@ public class GatewayHttpProxy {
     }
 
 
-    protected void doSendRequest(String url, HttpServletRequest req, HttpServletResponse resp) throws Exception {
+    /**
+     * 异步发送请求，返回的 future 在请求结束（包括重试）之后完成，请求的异常可以通过 getException() 获取
+     *
+     * @param url
+     * @param req
+     * @param resp
+     * @return
+     */
+    public CompletableFuture<Void> sendRequestAsync(String url, HttpServletRequest req, HttpServletResponse resp) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        int triesCount = Math.max(retries, 0);
 
-        HttpURLConnection conn = null;
+        byte[] body;
         try {
-            conn = getConnection(url);
+            body = triesCount > 0 ? readReplayableBody(req) : null;
+        } catch (IOException ex) {
+            this.exception = ex;
+            LOG.error(ex.toString(), ex);
+            result.complete(null);
+            return result;
+        }
+
+        boolean replayable = body != null || !hasBody(req);
+        doSendRequestAsync(url, req, resp, body, replayable, triesCount, result);
+        return result;
+    }
+
 
-            /**
-             * 配置 HttpURLConnection 的 http 请求头
-             */
-            configConnection(conn, req);
+    private void doSendRequestAsync(String url, HttpServletRequest req, HttpServletResponse resp, byte[] body
+            , boolean replayable, int triesCount, CompletableFuture<Void> result) {
+        if (asyncCancelled) {
+            result.complete(null);
+            return;
+        }
 
+        CompletableFuture<Void> future;
+        try {
+            future = getEngine().sendAsync(this, url, req, resp, body);
+        } catch (Exception ex) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(ex);
+        }
 
-            // get 请求
-            if ("get".equalsIgnoreCase(req.getMethod())) {
-                conn.connect();
+        future.whenComplete((v, throwable) -> {
+            if (throwable == null) {
+                result.complete(null);
+                return;
             }
-            // post 请求
-            else {
-                conn.setDoOutput(true);
-                conn.setDoInput(true);
-                copyRequestStreamToConnection(req, conn);
+
+            Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                    ? throwable.getCause() : throwable;
+            Exception exception = cause instanceof Exception ? (Exception) cause : new JbootException(cause);
+            if (triesCount > 0 && !asyncCancelled && canRetry(exception, req, resp, replayable)) {
+                doSendRequestAsync(url, req, resp, body, replayable, triesCount - 1, result);
+            } else {
+                this.exception = exception;
+                LOG.error(exception.toString(), exception);
+                result.complete(null);
             }
+        });
+    }
 
 
-            /**
-             * 配置 HttpServletResponse 的 http 响应头
-             */
-            configResponse(resp, conn);
+    /**
+     * 取消异步代理：不再重试，并中断正在执行的后端请求，sendRequestAsync 返回的 future 在后端请求真正结束之后完成
+     */
+    public void cancelAsync() {
+        asyncCancelled = true;
+        Runnable canceller = asyncCanceller;
+        if (canceller != null) {
+            canceller.run();
+        }
+    }
 
-            /**
-             * 复制链接的 inputStream 流到 Response
-             */
-            copyConnStreamToResponse(conn, resp);
 
-        } finally {
-            if (conn != null) {
-                conn.disconnect();
-            }
+    /**
+     * 由代理引擎在异步发送请求时设置，用于中断当前的后端请求，已经取消时立即执行
+     */
+    public void onAsyncCancel(Runnable canceller) {
+        this.asyncCanceller = canceller;
+        if (asyncCancelled) {
+            canceller.run();
         }
     }
 
 
-    protected void copyRequestStreamToConnection(HttpServletRequest req, HttpURLConnection conn) throws IOException {
-        OutputStream outStream = null;
-        InputStream inStream = null;
-        try {
-            outStream = conn.getOutputStream();
-            inStream = req.getInputStream();
-            int len;
-            byte[] buffer = new byte[1024];
-            while ((len = inStream.read(buffer)) != -1) {
-                outStream.write(buffer, 0, len);
-            }
-        } finally {
-            quetlyClose(outStream, inStream);
-        }
+    public boolean isAsyncCancelled() {
+        return asyncCancelled;
     }
 
 
-    protected void copyConnStreamToResponse(HttpURLConnection conn, HttpServletResponse resp) throws IOException {
-        if (resp.isCommitted()) {
-            return;
+    /**
+     * 是否可以重试：响应未提交，请求可以重放，并且请求是幂等的或者请求还未到达后端服务（连接失败）
+     */
+    protected boolean canRetry(Exception exception, HttpServletRequest req, HttpServletResponse resp, boolean replayable) {
+        if (!replayable || resp.isCommitted()) {
+            return false;
         }
 
-        InputStream inStream = null;
-        OutputStream outStream = null;
-        try {
-            inStream = getInputStream(conn);
-            outStream = resp.getOutputStream();
-            byte[] buffer = new byte[1024];
-            for (int len; (len = inStream.read(buffer)) != -1; ) {
-                outStream.write(buffer, 0, len);
-            }
-//            outStream.flush();
-        } finally {
-            quetlyClose(inStream);
+        if (!IDEMPOTENT_METHODS.contains(req.getMethod().toUpperCase()) && !(exception instanceof ConnectException)) {
+            return false;
         }
+
+        // 清除上一次请求设置的响应头
+        resp.reset();
+        return true;
     }
 
 
-    protected static void quetlyClose(Closeable... closeables) {
-        for (Closeable closeable : closeables) {
-            if (closeable != null) {
-                try {
-                    closeable.close();
-                } catch (IOException e) {
-                }
-            }
-        }
+    protected void doSendRequest(String url, HttpServletRequest req, HttpServletResponse resp, byte[] body) throws Exception {
+        getEngine().send(this, url, req, resp, body);
     }
 
 
-    protected void configResponse(HttpServletResponse resp, HttpURLConnection conn) throws IOException {
+    public static boolean hasBody(HttpServletRequest req) {
+        return req.getContentLengthLong() > 0 || req.getHeader("Transfer-Encoding") != null;
+    }
 
-        if (resp.isCommitted()) {
-            return;
+
+    /**
+     * 读取并缓存请求的 body，没有 body 或者 body 超过 retryBodyMaxSize 时返回 null
+     */
+    private byte[] readReplayableBody(HttpServletRequest req) throws IOException {
+        if (!hasBody(req)) {
+            return null;
         }
+        long contentLength = req.getContentLengthLong();
+        return contentLength >= 0 && contentLength <= retryBodyMaxSize ? readBody(req, (int) contentLength) : null;
+    }
 
-        resp.setStatus(conn.getResponseCode());
 
-        //conn 是否已经指定了 contentType，如果指定了，就用 conn 的，否则就用自己配置的
-        boolean isContentTypeSetted = false;
+    private static byte[] readBody(HttpServletRequest req, int contentLength) throws IOException {
+        byte[] body = new byte[contentLength];
+        InputStream inStream = req.getInputStream();
+        int offset = 0;
+        for (int len; offset < contentLength && (len = inStream.read(body, offset, contentLength - offset)) != -1; ) {
+            offset += len;
+        }
+        return offset == contentLength ? body : Arrays.copyOf(body, offset);
+    }
 
-        Map<String, List<String>> headerFields = conn.getHeaderFields();
-        if (headerFields != null && !headerFields.isEmpty()) {
-            Set<String> headerNames = headerFields.keySet();
-            for (String headerName : headerNames) {
-                //需要排除 Content-Encoding，因为 Server 可能已经使用 gzip 压缩，但是此代理已经对 gzip 内容进行解压了
-                if (StrUtil.isBlank(headerName) || "Content-Encoding".equalsIgnoreCase(headerName)) {
-                    continue;
-                }
 
-                String headerFieldValue = conn.getHeaderField(headerName);
-                if (StrUtil.isNotBlank(headerFieldValue)) {
-                    resp.setHeader(headerName, headerFieldValue);
-                    if ("Content-Type".equalsIgnoreCase(headerName)) {
-                        isContentTypeSetted = true;
-                    }
-                }
-            }
+    /**
+     * 使用当前线程的缓冲区复制数据，避免每次请求都创建缓冲区
+     */
+    public void copy(InputStream inStream, OutputStream outStream) throws IOException {
+        byte[] buffer = BUFFER_TL.get();
+        if (buffer == null || buffer.length < bufferSize) {
+            buffer = new byte[Math.max(bufferSize, 1024)];
+            BUFFER_TL.set(buffer);
         }
-
-        //conn 没有 Content-Type，需要设置为手动配置的内容
-        if (!isContentTypeSetted) {
-            resp.setContentType(contentType);
+        for (int len; (len = inStream.read(buffer)) != -1; ) {
+            outStream.write(buffer, 0, len);
         }
     }
 
-    protected InputStream getInputStream(HttpURLConnection conn) throws IOException {
-        InputStream stream = conn.getResponseCode() >= 400
-                ? conn.getErrorStream()
-                : conn.getInputStream();
 
-        if ("gzip".equalsIgnoreCase(conn.getContentEncoding())) {
-            return new GZIPInputStream(stream);
-        } else {
-            return stream;
+    /**
+     * 获取 Connection 头中声明的、需要额外排除的头
+     */
+    public static Set<String> getConnectionHeaders(String connectionHeader) {
+        if (StrUtil.isBlank(connectionHeader)) {
+            return Collections.emptySet();
+        }
+        Set<String> names = new HashSet<>();
+        for (String name : connectionHeader.split(",")) {
+            if (StrUtil.isNotBlank(name)) {
+                names.add(name.trim().toLowerCase());
+            }
         }
+        return names;
     }
 
 
-    protected void configConnection(HttpURLConnection conn, HttpServletRequest req) throws ProtocolException {
+    public static boolean isHopByHopHeader(String headerName, Set<String> connectionHeaders) {
+        String name = headerName.toLowerCase();
+        return HOP_BY_HOP_HEADERS.contains(name) || connectionHeaders.contains(name);
+    }
 
-        conn.setReadTimeout(readTimeOut);
-        conn.setConnectTimeout(connectTimeOut);
-        conn.setInstanceFollowRedirects(instanceFollowRedirects);
-        conn.setUseCaches(useCaches);
 
-        conn.setRequestMethod(req.getMethod());
+    /**
+     * 需要转发到后端服务的请求头，Host 和 Content-Length 由代理引擎自行设置
+     */
+    public Map<String, List<String>> buildRequestHeaders(HttpServletRequest req) {
+        Map<String, List<String>> result = new LinkedHashMap<>();
+        Set<String> connectionHeaders = getConnectionHeaders(req.getHeader("Connection"));
 
         Enumeration<String> headerNames = req.getHeaderNames();
         while (headerNames.hasMoreElements()) {
             String headerName = headerNames.nextElement();
-            if (StrUtil.isNotBlank(headerName)) {
-                String headerFieldValue = req.getHeader(headerName);
-                if (StrUtil.isNotBlank(headerFieldValue)) {
-                    conn.setRequestProperty(headerName, headerFieldValue);
+            if (StrUtil.isBlank(headerName)
+                    || isHopByHopHeader(headerName, connectionHeaders)
+                    || "Host".equalsIgnoreCase(headerName)
+                    || "Content-Length".equalsIgnoreCase(headerName)) {
+                continue;
+            }
+
+            Enumeration<String> values = req.getHeaders(headerName);
+            while (values.hasMoreElements()) {
+                String value = values.nextElement();
+                if (StrUtil.isNotBlank(value)) {
+                    result.computeIfAbsent(headerName, k -> new ArrayList<>(1)).add(value);
                 }
             }
         }
 
         if (this.headers != null) {
             for (Map.Entry<String, String> entry : this.headers.entrySet()) {
-                conn.setRequestProperty(entry.getKey(), entry.getValue());
+                List<String> values = new ArrayList<>(1);
+                values.add(entry.getValue());
+                result.put(entry.getKey(), values);
             }
         }
+        return result;
     }
 
-    protected HttpURLConnection getConnection(String urlString) {
-        try {
-            if (urlString.toLowerCase().startsWith("https")) {
-                return getHttpsConnection(urlString);
-            } else {
-                return getHttpConnection(urlString);
+
+    /**
+     * 配置 HttpServletResponse 的 http 响应头，upstream 已经 gzip 压缩的内容直接透传，不进行解压
+     *
+     * @param resp
+     * @param statusCode
+     * @param headerFields
+     */
+    public void configResponse(HttpServletResponse resp, int statusCode, Map<String, List<String>> headerFields) {
+
+        if (resp.isCommitted()) {
+            return;
+        }
+
+        resp.setStatus(statusCode);
+
+        //conn 是否已经指定了 contentType，如果指定了，就用 conn 的，否则就用自己配置的
+        boolean isContentTypeSetted = false;
+
+        if (headerFields != null && !headerFields.isEmpty()) {
+            List<String> connectionValues = headerFields.get("Connection");
+            Set<String> connectionHeaders = getConnectionHeaders(connectionValues == null ? null : String.join(",", connectionValues));
+            for (Map.Entry<String, List<String>> entry : headerFields.entrySet()) {
+                String headerName = entry.getKey();
+                if (StrUtil.isBlank(headerName) || entry.getValue() == null || isHopByHopHeader(headerName, connectionHeaders)) {
+                    continue;
+                }
+
+                for (String headerFieldValue : entry.getValue()) {
+                    if (StrUtil.isNotBlank(headerFieldValue)) {
+                        // Set-Cookie 等头可能有多个值
+                        resp.addHeader(headerName, headerFieldValue);
+                        if ("Content-Type".equalsIgnoreCase(headerName)) {
+                            isContentTypeSetted = true;
+                        }
+                    }
+                }
             }
-        } catch (Throwable ex) {
-            throw new JbootException(ex);
         }
-    }
 
-    protected HttpURLConnection getHttpConnection(String urlString) throws Exception {
-        URL url = new URL(urlString);
-        return (HttpURLConnection) url.openConnection();
+        //conn 没有 Content-Type，需要设置为手动配置的内容
+        if (!isContentTypeSetted) {
+            resp.setContentType(contentType);
+        }
     }
 
-    protected HttpsURLConnection getHttpsConnection(String urlString) throws Exception {
 
-        SSLContext sslContext = SSLContext.getInstance("SSL", "SunJSSE");
-        TrustManager[] tm = {trustAnyTrustManager};
-        sslContext.init(null, tm, null);
-        SSLSocketFactory ssf = sslContext.getSocketFactory();
+    protected static void quetlyClose(Closeable... closeables) {
+        for (Closeable closeable : closeables) {
+            if (closeable != null) {
+                try {
+                    closeable.close();
+                } catch (IOException e) {
+                }
+            }
+        }
+    }
 
-        URL url = new URL(urlString);
-        HttpsURLConnection conn = (HttpsURLConnection) url.openConnection();
-        conn.setHostnameVerifier(hnv);
-        conn.setSSLSocketFactory(ssf);
-        return conn;
+
+    private static volatile SSLSocketFactory trustAnySSLSocketFactory;
+
+    /**
+     * 所有 https 请求共享同一个 SSLContext，避免每次请求都重新创建
+     */
+    public static SSLSocketFactory getTrustAnySSLSocketFactory() {
+        if (trustAnySSLSocketFactory == null) {
+            synchronized (GatewayHttpProxy.class) {
+                if (trustAnySSLSocketFactory == null) {
+                    try {
+                        SSLContext sslContext = SSLContext.getInstance("SSL", "SunJSSE");
+                        TrustManager[] tm = {trustAnyTrustManager};
+                        sslContext.init(null, tm, null);
+                        trustAnySSLSocketFactory = sslContext.getSocketFactory();
+                    } catch (Exception ex) {
+                        throw new JbootException(ex);
+                    }
+                }
+            }
+        }
+        return trustAnySSLSocketFactory;
     }
 
     protected static X509TrustManager trustAnyTrustManager = new X509TrustManager() {
@@ -290,7 +426,7 @@ public class GatewayHttpProxy {
 
         @Override
         public X509Certificate[] getAcceptedIssuers() {
-            return null;
+            return new X509Certificate[0];
         }
     };
 
@@ -353,6 +489,33 @@ public class GatewayHttpProxy {
         this.useCaches = useCaches;
     }
 
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    public int getRetryBodyMaxSize() {
+        return retryBodyMaxSize;
+    }
+
+    public void setRetryBodyMaxSize(int retryBodyMaxSize) {
+        this.retryBodyMaxSize = retryBodyMaxSize;
+    }
+
+    public GatewayProxyEngine getEngine() {
+        if (engine == null) {
+            engine = GatewayUrlConnectionEngine.DEFAULT;
+        }
+        return engine;
+    }
+
+    public void setEngine(GatewayProxyEngine engine) {
+        this.engine = engine;
+    }
+
     public Map<String, String> getHeaders() {
         return headers;
     }
@@ -15,14 +15,22 @@
  */
 package io.jboot.components.gateway;
 
+import com.alibaba.csp.sentinel.slots.block.BlockException;
+import com.jfinal.kit.LogKit;
 import com.jfinal.kit.Ret;
 import io.jboot.Jboot;
 import io.jboot.utils.StrUtil;
 import io.jboot.web.render.JbootJsonRender;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.net.ConnectException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 
 public class GatewayInvocation {
@@ -33,6 +41,8 @@ public class GatewayInvocation {
     private HttpServletResponse response;
     private GatewayHttpProxy proxy;
     private String proxyUrl;
+    //负载均衡选择的后端服务
+    private String upstreamUri;
 
     //是否跳过错误渲染，如果跳过，那么则由拦截器通过 getResponse() 自行渲染
     private boolean skipExceptionRender = false;
@@ -48,7 +58,8 @@ public class GatewayInvocation {
         this.response = response;
         this.inters = config.getGatewayInterceptors();
         this.proxy = new GatewayHttpProxy(config);
-        this.proxyUrl = buildProxyUrl(config, request);
+        this.upstreamUri = selectUpstreamUri(config, request);
+        this.proxyUrl = buildProxyUrl(upstreamUri, request);
     }
 
 
@@ -75,20 +86,135 @@ public class GatewayInvocation {
             System.out.println("Jboot Gateway >>> " + proxyUrl);
         }
 
-        //启用 Sentinel 限流
-        if (config.isSentinelEnable()) {
-            new GatewaySentinelProcesser().process(proxy, proxyUrl, config, request, response, skipExceptionRender);
+        //路由的并发数量控制
+        Semaphore semaphore = config.getConcurrencySemaphore();
+        if (semaphore != null && !semaphore.tryAcquire()) {
+            renderError(null, GatewayErrorRender.tooManyRequestsError, config, request, response);
             return;
         }
 
+        //异步代理，sentinel 的上下文和线程绑定，启用 sentinel 时依然使用同步代理
+        if (config.isProxyAsyncEnable() && !config.isSentinelEnable() && request.isAsyncSupported()) {
+            doInvokeAsync(semaphore);
+            return;
+        }
+
+        long startNanos = config.getUpstreamStats().start(upstreamUri);
+        try {
+            //启用 Sentinel 限流
+            if (config.isSentinelEnable()) {
+                new GatewaySentinelProcesser().process(proxy, proxyUrl, config, request, response, skipExceptionRender);
+                return;
+            }
+
+
+            //未启用 Sentinel 的情况
+            proxy.sendRequest(proxyUrl, request, response);
+        } finally {
+            recordUpstream(startNanos);
+            if (semaphore != null) {
+                semaphore.release();
+            }
+        }
+
+        renderException();
+    }
+
+
+    /**
+     * 异步代理：释放当前的 worker 线程，在后端服务响应之后（或超时之后）再结束请求
+     * <p>
+     * 超时之后会取消后端请求，并丢弃后端服务迟到的响应；并发数量在后端请求真正结束之后才释放
+     */
+    protected void doInvokeAsync(Semaphore semaphore) {
+        AsyncContext asyncContext = request.startAsync();
+        asyncContext.setTimeout(config.getProxyAsyncTimeout());
+
+        //超时和代理完成只能有一个结束请求，结束之后不能再写入 response
+        AtomicBoolean finished = new AtomicBoolean(false);
+        Object responseLock = new Object();
+        long startNanos = config.getUpstreamStats().start(upstreamUri);
+        asyncContext.addListener(new AsyncListener() {
+            @Override
+            public void onComplete(AsyncEvent event) {
+            }
+
+            @Override
+            public void onTimeout(AsyncEvent event) {
+                if (finished.compareAndSet(false, true)) {
+                    proxy.cancelAsync();
+                    finishAsync(asyncContext, responseLock, new TimeoutException("Proxy request timeout: " + proxyUrl));
+                }
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+                if (finished.compareAndSet(false, true)) {
+                    proxy.cancelAsync();
+                    Throwable error = event.getThrowable();
+                    finishAsync(asyncContext, responseLock, error instanceof Exception ? (Exception) error : null);
+                }
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+
+        GatewayAsyncResponse asyncResponse = new GatewayAsyncResponse(response, finished, responseLock);
+        proxy.sendRequestAsync(proxyUrl, request, asyncResponse).whenComplete((v, ex) -> {
+            //后端请求真正结束，只会执行一次
+            if (semaphore != null) {
+                semaphore.release();
+            }
+            recordUpstream(startNanos);
+
+            if (finished.compareAndSet(false, true)) {
+                finishAsync(asyncContext, responseLock, null);
+            }
+        });
+    }
+
+
+    private void finishAsync(AsyncContext asyncContext, Object responseLock, Exception error) {
+        //等待正在进行的写入完成，之后的写入会被 GatewayAsyncResponse 丢弃
+        synchronized (responseLock) {
+            try {
+                if (error != null) {
+                    proxy.setException(error);
+                }
+                renderException();
+                response.flushBuffer();
+            } catch (Exception ex) {
+                LogKit.error(ex.toString(), ex);
+            } finally {
+                asyncContext.complete();
+            }
+        }
+    }
+
 
-        //未启用 Sentinel 的情况
-        proxy.sendRequest(proxyUrl, request, response);
+    /**
+     * 记录后端服务的延迟和失败情况，用于负载均衡和异常服务的摘除
+     */
+    private void recordUpstream(long startNanos) {
+        Exception exception = proxy.getException();
+        //被 sentinel 限流的请求没有发送到后端服务
+        if (exception != null && config.isSentinelEnable() && exception instanceof BlockException) {
+            config.getUpstreamStats().end(upstreamUri, startNanos, false);
+            return;
+        }
+        boolean failed = exception != null || response.getStatus() >= 500;
+        config.getUpstreamStats().end(upstreamUri, startNanos, failed);
+    }
 
 
+    private void renderException() {
         Exception exception = proxy.getException();
-        if (exception != null && !skipExceptionRender) {
-            if (exception instanceof ConnectException) {
+        if (exception != null && !skipExceptionRender && !response.isCommitted()) {
+            if (exception instanceof TimeoutException) {
+                renderError(exception, GatewayErrorRender.timeoutError, config, request, response);
+            } else if (exception instanceof ConnectException) {
                 Ret connectionError = Ret.fail().set("errorCode", 2).set("message", "Can not connect to target server: " + proxyUrl);
                 renderError(exception, connectionError, config, request, response);
             } else {
@@ -110,12 +236,19 @@ public class GatewayInvocation {
     }
 
 
-    private static String buildProxyUrl(JbootGatewayConfig config, HttpServletRequest request) {
+    private static String selectUpstreamUri(JbootGatewayConfig config, HttpServletRequest request) {
+        //恢复摘除时间已到的服务
+        config.getUpstreamStats().restoreEjectedUris();
+
         //配置负载均衡策略
         GatewayLoadBalanceStrategy lbs = config.buildLoadBalanceStrategy();
 
         //通过负载均衡策略获取 URL 地址
-        String url = lbs.getUrl(config, request);
+        return lbs.getUrl(config, request);
+    }
+
+
+    private static String buildProxyUrl(String url, HttpServletRequest request) {
         if (StrUtil.isBlank(url)) {
             return null;
         }
@@ -186,6 +319,10 @@ public class GatewayInvocation {
         return proxy.getException() != null;
     }
 
+    public String getUpstreamUri() {
+        return upstreamUri;
+    }
+
     public String getProxyUrl() {
         return proxyUrl;
     }
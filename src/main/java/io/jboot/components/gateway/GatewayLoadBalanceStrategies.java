@@ -0,0 +1,266 @@
+/**
+ * Copyright (c) 2015-2021, Michael Yang 杨福海 (fuhai999@gmail.com).
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.jboot.components.gateway;
+
+import io.jboot.utils.StrUtil;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 内置的负载均衡策略，可以通过 JbootGatewayConfig.loadBalanceStrategy 配置名称来使用
+ */
+public class GatewayLoadBalanceStrategies {
+
+    public static final String RANDOM = "random";
+    public static final String ROUND_ROBIN = "roundRobin";
+    public static final String LEAST_IN_FLIGHT = "leastInFlight";
+    public static final String P2C_EWMA = "p2c";
+    public static final String CONSISTENT_HASH = "consistentHash";
+
+
+    /**
+     * 根据名称创建负载均衡策略
+     *
+     * @param name
+     * @return 名称不是内置策略时返回 null
+     */
+    public static GatewayLoadBalanceStrategy create(String name) {
+        if (RANDOM.equalsIgnoreCase(name)) {
+            return GatewayLoadBalanceStrategy.DEFAULT_STRATEGY;
+        } else if (ROUND_ROBIN.equalsIgnoreCase(name)) {
+            return new RoundRobinStrategy();
+        } else if (LEAST_IN_FLIGHT.equalsIgnoreCase(name)) {
+            return new LeastInFlightStrategy();
+        } else if (P2C_EWMA.equalsIgnoreCase(name)) {
+            return new P2cEwmaStrategy();
+        } else if (CONSISTENT_HASH.equalsIgnoreCase(name)) {
+            return new ConsistentHashStrategy();
+        }
+        return null;
+    }
+
+
+    /**
+     * 平滑加权轮询（nginx 的 smooth weighted round-robin），权重通过 JbootGatewayConfig.uriWeights 配置
+     */
+    public static class RoundRobinStrategy implements GatewayLoadBalanceStrategy {
+
+        private String[] uris;
+        private int[] weights;
+        private int[] currentWeights;
+        private int totalWeight;
+
+        @Override
+        public synchronized String getUrl(JbootGatewayConfig config, HttpServletRequest request) {
+            String[] healthUris = config.getHealthUris();
+            if (healthUris == null || healthUris.length == 0) {
+                return null;
+            } else if (healthUris.length == 1) {
+                return healthUris[0];
+            }
+
+            // 健康的 uri 有变化时（数组会重新创建），重新初始化权重
+            if (uris != healthUris) {
+                uris = healthUris;
+                weights = new int[healthUris.length];
+                currentWeights = new int[healthUris.length];
+                totalWeight = 0;
+                for (int i = 0; i < healthUris.length; i++) {
+                    weights[i] = config.getUriWeight(healthUris[i]);
+                    totalWeight += weights[i];
+                }
+            }
+
+            int selected = 0;
+            for (int i = 0; i < uris.length; i++) {
+                currentWeights[i] += weights[i];
+                if (currentWeights[i] > currentWeights[selected]) {
+                    selected = i;
+                }
+            }
+            currentWeights[selected] -= totalWeight;
+            return uris[selected];
+        }
+    }
+
+
+    /**
+     * 选择正在处理的请求数最少的服务，数量相同时随机选择
+     */
+    public static class LeastInFlightStrategy implements GatewayLoadBalanceStrategy {
+
+        @Override
+        public String getUrl(JbootGatewayConfig config, HttpServletRequest request) {
+            String[] healthUris = config.getHealthUris();
+            if (healthUris == null || healthUris.length == 0) {
+                return null;
+            } else if (healthUris.length == 1) {
+                return healthUris[0];
+            }
+
+            GatewayUpstreamStats stats = config.getUpstreamStats();
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            String selected = null;
+            int least = Integer.MAX_VALUE;
+            int count = 0;
+            for (String uri : healthUris) {
+                int inFlight = stats.getStat(uri).getInFlight();
+                if (inFlight < least) {
+                    least = inFlight;
+                    selected = uri;
+                    count = 1;
+                } else if (inFlight == least && random.nextInt(++count) == 0) {
+                    selected = uri;
+                }
+            }
+            return selected;
+        }
+    }
+
+
+    /**
+     * Power of two choices：随机选择两个服务，返回 EWMA 延迟 *（正在处理的请求数 + 1）较小的那个
+     */
+    public static class P2cEwmaStrategy implements GatewayLoadBalanceStrategy {
+
+        @Override
+        public String getUrl(JbootGatewayConfig config, HttpServletRequest request) {
+            String[] healthUris = config.getHealthUris();
+            if (healthUris == null || healthUris.length == 0) {
+                return null;
+            } else if (healthUris.length == 1) {
+                return healthUris[0];
+            }
+
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int a = random.nextInt(healthUris.length);
+            int b = random.nextInt(healthUris.length - 1);
+            if (b >= a) {
+                b++;
+            }
+
+            GatewayUpstreamStats stats = config.getUpstreamStats();
+            return cost(stats.getStat(healthUris[a])) <= cost(stats.getStat(healthUris[b])) ? healthUris[a] : healthUris[b];
+        }
+
+        private static double cost(GatewayUpstreamStats.UpstreamStat stat) {
+            return stat.getEwmaLatency() * (stat.getInFlight() + 1);
+        }
+    }
+
+
+    /**
+     * 一致性 hash，根据 loadBalanceHashKey 配置的 header 或者 cookie 的值选择服务，实现会话粘滞；
+     * 没有配置 loadBalanceHashKey 或者请求中没有该值时，使用客户端 IP，客户端 IP 也获取不到时随机选择
+     */
+    public static class ConsistentHashStrategy implements GatewayLoadBalanceStrategy {
+
+        // 每个服务的虚拟节点数量
+        private static final int VIRTUAL_NODES = 160;
+
+        private volatile Ring ring;
+
+        @Override
+        public String getUrl(JbootGatewayConfig config, HttpServletRequest request) {
+            String[] healthUris = config.getHealthUris();
+            if (healthUris == null || healthUris.length == 0) {
+                return null;
+            } else if (healthUris.length == 1) {
+                return healthUris[0];
+            }
+
+            String hashValue = getHashValue(config.getLoadBalanceHashKey(), request);
+            if (StrUtil.isBlank(hashValue)) {
+                hashValue = request.getRemoteAddr();
+            }
+            if (StrUtil.isBlank(hashValue)) {
+                return GatewayLoadBalanceStrategy.DEFAULT_STRATEGY.getUrl(config, request);
+            }
+
+            Ring ring = this.ring;
+            if (ring == null || ring.uris != healthUris) {
+                ring = new Ring(healthUris);
+                this.ring = ring;
+            }
+            return ring.select(hash(hashValue));
+        }
+
+        /**
+         * @param hashKey 格式为 header:name 或者 cookie:name，只配置 name 时表示 header
+         */
+        private static String getHashValue(String hashKey, HttpServletRequest request) {
+            if (StrUtil.isBlank(hashKey)) {
+                return null;
+            }
+
+            if (hashKey.startsWith("cookie:")) {
+                String name = hashKey.substring(7);
+                Cookie[] cookies = request.getCookies();
+                if (cookies != null) {
+                    for (Cookie cookie : cookies) {
+                        if (name.equals(cookie.getName())) {
+                            return cookie.getValue();
+                        }
+                    }
+                }
+                return null;
+            }
+
+            return request.getHeader(hashKey.startsWith("header:") ? hashKey.substring(7) : hashKey);
+        }
+
+        /**
+         * FNV-1a 32 位 hash，再进行一次混淆
+         */
+        private static int hash(String value) {
+            int hash = 0x811c9dc5;
+            for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+                hash ^= b;
+                hash *= 0x01000193;
+            }
+            // 打散低位，使虚拟节点分布更均匀
+            hash ^= hash >>> 16;
+            hash *= 0x85ebca6b;
+            hash ^= hash >>> 13;
+            return hash;
+        }
+
+        private static class Ring {
+
+            private final String[] uris;
+            private final TreeMap<Integer, String> nodes = new TreeMap<>();
+
+            Ring(String[] uris) {
+                this.uris = uris;
+                for (String uri : uris) {
+                    for (int i = 0; i < VIRTUAL_NODES; i++) {
+                        nodes.put(hash(uri + "#" + i), uri);
+                    }
+                }
+            }
+
+            String select(int hash) {
+                Map.Entry<Integer, String> entry = nodes.ceilingEntry(hash);
+                return entry != null ? entry.getValue() : nodes.firstEntry().getValue();
+            }
+        }
+    }
+}
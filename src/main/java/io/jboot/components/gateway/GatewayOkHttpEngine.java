@@ -0,0 +1,175 @@
+/**
+ * Copyright (c) 2015-2021, Michael Yang 杨福海 (fuhai999@gmail.com).
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.jboot.components.gateway;
+
+import okhttp3.*;
+import okhttp3.internal.http.HttpMethod;
+import okio.BufferedSink;
+import okio.Okio;
+import okio.Source;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于 OkHttp 的代理引擎，每个网关配置使用独立的连接池，连接按后端服务地址复用
+ * <p>
+ * 客户端的 Accept-Encoding 会原样转发，此时 OkHttp 不会对 gzip 内容进行解压，直接透传给客户端
+ * <p>
+ * 异步代理时使用 OkHttp 的 Dispatcher 执行请求，并发数量由 proxyMaxConcurrency 控制。
+ * 注意：异步代理只是释放了 undertow 的 worker 线程，并不是非阻塞 I/O，
+ * 读取客户端的请求 body、以及把后端的响应复制给客户端，依然会阻塞 Dispatcher 的线程，
+ * 每个正在代理的请求都会占用一个 Dispatcher 线程
+ */
+public class GatewayOkHttpEngine implements GatewayProxyEngine {
+
+    private final OkHttpClient client;
+
+    private static final int DEFAULT_MAX_REQUESTS = 256;
+
+    public GatewayOkHttpEngine(JbootGatewayConfig config) {
+        // 默认每个 host 只允许 5 个并发请求，对网关来说太小了
+        Dispatcher dispatcher = new Dispatcher();
+        int maxRequests = config.getProxyMaxConcurrency() > 0 ? config.getProxyMaxConcurrency() : DEFAULT_MAX_REQUESTS;
+        dispatcher.setMaxRequests(maxRequests);
+        dispatcher.setMaxRequestsPerHost(maxRequests);
+
+        this.client = new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .connectTimeout(config.getProxyConnectTimeout(), TimeUnit.MILLISECONDS)
+                .readTimeout(config.getProxyReadTimeout(), TimeUnit.MILLISECONDS)
+                .writeTimeout(config.getProxyReadTimeout(), TimeUnit.MILLISECONDS)
+                .connectionPool(new ConnectionPool(Math.max(config.getProxyMaxConnections(), 1)
+                        , config.getProxyKeepAliveSeconds(), TimeUnit.SECONDS))
+                .followRedirects(false)
+                .followSslRedirects(false)
+                // 重试由 GatewayHttpProxy 控制
+                .retryOnConnectionFailure(false)
+                .sslSocketFactory(GatewayHttpProxy.getTrustAnySSLSocketFactory(), GatewayHttpProxy.trustAnyTrustManager)
+                .hostnameVerifier(GatewayHttpProxy.hnv)
+                .build();
+    }
+
+
+    @Override
+    public void send(GatewayHttpProxy proxy, String url, HttpServletRequest req, HttpServletResponse resp, byte[] body) throws Exception {
+        try (Response response = client.newCall(buildRequest(proxy, url, req, body)).execute()) {
+            copyResponse(proxy, response, resp);
+        }
+    }
+
+
+    @Override
+    public CompletableFuture<Void> sendAsync(GatewayHttpProxy proxy, String url, HttpServletRequest req, HttpServletResponse resp, byte[] body) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        Call call = client.newCall(buildRequest(proxy, url, req, body));
+        // 取消之后由 OkHttp 回调 onFailure，future 在请求真正结束之后完成
+        // 请求 body 的上传和 onResponse 中响应的复制都在 Dispatcher 的线程里阻塞执行
+        proxy.onAsyncCancel(call::cancel);
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                future.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (Response r = response) {
+                    copyResponse(proxy, r, resp);
+                    future.complete(null);
+                } catch (Throwable ex) {
+                    future.completeExceptionally(ex);
+                }
+            }
+        });
+        return future;
+    }
+
+
+    private Request buildRequest(GatewayHttpProxy proxy, String url, HttpServletRequest req, byte[] body) {
+        Request.Builder builder = new Request.Builder().url(url);
+        for (Map.Entry<String, List<String>> entry : proxy.buildRequestHeaders(req).entrySet()) {
+            for (String value : entry.getValue()) {
+                builder.addHeader(entry.getKey(), value);
+            }
+        }
+
+        String method = req.getMethod().toUpperCase();
+        builder.method(method, buildRequestBody(req, method, body));
+        return builder.build();
+    }
+
+
+    private void copyResponse(GatewayHttpProxy proxy, Response response, HttpServletResponse resp) throws IOException {
+        proxy.configResponse(resp, response.code(), response.headers().toMultimap());
+
+        ResponseBody responseBody = response.body();
+        if (responseBody != null && !resp.isCommitted()) {
+            try (InputStream inStream = responseBody.byteStream()) {
+                proxy.copy(inStream, resp.getOutputStream());
+            }
+        }
+    }
+
+
+    private RequestBody buildRequestBody(HttpServletRequest req, String method, byte[] body) {
+        if (!HttpMethod.permitsRequestBody(method)) {
+            return null;
+        }
+
+        String contentType = req.getContentType();
+        MediaType mediaType = contentType == null ? null : MediaType.parse(contentType);
+        if (body != null) {
+            return RequestBody.create(mediaType, body);
+        }
+
+        if (!GatewayHttpProxy.hasBody(req)) {
+            return HttpMethod.requiresRequestBody(method) ? RequestBody.create(mediaType, new byte[0]) : null;
+        }
+
+        // 以流的方式发送 body
+        long contentLength = req.getContentLengthLong();
+        return new RequestBody() {
+            @Override
+            public MediaType contentType() {
+                return mediaType;
+            }
+
+            @Override
+            public long contentLength() {
+                return contentLength;
+            }
+
+            @Override
+            public void writeTo(BufferedSink sink) throws IOException {
+                try (Source source = Okio.source(req.getInputStream())) {
+                    sink.writeAll(source);
+                }
+            }
+        };
+    }
+
+
+    public OkHttpClient getClient() {
+        return client;
+    }
+}
@@ -0,0 +1,56 @@
+/**
+ * Copyright (c) 2015-2021, Michael Yang 杨福海 (fuhai999@gmail.com).
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.jboot.components.gateway;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 网关代理引擎，负责把一次请求发送到后端服务，并把响应写回到客户端
+ */
+public interface GatewayProxyEngine {
+
+    String URL_CONNECTION = "urlconnection";
+    String OKHTTP = "okhttp";
+
+    /**
+     * 发送一次请求，重试由 GatewayHttpProxy 控制
+     *
+     * @param proxy
+     * @param url
+     * @param req
+     * @param resp
+     * @param body  已缓存的请求 body，为 null 时直接从 req 的 inputStream 中读取
+     * @throws Exception
+     */
+    void send(GatewayHttpProxy proxy, String url, HttpServletRequest req, HttpServletResponse resp, byte[] body) throws Exception;
+
+    /**
+     * 异步发送一次请求，在请求完成（或失败）之前，不能占用调用线程
+     * （引擎自己的线程可以阻塞读写，例如 OkHttp 的 Dispatcher 线程）
+     * <p>
+     * 需要通过 proxy.onAsyncCancel() 注册取消请求的方法，请求超时之后会被调用
+     *
+     * @param proxy
+     * @param url
+     * @param req
+     * @param resp
+     * @param body
+     * @return 请求真正结束（包括被取消）后完成的 future
+     */
+    CompletableFuture<Void> sendAsync(GatewayHttpProxy proxy, String url, HttpServletRequest req, HttpServletResponse resp, byte[] body);
+}
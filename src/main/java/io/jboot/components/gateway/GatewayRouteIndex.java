@@ -0,0 +1,257 @@
+/**
+ * Copyright (c) 2015-2021, Michael Yang 杨福海 (fuhai999@gmail.com).
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.jboot.components.gateway;
+
+import io.jboot.utils.StrUtil;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.*;
+
+/**
+ * 编译后的路由索引，用于快速匹配请求对应的网关配置
+ * <p>
+ * equals 使用 hash 表，startsWith 和 endsWith 使用前缀树（endsWith 为反向前缀树），contains 使用 Aho-Corasick 自动机，
+ * query 参数在每个请求中最多只解析一次。多个配置同时匹配时，返回最先注册并且启用的配置。
+ * <p>
+ * 索引创建之后不可修改，路由配置变化时需要重新创建
+ */
+class GatewayRouteIndex {
+
+    static final GatewayRouteIndex EMPTY = new GatewayRouteIndex(Collections.emptyList());
+
+    private final JbootGatewayConfig[] configs;
+    private final StringIndex pathIndex = new StringIndex();
+    private final StringIndex hostIndex = new StringIndex();
+
+    // query 参数名 -> 配置序号
+    private final Map<String, BitSet> queryContains = new HashMap<>();
+    // query 参数名 -> 参数值 -> 配置序号
+    private final Map<String, Map<String, BitSet>> queryEquals = new HashMap<>();
+
+
+    GatewayRouteIndex(Collection<JbootGatewayConfig> configs) {
+        this.configs = configs.toArray(new JbootGatewayConfig[0]);
+        for (int i = 0; i < this.configs.length; i++) {
+            JbootGatewayConfig config = this.configs[i];
+            pathIndex.add(i, config.getPathEquals(), config.getPathContains(), config.getPathStartsWith(), config.getPathEndsWith());
+            hostIndex.add(i, config.getHostEquals(), config.getHostContains(), config.getHostStartsWith(), config.getHostEndsWith());
+
+            if (config.getQueryContains() != null) {
+                for (String q : config.getQueryContains()) {
+                    queryContains.computeIfAbsent(q, k -> new BitSet()).set(i);
+                }
+            }
+
+            if (config.getQueryEquals() != null) {
+                for (Map.Entry<String, String> e : config.getQueryEquals().entrySet()) {
+                    queryEquals.computeIfAbsent(e.getKey(), k -> new HashMap<>())
+                            .computeIfAbsent(e.getValue(), k -> new BitSet()).set(i);
+                }
+            }
+        }
+        pathIndex.build();
+        hostIndex.build();
+    }
+
+
+    JbootGatewayConfig match(HttpServletRequest request) {
+        if (configs.length == 0 || request == null) {
+            return null;
+        }
+
+        BitSet matched = new BitSet(configs.length);
+        pathIndex.match(request.getServletPath(), matched);
+        hostIndex.match(request.getServerName(), matched);
+
+        if (!queryContains.isEmpty() || !queryEquals.isEmpty()) {
+            String queryString = request.getQueryString();
+            Map<String, String> queryMap = StrUtil.isBlank(queryString) ? null : StrUtil.queryStringToMap(queryString);
+            if (queryMap != null && !queryMap.isEmpty()) {
+                matchQuery(queryMap, matched);
+            }
+        }
+
+        for (int i = matched.nextSetBit(0); i >= 0; i = matched.nextSetBit(i + 1)) {
+            if (configs[i].isEnable()) {
+                return configs[i];
+            }
+        }
+        return null;
+    }
+
+
+    private void matchQuery(Map<String, String> queryMap, BitSet matched) {
+        for (String key : queryMap.keySet()) {
+            BitSet ids = queryContains.get(key);
+            if (ids != null) {
+                matched.or(ids);
+            }
+        }
+
+        for (Map.Entry<String, Map<String, BitSet>> e : queryEquals.entrySet()) {
+            BitSet ids = e.getValue().get(queryMap.get(e.getKey()));
+            if (ids != null) {
+                matched.or(ids);
+            }
+        }
+    }
+
+
+    /**
+     * 针对某一个字符串（path 或者 host）的 equals、contains、startsWith、endsWith 条件的索引
+     */
+    private static class StringIndex {
+
+        private final Map<String, BitSet> equals = new HashMap<>();
+        private final Node prefixTrie = new Node();
+        private final Node suffixTrie = new Node();
+        private final Node containsTrie = new Node();
+
+        private boolean hasPrefix;
+        private boolean hasSuffix;
+        private boolean hasContains;
+
+        void add(int id, String[] equalsArray, String[] containsArray, String[] startsWithArray, String[] endsWithArray) {
+            if (equalsArray != null) {
+                for (String s : equalsArray) {
+                    equals.computeIfAbsent(s, k -> new BitSet()).set(id);
+                }
+            }
+
+            if (startsWithArray != null) {
+                for (String s : startsWithArray) {
+                    Node node = prefixTrie;
+                    for (int i = 0; i < s.length(); i++) {
+                        node = node.child(s.charAt(i));
+                    }
+                    node.ids.set(id);
+                    hasPrefix = true;
+                }
+            }
+
+            if (endsWithArray != null) {
+                for (String s : endsWithArray) {
+                    Node node = suffixTrie;
+                    for (int i = s.length() - 1; i >= 0; i--) {
+                        node = node.child(s.charAt(i));
+                    }
+                    node.ids.set(id);
+                    hasSuffix = true;
+                }
+            }
+
+            if (containsArray != null) {
+                for (String s : containsArray) {
+                    Node node = containsTrie;
+                    for (int i = 0; i < s.length(); i++) {
+                        node = node.child(s.charAt(i));
+                    }
+                    node.ids.set(id);
+                    hasContains = true;
+                }
+            }
+        }
+
+
+        /**
+         * 构建 Aho-Corasick 自动机的失败指针，并把失败指针上的匹配结果合并到当前节点
+         */
+        void build() {
+            if (!hasContains) {
+                return;
+            }
+
+            Deque<Node> queue = new ArrayDeque<>();
+            for (Node child : containsTrie.children.values()) {
+                child.fail = containsTrie;
+                queue.add(child);
+            }
+
+            while (!queue.isEmpty()) {
+                Node node = queue.poll();
+                for (Map.Entry<Character, Node> entry : node.children.entrySet()) {
+                    char c = entry.getKey();
+                    Node child = entry.getValue();
+
+                    Node fail = node.fail;
+                    while (fail != containsTrie && !fail.children.containsKey(c)) {
+                        fail = fail.fail;
+                    }
+                    Node next = fail.children.get(c);
+                    child.fail = next != null && next != child ? next : containsTrie;
+                    child.ids.or(child.fail.ids);
+                    queue.add(child);
+                }
+            }
+        }
+
+
+        void match(String value, BitSet matched) {
+            if (value == null) {
+                return;
+            }
+
+            if (!equals.isEmpty()) {
+                BitSet ids = equals.get(value);
+                if (ids != null) {
+                    matched.or(ids);
+                }
+            }
+
+            if (hasPrefix) {
+                Node node = prefixTrie;
+                matched.or(node.ids);
+                for (int i = 0; i < value.length() && (node = node.children.get(value.charAt(i))) != null; i++) {
+                    matched.or(node.ids);
+                }
+            }
+
+            if (hasSuffix) {
+                Node node = suffixTrie;
+                matched.or(node.ids);
+                for (int i = value.length() - 1; i >= 0 && (node = node.children.get(value.charAt(i))) != null; i--) {
+                    matched.or(node.ids);
+                }
+            }
+
+            if (hasContains) {
+                Node node = containsTrie;
+                matched.or(node.ids);
+                for (int i = 0; i < value.length(); i++) {
+                    char c = value.charAt(i);
+                    while (node != containsTrie && !node.children.containsKey(c)) {
+                        node = node.fail;
+                    }
+                    Node next = node.children.get(c);
+                    node = next != null ? next : containsTrie;
+                    matched.or(node.ids);
+                }
+            }
+        }
+    }
+
+
+    private static class Node {
+
+        private final Map<Character, Node> children = new HashMap<>();
+        private final BitSet ids = new BitSet();
+        private Node fail;
+
+        Node child(char c) {
+            return children.computeIfAbsent(c, k -> new Node());
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/**
+ * Copyright (c) 2015-2021, Michael Yang 杨福海 (fuhai999@gmail.com).
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.jboot.components.gateway;
+
+import com.jfinal.log.Log;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 某个网关配置下，每个后端服务（upstream）的统计信息：正在处理的请求数、EWMA 延迟、连续失败次数
+ * <p>
+ * 这些信息由代理过程记录，用于负载均衡策略；连续失败次数达到 outlierConsecutiveFailures 后，
+ * 通过 addEjectedUri 摘除该服务，outlierEjectionSeconds 之后再自动恢复；摘除和健康检查的结果分开保存，
+ * 健康检查恢复服务时不会提前恢复被摘除的服务
+ */
+public class GatewayUpstreamStats {
+
+    private static final Log LOG = Log.getLog(GatewayUpstreamStats.class);
+
+    // EWMA 的平滑系数，越大越偏向最近的延迟
+    private static final double EWMA_ALPHA = 0.3;
+
+    private final JbootGatewayConfig config;
+    private final Map<String, UpstreamStat> stats = new ConcurrentHashMap<>();
+
+    // 被摘除的服务 -> 恢复时间
+    private final Map<String, Long> ejectedUris = new ConcurrentHashMap<>();
+    private volatile long nextRestoreTime = Long.MAX_VALUE;
+
+    public GatewayUpstreamStats(JbootGatewayConfig config) {
+        this.config = config;
+    }
+
+
+    public UpstreamStat getStat(String uri) {
+        return stats.computeIfAbsent(uri, k -> new UpstreamStat());
+    }
+
+
+    /**
+     * 开始代理请求
+     *
+     * @param uri
+     * @return 开始时间（纳秒），用于 end()
+     */
+    public long start(String uri) {
+        getStat(uri).inFlight.incrementAndGet();
+        return System.nanoTime();
+    }
+
+
+    /**
+     * 代理请求结束
+     *
+     * @param uri
+     * @param startNanos start() 返回的时间
+     * @param failed     是否失败（连接失败、超时或者 5xx 响应）
+     */
+    public void end(String uri, long startNanos, boolean failed) {
+        UpstreamStat stat = getStat(uri);
+        stat.inFlight.decrementAndGet();
+        stat.updateEwma(System.nanoTime() - startNanos);
+
+        if (!failed) {
+            stat.consecutiveFailures.set(0);
+            return;
+        }
+
+        int threshold = config.getOutlierConsecutiveFailures();
+        if (threshold > 0 && stat.consecutiveFailures.incrementAndGet() >= threshold) {
+            eject(uri);
+        }
+    }
+
+
+    private void eject(String uri) {
+        // 至少保留一个可用的服务
+        String[] healthUris = config.getHealthUris();
+        if (healthUris == null || healthUris.length <= 1 || ejectedUris.containsKey(uri)) {
+            return;
+        }
+
+        long restoreTime = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(config.getOutlierEjectionSeconds());
+        if (ejectedUris.putIfAbsent(uri, restoreTime) == null) {
+            LOG.warn("Gateway[" + config.getName() + "] eject uri: " + uri + ", because of too many consecutive failures.");
+            config.addEjectedUri(uri);
+            if (restoreTime < nextRestoreTime) {
+                nextRestoreTime = restoreTime;
+            }
+        }
+    }
+
+
+    /**
+     * 恢复摘除时间已到的服务，每次选择服务之前调用
+     */
+    public void restoreEjectedUris() {
+        long now = System.currentTimeMillis();
+        if (now < nextRestoreTime) {
+            return;
+        }
+
+        synchronized (this) {
+            long next = Long.MAX_VALUE;
+            for (Map.Entry<String, Long> entry : ejectedUris.entrySet()) {
+                if (entry.getValue() <= now) {
+                    String uri = entry.getKey();
+                    ejectedUris.remove(uri);
+                    getStat(uri).consecutiveFailures.set(0);
+                    config.removeEjectedUri(uri);
+                } else if (entry.getValue() < next) {
+                    next = entry.getValue();
+                }
+            }
+            nextRestoreTime = next;
+        }
+    }
+
+
+    public Map<String, UpstreamStat> getStats() {
+        return stats;
+    }
+
+    public Map<String, Long> getEjectedUris() {
+        return ejectedUris;
+    }
+
+
+    public static class UpstreamStat {
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger consecutiveFailures = new AtomicInteger();
+        // EWMA 延迟（纳秒），使用 double 的 bits 保存
+        private final AtomicLong ewmaBits = new AtomicLong(Double.doubleToLongBits(-1));
+
+        void updateEwma(long latencyNanos) {
+            long bits, newBits;
+            do {
+                bits = ewmaBits.get();
+                double ewma = Double.longBitsToDouble(bits);
+                double newEwma = ewma < 0 ? latencyNanos : ewma + EWMA_ALPHA * (latencyNanos - ewma);
+                newBits = Double.doubleToLongBits(newEwma);
+            } while (!ewmaBits.compareAndSet(bits, newBits));
+        }
+
+        public int getInFlight() {
+            return inFlight.get();
+        }
+
+        public int getConsecutiveFailures() {
+            return consecutiveFailures.get();
+        }
+
+        /**
+         * @return EWMA 延迟（纳秒），还没有请求时返回 0
+         */
+        public double getEwmaLatency() {
+            return Math.max(Double.longBitsToDouble(ewmaBits.get()), 0);
+        }
+    }
+}
@@ -0,0 +1,227 @@
+/**
+ * Copyright (c) 2015-2021, Michael Yang 杨福海 (fuhai999@gmail.com).
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.jboot.components.gateway;
+
+import io.jboot.utils.NamedThreadFactory;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 基于 HttpURLConnection 的代理引擎（默认）
+ * <p>
+ * 请求完成后不调用 disconnect()，而是把响应读取完毕后关闭流，使连接回到 JDK 的 keep-alive 连接池中复用，
+ * 每个后端服务的最大空闲连接数由 http.maxConnections 控制
+ * <p>
+ * HttpURLConnection 只支持阻塞 I/O，异步代理时在独立的线程池中执行，只释放 undertow 的 worker 线程，
+ * 线程池的线程数和队列长度都是 proxyMaxConcurrency（默认 200），队列满了之后拒绝请求
+ */
+public class GatewayUrlConnectionEngine implements GatewayProxyEngine {
+
+    public static final GatewayUrlConnectionEngine DEFAULT = new GatewayUrlConnectionEngine();
+
+    private static final int DEFAULT_ASYNC_THREADS = 200;
+
+    private final int asyncThreads;
+    private volatile ExecutorService asyncExecutor;
+
+    public GatewayUrlConnectionEngine() {
+        this.asyncThreads = DEFAULT_ASYNC_THREADS;
+    }
+
+    public GatewayUrlConnectionEngine(JbootGatewayConfig config) {
+        this.asyncThreads = config.getProxyMaxConcurrency() > 0 ? config.getProxyMaxConcurrency() : DEFAULT_ASYNC_THREADS;
+
+        // http.maxConnections 只在 JDK 第一次建立 http 连接前读取一次，用户已配置时以用户配置为准
+        if (System.getProperty("http.maxConnections") == null && config.getProxyMaxConnections() > 0) {
+            System.setProperty("http.maxConnections", String.valueOf(config.getProxyMaxConnections()));
+        }
+    }
+
+
+    @Override
+    public void send(GatewayHttpProxy proxy, String url, HttpServletRequest req, HttpServletResponse resp, byte[] body) throws Exception {
+        doSend(proxy, getConnection(url), req, resp, body);
+    }
+
+
+    protected void doSend(GatewayHttpProxy proxy, HttpURLConnection conn, HttpServletRequest req, HttpServletResponse resp, byte[] body) throws Exception {
+        boolean completed = false;
+        try {
+            /**
+             * 配置 HttpURLConnection 的 http 请求头
+             */
+            configConnection(proxy, conn, req);
+
+            if (body != null) {
+                conn.setDoOutput(true);
+                conn.setFixedLengthStreamingMode(body.length);
+                try (OutputStream outStream = conn.getOutputStream()) {
+                    outStream.write(body);
+                }
+            } else if (GatewayHttpProxy.hasBody(req)) {
+                // 以流的方式发送 body，避免 HttpURLConnection 把整个 body 缓存在内存中
+                conn.setDoOutput(true);
+                long contentLength = req.getContentLengthLong();
+                if (contentLength >= 0) {
+                    conn.setFixedLengthStreamingMode(contentLength);
+                } else {
+                    conn.setChunkedStreamingMode(proxy.getBufferSize());
+                }
+                try (OutputStream outStream = conn.getOutputStream()) {
+                    proxy.copy(req.getInputStream(), outStream);
+                }
+            } else {
+                conn.connect();
+            }
+
+            /**
+             * 配置 HttpServletResponse 的 http 响应头
+             */
+            int statusCode = conn.getResponseCode();
+            proxy.configResponse(resp, statusCode, conn.getHeaderFields());
+
+            /**
+             * 复制链接的 inputStream 流到 Response
+             */
+            copyConnStreamToResponse(proxy, conn, statusCode, resp);
+            completed = true;
+        } finally {
+            // 出现异常时，连接的状态未知，不能再放回连接池
+            if (!completed) {
+                conn.disconnect();
+            }
+        }
+    }
+
+
+    @Override
+    public CompletableFuture<Void> sendAsync(GatewayHttpProxy proxy, String url, HttpServletRequest req, HttpServletResponse resp, byte[] body) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        // 任务已经开始执行，或者在开始执行之前已经被取消
+        AtomicBoolean started = new AtomicBoolean(false);
+        AtomicReference<HttpURLConnection> connRef = new AtomicReference<>();
+
+        getAsyncExecutor().execute(() -> {
+            if (!started.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                HttpURLConnection conn = getConnection(url);
+                connRef.set(conn);
+                // 与 onAsyncCancel 中的检查配合，取消和建立连接同时发生时，至少有一方会看到对方
+                if (proxy.isAsyncCancelled()) {
+                    throw new CancellationException("Proxy request is cancelled: " + url);
+                }
+                doSend(proxy, conn, req, resp, body);
+                future.complete(null);
+            } catch (Throwable ex) {
+                future.completeExceptionally(ex);
+            }
+        });
+
+        proxy.onAsyncCancel(() -> {
+            // 还在队列中，不再执行
+            if (started.compareAndSet(false, true)) {
+                future.completeExceptionally(new CancellationException("Proxy request is cancelled: " + url));
+                return;
+            }
+            // 关闭连接，阻塞在读写上的线程会立即抛出异常
+            HttpURLConnection conn = connRef.get();
+            if (conn != null) {
+                conn.disconnect();
+            }
+        });
+        return future;
+    }
+
+
+    private ExecutorService getAsyncExecutor() {
+        if (asyncExecutor == null) {
+            synchronized (this) {
+                if (asyncExecutor == null) {
+                    ThreadPoolExecutor executor = new ThreadPoolExecutor(asyncThreads, asyncThreads,
+                            60L, TimeUnit.SECONDS,
+                            new ArrayBlockingQueue<>(asyncThreads),
+                            new NamedThreadFactory("jboot-gateway-proxy", true),
+                            new ThreadPoolExecutor.AbortPolicy());
+                    executor.allowCoreThreadTimeOut(true);
+                    asyncExecutor = executor;
+                }
+            }
+        }
+        return asyncExecutor;
+    }
+
+
+    protected void copyConnStreamToResponse(GatewayHttpProxy proxy, HttpURLConnection conn, int statusCode, HttpServletResponse resp) throws IOException {
+        InputStream inStream = statusCode >= 400 ? conn.getErrorStream() : conn.getInputStream();
+        if (inStream == null) {
+            return;
+        }
+
+        try {
+            if (!resp.isCommitted()) {
+                proxy.copy(inStream, resp.getOutputStream());
+            }
+        } finally {
+            // 读取完毕后关闭，连接回到 keep-alive 连接池
+            inStream.close();
+        }
+    }
+
+
+    protected void configConnection(GatewayHttpProxy proxy, HttpURLConnection conn, HttpServletRequest req) throws IOException {
+
+        conn.setReadTimeout(proxy.getReadTimeOut());
+        conn.setConnectTimeout(proxy.getConnectTimeOut());
+        conn.setInstanceFollowRedirects(proxy.isInstanceFollowRedirects());
+        conn.setUseCaches(proxy.isUseCaches());
+
+        conn.setRequestMethod(req.getMethod());
+
+        for (Map.Entry<String, List<String>> entry : proxy.buildRequestHeaders(req).entrySet()) {
+            List<String> values = entry.getValue();
+            conn.setRequestProperty(entry.getKey(), values.get(0));
+            for (int i = 1; i < values.size(); i++) {
+                conn.addRequestProperty(entry.getKey(), values.get(i));
+            }
+        }
+    }
+
+
+    protected HttpURLConnection getConnection(String urlString) throws IOException {
+        URL url = new URL(urlString);
+        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+        if (conn instanceof HttpsURLConnection) {
+            HttpsURLConnection httpsConn = (HttpsURLConnection) conn;
+            httpsConn.setHostnameVerifier(GatewayHttpProxy.hnv);
+            httpsConn.setSSLSocketFactory(GatewayHttpProxy.getTrustAnySSLSocketFactory());
+        }
+        return conn;
+    }
+}
@@ -22,6 +22,7 @@ import io.jboot.utils.StrUtil;
 import javax.servlet.http.HttpServletRequest;
 import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.Semaphore;
 
 /**
  * @author michael yang (fuhai999@gmail.com)
@@ -59,6 +60,25 @@ public class JbootGatewayConfig implements Serializable {
     private int proxyRetries = 2; //2 times
     private String proxyContentType = DEFAULT_PROXY_CONTENT_TYPE;
 
+    // 代理引擎：urlconnection（默认）、okhttp 或者 GatewayProxyEngine 的实现类名
+    private String proxyEngine;
+    // 每个后端服务（upstream）保持的最大空闲连接数量
+    private int proxyMaxConnections = 64;
+    // 空闲连接的保持时间
+    private int proxyKeepAliveSeconds = 60;
+    // 复制 body 时使用的缓冲区大小
+    private int proxyBufferSize = 16 * 1024;
+    // 重试时，非 GET 请求的 body 需要缓存才能重放，body 超过该大小不进行缓存，也不进行重试
+    private int proxyRetryBodyMaxSize = 64 * 1024;
+    // 是否异步代理，异步代理时 undertow 的 worker 线程在等待后端服务响应期间会被释放，
+    // 但上传请求 body 和复制响应依然是阻塞的，在代理引擎的线程（OkHttp 的 Dispatcher 线程）中执行
+    // 注意：异步代理时，拦截器中 invocation.invoke() 之后的代码会在后端服务响应之前执行；启用 sentinel 时依然使用同步代理
+    private boolean proxyAsyncEnable = false;
+    // 异步代理的超时时间（包括重试），超时后给客户端返回错误信息
+    private int proxyAsyncTimeout = 30000; //30s
+    // 该路由同时代理的最大请求数量，超出后直接返回错误信息，小于等于 0 时不限制
+    private int proxyMaxConcurrency = 0;
+
 
     private String[] pathEquals;
     private String[] pathContains;
@@ -77,7 +97,16 @@ public class JbootGatewayConfig implements Serializable {
 
     //拦截器配置，一般可以用于对请求进行 鉴权 等处理
     private String[] interceptors;
+    // 负载均衡策略：random（默认）、roundRobin、leastInFlight、p2c、consistentHash 或者 GatewayLoadBalanceStrategy 的实现类名
     private String loadBalanceStrategy;
+    // roundRobin 的权重，格式为 uri1=权重,uri2=权重，未配置的 uri 权重为 1
+    private String uriWeights;
+    // consistentHash 使用的 key，格式为 header:name 或者 cookie:name，未配置时使用客户端 IP
+    private String loadBalanceHashKey;
+    // 连续失败（连接失败、超时或者 5xx）多少次后摘除该 uri，小于等于 0 时不摘除
+    private int outlierConsecutiveFailures = 5;
+    // 摘除之后，多少秒后恢复
+    private int outlierEjectionSeconds = 30;
 
 //    暂时不支持 cookie
 //    private Map<String, String> cookieEquals;
@@ -86,6 +115,9 @@ public class JbootGatewayConfig implements Serializable {
     //不健康的 URI 地址
     private Set<String> unHealthUris = Collections.synchronizedSet(new HashSet<>());
 
+    //连续失败被摘除的 URI 地址，和健康检查的结果分开保存，互不覆盖
+    private Set<String> ejectedUris = Collections.synchronizedSet(new HashSet<>());
+
 
     public String getName() {
         return name;
@@ -132,6 +164,10 @@ public class JbootGatewayConfig implements Serializable {
                         if (!unHealthUris.isEmpty()) {
                             healthUriSet.removeAll(unHealthUris);
                         }
+
+                        if (!ejectedUris.isEmpty()) {
+                            healthUriSet.removeAll(ejectedUris);
+                        }
                         healthUris = healthUriSet.isEmpty() ? null : healthUriSet.toArray(new String[healthUriSet.size()]);
 
                     }
@@ -223,6 +259,90 @@ public class JbootGatewayConfig implements Serializable {
         this.proxyContentType = proxyContentType;
     }
 
+    public String getProxyEngine() {
+        return proxyEngine;
+    }
+
+    public void setProxyEngine(String proxyEngine) {
+        this.proxyEngine = proxyEngine;
+    }
+
+    public int getProxyMaxConnections() {
+        return proxyMaxConnections;
+    }
+
+    public void setProxyMaxConnections(int proxyMaxConnections) {
+        this.proxyMaxConnections = proxyMaxConnections;
+    }
+
+    public int getProxyKeepAliveSeconds() {
+        return proxyKeepAliveSeconds;
+    }
+
+    public void setProxyKeepAliveSeconds(int proxyKeepAliveSeconds) {
+        this.proxyKeepAliveSeconds = proxyKeepAliveSeconds;
+    }
+
+    public int getProxyBufferSize() {
+        return proxyBufferSize;
+    }
+
+    public void setProxyBufferSize(int proxyBufferSize) {
+        this.proxyBufferSize = proxyBufferSize;
+    }
+
+    public int getProxyRetryBodyMaxSize() {
+        return proxyRetryBodyMaxSize;
+    }
+
+    public void setProxyRetryBodyMaxSize(int proxyRetryBodyMaxSize) {
+        this.proxyRetryBodyMaxSize = proxyRetryBodyMaxSize;
+    }
+
+    public boolean isProxyAsyncEnable() {
+        return proxyAsyncEnable;
+    }
+
+    public void setProxyAsyncEnable(boolean proxyAsyncEnable) {
+        this.proxyAsyncEnable = proxyAsyncEnable;
+    }
+
+    public int getProxyAsyncTimeout() {
+        return proxyAsyncTimeout;
+    }
+
+    public void setProxyAsyncTimeout(int proxyAsyncTimeout) {
+        this.proxyAsyncTimeout = proxyAsyncTimeout;
+    }
+
+    public int getProxyMaxConcurrency() {
+        return proxyMaxConcurrency;
+    }
+
+    public void setProxyMaxConcurrency(int proxyMaxConcurrency) {
+        this.proxyMaxConcurrency = proxyMaxConcurrency;
+    }
+
+    private volatile Semaphore concurrencySemaphore;
+
+    /**
+     * 获取控制并发数量的信号量，没有配置 proxyMaxConcurrency 时返回 null
+     */
+    public Semaphore getConcurrencySemaphore() {
+        if (proxyMaxConcurrency <= 0) {
+            return null;
+        }
+
+        if (concurrencySemaphore == null) {
+            synchronized (this) {
+                if (concurrencySemaphore == null) {
+                    concurrencySemaphore = new Semaphore(proxyMaxConcurrency);
+                }
+            }
+        }
+        return concurrencySemaphore;
+    }
+
     public String[] getPathEquals() {
         return pathEquals;
     }
@@ -363,7 +483,11 @@ public class JbootGatewayConfig implements Serializable {
                     if (StrUtil.isBlank(loadBalanceStrategy)) {
                         gatewayLoadBalanceStrategy = GatewayLoadBalanceStrategy.DEFAULT_STRATEGY;
                     } else {
-                        GatewayLoadBalanceStrategy glbs = ClassUtil.newInstance(loadBalanceStrategy);
+                        //内置的负载均衡策略，或者自定义的实现类
+                        GatewayLoadBalanceStrategy glbs = GatewayLoadBalanceStrategies.create(loadBalanceStrategy);
+                        if (glbs == null) {
+                            glbs = ClassUtil.newInstance(loadBalanceStrategy);
+                        }
                         if (glbs == null) {
                             throw new NullPointerException("Can not new instance by class: " + loadBalanceStrategy);
                         }
@@ -380,6 +504,102 @@ public class JbootGatewayConfig implements Serializable {
     }
 
 
+    public String getUriWeights() {
+        return uriWeights;
+    }
+
+    public void setUriWeights(String uriWeights) {
+        this.uriWeights = uriWeights;
+        this.uriWeightMap = null;
+    }
+
+    private Map<String, Integer> uriWeightMap;
+
+    public int getUriWeight(String uri) {
+        Map<String, Integer> weightMap = uriWeightMap;
+        if (weightMap == null) {
+            weightMap = new HashMap<>();
+            if (StrUtil.isNotBlank(uriWeights)) {
+                for (String item : uriWeights.split(",")) {
+                    int index = item.lastIndexOf('=');
+                    if (index > 0) {
+                        weightMap.put(item.substring(0, index).trim(), Integer.parseInt(item.substring(index + 1).trim()));
+                    }
+                }
+            }
+            uriWeightMap = weightMap;
+        }
+        Integer weight = weightMap.get(uri);
+        return weight == null || weight < 1 ? 1 : weight;
+    }
+
+    public String getLoadBalanceHashKey() {
+        return loadBalanceHashKey;
+    }
+
+    public void setLoadBalanceHashKey(String loadBalanceHashKey) {
+        this.loadBalanceHashKey = loadBalanceHashKey;
+    }
+
+    public int getOutlierConsecutiveFailures() {
+        return outlierConsecutiveFailures;
+    }
+
+    public void setOutlierConsecutiveFailures(int outlierConsecutiveFailures) {
+        this.outlierConsecutiveFailures = outlierConsecutiveFailures;
+    }
+
+    public int getOutlierEjectionSeconds() {
+        return outlierEjectionSeconds;
+    }
+
+    public void setOutlierEjectionSeconds(int outlierEjectionSeconds) {
+        this.outlierEjectionSeconds = outlierEjectionSeconds;
+    }
+
+    private volatile GatewayUpstreamStats upstreamStats;
+
+    public GatewayUpstreamStats getUpstreamStats() {
+        if (upstreamStats == null) {
+            synchronized (this) {
+                if (upstreamStats == null) {
+                    upstreamStats = new GatewayUpstreamStats(this);
+                }
+            }
+        }
+        return upstreamStats;
+    }
+
+    private volatile GatewayProxyEngine gatewayProxyEngine;
+
+    public GatewayProxyEngine buildProxyEngine() {
+        if (gatewayProxyEngine != null) {
+            return gatewayProxyEngine;
+        }
+
+        synchronized (this) {
+            if (gatewayProxyEngine == null) {
+                if (StrUtil.isBlank(proxyEngine) || GatewayProxyEngine.URL_CONNECTION.equalsIgnoreCase(proxyEngine)) {
+                    gatewayProxyEngine = new GatewayUrlConnectionEngine(this);
+                } else if (GatewayProxyEngine.OKHTTP.equalsIgnoreCase(proxyEngine)) {
+                    gatewayProxyEngine = new GatewayOkHttpEngine(this);
+                } else {
+                    GatewayProxyEngine engine = ClassUtil.newInstance(proxyEngine);
+                    if (engine == null) {
+                        throw new NullPointerException("Can not new instance by class: " + proxyEngine);
+                    }
+                    gatewayProxyEngine = engine;
+                }
+            }
+        }
+        return gatewayProxyEngine;
+    }
+
+    public void setGatewayProxyEngine(GatewayProxyEngine engine) {
+        this.gatewayProxyEngine = engine;
+    }
+
+
     public boolean matches(HttpServletRequest request) {
         if (request == null) {
             return false;
@@ -516,4 +736,18 @@ public class JbootGatewayConfig implements Serializable {
     }
 
 
+    public void addEjectedUri(String uri) {
+        if (ejectedUris.add(uri)) {
+            healthUriChanged = true;
+        }
+    }
+
+
+    public void removeEjectedUri(String uri) {
+        if (ejectedUris.remove(uri)) {
+            healthUriChanged = true;
+        }
+    }
+
+
 }
@@ -40,7 +40,10 @@ public class JbootGatewayHandler extends Handler {
             new GatewayInvocation(config, request, response).invoke();
         } finally {
             isHandled[0] = true;
-            flushBuffer(response);
+            //异步代理时，由 GatewayInvocation 在代理结束之后 flush
+            if (!request.isAsyncStarted()) {
+                flushBuffer(response);
+            }
         }
     }
 
@@ -22,11 +22,7 @@ import io.jboot.components.gateway.discovery.GatewayInstance;
 import io.jboot.utils.StrUtil;
 
 import javax.servlet.http.HttpServletRequest;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.*;
 
 /**
  * @author michael yang (fuhai999@gmail.com)
@@ -40,7 +36,9 @@ public class JbootGatewayManager {
         return me;
     }
 
-    private Map<String, JbootGatewayConfig> configMap;
+    // 按注册顺序保存，修改时复制，多个配置同时匹配时，先注册的优先
+    private volatile Map<String, JbootGatewayConfig> configMap;
+    private volatile GatewayRouteIndex routeIndex = GatewayRouteIndex.EMPTY;
     private GatewayErrorRender gatewayErrorRender;
     private GatewayDiscovery discovery;
 
@@ -79,15 +77,16 @@ public class JbootGatewayManager {
 
 
     /**
-     * 动态注册新的路由配置
+     * 动态注册新的路由配置，注册之后再修改配置的匹配条件（path、host、query）不会生效，需要重新注册
      *
      * @param config 配置信息
      */
     public void registerConfig(JbootGatewayConfig config) {
-        if (configMap == null) {
-            configMap = new ConcurrentHashMap<>();
+        synchronized (this) {
+            Map<String, JbootGatewayConfig> newConfigMap = configMap == null ? new LinkedHashMap<>() : new LinkedHashMap<>(configMap);
+            newConfigMap.put(config.getName(), config);
+            updateConfigMap(newConfigMap);
         }
-        configMap.put(config.getName(), config);
 
         if (discovery != null) {
             List<GatewayInstance> healthyInstances = discovery.selectInstances(config.getName(), true);
@@ -125,8 +124,22 @@ public class JbootGatewayManager {
      * @param name 配置名称
      * @return 被移除的配置信息
      */
-    public JbootGatewayConfig removeConfig(String name) {
-        return configMap == null ? null : configMap.remove(name);
+    public synchronized JbootGatewayConfig removeConfig(String name) {
+        if (configMap == null || !configMap.containsKey(name)) {
+            return null;
+        }
+
+        Map<String, JbootGatewayConfig> newConfigMap = new LinkedHashMap<>(configMap);
+        JbootGatewayConfig config = newConfigMap.remove(name);
+        updateConfigMap(newConfigMap);
+        return config;
+    }
+
+
+    private void updateConfigMap(Map<String, JbootGatewayConfig> newConfigMap) {
+        GatewayRouteIndex newRouteIndex = new GatewayRouteIndex(newConfigMap.values());
+        configMap = Collections.unmodifiableMap(newConfigMap);
+        routeIndex = newRouteIndex;
     }
 
 
@@ -142,7 +155,7 @@ public class JbootGatewayManager {
 
 
     /**
-     * 获取所有的配置信息
+     * 获取所有的配置信息（只读），通过 registerConfig 和 removeConfig 修改
      *
      * @return
      */
@@ -157,14 +170,7 @@ public class JbootGatewayManager {
      * @return 返回匹配到的网关配置
      */
     public JbootGatewayConfig matchingConfig(HttpServletRequest req) {
-        if (configMap != null && !configMap.isEmpty()) {
-            for (JbootGatewayConfig config : configMap.values()) {
-                if (config.isEnable() && config.matches(req)) {
-                    return config;
-                }
-            }
-        }
-        return null;
+        return routeIndex.match(req);
     }
 
     public GatewayErrorRender getGatewayErrorRender() {
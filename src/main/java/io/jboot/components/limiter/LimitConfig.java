@@ -57,6 +57,22 @@ public class LimitConfig {
      */
     private String defaultHtmlView;
 
+    /**
+     * 集群限流（LimitScope.CLUSTER）时，是否开启批量租借令牌
+     * 开启后每个节点一次从 redis 租借一批令牌在本地消费，不再每次请求都访问 redis
+     */
+    private boolean clusterLeaseEnable = false;
+
+    /**
+     * 每次从 redis 租借的令牌数量，小于等于 0 时自动计算（rate 的 1/10，最少为 1）
+     */
+    private int clusterLeaseSize = 0;
+
+    /**
+     * 限流值小于等于该值时，依然每次请求都访问 redis，以保证精确的限流
+     */
+    private int clusterPreciseMaxRate = 100;
+
     public boolean isEnable() {
         return enable;
     }
@@ -104,4 +120,28 @@ public class LimitConfig {
     public void setDefaultHtmlView(String defaultHtmlView) {
         this.defaultHtmlView = defaultHtmlView;
     }
+
+    public boolean isClusterLeaseEnable() {
+        return clusterLeaseEnable;
+    }
+
+    public void setClusterLeaseEnable(boolean clusterLeaseEnable) {
+        this.clusterLeaseEnable = clusterLeaseEnable;
+    }
+
+    public int getClusterLeaseSize() {
+        return clusterLeaseSize;
+    }
+
+    public void setClusterLeaseSize(int clusterLeaseSize) {
+        this.clusterLeaseSize = clusterLeaseSize;
+    }
+
+    public int getClusterPreciseMaxRate() {
+        return clusterPreciseMaxRate;
+    }
+
+    public void setClusterPreciseMaxRate(int clusterPreciseMaxRate) {
+        this.clusterPreciseMaxRate = clusterPreciseMaxRate;
+    }
 }
@@ -0,0 +1,187 @@
+/**
+ * Copyright (c) 2015-2021, Michael Yang 杨福海 (fuhai999@gmail.com).
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.jboot.components.limiter;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * 限流规则的匹配器，规则在创建的时候就已经编译好：
+ * 1、没有通配符的规则，直接通过 map 匹配
+ * 2、只在末尾有 * 的规则（例如 com.xxx.*、/user/*），通过前缀树匹配
+ * 3、其他规则，通过预先编译好的正则匹配
+ * <p>
+ * 多个规则都能匹配时，以配置的先后顺序为准，匹配的结果会缓存起来
+ */
+class LimitRuleMatcher {
+
+    private static final int MAX_CACHE_SIZE = 10000;
+    private static final String REGEX_CHARS = "\\[]{}+?^$|";
+
+    private final List<Rule> rules = new ArrayList<>();
+    private final Map<String, Rule> exactRules = new HashMap<>();
+    private final PrefixNode prefixRoot = new PrefixNode();
+    private final List<Rule> patternRules = new ArrayList<>();
+
+    private final Map<String, Optional<LimiterManager.TypeAndRate>> matchCache = new ConcurrentHashMap<>();
+
+
+    public void addRule(String packageOrTarget, LimiterManager.TypeAndRate typeAndRate) {
+        Rule rule = new Rule(rules.size(), toRegex(packageOrTarget), typeAndRate);
+        rules.add(rule);
+
+        int starIndex = packageOrTarget.indexOf('*');
+        if (starIndex == -1 && !containsRegexChar(packageOrTarget)) {
+            exactRules.putIfAbsent(packageOrTarget, rule);
+        } else if (starIndex == packageOrTarget.length() - 1 && !containsRegexChar(packageOrTarget)) {
+            PrefixNode node = prefixRoot;
+            for (int i = 0; i < starIndex; i++) {
+                node = node.children.computeIfAbsent(packageOrTarget.charAt(i), c -> new PrefixNode());
+            }
+            if (node.rule == null) {
+                node.rule = rule;
+            }
+        } else {
+            rule.pattern = Pattern.compile(rule.regex);
+            patternRules.add(rule);
+        }
+    }
+
+
+    /**
+     * 添加已经转换为正则的规则，用于 LimiterManager.setConfigPackageOrTargets()
+     */
+    public void addRegexRule(String regex, LimiterManager.TypeAndRate typeAndRate) {
+        Rule rule = new Rule(rules.size(), regex, typeAndRate);
+        rule.pattern = Pattern.compile(regex);
+        rules.add(rule);
+        patternRules.add(rule);
+    }
+
+
+    /**
+     * 根据规则的正则获取对应的限流类型和速率，没有该规则时返回 null
+     */
+    public LimiterManager.TypeAndRate getTypeAndRate(String regex) {
+        for (Rule rule : rules) {
+            if (rule.regex.equals(regex)) {
+                return rule.typeAndRate;
+            }
+        }
+        return null;
+    }
+
+
+    public boolean isEmpty() {
+        return rules.isEmpty();
+    }
+
+
+    /**
+     * 规则转换为正则后的字符串，和 LimiterManager.getConfigPackageOrTargets() 保持一致
+     */
+    public Set<String> getRegexes() {
+        Set<String> regexes = new LinkedHashSet<>();
+        for (Rule rule : rules) {
+            regexes.add(rule.regex);
+        }
+        return regexes;
+    }
+
+
+    public LimiterManager.TypeAndRate match(String packageOrTarget) {
+        Optional<LimiterManager.TypeAndRate> result = matchCache.get(packageOrTarget);
+        if (result == null) {
+            Rule rule = doMatch(packageOrTarget);
+            result = Optional.ofNullable(rule == null ? null : rule.typeAndRate);
+
+            // controller 的 url 可能有无限多个，超过之后不再缓存
+            if (matchCache.size() < MAX_CACHE_SIZE) {
+                matchCache.put(packageOrTarget, result);
+            }
+        }
+        return result.orElse(null);
+    }
+
+
+    private Rule doMatch(String packageOrTarget) {
+        Rule matched = exactRules.get(packageOrTarget);
+
+        PrefixNode node = prefixRoot;
+        for (int i = 0; i < packageOrTarget.length() && node != null; i++) {
+            if (node.rule != null && (matched == null || node.rule.order < matched.order)) {
+                matched = node.rule;
+            }
+            node = node.children.get(packageOrTarget.charAt(i));
+        }
+        // 前缀后面的 * 可以匹配空字符串
+        if (node != null && node.rule != null && (matched == null || node.rule.order < matched.order)) {
+            matched = node.rule;
+        }
+
+        for (Rule rule : patternRules) {
+            if (matched != null && rule.order > matched.order) {
+                break;
+            }
+            if (rule.pattern.matcher(packageOrTarget).matches()) {
+                return rule;
+            }
+        }
+
+        return matched;
+    }
+
+
+    private static String toRegex(String packageOrTarget) {
+        return packageOrTarget.replace(".", "\\.")
+                .replace("(", "\\(")
+                .replace(")", "\\)")
+                .replace("*", ".*");
+    }
+
+
+    private static boolean containsRegexChar(String packageOrTarget) {
+        for (int i = 0; i < packageOrTarget.length(); i++) {
+            if (REGEX_CHARS.indexOf(packageOrTarget.charAt(i)) != -1) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    private static class Rule {
+
+        private final int order;
+        private final String regex;
+        private final LimiterManager.TypeAndRate typeAndRate;
+        private Pattern pattern;
+
+        Rule(int order, String regex, LimiterManager.TypeAndRate typeAndRate) {
+            this.order = order;
+            this.regex = regex;
+            this.typeAndRate = typeAndRate;
+        }
+    }
+
+
+    private static class PrefixNode {
+
+        private final Map<Character, PrefixNode> children = new HashMap<>();
+        private Rule rule;
+    }
+}
@@ -19,19 +19,24 @@ package io.jboot.components.limiter;
 import com.google.common.util.concurrent.RateLimiter;
 import com.jfinal.aop.Invocation;
 import io.jboot.Jboot;
+import io.jboot.aop.InterceptorCache;
+import io.jboot.app.config.JbootConfigManager;
+import io.jboot.components.limiter.redis.RedisLeasedRateLimiter;
 import io.jboot.utils.ClassUtil;
 import io.jboot.utils.StrUtil;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Semaphore;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public class LimiterManager {
 
+    private static final String RULE_CONFIG_KEY = "jboot.limit.rule";
+
     private Set<String> configPackageOrTargets = new HashSet<>();
-    private Map<String, TypeAndRate> typeAndRateCache = new HashMap<>();
+
+    // 规则修改后会重新创建，不会修改已经创建好的 matcher
+    private volatile LimitRuleMatcher ruleMatcher = new LimitRuleMatcher();
 
 
     private Map<String, Semaphore> semaphoreCache = new ConcurrentHashMap<>();
@@ -52,6 +57,19 @@ public class LimiterManager {
     public void init() {
         doInitFallbackProcesser();
         doParseConfig();
+
+        // 配置中心修改了限流规则后，重新构建规则
+        JbootConfigManager.me().addConfigChangeListener((key, newValue, oldValue) -> {
+            if (isEnable()) {
+                boolean wasEmpty = ruleMatcher.isEmpty();
+                doParseRule(newValue);
+
+                // 是否需要添加 LimiterGlobalInterceptor 发生了变化，需要重新构建拦截器
+                if (wasEmpty != ruleMatcher.isEmpty()) {
+                    InterceptorCache.clear();
+                }
+            }
+        }, RULE_CONFIG_KEY);
     }
 
     private void doInitFallbackProcesser() {
@@ -75,8 +93,15 @@ public class LimiterManager {
             return;
         }
 
-        String rule = config.getRule();
+        doParseRule(config.getRule());
+    }
+
+
+    private void doParseRule(String rule) {
+        LimitRuleMatcher matcher = new LimitRuleMatcher();
         if (StrUtil.isBlank(rule)) {
+            configPackageOrTargets = matcher.getRegexes();
+            ruleMatcher = matcher;
             return;
         }
 
@@ -87,21 +112,19 @@ public class LimiterManager {
                 continue;
             }
 
-            String packageOrTarget = confs[0];
-            String type = confs[1];
-            String rate = confs[2];
+            String packageOrTarget = confs[0].trim();
+            String type = confs[1].trim();
+            String rate = confs[2].trim();
 
-            if (!ensureLegal(packageOrTarget, type, rate.trim())) {
+            if (!ensureLegal(packageOrTarget, type, rate)) {
                 continue;
             }
-            packageOrTarget = packageOrTarget.replace(".", "\\.")
-                    .replace("(", "\\(")
-                    .replace(")", "\\)")
-                    .replace("*", ".*");
 
-            configPackageOrTargets.add(packageOrTarget.trim());
-            typeAndRateCache.put(packageOrTarget.trim(), new TypeAndRate(type.trim(), Integer.valueOf(rate.trim())));
+            matcher.addRule(packageOrTarget, new TypeAndRate(type, Integer.valueOf(rate)));
         }
+
+        configPackageOrTargets = matcher.getRegexes();
+        ruleMatcher = matcher;
     }
 
 
@@ -113,17 +136,12 @@ public class LimiterManager {
      */
     public TypeAndRate matchConfig(String packageOrTarget) {
 
-        if (!isEnable() || configPackageOrTargets.isEmpty()) {
+        LimitRuleMatcher matcher = ruleMatcher;
+        if (!isEnable() || matcher.isEmpty()) {
             return null;
         }
 
-        for (String configPackageOrTarget : configPackageOrTargets) {
-            if (match(packageOrTarget, configPackageOrTarget)) {
-                return typeAndRateCache.get(configPackageOrTarget);
-            }
-        }
-
-        return null;
+        return matcher.match(packageOrTarget);
     }
 
     public RateLimiter getOrCreateRateLimiter(String resource, int rate) {
@@ -154,18 +172,30 @@ public class LimiterManager {
         return semaphore;
     }
 
+    /**
+     * 规则转换为正则后的字符串，直接修改返回的 set 不会生效，需要通过 setConfigPackageOrTargets 重新设置
+     */
     public Set<String> getConfigPackageOrTargets() {
         return configPackageOrTargets;
     }
 
+    /**
+     * 重新设置生效的规则（规则转换为正则后的字符串，按顺序匹配），会重新构建 matcher；
+     * 限流类型和速率使用已经配置的相同规则的，没有配置过的规则匹配之后不进行限流
+     *
+     * @param configPackageOrTargets
+     */
     public void setConfigPackageOrTargets(Set<String> configPackageOrTargets) {
-        this.configPackageOrTargets = configPackageOrTargets;
-    }
+        LimitRuleMatcher current = ruleMatcher;
+        LimitRuleMatcher matcher = new LimitRuleMatcher();
+        if (configPackageOrTargets != null) {
+            for (String regex : configPackageOrTargets) {
+                matcher.addRegexRule(regex, current.getTypeAndRate(regex));
+            }
+        }
 
-    private static boolean match(String string, String regex) {
-        Pattern pattern = Pattern.compile(regex);
-        Matcher matcher = pattern.matcher(string);
-        return matcher.matches();
+        this.configPackageOrTargets = matcher.getRegexes();
+        this.ruleMatcher = matcher;
     }
 
     /**
@@ -196,6 +226,13 @@ public class LimiterManager {
         return limitConfig.isEnable();
     }
 
+    public void stop() {
+        // 归还集群限流中本节点租借但未使用的令牌
+        if (limitConfig.isClusterLeaseEnable()) {
+            RedisLeasedRateLimiter.returnAll();
+        }
+    }
+
     public void processFallback(String resource, String fallback, Invocation inv) {
         fallbackProcesser.process(resource, fallback, inv);
     }
@@ -0,0 +1,265 @@
+/**
+ * Copyright (c) 2015-2021, Michael Yang 杨福海 (fuhai999@gmail.com).
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.jboot.components.limiter.redis;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.jfinal.log.Log;
+import io.jboot.support.metric.JbootMetricManager;
+import io.jboot.utils.NamedThreadFactory;
+import io.jboot.utils.StrUtil;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 批量租借令牌的集群限流
+ * <p>
+ * 每个节点一次从 redis 租借一批令牌，在本地通过 CAS 消费，本地令牌不足 1/4 时异步续租，
+ * 用完之后才同步访问 redis；当前时间窗口 redis 中的令牌被借完之后，直到窗口结束都不再访问 redis。
+ * 应用停止时，未使用的令牌会归还到当前窗口，供其他节点使用。
+ */
+public class RedisLeasedRateLimiter {
+
+    private static final Log LOG = Log.getLog(RedisLeasedRateLimiter.class);
+
+    private static final String KEY_SUFFIX = ":lease";
+
+    // KEYS[1]: 租借记录, ARGV: rate, periodSeconds, leaseSize, 新窗口的 id
+    // 返回 {租借到的数量, 窗口剩余毫秒数, 窗口 id}
+    private static final String LEASE_SCRIPT = "local c = redis.call('hget',KEYS[1],'c')" +
+            "\nlocal w" +
+            "\nif not c then" +
+            // 新的时间窗口
+            "\nw = ARGV[4]" +
+            "\nc = 0" +
+            "\nredis.call('hset',KEYS[1],'w',w)" +
+            "\nredis.call('expire',KEYS[1],ARGV[2])" +
+            "\nelse" +
+            "\nw = redis.call('hget',KEYS[1],'w')" +
+            "\nc = tonumber(c)" +
+            "\nend" +
+            "\nlocal n = tonumber(ARGV[1]) - c" +
+            "\nif n > tonumber(ARGV[3]) then" +
+            "\nn = tonumber(ARGV[3])" +
+            "\nend" +
+            "\nif n > 0 then" +
+            "\nredis.call('hincrby',KEYS[1],'c',n)" +
+            "\nelse" +
+            "\nn = 0" +
+            "\nend" +
+            "\nreturn {n, redis.call('pttl',KEYS[1]), w}";
+
+    // KEYS[1]: 租借记录, ARGV: 窗口 id, 归还数量；只归还到同一个时间窗口
+    private static final String RETURN_SCRIPT = "if redis.call('hget',KEYS[1],'w') ~= ARGV[1] then" +
+            "\nreturn 0" +
+            "\nend" +
+            "\nif redis.call('hincrby',KEYS[1],'c',-tonumber(ARGV[2])) < 0 then" +
+            "\nredis.call('hset',KEYS[1],'c',0)" +
+            "\nend" +
+            "\nreturn tonumber(ARGV[2])";
+
+    private static final Map<String, RedisLeasedRateLimiter> LIMITERS = new ConcurrentHashMap<>();
+
+    private static final ExecutorService REFILL_EXECUTOR = new ThreadPoolExecutor(1, 2
+            , 60L, TimeUnit.SECONDS
+            , new ArrayBlockingQueue<>(1000)
+            , new NamedThreadFactory("jboot-limit-lease", true)
+            , new ThreadPoolExecutor.AbortPolicy());
+
+    private static final Counter LEASED_COUNTER = createCounter("leased");
+    private static final Counter USED_COUNTER = createCounter("used");
+    private static final Counter RETURNED_COUNTER = createCounter("returned");
+
+
+    private final String key;
+    private final int rate;
+    private final int periodSeconds;
+    private final int leaseSize;
+    private final int refillThreshold;
+
+    private final AtomicInteger permits = new AtomicInteger();
+    private final AtomicBoolean refilling = new AtomicBoolean();
+
+    // 当前时间窗口的结束时间
+    private volatile long deadline;
+    private volatile String windowId;
+
+    // 当前时间窗口 redis 中已经没有令牌可以租借
+    private volatile boolean exhausted;
+
+
+    public static RedisLeasedRateLimiter get(String resource, int rate, int periodSeconds, int leaseSize) {
+        String cacheKey = resource + ":" + rate + ":" + periodSeconds;
+        RedisLeasedRateLimiter limiter = LIMITERS.get(cacheKey);
+        if (limiter == null) {
+            limiter = new RedisLeasedRateLimiter(resource, rate, periodSeconds, leaseSize);
+            RedisLeasedRateLimiter existLimiter = LIMITERS.putIfAbsent(cacheKey, limiter);
+            if (existLimiter != null) {
+                limiter = existLimiter;
+            }
+        }
+        return limiter;
+    }
+
+
+    /**
+     * 归还所有未使用的令牌，一般在应用停止的时候调用
+     */
+    public static void returnAll() {
+        for (RedisLeasedRateLimiter limiter : LIMITERS.values()) {
+            try {
+                limiter.returnPermits();
+            } catch (Exception ex) {
+                LOG.error(ex.toString(), ex);
+            }
+        }
+    }
+
+
+    public RedisLeasedRateLimiter(String resource, int rate, int periodSeconds, int leaseSize) {
+        this.key = resource + KEY_SUFFIX;
+        this.rate = rate;
+        this.periodSeconds = periodSeconds;
+        this.leaseSize = leaseSize > 0 ? Math.min(leaseSize, rate) : Math.max(rate / 10, 1);
+        this.refillThreshold = this.leaseSize / 4;
+    }
+
+
+    public boolean tryAcquire() {
+        if (System.currentTimeMillis() >= deadline) {
+            synchronized (this) {
+                if (System.currentTimeMillis() >= deadline) {
+                    // 上一个窗口的令牌已经作废
+                    permits.set(0);
+                    exhausted = false;
+                    lease();
+                }
+            }
+        }
+
+        if (acquireLocal()) {
+            return true;
+        }
+
+        if (exhausted) {
+            return false;
+        }
+
+        synchronized (this) {
+            if (permits.get() <= 0 && !exhausted) {
+                lease();
+            }
+        }
+        return acquireLocal();
+    }
+
+
+    private boolean acquireLocal() {
+        for (; ; ) {
+            int current = permits.get();
+            if (current <= 0) {
+                return false;
+            }
+            if (permits.compareAndSet(current, current - 1)) {
+                USED_COUNTER.inc();
+                if (current - 1 <= refillThreshold && !exhausted) {
+                    refillAsync();
+                }
+                return true;
+            }
+        }
+    }
+
+
+    private void refillAsync() {
+        if (!refilling.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            REFILL_EXECUTOR.execute(() -> {
+                try {
+                    synchronized (this) {
+                        if (!exhausted && permits.get() <= refillThreshold) {
+                            lease();
+                        }
+                    }
+                } catch (Exception ex) {
+                    LOG.error(ex.toString(), ex);
+                } finally {
+                    refilling.set(false);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            refilling.set(false);
+        }
+    }
+
+
+    /**
+     * 从 redis 租借一批令牌，需要在 synchronized 中调用
+     */
+    private void lease() {
+        List<Object> result = (List<Object>) RedisRateLimitUtil.evalScript(LEASE_SCRIPT, 1, key
+                , String.valueOf(rate), String.valueOf(periodSeconds), String.valueOf(leaseSize), StrUtil.uuid());
+
+        int count = ((Number) result.get(0)).intValue();
+        long ttl = ((Number) result.get(1)).longValue();
+        String newWindowId = String.valueOf(result.get(2));
+
+        if (newWindowId.equals(windowId)) {
+            permits.addAndGet(count);
+        } else {
+            permits.set(count);
+            windowId = newWindowId;
+        }
+
+        deadline = System.currentTimeMillis() + (ttl > 0 ? ttl : periodSeconds * 1000L);
+        exhausted = count < leaseSize;
+        LEASED_COUNTER.inc(count);
+    }
+
+
+    /**
+     * 把本地未使用的令牌归还到 redis 的当前窗口
+     */
+    public synchronized void returnPermits() {
+        int count = permits.getAndSet(0);
+        if (count <= 0 || windowId == null || System.currentTimeMillis() >= deadline) {
+            return;
+        }
+        Object returned = RedisRateLimitUtil.evalScript(RETURN_SCRIPT, 1, key, windowId, String.valueOf(count));
+        RETURNED_COUNTER.inc(((Number) returned).longValue());
+    }
+
+
+    public int getLeaseSize() {
+        return leaseSize;
+    }
+
+    public int getLocalPermits() {
+        return permits.get();
+    }
+
+
+    private static Counter createCounter(String name) {
+        MetricRegistry metricRegistry = JbootMetricManager.me().metric();
+        return metricRegistry == null ? new Counter() : metricRegistry.counter("jboot.limit.cluster." + name);
+    }
+}
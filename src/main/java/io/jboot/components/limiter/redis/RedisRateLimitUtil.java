@@ -15,10 +15,15 @@
  */
 package io.jboot.components.limiter.redis;
 
+import io.jboot.Jboot;
+import io.jboot.components.limiter.LimitConfig;
 import io.jboot.exception.JbootIllegalConfigException;
 import io.jboot.support.redis.JbootRedis;
 import io.jboot.support.redis.JbootRedisManager;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * 通过lua脚本来进行限次
  */
@@ -38,6 +43,9 @@ public class RedisRateLimitUtil {
             "\nend" +
             "\nreturn c;";
 
+    // 脚本内容 -> 脚本在 redis 中的 sha1
+    private static final Map<String, String> SCRIPT_SHA1S = new ConcurrentHashMap<>();
+
     private static JbootRedis redis;
 
     /**
@@ -49,6 +57,8 @@ public class RedisRateLimitUtil {
 
     /**
      * 尝试是否能正常执行
+     * 开启 jboot.limit.clusterLeaseEnable 并且 rate 大于 jboot.limit.clusterPreciseMaxRate 时，
+     * 通过批量租借令牌的方式限流，否则每次都访问 redis 进行精确的限流
      *
      * @param resource      资源名
      * @param rate          限制次数
@@ -57,13 +67,59 @@ public class RedisRateLimitUtil {
      * false 限次，禁止
      */
     public static boolean tryAcquire(String resource, int rate, int periodSeconds) {
+        LimitConfig config = Jboot.config(LimitConfig.class);
+        if (config.isClusterLeaseEnable() && rate > config.getClusterPreciseMaxRate()) {
+            return RedisLeasedRateLimiter.get(resource, rate, periodSeconds, config.getClusterLeaseSize()).tryAcquire();
+        }
+        return tryAcquirePrecisely(resource, rate, periodSeconds);
+    }
+
+    /**
+     * 每次都访问 redis 进行限流
+     */
+    public static boolean tryAcquirePrecisely(String resource, int rate, int periodSeconds) {
+        Long count = (Long) evalScript(RATE_LIMIT_SCRIPT, 1, resource, String.valueOf(rate), String.valueOf(periodSeconds));
+        return count <= rate;
+    }
+
+
+    /**
+     * 通过 evalsha 执行脚本，脚本只会传输一次；redis 重启等原因导致脚本丢失时，会重新加载
+     */
+    static Object evalScript(String script, int keyCount, String... params) {
+        JbootRedis redis = getRedis();
+        String sha1 = SCRIPT_SHA1S.get(script);
+        if (sha1 == null) {
+            sha1 = redis.scriptLoad(script);
+
+            // 部分 redis 实现不支持 scriptLoad
+            if (sha1 == null) {
+                return redis.eval(script, keyCount, params);
+            }
+            SCRIPT_SHA1S.put(script, sha1);
+        }
+
+        try {
+            return redis.evalsha(sha1, keyCount, params);
+        } catch (RuntimeException ex) {
+            // 不依赖具体 redis 客户端的异常类型
+            if (ex.getMessage() == null || !ex.getMessage().startsWith("NOSCRIPT")) {
+                throw ex;
+            }
+            sha1 = redis.scriptLoad(script);
+            SCRIPT_SHA1S.put(script, sha1);
+            return redis.evalsha(sha1, keyCount, params);
+        }
+    }
+
+
+    private static JbootRedis getRedis() {
         if (redis == null) {
             redis = JbootRedisManager.me().getRedis();
             if (redis == null) {
                 throw new JbootIllegalConfigException("Redis config not well, can not use LimitScope.CLUSTER in @EnableLimit() ");
             }
         }
-        Long count = (Long) redis.eval(RATE_LIMIT_SCRIPT, 1, resource, String.valueOf(rate), String.valueOf(periodSeconds));
-        return count <= rate;
+        return redis;
     }
 }
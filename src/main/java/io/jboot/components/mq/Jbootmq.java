@@ -16,6 +16,7 @@
 package io.jboot.components.mq;
 
 import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
 
 
 public interface Jbootmq {
@@ -24,6 +25,39 @@ public interface Jbootmq {
 
     public void publish(Object message, String toChannel);
 
+    /**
+     * 批量 enqueue，mq 支持的情况下会一次性发送（例如 redis 的多值 LPUSH、rocketmq 的批量消息），
+     * 默认逐条 enqueue
+     */
+    public default void enqueueAll(Collection messages, String toChannel) {
+        for (Object message : messages) {
+            enqueue(message, toChannel);
+        }
+    }
+
+    /**
+     * 批量 publish，mq 支持的情况下会一次性发送，默认逐条 publish
+     */
+    public default void publishAll(Collection messages, String toChannel) {
+        for (Object message : messages) {
+            publish(message, toChannel);
+        }
+    }
+
+    /**
+     * 异步批量 enqueue，多次调用之间不保证顺序
+     */
+    public default CompletableFuture<Void> enqueueAllAsync(Collection messages, String toChannel) {
+        return CompletableFuture.runAsync(() -> enqueueAll(messages, toChannel), JbootmqSendExecutor.get());
+    }
+
+    /**
+     * 异步批量 publish，多次调用之间不保证顺序
+     */
+    public default CompletableFuture<Void> publishAllAsync(Collection messages, String toChannel) {
+        return CompletableFuture.runAsync(() -> publishAll(messages, toChannel), JbootmqSendExecutor.get());
+    }
+
     public void addMessageListener(JbootmqMessageListener listener);
 
     public void addMessageListener(JbootmqMessageListener listener, String forChannel);
@@ -23,13 +23,16 @@ import io.jboot.Jboot;
 import io.jboot.components.serializer.JbootSerializer;
 import io.jboot.components.serializer.JbootSerializerManager;
 import io.jboot.exception.JbootException;
-import io.jboot.utils.NamedThreadFactory;
 import io.jboot.utils.StrUtil;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 
 public abstract class JbootmqBase implements Jbootmq {
@@ -45,9 +48,7 @@ public abstract class JbootmqBase implements Jbootmq {
     protected JbootSerializer serializer;
 
 
-    private final ExecutorService threadPool = new ThreadPoolExecutor(0, Integer.MAX_VALUE,
-            60L, TimeUnit.SECONDS,
-            new SynchronousQueue<>(), new NamedThreadFactory("jbootmq"));
+    private final JbootmqDispatcher dispatcher = new JbootmqDispatcher(config);
 
 
     public JbootmqBase() {
@@ -107,14 +108,55 @@ public abstract class JbootmqBase implements Jbootmq {
     }
 
     public void notifyListeners(String channel, Object message) {
+        notifyMessages(channel, Collections.singletonList(message), null);
+    }
+
 
-        boolean globalResult = notifyListeners(channel, message, globalListeners);
-        boolean channelResult = notifyListeners(channel, message, channelListeners.get(channel));
+    /**
+     * 通知一批消息，JbootmqBatchMessageListener 一次收到整批消息，其他监听器逐条收到
+     */
+    public void notifyMessages(String channel, List<Object> messages) {
+        notifyMessages(channel, messages, null);
+    }
 
-        if (!globalResult && !channelResult) {
+
+    /**
+     * 通知一批消息
+     *
+     * @param channel
+     * @param messages
+     * @param callback 所有监听器都执行完成之后的回调，参数为监听器执行出错的消息在 messages 中的下标，
+     *                 例如在回调里只 ack 执行成功的消息，可以为 null
+     */
+    protected void notifyMessages(String channel, List<Object> messages, Consumer<Set<Integer>> callback) {
+        // 复制一份，保证计算的任务数量与实际执行的一致
+        List<JbootmqMessageListener> globals = new ArrayList<>(globalListeners);
+        List<JbootmqMessageListener> listeners = new ArrayList<>(channelListeners.get(channel));
+        int taskCount = countTasks(globals, messages) + countTasks(listeners, messages);
+
+        if (taskCount == 0) {
             LOG.error("Application has recevied mq message, But has no listener to process it. channel:" +
-                    channel + "  message:" + message);
+                    channel + "  message:" + (messages.size() == 1 ? messages.get(0) : messages));
+            if (callback != null) {
+                callback.accept(Collections.emptySet());
+            }
+            return;
+        }
+
+        Runnable done = null;
+        Set<Integer> failed = null;
+        if (callback != null) {
+            AtomicInteger remaining = new AtomicInteger(taskCount);
+            Set<Integer> failedIndexes = ConcurrentHashMap.newKeySet();
+            done = () -> {
+                if (remaining.decrementAndGet() == 0) {
+                    callback.accept(failedIndexes);
+                }
+            };
+            failed = failedIndexes;
         }
+        dispatch(channel, messages, globals, failed, done);
+        dispatch(channel, messages, listeners, failed, done);
     }
 
 
@@ -122,25 +164,91 @@ public abstract class JbootmqBase implements Jbootmq {
         if (listeners == null || listeners.size() == 0) {
             return false;
         }
+        dispatch(channel, Collections.singletonList(message), listeners, null, null);
+        return true;
+    }
 
-        if (syncRecevieMessageChannels.contains(channel)) {
-            for (JbootmqMessageListener listener : listeners) {
-                try {
-                    listener.onMessage(channel, message);
-                } catch (Throwable ex) {
-                    LOG.warn("listener[" + listener.getClass().getName() + "] execute mq message is error. channel:" +
-                            channel + "  message:" + message);
-                }
+
+    /**
+     * @param failed 记录执行出错的消息下标，可以为 null
+     * @param done   每个任务执行完成（包括出错）之后执行，可以为 null
+     */
+    private void dispatch(String channel, List<Object> messages, Collection<JbootmqMessageListener> listeners
+            , Set<Integer> failed, Runnable done) {
+        if (listeners == null || listeners.isEmpty()) {
+            return;
+        }
+
+        boolean sync = syncRecevieMessageChannels.contains(channel);
+        for (JbootmqMessageListener listener : listeners) {
+            if (listener instanceof JbootmqBatchMessageListener && messages.size() > 1) {
+                execute(channel, channel, sync, done, () -> {
+                    try {
+                        ((JbootmqBatchMessageListener) listener).onMessages(channel, messages);
+                    } catch (Throwable ex) {
+                        if (failed != null) {
+                            for (int i = 0; i < messages.size(); i++) {
+                                failed.add(i);
+                            }
+                        }
+                        LOG.warn("listener[" + listener.getClass().getName() + "] execute mq messages is error. channel:" +
+                                channel + "  messages:" + messages, ex);
+                    }
+                });
+                continue;
             }
-        } else {
-            for (JbootmqMessageListener listener : listeners) {
-                threadPool.execute(() -> {
-                    listener.onMessage(channel, message);
+
+            for (int i = 0; i < messages.size(); i++) {
+                int index = i;
+                Object message = messages.get(i);
+                Object key = message instanceof JbootmqKeyedMessage ? ((JbootmqKeyedMessage) message).getMessageKey() : null;
+                execute(channel, key != null ? key : channel, sync, done, () -> {
+                    try {
+                        listener.onMessage(channel, message);
+                    } catch (Throwable ex) {
+                        if (failed != null) {
+                            failed.add(index);
+                        }
+                        LOG.warn("listener[" + listener.getClass().getName() + "] execute mq message is error. channel:" +
+                                channel + "  message:" + message, ex);
+                    }
                 });
             }
         }
+    }
 
-        return true;
+
+    private void execute(String channel, Object key, boolean sync, Runnable done, Runnable task) {
+        Runnable runnable = done == null ? task : () -> {
+            try {
+                task.run();
+            } finally {
+                done.run();
+            }
+        };
+
+        if (sync) {
+            runnable.run();
+        } else {
+            dispatcher.execute(channel, key, runnable);
+        }
+    }
+
+
+    private static int countTasks(Collection<JbootmqMessageListener> listeners, List<Object> messages) {
+        if (listeners == null) {
+            return 0;
+        }
+        int count = 0;
+        for (JbootmqMessageListener listener : listeners) {
+            count += listener instanceof JbootmqBatchMessageListener && messages.size() > 1 ? 1 : messages.size();
+        }
+        return count;
+    }
+
+
+    public JbootmqDispatcher getDispatcher() {
+        return dispatcher;
     }
 
 
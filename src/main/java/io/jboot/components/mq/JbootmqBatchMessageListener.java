@@ -0,0 +1,31 @@
+/**
+ * Copyright (c) 2015-2021, Michael Yang 杨福海 (fuhai999@gmail.com).
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.jboot.components.mq;
+
+import java.util.List;
+
+/**
+ * 批量接收消息的监听器，mq 一次接收到多条消息时（例如 redis mq 批量出队），
+ * 通过 onMessages 一次性收到这批消息，单条消息依然通过 onMessage 收到
+ */
+public interface JbootmqBatchMessageListener extends JbootmqMessageListener {
+
+    /**
+     * @param channel  of topic
+     * @param messages topic messages
+     */
+    void onMessages(String channel, List<Object> messages);
+}
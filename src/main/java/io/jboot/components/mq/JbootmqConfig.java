@@ -22,6 +22,7 @@ import io.jboot.utils.StrUtil;
 @ConfigModel(prefix = "jboot.mq")
 public class JbootmqConfig {
     public static final String TYPE_REDIS = "redis";
+    public static final String TYPE_REDIS_STREAM = "redisstream";
     public static final String TYPE_ACTIVEMQ = "activemq";
     public static final String TYPE_ALIYUNMQ = "aliyunmq";
     public static final String TYPE_RABBITMQ = "rabbitmq";
@@ -34,6 +35,12 @@ public class JbootmqConfig {
     private String syncRecevieMessageChannel; //可同步接收消息的 channel 配置
     private String serializer;
 
+    private String dispatchPolicy = JbootmqDispatcher.POLICY_BOUNDED; //监听器的执行策略：bounded 或者 virtual（需要 JDK 21+）
+    private int dispatchThreads = 0; //bounded 策略的线程数量，小于等于 0 时为 CPU 核数 * 4
+    private int dispatchQueueSize = 10000; //等待执行的最大数量，超出后由接收消息的线程自己执行（virtual 策略为等待），从而暂停接收消息
+    private String orderedChannel; //按顺序执行监听器的 channel，同一个 channel（或者同一个 JbootmqKeyedMessage 的 key）的消息按接收顺序依次执行
+    private int orderedThreads = 8; //按顺序执行的线程数量
+
     public String getChannel() {
         return channel;
     }
@@ -67,6 +74,46 @@ public class JbootmqConfig {
         this.syncRecevieMessageChannel = syncRecevieMessageChannel;
     }
 
+    public String getDispatchPolicy() {
+        return dispatchPolicy;
+    }
+
+    public void setDispatchPolicy(String dispatchPolicy) {
+        this.dispatchPolicy = dispatchPolicy;
+    }
+
+    public int getDispatchThreads() {
+        return dispatchThreads;
+    }
+
+    public void setDispatchThreads(int dispatchThreads) {
+        this.dispatchThreads = dispatchThreads;
+    }
+
+    public int getDispatchQueueSize() {
+        return dispatchQueueSize;
+    }
+
+    public void setDispatchQueueSize(int dispatchQueueSize) {
+        this.dispatchQueueSize = dispatchQueueSize;
+    }
+
+    public String getOrderedChannel() {
+        return orderedChannel;
+    }
+
+    public void setOrderedChannel(String orderedChannel) {
+        this.orderedChannel = orderedChannel;
+    }
+
+    public int getOrderedThreads() {
+        return orderedThreads;
+    }
+
+    public void setOrderedThreads(int orderedThreads) {
+        this.orderedThreads = orderedThreads;
+    }
+
     public boolean isConfigOk(){
         return StrUtil.isNotEmpty(type);
     }
@@ -0,0 +1,248 @@
+/**
+ * Copyright (c) 2015-2021, Michael Yang 杨福海 (fuhai999@gmail.com).
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.jboot.components.mq;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.jfinal.log.Log;
+import io.jboot.Jboot;
+import io.jboot.utils.NamedThreadFactory;
+import io.jboot.utils.StrUtil;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * mq 监听器的执行器
+ * <p>
+ * bounded：固定数量的线程 + 有界队列，队列满了之后由接收消息的线程自己执行，从而暂停接收消息
+ * virtual：JDK 21+ 的虚拟线程，最多同时执行 dispatchQueueSize 个，超出后接收消息的线程等待
+ * orderedChannel：按 key（默认为 channel）把消息分配到单线程的执行队列，相同 key 的消息按顺序执行，
+ * 队列满了之后接收消息的线程等待；在顺序执行的线程里再次提交的消息直接进入对应的队列，不等待也不在当前线程执行
+ */
+public class JbootmqDispatcher {
+
+    private static final Log LOG = Log.getLog(JbootmqDispatcher.class);
+
+    public static final String POLICY_BOUNDED = "bounded";
+    public static final String POLICY_VIRTUAL = "virtual";
+
+    // 当前线程是否是顺序执行的线程，用于在监听器里再次发送消息时避免等待自己（或者互相等待）
+    private static final ThreadLocal<Boolean> IN_ORDERED_THREAD = new ThreadLocal<>();
+
+    private final Executor executor;
+    private final Semaphore virtualPermits;
+    private final ThreadPoolExecutor[] orderedExecutors;
+    // 每个顺序执行队列可以等待的数量
+    private final Semaphore[] orderedPermits;
+    private final Set<String> orderedChannels = new HashSet<>();
+
+    // 已提交、未执行完成的数量
+    private final AtomicInteger pendingCount = new AtomicInteger();
+
+    private final Map<String, Timer> processTimers = new ConcurrentHashMap<>();
+    private final Timer waitTimer;
+    private final MetricRegistry metricRegistry = Jboot.getMetric();
+
+
+    public JbootmqDispatcher(JbootmqConfig config) {
+        int queueSize = Math.max(config.getDispatchQueueSize(), 1);
+
+        Executor virtualExecutor = POLICY_VIRTUAL.equals(config.getDispatchPolicy()) ? createVirtualExecutor() : null;
+        if (virtualExecutor != null) {
+            executor = virtualExecutor;
+            virtualPermits = new Semaphore(queueSize);
+        } else {
+            int threads = config.getDispatchThreads() > 0
+                    ? config.getDispatchThreads()
+                    : Runtime.getRuntime().availableProcessors() * 4;
+            ThreadPoolExecutor threadPool = new ThreadPoolExecutor(threads, threads,
+                    60L, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(queueSize),
+                    new NamedThreadFactory("jbootmq"),
+                    new ThreadPoolExecutor.CallerRunsPolicy());
+            threadPool.allowCoreThreadTimeOut(true);
+            executor = threadPool;
+            virtualPermits = null;
+        }
+
+        if (StrUtil.isNotBlank(config.getOrderedChannel())) {
+            orderedChannels.addAll(StrUtil.splitToSet(config.getOrderedChannel(), ","));
+            orderedExecutors = new ThreadPoolExecutor[Math.max(config.getOrderedThreads(), 1)];
+            orderedPermits = new Semaphore[orderedExecutors.length];
+            int laneQueueSize = Math.max(queueSize / orderedExecutors.length, 1);
+            NamedThreadFactory threadFactory = new NamedThreadFactory("jbootmq-ordered");
+            for (int i = 0; i < orderedExecutors.length; i++) {
+                // 队列的长度由 orderedPermits 限制，顺序执行的线程提交时不受限制
+                orderedExecutors[i] = new ThreadPoolExecutor(1, 1,
+                        0L, TimeUnit.MILLISECONDS,
+                        new LinkedBlockingQueue<>(),
+                        threadFactory);
+                orderedPermits[i] = new Semaphore(laneQueueSize);
+            }
+        } else {
+            orderedExecutors = null;
+            orderedPermits = null;
+        }
+
+        if (metricRegistry != null) {
+            waitTimer = metricRegistry.timer("jboot.mq.dispatch.wait");
+            try {
+                metricRegistry.register("jboot.mq.dispatch.pending", (Gauge<Integer>) pendingCount::get);
+            } catch (IllegalArgumentException ex) {
+                // 已经注册过了
+            }
+        } else {
+            waitTimer = null;
+        }
+    }
+
+
+    /**
+     * 执行监听器
+     *
+     * @param channel
+     * @param key     顺序执行时的 key
+     * @param task
+     */
+    public void execute(String channel, Object key, Runnable task) {
+        Runnable wrapped = wrap(channel, task);
+        pendingCount.incrementAndGet();
+
+        if (orderedExecutors != null && orderedChannels.contains(channel)) {
+            executeOrdered((key.hashCode() & Integer.MAX_VALUE) % orderedExecutors.length, wrapped);
+            return;
+        }
+
+        if (virtualPermits != null) {
+            virtualPermits.acquireUninterruptibly();
+            try {
+                executor.execute(() -> {
+                    try {
+                        wrapped.run();
+                    } finally {
+                        virtualPermits.release();
+                    }
+                });
+            } catch (RejectedExecutionException ex) {
+                virtualPermits.release();
+                pendingCount.decrementAndGet();
+                throw ex;
+            }
+            return;
+        }
+
+        executor.execute(wrapped);
+    }
+
+
+    public boolean isOrderedChannel(String channel) {
+        return orderedExecutors != null && orderedChannels.contains(channel);
+    }
+
+
+    public int getPendingCount() {
+        return pendingCount.get();
+    }
+
+
+    private Runnable wrap(String channel, Runnable task) {
+        if (metricRegistry == null) {
+            return () -> {
+                try {
+                    task.run();
+                } finally {
+                    pendingCount.decrementAndGet();
+                }
+            };
+        }
+
+        long submitTime = System.nanoTime();
+        Timer processTimer = getProcessTimer(channel);
+        return () -> {
+            long startTime = System.nanoTime();
+            waitTimer.update(startTime - submitTime, TimeUnit.NANOSECONDS);
+            try {
+                task.run();
+            } finally {
+                processTimer.update(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+                pendingCount.decrementAndGet();
+            }
+        };
+    }
+
+
+    private Timer getProcessTimer(String channel) {
+        Timer timer = processTimers.get(channel);
+        if (timer == null) {
+            timer = metricRegistry.timer("jboot.mq." + channel + ".process");
+            processTimers.put(channel, timer);
+        }
+        return timer;
+    }
+
+
+    /**
+     * 提交到顺序执行的队列，队列满了之后等待队列空出位置，不能由当前线程执行，否则会打乱顺序；
+     * 顺序执行的线程不等待，直接进入队列，避免等待自己或者多个队列之间互相等待
+     */
+    private void executeOrdered(int index, Runnable wrapped) {
+        Semaphore permits = orderedPermits[index];
+        boolean needPermit = !Boolean.TRUE.equals(IN_ORDERED_THREAD.get());
+        if (needPermit) {
+            try {
+                permits.acquire();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                pendingCount.decrementAndGet();
+                throw new RejectedExecutionException(ex);
+            }
+        }
+
+        try {
+            orderedExecutors[index].execute(() -> {
+                if (needPermit) {
+                    permits.release();
+                }
+                IN_ORDERED_THREAD.set(Boolean.TRUE);
+                wrapped.run();
+            });
+        } catch (RejectedExecutionException ex) {
+            if (needPermit) {
+                permits.release();
+            }
+            pendingCount.decrementAndGet();
+            throw ex;
+        }
+    }
+
+
+    /**
+     * 通过反射创建虚拟线程的执行器，JDK 21 之前的版本返回 null
+     */
+    private static Executor createVirtualExecutor() {
+        try {
+            return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (Exception ex) {
+            LOG.warn("virtual thread is not supported in current jdk, use bounded dispatch policy instead.");
+            return null;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+/**
+ * Copyright (c) 2015-2021, Michael Yang 杨福海 (fuhai999@gmail.com).
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.jboot.components.mq;
+
+/**
+ * 带有 key 的消息，在配置了 jboot.mq.orderedChannel 的 channel 中，相同 key 的消息按接收顺序依次执行，
+ * 不同 key 的消息可以并行执行；未实现该接口的消息，以 channel 作为 key
+ */
+public interface JbootmqKeyedMessage {
+
+    Object getMessageKey();
+}
@@ -21,6 +21,7 @@ import io.jboot.components.mq.local.JbootLocalmqImpl;
 import io.jboot.components.mq.qpidmq.JbootQpidmqImpl;
 import io.jboot.components.mq.rabbitmq.JbootRabbitmqImpl;
 import io.jboot.components.mq.redismq.JbootRedismqImpl;
+import io.jboot.components.mq.redisstreammq.JbootRedisStreammqImpl;
 import io.jboot.components.mq.rocketmq.JbootRocketmqImpl;
 import io.jboot.core.spi.JbootSpiLoader;
 import io.jboot.utils.ClassUtil;
@@ -64,6 +65,8 @@ public class JbootmqManager {
         switch (config.getType()) {
             case JbootmqConfig.TYPE_REDIS:
                 return new JbootRedismqImpl();
+            case JbootmqConfig.TYPE_REDIS_STREAM:
+                return new JbootRedisStreammqImpl();
             case JbootmqConfig.TYPE_ALIYUNMQ:
                 return new JbootAliyunmqImpl();
             case JbootmqConfig.TYPE_RABBITMQ:
@@ -24,6 +24,7 @@ import io.jboot.exception.JbootException;
 import io.jboot.utils.StrUtil;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -33,6 +34,8 @@ import java.util.concurrent.ConcurrentHashMap;
 public class JbootRabbitmqImpl extends JbootmqBase implements Jbootmq {
 
 
+    private static final long CONFIRM_TIMEOUT_MILLIS = 30000;
+
     private Connection connection;
     private Map<String, Channel> channelMap = new ConcurrentHashMap<>();
 
@@ -106,6 +109,7 @@ public class JbootRabbitmqImpl extends JbootmqBase implements Jbootmq {
 
     private synchronized Channel getChannel(String toChannel, boolean queueMode) {
 
+        // 同一个 channel 名称的队列模式和广播模式分别缓存，读取和放入时必须使用相同的 key
         Channel channel = channelMap.get(toChannel + queueMode);
         if (channel == null) {
             try {
@@ -128,7 +132,7 @@ public class JbootRabbitmqImpl extends JbootmqBase implements Jbootmq {
             }
 
             if (channel != null) {
-                channelMap.put(toChannel, channel);
+                channelMap.put(toChannel + queueMode, channel);
             }
         }
 
@@ -164,4 +168,46 @@ public class JbootRabbitmqImpl extends JbootmqBase implements Jbootmq {
     }
 
 
+    @Override
+    public void enqueueAll(Collection messages, String toChannel) {
+        // 确保队列已经定义
+        getChannel(toChannel, true);
+        publishWithConfirms(messages, "", toChannel);
+    }
+
+
+    @Override
+    public void publishAll(Collection messages, String toChannel) {
+        // 确保交换机已经定义
+        getChannel(toChannel, false);
+        publishWithConfirms(messages, toChannel, "");
+    }
+
+
+    /**
+     * 在独立的 channel 中开启发布确认，全部发送之后再一次性等待 broker 确认，而不是每条消息等待一次
+     */
+    private void publishWithConfirms(Collection messages, String exchange, String routingKey) {
+        Channel channel = null;
+        try {
+            channel = connection.createChannel();
+            channel.confirmSelect();
+            for (Object message : messages) {
+                channel.basicPublish(exchange, routingKey, MessageProperties.BASIC, getSerializer().serialize(message));
+            }
+            channel.waitForConfirmsOrDie(CONFIRM_TIMEOUT_MILLIS);
+        } catch (Exception ex) {
+            throw new JbootException("Can not publish messages to rabbitmq.", ex);
+        } finally {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (Exception e) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+
 }
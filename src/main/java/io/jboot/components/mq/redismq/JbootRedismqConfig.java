@@ -22,5 +22,32 @@ import io.jboot.support.redis.JbootRedisConfig;
 @ConfigModel(prefix = "jboot.mq.redis")
 public class JbootRedismqConfig extends JbootRedisConfig {
 
+    /**
+     * 每次最多出队的消息数量
+     */
+    private int dequeueBatchSize = 100;
 
+    /**
+     * 队列为空时，BRPOP 阻塞等待的时长，单位：秒
+     * <p>
+     * redis 集群下 BRPOP 的多个 key 必须在同一个 slot，不同 slot 的 channel 会轮流阻塞等待 1 秒，
+     * 需要更低延迟时，可以通过 hash tag 让所有 channel 在同一个 slot，例如 {mq}order、{mq}user
+     */
+    private int dequeueTimeout = 5;
+
+    public int getDequeueBatchSize() {
+        return dequeueBatchSize;
+    }
+
+    public void setDequeueBatchSize(int dequeueBatchSize) {
+        this.dequeueBatchSize = dequeueBatchSize;
+    }
+
+    public int getDequeueTimeout() {
+        return dequeueTimeout;
+    }
+
+    public void setDequeueTimeout(int dequeueTimeout) {
+        this.dequeueTimeout = dequeueTimeout;
+    }
 }
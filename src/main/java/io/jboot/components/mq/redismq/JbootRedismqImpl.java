@@ -15,6 +15,9 @@
  */
 package io.jboot.components.mq.redismq;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
 import com.jfinal.log.Log;
 import io.jboot.Jboot;
 import io.jboot.components.mq.Jbootmq;
@@ -22,19 +25,31 @@ import io.jboot.components.mq.JbootmqBase;
 import io.jboot.exception.JbootIllegalConfigException;
 import io.jboot.support.redis.JbootRedis;
 import io.jboot.support.redis.JbootRedisManager;
+import io.jboot.support.redis.jedis.JbootJedisClusterImpl;
+import io.jboot.support.redis.jedis.JbootJedisImpl;
 import redis.clients.jedis.BinaryJedisPubSub;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.util.JedisClusterCRC16;
+
+import java.util.*;
 
 
 public class JbootRedismqImpl extends JbootmqBase implements Jbootmq, Runnable {
 
     private static final Log LOG = Log.getLog(JbootRedismqImpl.class);
 
+    private static final int SEND_BATCH_SIZE = 1000;
+
     private JbootRedis redis;
+    private JbootRedismqConfig redisConfig;
     private Thread dequeueThread;
 
+    private Map<String, Meter> dequeueMeters = new HashMap<>();
+
     public JbootRedismqImpl() {
         super();
-        JbootRedismqConfig redisConfig = Jboot.config(JbootRedismqConfig.class);
+        redisConfig = Jboot.config(JbootRedismqConfig.class);
         if (redisConfig.isConfigOk()) {
             redis = JbootRedisManager.me().getRedis(redisConfig);
         } else {
@@ -59,11 +74,32 @@ public class JbootRedismqImpl extends JbootmqBase implements Jbootmq, Runnable {
             }
         }, redis.keysToBytesArray(channels));
 
-        dequeueThread = new Thread(this,"redis-dequeue-thread");
+        for (String channel : channels) {
+            initConsumer(channel);
+        }
+
+        dequeueThread = new Thread(this, "redis-dequeue-thread");
         dequeueThread.start();
     }
 
 
+    private void initConsumer(String channel) {
+        MetricRegistry metricRegistry = Jboot.getMetric();
+        if (metricRegistry == null) {
+            dequeueMeters.put(channel, new Meter());
+            return;
+        }
+
+        String prefix = "jboot.mq.redis." + channel;
+        dequeueMeters.put(channel, metricRegistry.meter(prefix + ".dequeue"));
+        try {
+            metricRegistry.register(prefix + ".lag", (Gauge<Long>) () -> redis.llen(channel));
+        } catch (IllegalArgumentException ex) {
+            // 已经注册过了
+        }
+    }
+
+
     @Override
     public void enqueue(Object message, String toChannel) {
         redis.lpush(toChannel, message);
@@ -76,24 +112,131 @@ public class JbootRedismqImpl extends JbootmqBase implements Jbootmq, Runnable {
     }
 
 
+    @Override
+    public void enqueueAll(Collection messages, String toChannel) {
+        // 一个 LPUSH 命令发送多条消息，按批次拆分，避免单个命令过大
+        List<Object> values = new ArrayList<>(Math.min(messages.size(), SEND_BATCH_SIZE));
+        for (Object message : messages) {
+            values.add(message);
+            if (values.size() == SEND_BATCH_SIZE) {
+                redis.lpush(toChannel, values.toArray());
+                values.clear();
+            }
+        }
+        if (!values.isEmpty()) {
+            redis.lpush(toChannel, values.toArray());
+        }
+    }
+
+
+    @Override
+    public void publishAll(Collection messages, String toChannel) {
+        if (!(redis instanceof JbootJedisImpl)) {
+            super.publishAll(messages, toChannel);
+            return;
+        }
+
+        // 通过 pipeline 发送，只需要一次网络往返
+        JbootJedisImpl jedisImpl = (JbootJedisImpl) redis;
+        byte[] channel = redis.keyToBytes(toChannel);
+        Jedis jedis = jedisImpl.getJedis();
+        try {
+            Pipeline pipeline = jedis.pipelined();
+            for (Object message : messages) {
+                pipeline.publish(channel, getSerializer().serialize(message));
+            }
+            pipeline.sync();
+        } finally {
+            jedisImpl.returnResource(jedis);
+        }
+    }
+
+
     @Override
     public void run() {
+        String[] channels = this.channels.toArray(new String[]{});
+        List<String[]> blockingGroups = buildBlockingGroups(channels);
+        int offset = 0;
         for (; ; ) {
             try {
-                doExecuteDequeue();
-                Thread.sleep(1);
+                doExecuteDequeue(channels, blockingGroups, offset);
+                // offset 只用于轮换顺序，保持非负，避免长时间运行后溢出
+                offset = offset == Integer.MAX_VALUE ? 0 : offset + 1;
             } catch (Throwable ex) {
                 LOG.error(ex.toString(), ex);
+                try {
+                    // redis 出错时（例如断开连接）避免空转
+                    Thread.sleep(1000);
+                } catch (InterruptedException e) {
+                    return;
+                }
             }
         }
     }
 
-    private void doExecuteDequeue() {
-        for (String channel : this.channels) {
-            Object data = redis.lpop(channel);
-            if (data != null) {
-                notifyListeners(channel, data);
+
+    /**
+     * BRPOP 的 key 分组，redis 集群下多个 key 必须在同一个 slot，否则会出现 CROSSSLOT 错误
+     */
+    private List<String[]> buildBlockingGroups(String[] channels) {
+        if (!(redis instanceof JbootJedisClusterImpl)) {
+            return Collections.singletonList(channels);
+        }
+
+        Map<Integer, List<String>> slotChannels = new LinkedHashMap<>();
+        for (String channel : channels) {
+            slotChannels.computeIfAbsent(JedisClusterCRC16.getSlot(redis.keyToBytes(channel)), k -> new ArrayList<>()).add(channel);
+        }
+
+        List<String[]> groups = new ArrayList<>(slotChannels.size());
+        for (List<String> group : slotChannels.values()) {
+            groups.add(group.toArray(new String[0]));
+        }
+        return groups;
+    }
+
+
+    private void doExecuteDequeue(String[] channels, List<String[]> blockingGroups, int offset) {
+        int batchSize = Math.max(redisConfig.getDequeueBatchSize(), 1);
+        boolean hasMessage = false;
+
+        // 有积压的 channel 批量出队
+        for (String channel : channels) {
+            List<Object> messages = redis.rpop(channel, batchSize);
+            if (messages != null && !messages.isEmpty()) {
+                hasMessage = true;
+                dispatch(channel, messages);
             }
         }
+
+        if (hasMessage) {
+            return;
+        }
+
+        // 所有队列都为空，通过 BRPOP 阻塞等待，每次轮换 channel 的顺序，避免靠前的 channel 一直优先
+        // 有多个分组（集群下 channel 在不同的 slot）时，每次只在一个分组上等待 1 秒，其他分组在下一轮的 rpop 中检查
+        String[] group = blockingGroups.get(Math.floorMod(offset, blockingGroups.size()));
+        String[] keys = new String[group.length];
+        for (int i = 0; i < group.length; i++) {
+            keys[i] = group[Math.floorMod(i + offset, group.length)];
+        }
+
+        int timeout = blockingGroups.size() > 1 ? 1 : Math.max(redisConfig.getDequeueTimeout(), 1);
+        List<Object> result = redis.brpop(timeout, (Object[]) keys);
+        if (result != null && result.size() == 2) {
+            String channel = String.valueOf(result.get(0));
+            dispatch(channel, result.subList(1, 2));
+        }
+    }
+
+
+    private void dispatch(String channel, List<Object> messages) {
+        Meter meter = dequeueMeters.get(channel);
+        if (meter != null) {
+            meter.mark(messages.size());
+        }
+
+        // 执行监听器的线程池满了之后，由出队线程自己执行，从而暂停出队
+        notifyMessages(channel, messages);
     }
 }
@@ -0,0 +1,117 @@
+/**
+ * Copyright (c) 2015-2021, Michael Yang 杨福海 (fuhai999@gmail.com).
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.jboot.components.mq.redisstreammq;
+
+import io.jboot.app.config.annotation.ConfigModel;
+import io.jboot.support.redis.JbootRedisConfig;
+
+
+@ConfigModel(prefix = "jboot.mq.redisstream")
+public class JbootRedisStreammqConfig extends JbootRedisConfig {
+
+    /**
+     * 消费组的名称，同一个应用的多个实例使用相同的 group，enqueue 的消息在同一个 group 里只会被消费一次
+     * 不同的应用需要配置不同的 group
+     */
+    private String group = "jboot";
+
+    /**
+     * 消费者的名称，默认为 pid@hostname
+     */
+    private String consumer;
+
+    /**
+     * 每次最多读取的消息数量
+     */
+    private int readCount = 100;
+
+    /**
+     * 没有消息时阻塞等待的时长，单位：毫秒
+     */
+    private int blockMillis = 2000;
+
+    /**
+     * stream 保留的最大消息数量（MAXLEN ~），小于等于 0 时不裁剪
+     */
+    private long maxLen = 100000;
+
+    /**
+     * 其他消费者未 ack 的消息超过该时长后，会被当前消费者认领并重新处理，单位：毫秒
+     * 需要 redis 6.2 及以上版本（XAUTOCLAIM），小于等于 0 时不认领
+     */
+    private long claimIdleMillis = 60000;
+
+    /**
+     * 检查需要认领的消息的间隔，单位：毫秒
+     */
+    private long claimIntervalMillis = 30000;
+
+    public String getGroup() {
+        return group;
+    }
+
+    public void setGroup(String group) {
+        this.group = group;
+    }
+
+    public String getConsumer() {
+        return consumer;
+    }
+
+    public void setConsumer(String consumer) {
+        this.consumer = consumer;
+    }
+
+    public int getReadCount() {
+        return readCount;
+    }
+
+    public void setReadCount(int readCount) {
+        this.readCount = readCount;
+    }
+
+    public int getBlockMillis() {
+        return blockMillis;
+    }
+
+    public void setBlockMillis(int blockMillis) {
+        this.blockMillis = blockMillis;
+    }
+
+    public long getMaxLen() {
+        return maxLen;
+    }
+
+    public void setMaxLen(long maxLen) {
+        this.maxLen = maxLen;
+    }
+
+    public long getClaimIdleMillis() {
+        return claimIdleMillis;
+    }
+
+    public void setClaimIdleMillis(long claimIdleMillis) {
+        this.claimIdleMillis = claimIdleMillis;
+    }
+
+    public long getClaimIntervalMillis() {
+        return claimIntervalMillis;
+    }
+
+    public void setClaimIntervalMillis(long claimIntervalMillis) {
+        this.claimIntervalMillis = claimIntervalMillis;
+    }
+}
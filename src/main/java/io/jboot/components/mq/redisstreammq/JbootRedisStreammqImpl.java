@@ -0,0 +1,486 @@
+/**
+ * Copyright (c) 2015-2021, Michael Yang 杨福海 (fuhai999@gmail.com).
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.jboot.components.mq.redisstreammq;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.jfinal.log.Log;
+import io.jboot.Jboot;
+import io.jboot.components.mq.Jbootmq;
+import io.jboot.components.mq.JbootmqBase;
+import io.jboot.exception.JbootIllegalConfigException;
+import io.jboot.support.redis.JbootRedis;
+import io.jboot.support.redis.JbootRedisManager;
+import io.jboot.support.redis.jedis.JbootJedisImpl;
+import io.jboot.utils.StrUtil;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.params.XAddParams;
+import redis.clients.jedis.params.XAutoClaimParams;
+import redis.clients.jedis.params.XReadGroupParams;
+import redis.clients.jedis.params.XReadParams;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 基于 Redis Streams 的 mq
+ * <p>
+ * enqueue：XADD 到 channel 对应的 stream，通过消费组（XREADGROUP）消费，所有监听器执行成功后才 XACK，
+ * 监听器出错的消息不 ack，和节点宕机时未 ack 的消息一样，会通过 XAUTOCLAIM 被认领并重新处理，至少投递一次
+ * <p>
+ * publish：XADD 到 channel + ":publish" 的 stream，每个节点通过 XREAD 从启动时 stream 的最后一条消息之后开始读取，
+ * 连接断开期间的消息在重连后依然可以收到
+ */
+public class JbootRedisStreammqImpl extends JbootmqBase implements Jbootmq {
+
+    private static final Log LOG = Log.getLog(JbootRedisStreammqImpl.class);
+
+    private static final byte[] MESSAGE_FIELD = "m".getBytes();
+    private static final byte[] NEW_MESSAGE_ID = ">".getBytes();
+    private static final String PUBLISH_SUFFIX = ":publish";
+    private static final String START_ID = "0-0";
+    private static final byte[] MAX_ID = "+".getBytes();
+    private static final byte[] MIN_ID = "-".getBytes();
+
+    private JbootJedisImpl redis;
+    private JbootRedisStreammqConfig streamConfig;
+    private byte[] group;
+    private byte[] consumer;
+
+    // 已经处理完成，等待 ack 的消息 id
+    private Map<String, Queue<byte[]>> pendingAcks = new HashMap<>();
+
+    // 已经交给本节点的监听器、还没有 ack 成功的消息 id，认领消息时需要跳过，避免重复投递
+    private Map<String, Set<String>> inflightIds = new HashMap<>();
+
+    private Map<String, Meter> dequeueMeters = new HashMap<>();
+
+    // publish 的 stream 最后读取到的消息 id
+    private Map<String, byte[]> publishLastIds = new LinkedHashMap<>();
+
+    private long lastClaimTime = System.currentTimeMillis();
+    private boolean claimSupported = true;
+
+    public JbootRedisStreammqImpl() {
+        super();
+        streamConfig = Jboot.config(JbootRedisStreammqConfig.class);
+
+        JbootRedis jbootRedis = streamConfig.isConfigOk()
+                ? JbootRedisManager.me().getRedis(streamConfig)
+                : Jboot.getRedis();
+
+        if (jbootRedis == null) {
+            throw new JbootIllegalConfigException("can not use redis stream mq, " +
+                    "please config jboot.mq.redisstream.host=your-host or jboot.redis.host=your-host.");
+        }
+
+        if (!(jbootRedis instanceof JbootJedisImpl)) {
+            throw new JbootIllegalConfigException("redis stream mq only support jedis with single redis server now.");
+        }
+
+        redis = (JbootJedisImpl) jbootRedis;
+        group = streamConfig.getGroup().getBytes();
+        consumer = (StrUtil.isNotBlank(streamConfig.getConsumer())
+                ? streamConfig.getConsumer()
+                : ManagementFactory.getRuntimeMXBean().getName()).getBytes();
+    }
+
+
+    @Override
+    public void enqueue(Object message, String toChannel) {
+        xadd(toChannel, message);
+    }
+
+
+    @Override
+    public void publish(Object message, String toChannel) {
+        xadd(toChannel + PUBLISH_SUFFIX, message);
+    }
+
+
+    @Override
+    public void enqueueAll(Collection messages, String toChannel) {
+        xaddAll(toChannel, messages);
+    }
+
+
+    @Override
+    public void publishAll(Collection messages, String toChannel) {
+        xaddAll(toChannel + PUBLISH_SUFFIX, messages);
+    }
+
+
+    private void xadd(String key, Object message) {
+        Map<byte[], byte[]> hash = Collections.singletonMap(MESSAGE_FIELD, getSerializer().serialize(message));
+        Jedis jedis = redis.getJedis();
+        try {
+            jedis.xadd(redis.keyToBytes(key), hash, buildXAddParams());
+        } finally {
+            redis.returnResource(jedis);
+        }
+    }
+
+
+    /**
+     * 通过 pipeline 批量 XADD，只需要一次网络往返
+     */
+    private void xaddAll(String key, Collection messages) {
+        byte[] keyBytes = redis.keyToBytes(key);
+        XAddParams params = buildXAddParams();
+        Jedis jedis = redis.getJedis();
+        try {
+            Pipeline pipeline = jedis.pipelined();
+            for (Object message : messages) {
+                pipeline.xadd(keyBytes, Collections.singletonMap(MESSAGE_FIELD, getSerializer().serialize(message)), params);
+            }
+            pipeline.sync();
+        } finally {
+            redis.returnResource(jedis);
+        }
+    }
+
+
+    private XAddParams buildXAddParams() {
+        XAddParams params = XAddParams.xAddParams();
+        if (streamConfig.getMaxLen() > 0) {
+            params.maxLen(streamConfig.getMaxLen()).approximateTrimming();
+        }
+        return params;
+    }
+
+
+    @Override
+    protected void onStartListening() {
+        for (String channel : channels) {
+            initConsumer(channel);
+        }
+        createGroups();
+        initPublishLastIds();
+
+        new Thread(this::readGroupMessages, "redis-stream-group-thread").start();
+        new Thread(this::readPublishMessages, "redis-stream-publish-thread").start();
+    }
+
+
+    private void initConsumer(String channel) {
+        pendingAcks.put(channel, new ConcurrentLinkedQueue<>());
+        inflightIds.put(channel, ConcurrentHashMap.newKeySet());
+
+        MetricRegistry metricRegistry = Jboot.getMetric();
+        dequeueMeters.put(channel, metricRegistry == null
+                ? new Meter()
+                : metricRegistry.meter("jboot.mq.redisstream." + channel + ".dequeue"));
+    }
+
+
+    /**
+     * 创建消费组，从 stream 的第一条消息开始消费（包括创建消费组之前写入的消息），已经存在时忽略
+     */
+    private void createGroups() {
+        Jedis jedis = redis.getJedis();
+        try {
+            for (String channel : channels) {
+                try {
+                    jedis.xgroupCreate(redis.keyToBytes(channel), group, START_ID.getBytes(), true);
+                } catch (Exception ex) {
+                    if (ex.getMessage() == null || !ex.getMessage().startsWith("BUSYGROUP")) {
+                        throw ex;
+                    }
+                }
+            }
+        } finally {
+            redis.returnResource(jedis);
+        }
+    }
+
+
+    /**
+     * 启动时获取每个 publish stream 的最后一条消息的 id，之后从该 id 开始读取；
+     * 不能一直使用 "$"，redis 在每次 XREAD 时都会重新解析 "$"，两次 XREAD 之间的消息会丢失
+     */
+    private void initPublishLastIds() {
+        Jedis jedis = redis.getJedis();
+        try {
+            for (String channel : channels) {
+                List<Object> entries = (List) jedis.xrevrange(redis.keyToBytes(channel + PUBLISH_SUFFIX), MAX_ID, MIN_ID, 1);
+                byte[] lastId = entries == null || entries.isEmpty()
+                        ? START_ID.getBytes()
+                        : (byte[]) ((List<Object>) entries.get(0)).get(0);
+                publishLastIds.put(channel, lastId);
+            }
+        } finally {
+            redis.returnResource(jedis);
+        }
+    }
+
+
+    private void readGroupMessages() {
+        Map.Entry<byte[], byte[]>[] streams = new Map.Entry[channels.size()];
+        int index = 0;
+        for (String channel : channels) {
+            streams[index++] = new AbstractMap.SimpleImmutableEntry<>(redis.keyToBytes(channel), NEW_MESSAGE_ID);
+        }
+
+        XReadGroupParams params = XReadGroupParams.xReadGroupParams()
+                .count(Math.max(streamConfig.getReadCount(), 1))
+                .block(Math.max(streamConfig.getBlockMillis(), 1));
+
+        for (; ; ) {
+            try {
+                flushAcks();
+                claimIfNecessary();
+
+                List<Object> result;
+                Jedis jedis = redis.getJedis();
+                try {
+                    result = (List) jedis.xreadGroup(group, consumer, params, streams);
+                } finally {
+                    redis.returnResource(jedis);
+                }
+
+                if (result != null) {
+                    for (Object stream : result) {
+                        List<Object> streamData = (List<Object>) stream;
+                        String channel = redis.bytesToKey((byte[]) streamData.get(0));
+                        dispatch(channel, (List<Object>) streamData.get(1));
+                    }
+                }
+            } catch (Throwable ex) {
+                LOG.error(ex.toString(), ex);
+
+                // stream 被删除后，需要重新创建消费组
+                if (ex.getMessage() != null && ex.getMessage().startsWith("NOGROUP")) {
+                    try {
+                        createGroups();
+                    } catch (Throwable e) {
+                        LOG.error(e.toString(), e);
+                    }
+                }
+
+                if (!sleepAfterError()) {
+                    return;
+                }
+            }
+        }
+    }
+
+
+    private void readPublishMessages() {
+        Map<String, byte[]> lastIds = publishLastIds;
+
+        XReadParams params = XReadParams.xReadParams()
+                .count(Math.max(streamConfig.getReadCount(), 1))
+                .block(Math.max(streamConfig.getBlockMillis(), 1));
+
+        for (; ; ) {
+            try {
+                Map.Entry<byte[], byte[]>[] streams = new Map.Entry[lastIds.size()];
+                int index = 0;
+                for (Map.Entry<String, byte[]> entry : lastIds.entrySet()) {
+                    streams[index++] = new AbstractMap.SimpleImmutableEntry<>(redis.keyToBytes(entry.getKey() + PUBLISH_SUFFIX), entry.getValue());
+                }
+
+                List<Object> result;
+                Jedis jedis = redis.getJedis();
+                try {
+                    result = (List) jedis.xread(params, streams);
+                } finally {
+                    redis.returnResource(jedis);
+                }
+
+                if (result == null) {
+                    continue;
+                }
+
+                for (Object stream : result) {
+                    List<Object> streamData = (List<Object>) stream;
+                    String key = redis.bytesToKey((byte[]) streamData.get(0));
+                    String channel = key.substring(0, key.length() - PUBLISH_SUFFIX.length());
+                    for (Object entry : (List<Object>) streamData.get(1)) {
+                        List<Object> entryData = (List<Object>) entry;
+                        lastIds.put(channel, (byte[]) entryData.get(0));
+
+                        byte[] data = getMessageData(entryData);
+                        if (data != null) {
+                            notifyListeners(channel, getSerializer().deserialize(data));
+                        }
+                    }
+                }
+            } catch (Throwable ex) {
+                LOG.error(ex.toString(), ex);
+                if (!sleepAfterError()) {
+                    return;
+                }
+            }
+        }
+    }
+
+
+    /**
+     * 把消费组的消息交给监听器处理，所有监听器执行完成后再 ack
+     */
+    private void dispatch(String channel, List<Object> entries) {
+        if (entries == null || entries.isEmpty()) {
+            return;
+        }
+
+        Queue<byte[]> acks = pendingAcks.get(channel);
+        Set<String> inflight = inflightIds.get(channel);
+
+        List<byte[]> ids = new ArrayList<>(entries.size());
+        List<Object> messages = new ArrayList<>(entries.size());
+        for (Object entry : entries) {
+            List<Object> entryData = (List<Object>) entry;
+            byte[] id = (byte[]) entryData.get(0);
+
+            // 本节点正在处理或者等待 ack 的消息（例如本地队列积压时被 XAUTOCLAIM 认领回来）
+            if (!inflight.add(new String(id))) {
+                continue;
+            }
+
+            byte[] data = getMessageData(entryData);
+
+            // 消息已经被裁剪或删除
+            if (data == null) {
+                acks.add(id);
+                continue;
+            }
+
+            ids.add(id);
+            messages.add(getSerializer().deserialize(data));
+        }
+
+        if (!messages.isEmpty()) {
+            dequeueMeters.get(channel).mark(messages.size());
+            notifyMessages(channel, messages, failed -> {
+                for (int i = 0; i < ids.size(); i++) {
+                    if (failed.contains(i)) {
+                        // 不 ack，留在 PEL 中等待 XAUTOCLAIM 认领后重新处理
+                        inflight.remove(new String(ids.get(i)));
+                    } else {
+                        acks.add(ids.get(i));
+                    }
+                }
+            });
+        }
+    }
+
+
+    private static byte[] getMessageData(List<Object> entryData) {
+        List<Object> fields = entryData.size() > 1 ? (List<Object>) entryData.get(1) : null;
+        if (fields == null) {
+            return null;
+        }
+        for (int i = 0; i + 1 < fields.size(); i += 2) {
+            if (Arrays.equals(MESSAGE_FIELD, (byte[]) fields.get(i))) {
+                return (byte[]) fields.get(i + 1);
+            }
+        }
+        return null;
+    }
+
+
+    /**
+     * 批量 ack 已经处理完成的消息，ack 失败时放回队列，下次再 ack
+     */
+    private void flushAcks() {
+        Jedis jedis = null;
+        try {
+            for (Map.Entry<String, Queue<byte[]>> entry : pendingAcks.entrySet()) {
+                Queue<byte[]> acks = entry.getValue();
+                if (acks.isEmpty()) {
+                    continue;
+                }
+
+                List<byte[]> ids = new ArrayList<>();
+                for (byte[] id = acks.poll(); id != null; id = acks.poll()) {
+                    ids.add(id);
+                }
+
+                try {
+                    if (jedis == null) {
+                        jedis = redis.getJedis();
+                    }
+                    jedis.xack(redis.keyToBytes(entry.getKey()), group, ids.toArray(new byte[ids.size()][]));
+                } catch (RuntimeException ex) {
+                    acks.addAll(ids);
+                    throw ex;
+                }
+
+                Set<String> inflight = inflightIds.get(entry.getKey());
+                for (byte[] id : ids) {
+                    inflight.remove(new String(id));
+                }
+            }
+        } finally {
+            redis.returnResource(jedis);
+        }
+    }
+
+
+    /**
+     * 认领其他消费者（例如已经宕机的节点）长时间未 ack 的消息
+     * <p>
+     * XAUTOCLAIM 不能排除本节点的消息，本节点还在处理或者等待 ack 的消息会在 dispatch 时通过 inflightIds 跳过
+     */
+    private void claimIfNecessary() {
+        if (!claimSupported || streamConfig.getClaimIdleMillis() <= 0
+                || System.currentTimeMillis() - lastClaimTime < streamConfig.getClaimIntervalMillis()) {
+            return;
+        }
+        lastClaimTime = System.currentTimeMillis();
+
+        XAutoClaimParams params = XAutoClaimParams.xAutoClaimParams().count(Math.max(streamConfig.getReadCount(), 1));
+        for (String channel : channels) {
+            byte[] start = START_ID.getBytes();
+            do {
+                List<Object> result;
+                Jedis jedis = redis.getJedis();
+                try {
+                    result = jedis.xautoclaim(redis.keyToBytes(channel), group, consumer
+                            , streamConfig.getClaimIdleMillis(), start, params);
+                } catch (Exception ex) {
+                    // redis 6.2 之前的版本不支持 XAUTOCLAIM
+                    if (ex.getMessage() != null && ex.getMessage().toLowerCase().contains("unknown command")) {
+                        LOG.warn("redis server not support XAUTOCLAIM, pending messages will not be claimed.");
+                        claimSupported = false;
+                        return;
+                    }
+                    throw ex;
+                } finally {
+                    redis.returnResource(jedis);
+                }
+
+                start = (byte[]) result.get(0);
+                dispatch(channel, (List<Object>) result.get(1));
+            } while (!START_ID.equals(new String(start)));
+        }
+    }
+
+
+    private static boolean sleepAfterError() {
+        try {
+            // redis 出错时（例如断开连接）避免空转
+            Thread.sleep(1000);
+            return true;
+        } catch (InterruptedException e) {
+            return false;
+        }
+    }
+}
@@ -32,10 +32,17 @@ import org.apache.rocketmq.common.message.Message;
 import org.apache.rocketmq.common.message.MessageExt;
 import org.apache.rocketmq.common.protocol.heartbeat.MessageModel;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
 
 public class JbootRocketmqImpl extends JbootmqBase implements Jbootmq {
 
     private static final Log LOG = Log.getLog(JbootRocketmqImpl.class);
+
+    private static final int MAX_BATCH_COUNT = 1000;
+    private static final int MAX_BATCH_BYTES = 1024 * 1024;
     private JbootRocketmqConfig rocketmqConfig;
     private MQProducer mqProducer;
 
@@ -142,6 +149,57 @@ public class JbootRocketmqImpl extends JbootmqBase implements Jbootmq {
     }
 
 
+    @Override
+    public void enqueueAll(Collection messages, String toChannel) {
+        sendMessages(messages, toChannel);
+    }
+
+
+    @Override
+    public void publishAll(Collection messages, String toChannel) {
+        sendMessages(messages, rocketmqConfig.getBroadcastChannelPrefix() + toChannel);
+    }
+
+
+    /**
+     * 通过 rocketmq 的批量消息发送，每批的大小不能超过 broker 的限制（默认 4M），这里按 1M 拆分
+     */
+    private void sendMessages(Collection messages, String topic) {
+        List<Message> batch = new ArrayList<>();
+        int batchBytes = 0;
+        for (Object message : messages) {
+            byte[] body = getSerializer().serialize(message);
+            if (!batch.isEmpty() && (batch.size() >= MAX_BATCH_COUNT || batchBytes + body.length > MAX_BATCH_BYTES)) {
+                trySendMessages(batch, 1);
+                batch = new ArrayList<>();
+                batchBytes = 0;
+            }
+            batch.add(new Message(topic, body));
+            batchBytes += body.length;
+        }
+        if (!batch.isEmpty()) {
+            trySendMessages(batch, 1);
+        }
+    }
+
+
+    private void trySendMessages(List<Message> messages, int tryTimes) {
+        if (tryTimes < 3) {
+            try {
+                SendResult result = getMQProducer().send(messages);
+                if (result == null) {
+                    trySendMessages(messages, ++tryTimes);
+                }
+            } catch (Exception e) {
+                trySendMessages(messages, ++tryTimes);
+                LOG.error(e.toString(), e);
+            }
+        } else {
+            LOG.error("Rocketmq batch publish not success!");
+        }
+    }
+
+
     private void trySendMessage(Object message, String topic, int tryTimes) {
         if (tryTimes < 3) {
             try {
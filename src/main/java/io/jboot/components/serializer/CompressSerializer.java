@@ -0,0 +1,205 @@
+/**
+ * Copyright (c) 2015-2021, Michael Yang 杨福海 (fuhai999@gmail.com).
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.jboot.components.serializer;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.jfinal.log.Log;
+import io.jboot.Jboot;
+
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 对其他序列化的结果进行压缩
+ * <p>
+ * 超过 threshold 字节的数据使用 Deflate 压缩，压缩后的数据以一个字节的 HEADER 开头，后面是原始长度和 zlib 数据；
+ * 小于 threshold 或者压缩后没有变小的数据，原样保存，和未开启压缩时写入的数据一样，可以直接读取
+ */
+public class CompressSerializer implements JbootSerializer {
+
+    private static final Log LOG = Log.getLog(CompressSerializer.class);
+
+    private static final byte HEADER = (byte) 0xC5;
+
+    // 太小的数据加上 HEADER、原始长度和 zlib 的头尾之后不可能变小，threshold 最小为该值
+    static final int MIN_THRESHOLD = 64;
+
+    private final JbootSerializer delegate;
+    private final int threshold;
+
+    private final ThreadLocal<Deflater> deflaterTL;
+    private final ThreadLocal<Inflater> inflaterTL = ThreadLocal.withInitial(Inflater::new);
+
+    // 压缩后大小占原始大小的百分比
+    private final Histogram ratioHistogram;
+    private final Timer compressTimer;
+    private final Timer decompressTimer;
+
+
+    public CompressSerializer(JbootSerializer delegate, int threshold, int level) {
+        this.delegate = delegate;
+        this.threshold = Math.max(threshold, MIN_THRESHOLD);
+        this.deflaterTL = ThreadLocal.withInitial(() -> new Deflater(level));
+
+        MetricRegistry metricRegistry = Jboot.getMetric();
+        String prefix = "jboot.serializer.compress." + delegate.getClass().getSimpleName();
+        this.ratioHistogram = metricRegistry == null ? null : metricRegistry.histogram(prefix + ".ratio");
+        this.compressTimer = metricRegistry == null ? null : metricRegistry.timer(prefix + ".compress");
+        this.decompressTimer = metricRegistry == null ? null : metricRegistry.timer(prefix + ".decompress");
+    }
+
+    public JbootSerializer getDelegate() {
+        return delegate;
+    }
+
+
+    @Override
+    public byte[] serialize(Object obj) {
+        byte[] bytes = delegate.serialize(obj);
+        if (bytes == null || bytes.length < threshold) {
+            return bytes;
+        }
+
+        long startTime = System.nanoTime();
+        byte[] compressed = compress(bytes);
+        if (compressTimer != null) {
+            compressTimer.update(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+        }
+        if (ratioHistogram != null) {
+            ratioHistogram.update(compressed == null ? 100 : (int) (compressed.length * 100L / bytes.length));
+        }
+
+        return compressed == null ? bytes : compressed;
+    }
+
+
+    /**
+     * 压缩后没有变小的时候返回 null
+     */
+    private byte[] compress(byte[] bytes) {
+        // 压缩结果最多只能和原始数据一样大，否则没有意义
+        byte[] output = new byte[bytes.length];
+        output[0] = HEADER;
+        int position = writeVarInt(output, 1, bytes.length);
+
+        Deflater deflater = deflaterTL.get();
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            while (!deflater.finished()) {
+                if (position == output.length) {
+                    return null;
+                }
+                position += deflater.deflate(output, position, output.length - position);
+            }
+        } finally {
+            deflater.reset();
+        }
+
+        byte[] result = new byte[position];
+        System.arraycopy(output, 0, result, 0, position);
+        return result;
+    }
+
+
+    private static int writeVarInt(byte[] output, int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            output[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output[position++] = (byte) value;
+        return position;
+    }
+
+
+    @Override
+    public Object deserialize(byte[] bytes) {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+
+        if (bytes[0] == HEADER) {
+            long startTime = System.nanoTime();
+            byte[] decompressed = decompress(bytes);
+            if (decompressTimer != null) {
+                decompressTimer.update(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+            }
+            if (decompressed != null) {
+                return delegate.deserialize(decompressed);
+            }
+        }
+
+        // 未压缩的数据
+        return delegate.deserialize(bytes);
+    }
+
+
+    /**
+     * 数据不是 CompressSerializer 压缩的（例如未压缩数据的第一个字节恰好和 HEADER 一样），返回 null
+     */
+    private byte[] decompress(byte[] bytes) {
+        int length = 0;
+        int position = 1;
+        for (int shift = 0; ; shift += 7) {
+            if (position >= bytes.length || shift > 28) {
+                return null;
+            }
+            byte b = bytes[position++];
+            length |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                break;
+            }
+        }
+        // deflate 的压缩率不会超过 1032:1
+        if (length <= 0 || length > (bytes.length - position) * 1032L + 64) {
+            return null;
+        }
+
+        Inflater inflater = inflaterTL.get();
+        try {
+            inflater.setInput(bytes, position, bytes.length - position);
+            byte[] output = new byte[length];
+            int count = 0;
+            while (count < length && !inflater.finished()) {
+                int n = inflater.inflate(output, count, length - count);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    return null;
+                }
+                count += n;
+            }
+
+            // 读取 zlib 结尾的校验数据
+            if (count == length && !inflater.finished() && inflater.inflate(new byte[1]) > 0) {
+                return null;
+            }
+
+            // zlib 数据有 adler32 校验，只有完整解压并且长度一致才认为是压缩的数据
+            if (count != length || !inflater.finished()) {
+                return null;
+            }
+            return output;
+        } catch (DataFormatException ex) {
+            LOG.debug("CompressSerializer data is not compressed: " + ex.getMessage());
+            return null;
+        } finally {
+            inflater.reset();
+        }
+    }
+}
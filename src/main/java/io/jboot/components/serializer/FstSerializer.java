@@ -16,14 +16,42 @@
 package io.jboot.components.serializer;
 
 import com.jfinal.log.Log;
+import io.jboot.Jboot;
+import io.jboot.exception.JbootException;
 import org.nustaq.serialization.FSTConfiguration;
+import org.nustaq.serialization.FSTObjectInput;
+import org.nustaq.serialization.FSTObjectOutput;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
 
-public class FstSerializer implements JbootSerializer {
+
+public class FstSerializer implements JbootStreamSerializer {
 
 
     private static final Log LOG = Log.getLog(FstSerializer.class);
-    private static FSTConfiguration fst = FSTConfiguration.createDefaultConfiguration();
+
+    // 超过该大小的 buffer 使用后不再缓存，避免线程长期占用大内存
+    private static final int MAX_CACHED_BUFFER_SIZE = 256 * 1024;
+
+    // 用于读取堆外内存的 ByteBuffer
+    private static final ThreadLocal<byte[]> BYTES_TL = new ThreadLocal<>();
+
+    private final FSTConfiguration fst = FSTConfiguration.createDefaultConfiguration();
+
+
+    public FstSerializer() {
+        this(Jboot.config(JbootSerializerConfig.class).getRegisterClassList());
+    }
+
+    public FstSerializer(List<Class<?>> registerClasses) {
+        if (registerClasses != null && !registerClasses.isEmpty()) {
+            fst.registerClass(registerClasses.toArray(new Class[0]));
+        }
+    }
+
 
     @Override
     public byte[] serialize(Object obj) {
@@ -33,6 +61,25 @@ public class FstSerializer implements JbootSerializer {
         return fst.asByteArray(obj);
     }
 
+
+    @Override
+    public void serialize(Object obj, OutputStream outputStream) {
+        if (obj == null) {
+            return;
+        }
+        // FSTObjectOutput 由 FSTConfiguration 按线程复用，不能 close
+        FSTObjectOutput output = fst.getObjectOutput(outputStream);
+        try {
+            output.writeObject(obj);
+            output.flush();
+        } catch (IOException e) {
+            throw new JbootException("FstSerializer serialize error!", e);
+        } finally {
+            output.resetForReUse((OutputStream) null);
+        }
+    }
+
+
     @Override
     public Object deserialize(byte[] bytes) {
         if (bytes == null || bytes.length == 0) {
@@ -47,4 +94,40 @@ public class FstSerializer implements JbootSerializer {
     }
 
 
+    @Override
+    public Object deserialize(ByteBuffer buffer) {
+        if (buffer == null || !buffer.hasRemaining()) {
+            return null;
+        }
+
+        int length = buffer.remaining();
+        try {
+            FSTObjectInput input;
+            if (buffer.hasArray() && buffer.arrayOffset() + buffer.position() == 0) {
+                // 从数组开头读取时，直接使用该数组，不需要复制
+                input = fst.getObjectInput(buffer.array(), length);
+            } else if (buffer.hasArray()) {
+                input = fst.getObjectInputCopyFrom(buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+            } else {
+                byte[] bytes = BYTES_TL.get();
+                if (bytes == null || bytes.length < length) {
+                    bytes = new byte[Math.max(length, 1024)];
+                    if (bytes.length <= MAX_CACHED_BUFFER_SIZE) {
+                        BYTES_TL.set(bytes);
+                    }
+                }
+                buffer.duplicate().get(bytes, 0, length);
+                input = fst.getObjectInput(bytes, length);
+            }
+
+            Object value = input.readObject();
+            buffer.position(buffer.position() + input.getCodec().getInputPos());
+            return value;
+        } catch (Exception ex) {
+            LOG.error("FstSerializer deserialize error!");
+        }
+        return null;
+    }
+
+
 }
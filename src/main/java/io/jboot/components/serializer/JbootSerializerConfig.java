@@ -16,6 +16,13 @@
 package io.jboot.components.serializer;
 
 import io.jboot.app.config.annotation.ConfigModel;
+import io.jboot.db.model.JbootModel;
+import io.jboot.exception.JbootIllegalConfigException;
+import io.jboot.utils.ClassScanner;
+import io.jboot.utils.StrUtil;
+
+import java.util.*;
+import java.util.zip.Deflater;
 
 
 @ConfigModel(prefix = "jboot.serializer")
@@ -24,9 +31,33 @@ public class JbootSerializerConfig {
     public static final String FST = "fst";
     public static final String FASTJSON = "fastjson";
     public static final String KRYO = "kryo";
+    public static final String MODEL = "model";
+
+    // 以 compress: 开头的序列化名称，例如 compress:fst，表示对该序列化的结果进行压缩
+    // 可以用于 jboot.redis.serializer、jboot.mq.serializer 等单独配置的地方
+    public static final String COMPRESS_PREFIX = "compress:";
 
     public String type = FST;
 
+    // 需要注册的类，多个用英文逗号隔开，注册后序列化结果中只保存类的编号而不是完整类名
+    // 注意：所有读写同一份数据的节点，注册的类必须完全一致
+    private String registerClasses;
+
+    // 是否自动注册所有的 Model 类
+    private boolean registerModels = false;
+
+    // type 为 model 时，Model 和 Record 以外的数据使用的序列化方式
+    private String modelDelegate = FST;
+
+    // 是否对 type 的序列化结果进行压缩
+    private boolean compress = false;
+
+    // 超过该字节数才进行压缩，最小为 64
+    private int compressThreshold = 2048;
+
+    // 压缩级别，1 ~ 9，1 最快
+    private int compressLevel = Deflater.BEST_SPEED;
+
     public String getType() {
         return type;
     }
@@ -34,4 +65,82 @@ public class JbootSerializerConfig {
     public void setType(String type) {
         this.type = type;
     }
+
+    public String getRegisterClasses() {
+        return registerClasses;
+    }
+
+    public void setRegisterClasses(String registerClasses) {
+        this.registerClasses = registerClasses;
+    }
+
+    public boolean isRegisterModels() {
+        return registerModels;
+    }
+
+    public void setRegisterModels(boolean registerModels) {
+        this.registerModels = registerModels;
+    }
+
+    public String getModelDelegate() {
+        return modelDelegate;
+    }
+
+    public void setModelDelegate(String modelDelegate) {
+        this.modelDelegate = modelDelegate;
+    }
+
+    public boolean isCompress() {
+        return compress;
+    }
+
+    public void setCompress(boolean compress) {
+        this.compress = compress;
+    }
+
+    public int getCompressThreshold() {
+        return compressThreshold;
+    }
+
+    public void setCompressThreshold(int compressThreshold) {
+        this.compressThreshold = compressThreshold;
+    }
+
+    public int getCompressLevel() {
+        return compressLevel;
+    }
+
+    public void setCompressLevel(int compressLevel) {
+        this.compressLevel = compressLevel;
+    }
+
+
+    /**
+     * 获取需要注册的类，按类名排序，以保证不同节点上的注册编号一致
+     *
+     * @return
+     */
+    public List<Class<?>> getRegisterClassList() {
+        Map<String, Class<?>> classes = new TreeMap<>();
+
+        Set<String> classNames = StrUtil.splitToSetByComma(registerClasses);
+        if (classNames != null) {
+            for (String className : classNames) {
+                try {
+                    Class<?> clazz = Class.forName(className, false, JbootSerializerConfig.class.getClassLoader());
+                    classes.put(clazz.getName(), clazz);
+                } catch (ClassNotFoundException e) {
+                    throw new JbootIllegalConfigException("can not find serializer register class: " + className);
+                }
+            }
+        }
+
+        if (registerModels) {
+            for (Class<JbootModel> modelClass : ClassScanner.scanSubClass(JbootModel.class, true)) {
+                classes.put(modelClass.getName(), modelClass);
+            }
+        }
+
+        return new ArrayList<>(classes.values());
+    }
 }
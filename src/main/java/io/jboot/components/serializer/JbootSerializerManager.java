@@ -42,7 +42,11 @@ public class JbootSerializerManager {
 
     public JbootSerializer getSerializer() {
         JbootSerializerConfig config = Jboot.config(JbootSerializerConfig.class);
-        return getSerializer(config.getType());
+        String type = config.getType();
+        if (config.isCompress() && type != null && !type.startsWith(JbootSerializerConfig.COMPRESS_PREFIX)) {
+            type = JbootSerializerConfig.COMPRESS_PREFIX + type;
+        }
+        return getSerializer(type);
     }
 
     public JbootSerializer getSerializer(String serializerName) {
@@ -68,6 +72,14 @@ public class JbootSerializerManager {
             throw new JbootException("can not get serializer config, please set jboot.serializer value to jboot.proerties");
         }
 
+        // 对其他序列化的结果进行压缩，例如 compress:fst
+        if (serializerName.startsWith(JbootSerializerConfig.COMPRESS_PREFIX)) {
+            JbootSerializerConfig config = Jboot.config(JbootSerializerConfig.class);
+            return new CompressSerializer(getSerializer(serializerName.substring(JbootSerializerConfig.COMPRESS_PREFIX.length()))
+                    , config.getCompressThreshold()
+                    , config.getCompressLevel());
+        }
+
         //可能是某个类名
         if (serializerName != null && serializerName.contains(".")) {
             JbootSerializer serializer = ClassUtil.newInstance(serializerName,false);
@@ -83,6 +95,12 @@ public class JbootSerializerManager {
                 return new FstSerializer();
             case JbootSerializerConfig.FASTJSON:
                 return new FastJsonSerializer();
+            case JbootSerializerConfig.MODEL:
+                String delegate = Jboot.config(JbootSerializerConfig.class).getModelDelegate();
+                if (delegate == null || JbootSerializerConfig.MODEL.equalsIgnoreCase(delegate)) {
+                    throw new JbootIllegalConfigException("jboot.serializer.modelDelegate can not be \"" + delegate + "\"");
+                }
+                return new ModelSerializer(getSerializer(delegate));
             default:
                 return JbootSpiLoader.load(JbootSerializer.class, serializerName);
         }
@@ -0,0 +1,41 @@
+/**
+ * Copyright (c) 2015-2021, Michael Yang 杨福海 (fuhai999@gmail.com).
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.jboot.components.serializer;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * 支持直接写入 OutputStream 以及从 ByteBuffer 读取的序列化，避免中间 byte[] 的创建和复制
+ */
+public interface JbootStreamSerializer extends JbootSerializer {
+
+    /**
+     * 把对象直接序列化到 outputStream 中，不会关闭 outputStream
+     *
+     * @param obj
+     * @param outputStream
+     */
+    public void serialize(Object obj, OutputStream outputStream);
+
+    /**
+     * 从 buffer 当前的 position 开始反序列化，读取完成后 buffer 的 position 会移动到对象的结尾
+     *
+     * @param buffer
+     * @return
+     */
+    public Object deserialize(ByteBuffer buffer);
+}
@@ -17,11 +17,15 @@ package io.jboot.components.serializer;
 
 import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.io.ByteBufferInput;
+import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 import com.esotericsoftware.kryo.pool.KryoFactory;
 import com.esotericsoftware.kryo.pool.KryoPool;
+import io.jboot.Jboot;
 
-import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
 
 /**
  * @author Michael Yang 杨福海 （fuhai999@gmail.com）
@@ -29,48 +33,148 @@ import java.io.ByteArrayOutputStream;
  * @Title: Kryo 序列化
  * @Description: 性能和 fst一样
  */
-public class KryoSerializer implements JbootSerializer {
+public class KryoSerializer implements JbootStreamSerializer {
 
+    private static final int BUFFER_SIZE = 4 * 1024;
 
-    private KryoFactory kryoFactory = () -> new Kryo();
+    // 超过该大小的 buffer 使用后不再缓存，避免线程长期占用大内存
+    private static final int MAX_CACHED_BUFFER_SIZE = 256 * 1024;
+
+    private static final byte[] EMPTY_BYTES = new byte[0];
+    private static final ByteBuffer EMPTY_BUFFER = ByteBuffer.allocate(0);
+
+    private static final ThreadLocal<Output> OUTPUT_TL = ThreadLocal.withInitial(() -> new Output(BUFFER_SIZE, -1));
+    private static final ThreadLocal<Input> INPUT_TL = ThreadLocal.withInitial(Input::new);
+    private static final ThreadLocal<ByteBufferInput> BYTE_BUFFER_INPUT_TL = ThreadLocal.withInitial(ByteBufferInput::new);
+
+
+    private final List<Class<?>> registerClasses;
+
+    private KryoFactory kryoFactory = this::createKryo;
 
     private KryoPool kryoPool = new KryoPool.Builder(kryoFactory).
             softReferences()
             .build();
 
+
+    public KryoSerializer() {
+        this(Jboot.config(JbootSerializerConfig.class).getRegisterClassList());
+    }
+
+    public KryoSerializer(List<Class<?>> registerClasses) {
+        this.registerClasses = registerClasses;
+    }
+
+
+    protected Kryo createKryo() {
+        Kryo kryo = new Kryo();
+        if (registerClasses != null) {
+            for (Class<?> clazz : registerClasses) {
+                kryo.register(clazz);
+            }
+        }
+        return kryo;
+    }
+
+
     @Override
     public byte[] serialize(Object obj) {
         if (obj == null) {
             return null;
         }
-        Output output = null;
+        Output output = OUTPUT_TL.get();
         Kryo kryo = kryoPool.borrow();
         try {
-            output = new Output(new ByteArrayOutputStream());
+            output.clear();
             kryo.writeClassAndObject(output, obj);
             return output.toBytes();
         } finally {
-            if (output != null) {
-                output.close();
-            }
             kryoPool.release(kryo);
+            releaseOutput(output);
         }
     }
 
+
+    @Override
+    public void serialize(Object obj, OutputStream outputStream) {
+        if (obj == null) {
+            return;
+        }
+        Output output = OUTPUT_TL.get();
+        Kryo kryo = kryoPool.borrow();
+        try {
+            output.setOutputStream(outputStream);
+            kryo.writeClassAndObject(output, obj);
+            output.flush();
+        } finally {
+            output.setOutputStream(null);
+            kryoPool.release(kryo);
+            releaseOutput(output);
+        }
+    }
+
+
+    private static void releaseOutput(Output output) {
+        if (output.getBuffer().length > MAX_CACHED_BUFFER_SIZE) {
+            OUTPUT_TL.remove();
+        }
+    }
+
+
     @Override
     public Object deserialize(byte[] bytes) {
         if (bytes == null || bytes.length == 0) {
             return null;
         }
-        ByteBufferInput input = null;
+        return deserialize(bytes, 0, bytes.length);
+    }
+
+
+    private Object deserialize(byte[] bytes, int offset, int length) {
+        Input input = INPUT_TL.get();
         Kryo kryo = kryoPool.borrow();
         try {
-            input = new ByteBufferInput(bytes);
+            input.setBuffer(bytes, offset, length);
             return kryo.readClassAndObject(input);
         } finally {
-            if (input != null) {
-                input.close();
+            input.setBuffer(EMPTY_BYTES);
+            kryoPool.release(kryo);
+        }
+    }
+
+
+    @Override
+    public Object deserialize(ByteBuffer buffer) {
+        if (buffer == null || !buffer.hasRemaining()) {
+            return null;
+        }
+
+        // 堆内存直接读取其数组，不需要复制
+        if (buffer.hasArray()) {
+            Input input = INPUT_TL.get();
+            Kryo kryo = kryoPool.borrow();
+            try {
+                int offset = buffer.arrayOffset() + buffer.position();
+                input.setBuffer(buffer.array(), offset, buffer.remaining());
+                Object value = kryo.readClassAndObject(input);
+                buffer.position(buffer.position() + input.position() - offset);
+                return value;
+            } finally {
+                input.setBuffer(EMPTY_BYTES);
+                kryoPool.release(kryo);
             }
+        }
+
+        ByteBufferInput input = BYTE_BUFFER_INPUT_TL.get();
+        Kryo kryo = kryoPool.borrow();
+        try {
+            int start = buffer.position();
+            input.setBuffer(buffer.slice());
+            Object value = kryo.readClassAndObject(input);
+            buffer.position(start + input.position());
+            return value;
+        } finally {
+            input.setBuffer(EMPTY_BUFFER);
             kryoPool.release(kryo);
         }
     }
@@ -0,0 +1,756 @@
+/**
+ * Copyright (c) 2015-2021, Michael Yang 杨福海 (fuhai999@gmail.com).
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.jboot.components.serializer;
+
+import com.jfinal.log.Log;
+import com.jfinal.plugin.activerecord.Model;
+import com.jfinal.plugin.activerecord.Page;
+import com.jfinal.plugin.activerecord.Record;
+import com.jfinal.plugin.activerecord.Table;
+import com.jfinal.plugin.activerecord.TableMapping;
+import io.jboot.db.model.JbootModel;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Model 和 Record 专用的紧凑二进制序列化
+ * <p>
+ * Model 的字段按照表结构（TableMapping 中的列）的顺序写入，不写字段名，只写一个表结构的指纹，
+ * 反序列化时表结构的指纹和本地不一致（例如表结构已经修改），会返回 null，相当于缓存未命中；
+ * Record 的字段名在同一次序列化中只写一次。
+ * <p>
+ * 支持 Model、Record、Page 以及 Model、Record 的 List，其他对象交给 delegate 进行序列化
+ */
+public class ModelSerializer implements JbootSerializer {
+
+    private static final Log LOG = Log.getLog(ModelSerializer.class);
+
+    private static final byte MAGIC_0 = (byte) 0xCA;
+    private static final byte MAGIC_1 = (byte) 0x4D;
+    private static final byte VERSION = 1;
+
+    private static final int TAG_NULL = 0;
+    private static final int TAG_TRUE = 1;
+    private static final int TAG_FALSE = 2;
+    private static final int TAG_INT = 3;
+    private static final int TAG_LONG = 4;
+    private static final int TAG_DOUBLE = 5;
+    private static final int TAG_FLOAT = 6;
+    private static final int TAG_SHORT = 7;
+    private static final int TAG_BYTE = 8;
+    private static final int TAG_STRING = 9;
+    private static final int TAG_BIG_DECIMAL = 10;
+    private static final int TAG_BIG_INTEGER = 11;
+    private static final int TAG_DATE = 12;
+    private static final int TAG_TIMESTAMP = 13;
+    private static final int TAG_SQL_DATE = 14;
+    private static final int TAG_SQL_TIME = 15;
+    private static final int TAG_LOCAL_DATE_TIME = 16;
+    private static final int TAG_LOCAL_DATE = 17;
+    private static final int TAG_LOCAL_TIME = 18;
+    private static final int TAG_BYTES = 19;
+    private static final int TAG_MODEL = 20;
+    private static final int TAG_RECORD = 21;
+    private static final int TAG_LIST = 22;
+    private static final int TAG_PAGE = 23;
+    private static final int TAG_OBJECT = 24;
+
+    private static final Map<Class<?>, Schema> schemaCache = new ConcurrentHashMap<>();
+
+    // 已经输出过表结构变化警告的 Model 类，每个类只输出一次，避免缓存中大量的旧数据刷屏
+    private static final Set<String> schemaChangedWarnedClasses = ConcurrentHashMap.newKeySet();
+
+    private final JbootSerializer delegate;
+
+
+    public ModelSerializer(JbootSerializer delegate) {
+        this.delegate = delegate;
+    }
+
+    public JbootSerializer getDelegate() {
+        return delegate;
+    }
+
+
+    @Override
+    public byte[] serialize(Object obj) {
+        if (obj == null) {
+            return null;
+        }
+
+        if (!isSupported(obj)) {
+            return delegate.serialize(obj);
+        }
+
+        Output output = new Output();
+        output.writeByte(MAGIC_0);
+        output.writeByte(MAGIC_1);
+        output.writeByte(VERSION);
+        output.writeValue(obj);
+        return output.toBytes();
+    }
+
+
+    @Override
+    public Object deserialize(byte[] bytes) {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+
+        // 不是 ModelSerializer 写入的数据，包括切换到 ModelSerializer 之前写入的数据
+        if (bytes.length < 3 || bytes[0] != MAGIC_0 || bytes[1] != MAGIC_1) {
+            return delegate.deserialize(bytes);
+        }
+
+        if (bytes[2] != VERSION) {
+            LOG.warn("ModelSerializer can not deserialize data of version: " + bytes[2]);
+            return null;
+        }
+
+        try {
+            return new Input(bytes, 3).readValue();
+        } catch (SchemaChangedException ex) {
+            if (schemaChangedWarnedClasses.add(ex.modelClassName)) {
+                LOG.warn(ex.getMessage());
+            }
+        } catch (Exception ex) {
+            LOG.error("ModelSerializer deserialize error!", ex);
+        }
+        return null;
+    }
+
+
+    private static boolean isSupported(Object obj) {
+        if (obj instanceof Model || obj instanceof Record) {
+            return true;
+        }
+        if (obj instanceof Page) {
+            return isSupportedList(((Page<?>) obj).getList());
+        }
+        return obj instanceof List && isSupportedList((List<?>) obj);
+    }
+
+
+    private static boolean isSupportedList(List<?> list) {
+        if (list == null || list.isEmpty()) {
+            return false;
+        }
+        for (Object item : list) {
+            if (item != null && !(item instanceof Model) && !(item instanceof Record)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * 获取 Model 的表结构，ActiveRecordPlugin 未启动或者该 Model 未映射到表的时候返回 null
+     */
+    private static Schema getSchema(Class<?> modelClass) {
+        Schema schema = schemaCache.get(modelClass);
+        if (schema != null) {
+            return schema;
+        }
+
+        Table table = TableMapping.me().getTable((Class<? extends Model>) modelClass);
+        if (table == null || table.getColumnTypeMap() == null || table.getColumnTypeMap().isEmpty()) {
+            return null;
+        }
+
+        schema = new Schema(new TreeSet<>(table.getColumnNameSet()).toArray(new String[0]));
+        schemaCache.put(modelClass, schema);
+        return schema;
+    }
+
+
+    /**
+     * 表结构，列按名称排序
+     */
+    private static class Schema {
+
+        private final String[] columns;
+        private final Map<String, Integer> indexes;
+        private final int fingerprint;
+
+        Schema(String[] columns) {
+            this.columns = columns;
+            this.indexes = new HashMap<>(columns.length * 2);
+
+            // FNV-1a
+            int hash = 0x811c9dc5;
+            for (int i = 0; i < columns.length; i++) {
+                indexes.put(columns[i], i);
+                String column = columns[i];
+                for (int j = 0; j < column.length(); j++) {
+                    hash = (hash ^ column.charAt(j)) * 0x01000193;
+                }
+                hash = (hash ^ ',') * 0x01000193;
+            }
+
+            // 0 表示没有表结构
+            this.fingerprint = hash == 0 ? 1 : hash;
+        }
+    }
+
+
+    private static class SchemaChangedException extends RuntimeException {
+
+        private final String modelClassName;
+
+        SchemaChangedException(String modelClassName) {
+            super("The table schema of model " + modelClassName + " changed, ignore the serialized data.", null, false, false);
+            this.modelClassName = modelClassName;
+        }
+    }
+
+
+    private class Output {
+
+        private byte[] buffer = new byte[256];
+        private int position;
+
+        // 本次序列化中已经写入的 Model 类，以及 Record 的字段名
+        private Map<Class<?>, Integer> classIndexes;
+        private Map<List<String>, Integer> recordShapeIndexes;
+
+        void ensureCapacity(int size) {
+            if (position + size > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + size));
+            }
+        }
+
+        void writeByte(int value) {
+            ensureCapacity(1);
+            buffer[position++] = (byte) value;
+        }
+
+        void writeBytes(byte[] bytes) {
+            writeVarInt(bytes.length);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        void writeVarInt(int value) {
+            ensureCapacity(5);
+            while ((value & ~0x7F) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        void writeVarLong(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        void writeZigZagInt(int value) {
+            writeVarInt((value << 1) ^ (value >> 31));
+        }
+
+        void writeZigZagLong(long value) {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        void writeFixedInt(int value) {
+            ensureCapacity(4);
+            buffer[position++] = (byte) (value >>> 24);
+            buffer[position++] = (byte) (value >>> 16);
+            buffer[position++] = (byte) (value >>> 8);
+            buffer[position++] = (byte) value;
+        }
+
+        void writeFixedLong(long value) {
+            writeFixedInt((int) (value >>> 32));
+            writeFixedInt((int) value);
+        }
+
+        void writeString(String value) {
+            writeBytes(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        // null 写入 0，其他写入 长度 + 1
+        void writeNullableString(String value) {
+            if (value == null) {
+                writeVarInt(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length + 1);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        void writeValue(Object value) {
+            if (value == null) {
+                writeByte(TAG_NULL);
+            } else if (value instanceof String) {
+                writeByte(TAG_STRING);
+                writeString((String) value);
+            } else if (value instanceof Integer) {
+                writeByte(TAG_INT);
+                writeZigZagInt((Integer) value);
+            } else if (value instanceof Long) {
+                writeByte(TAG_LONG);
+                writeZigZagLong((Long) value);
+            } else if (value instanceof Boolean) {
+                writeByte((Boolean) value ? TAG_TRUE : TAG_FALSE);
+            } else if (value instanceof java.sql.Timestamp) {
+                java.sql.Timestamp timestamp = (java.sql.Timestamp) value;
+                writeByte(TAG_TIMESTAMP);
+                writeZigZagLong(timestamp.getTime());
+                writeVarInt(timestamp.getNanos());
+            } else if (value instanceof java.sql.Date) {
+                writeByte(TAG_SQL_DATE);
+                writeZigZagLong(((java.sql.Date) value).getTime());
+            } else if (value instanceof java.sql.Time) {
+                writeByte(TAG_SQL_TIME);
+                writeZigZagLong(((java.sql.Time) value).getTime());
+            } else if (value.getClass() == Date.class) {
+                writeByte(TAG_DATE);
+                writeZigZagLong(((Date) value).getTime());
+            } else if (value instanceof BigDecimal) {
+                BigDecimal decimal = (BigDecimal) value;
+                writeByte(TAG_BIG_DECIMAL);
+                writeZigZagInt(decimal.scale());
+                writeBytes(decimal.unscaledValue().toByteArray());
+            } else if (value instanceof BigInteger) {
+                writeByte(TAG_BIG_INTEGER);
+                writeBytes(((BigInteger) value).toByteArray());
+            } else if (value instanceof Double) {
+                writeByte(TAG_DOUBLE);
+                writeFixedLong(Double.doubleToLongBits((Double) value));
+            } else if (value instanceof Float) {
+                writeByte(TAG_FLOAT);
+                writeFixedInt(Float.floatToIntBits((Float) value));
+            } else if (value instanceof Short) {
+                writeByte(TAG_SHORT);
+                writeZigZagInt((Short) value);
+            } else if (value instanceof Byte) {
+                writeByte(TAG_BYTE);
+                writeByte((Byte) value);
+            } else if (value instanceof LocalDateTime) {
+                LocalDateTime dateTime = (LocalDateTime) value;
+                writeByte(TAG_LOCAL_DATE_TIME);
+                writeZigZagLong(dateTime.toEpochSecond(ZoneOffset.UTC));
+                writeVarInt(dateTime.getNano());
+            } else if (value instanceof LocalDate) {
+                writeByte(TAG_LOCAL_DATE);
+                writeZigZagLong(((LocalDate) value).toEpochDay());
+            } else if (value instanceof LocalTime) {
+                writeByte(TAG_LOCAL_TIME);
+                writeVarLong(((LocalTime) value).toNanoOfDay());
+            } else if (value instanceof byte[]) {
+                writeByte(TAG_BYTES);
+                writeBytes((byte[]) value);
+            } else if (value instanceof Model) {
+                writeByte(TAG_MODEL);
+                writeModel((Model<?>) value);
+            } else if (value instanceof Record) {
+                writeByte(TAG_RECORD);
+                writeRecord((Record) value);
+            } else if (value instanceof Page && isSupportedList(((Page<?>) value).getList())) {
+                Page<?> page = (Page<?>) value;
+                writeByte(TAG_PAGE);
+                writeVarInt(page.getPageNumber());
+                writeVarInt(page.getPageSize());
+                writeVarInt(page.getTotalPage());
+                writeVarInt(page.getTotalRow());
+                writeList(page.getList());
+            } else if (value instanceof List && isSupportedList((List<?>) value)) {
+                writeByte(TAG_LIST);
+                writeList((List<?>) value);
+            } else {
+                // 其他类型的数据交给 delegate
+                writeByte(TAG_OBJECT);
+                writeBytes(delegate.serialize(value));
+            }
+        }
+
+        void writeList(List<?> list) {
+            writeVarInt(list.size());
+            for (Object item : list) {
+                writeValue(item);
+            }
+        }
+
+        void writeModel(Model<?> model) {
+            Class<?> modelClass = model.getClass();
+            Schema schema = getSchema(modelClass);
+
+            if (classIndexes == null) {
+                classIndexes = new HashMap<>();
+            }
+            Integer classIndex = classIndexes.get(modelClass);
+            if (classIndex != null) {
+                writeVarInt(classIndex);
+            } else {
+                classIndex = classIndexes.size();
+                classIndexes.put(modelClass, classIndex);
+                writeVarInt(classIndex);
+                writeString(modelClass.getName());
+                writeFixedInt(schema == null ? 0 : schema.fingerprint);
+            }
+
+            writeNullableString(model instanceof JbootModel ? ((JbootModel<?>) model)._getConfigName() : null);
+
+            Set<Map.Entry<String, Object>> entrySet = model._getAttrsEntrySet();
+            if (schema == null) {
+                writeAttrs(entrySet, entrySet.size());
+                return;
+            }
+
+            // 表结构中的列按位置写入，其他的（例如 join 进来的数据）按名称写入
+            String[] columns = schema.columns;
+            Object[] values = new Object[columns.length];
+            byte[] presence = new byte[(columns.length + 7) >>> 3];
+            int extraCount = 0;
+            for (Map.Entry<String, Object> entry : entrySet) {
+                Integer index = schema.indexes.get(entry.getKey());
+                if (index == null) {
+                    extraCount++;
+                } else {
+                    values[index] = entry.getValue();
+                    presence[index >>> 3] |= 1 << (index & 7);
+                }
+            }
+
+            ensureCapacity(presence.length);
+            System.arraycopy(presence, 0, buffer, position, presence.length);
+            position += presence.length;
+            for (int i = 0; i < columns.length; i++) {
+                if ((presence[i >>> 3] & (1 << (i & 7))) != 0) {
+                    writeValue(values[i]);
+                }
+            }
+
+            writeVarInt(extraCount);
+            if (extraCount > 0) {
+                for (Map.Entry<String, Object> entry : entrySet) {
+                    if (!schema.indexes.containsKey(entry.getKey())) {
+                        writeString(entry.getKey());
+                        writeValue(entry.getValue());
+                    }
+                }
+            }
+        }
+
+        void writeAttrs(Set<Map.Entry<String, Object>> entrySet, int size) {
+            writeVarInt(size);
+            for (Map.Entry<String, Object> entry : entrySet) {
+                writeString(entry.getKey());
+                writeValue(entry.getValue());
+            }
+        }
+
+        void writeRecord(Record record) {
+            Map<String, Object> columns = record.getColumns();
+            List<String> names = new ArrayList<>(columns.keySet());
+
+            if (recordShapeIndexes == null) {
+                recordShapeIndexes = new HashMap<>();
+            }
+            Integer shapeIndex = recordShapeIndexes.get(names);
+            if (shapeIndex != null) {
+                writeVarInt(shapeIndex);
+            } else {
+                shapeIndex = recordShapeIndexes.size();
+                recordShapeIndexes.put(names, shapeIndex);
+                writeVarInt(shapeIndex);
+                writeVarInt(names.size());
+                for (String name : names) {
+                    writeString(name);
+                }
+            }
+
+            for (Object value : columns.values()) {
+                writeValue(value);
+            }
+        }
+
+        byte[] toBytes() {
+            return Arrays.copyOf(buffer, position);
+        }
+    }
+
+
+    private class Input {
+
+        private final byte[] buffer;
+        private int position;
+
+        private List<ModelClass> modelClasses;
+        private List<String[]> recordShapes;
+
+        Input(byte[] buffer, int position) {
+            this.buffer = buffer;
+            this.position = position;
+        }
+
+        int readByte() {
+            return buffer[position++];
+        }
+
+        byte[] readBytes() {
+            int length = readVarInt();
+            byte[] bytes = Arrays.copyOfRange(buffer, position, position + length);
+            position += length;
+            return bytes;
+        }
+
+        int readVarInt() {
+            int result = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = buffer[position++];
+                result |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return result;
+                }
+            }
+        }
+
+        long readVarLong() {
+            long result = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = buffer[position++];
+                result |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return result;
+                }
+            }
+        }
+
+        int readZigZagInt() {
+            int value = readVarInt();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        long readZigZagLong() {
+            long value = readVarLong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        int readFixedInt() {
+            return ((buffer[position++] & 0xFF) << 24)
+                    | ((buffer[position++] & 0xFF) << 16)
+                    | ((buffer[position++] & 0xFF) << 8)
+                    | (buffer[position++] & 0xFF);
+        }
+
+        long readFixedLong() {
+            return ((long) readFixedInt() << 32) | (readFixedInt() & 0xFFFFFFFFL);
+        }
+
+        String readString() {
+            int length = readVarInt();
+            String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        String readNullableString() {
+            int length = readVarInt() - 1;
+            if (length < 0) {
+                return null;
+            }
+            String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        Object readValue() throws Exception {
+            int tag = readByte();
+            switch (tag) {
+                case TAG_NULL:
+                    return null;
+                case TAG_TRUE:
+                    return Boolean.TRUE;
+                case TAG_FALSE:
+                    return Boolean.FALSE;
+                case TAG_INT:
+                    return readZigZagInt();
+                case TAG_LONG:
+                    return readZigZagLong();
+                case TAG_DOUBLE:
+                    return Double.longBitsToDouble(readFixedLong());
+                case TAG_FLOAT:
+                    return Float.intBitsToFloat(readFixedInt());
+                case TAG_SHORT:
+                    return (short) readZigZagInt();
+                case TAG_BYTE:
+                    return (byte) readByte();
+                case TAG_STRING:
+                    return readString();
+                case TAG_BIG_DECIMAL:
+                    int scale = readZigZagInt();
+                    return new BigDecimal(new BigInteger(readBytes()), scale);
+                case TAG_BIG_INTEGER:
+                    return new BigInteger(readBytes());
+                case TAG_DATE:
+                    return new Date(readZigZagLong());
+                case TAG_TIMESTAMP:
+                    java.sql.Timestamp timestamp = new java.sql.Timestamp(readZigZagLong());
+                    timestamp.setNanos(readVarInt());
+                    return timestamp;
+                case TAG_SQL_DATE:
+                    return new java.sql.Date(readZigZagLong());
+                case TAG_SQL_TIME:
+                    return new java.sql.Time(readZigZagLong());
+                case TAG_LOCAL_DATE_TIME:
+                    long epochSecond = readZigZagLong();
+                    return LocalDateTime.ofEpochSecond(epochSecond, readVarInt(), ZoneOffset.UTC);
+                case TAG_LOCAL_DATE:
+                    return LocalDate.ofEpochDay(readZigZagLong());
+                case TAG_LOCAL_TIME:
+                    return LocalTime.ofNanoOfDay(readVarLong());
+                case TAG_BYTES:
+                    return readBytes();
+                case TAG_MODEL:
+                    return readModel();
+                case TAG_RECORD:
+                    return readRecord();
+                case TAG_LIST:
+                    return readList();
+                case TAG_PAGE:
+                    int pageNumber = readVarInt();
+                    int pageSize = readVarInt();
+                    int totalPage = readVarInt();
+                    int totalRow = readVarInt();
+                    return new Page<>(readList(), pageNumber, pageSize, totalPage, totalRow);
+                case TAG_OBJECT:
+                    return delegate.deserialize(readBytes());
+                default:
+                    throw new IllegalStateException("ModelSerializer can not read value of tag: " + tag);
+            }
+        }
+
+        List<Object> readList() throws Exception {
+            int size = readVarInt();
+            List<Object> list = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                list.add(readValue());
+            }
+            return list;
+        }
+
+        Model<?> readModel() throws Exception {
+            if (modelClasses == null) {
+                modelClasses = new ArrayList<>();
+            }
+
+            int classIndex = readVarInt();
+            ModelClass modelClass;
+            if (classIndex < modelClasses.size()) {
+                modelClass = modelClasses.get(classIndex);
+            } else {
+                String className = readString();
+                int fingerprint = readFixedInt();
+                ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+                // 先不初始化，确认是 Model 之后再创建对象，避免数据被篡改时初始化或者创建任意的类
+                Class<?> clazz = Class.forName(className, false, classLoader != null ? classLoader : ModelSerializer.class.getClassLoader());
+                if (!Model.class.isAssignableFrom(clazz)) {
+                    throw new IllegalStateException("ModelSerializer can not read model of class: " + className);
+                }
+                Schema schema = null;
+                if (fingerprint != 0) {
+                    schema = getSchema(clazz);
+                    if (schema == null || schema.fingerprint != fingerprint) {
+                        throw new SchemaChangedException(className);
+                    }
+                }
+                modelClass = new ModelClass((Class<? extends Model<?>>) clazz, schema);
+                modelClasses.add(modelClass);
+            }
+
+            Model<?> model = modelClass.clazz.newInstance();
+
+            String configName = readNullableString();
+            if (configName != null && model instanceof JbootModel) {
+                ((JbootModel<?>) model)._setConfigName(configName);
+            }
+
+            Schema schema = modelClass.schema;
+            if (schema != null) {
+                String[] columns = schema.columns;
+                int presenceStart = position;
+                position += (columns.length + 7) >>> 3;
+                for (int i = 0; i < columns.length; i++) {
+                    if ((buffer[presenceStart + (i >>> 3)] & (1 << (i & 7))) != 0) {
+                        model.put(columns[i], readValue());
+                    }
+                }
+            }
+
+            int size = readVarInt();
+            for (int i = 0; i < size; i++) {
+                String name = readString();
+                model.put(name, readValue());
+            }
+            return model;
+        }
+
+        Record readRecord() throws Exception {
+            if (recordShapes == null) {
+                recordShapes = new ArrayList<>();
+            }
+
+            int shapeIndex = readVarInt();
+            String[] names;
+            if (shapeIndex < recordShapes.size()) {
+                names = recordShapes.get(shapeIndex);
+            } else {
+                names = new String[readVarInt()];
+                for (int i = 0; i < names.length; i++) {
+                    names[i] = readString();
+                }
+                recordShapes.add(names);
+            }
+
+            Record record = new Record();
+            for (String name : names) {
+                record.set(name, readValue());
+            }
+            return record;
+        }
+    }
+
+
+    private static class ModelClass {
+
+        private final Class<? extends Model<?>> clazz;
+        private final Schema schema;
+
+        ModelClass(Class<? extends Model<?>> clazz, Schema schema) {
+            this.clazz = clazz;
+            this.schema = schema;
+        }
+    }
+}
@@ -400,6 +400,7 @@ public class JbootCoreConfig extends JFinalConfig {
         JbootScheduleManager.me().stop();
         JbootSeataManager.me().stop();
         JbootrpcManager.me().stop();
+        LimiterManager.me().stop();
 
 
     }
@@ -39,4 +39,16 @@ public interface JbootDialect {
     public String forPaginateFrom(String alias, List<Join> joins, String table, List<Column> columns, String orderBy);
 
 
+    /**
+     * 单条 sql 里允许的最大参数数量，批量查询（例如 findListByIds）时会根据该值对 in 查询进行分批
+     * 例如 oracle 的 in 最多 1000 个，sqlserver 最多 2100 个参数，sqlite 最多 999 个参数
+     * 默认为 1000，需要其他值的方言自行复写
+     *
+     * @return
+     */
+    public default int getMaxInParasCount() {
+        return 1000;
+    }
+
+
 }
@@ -85,4 +85,10 @@ public class JbootSqlServerDialect extends SqlServerDialect implements JbootDial
     }
 
 
+    @Override
+    public int getMaxInParasCount() {
+        return 2000;
+    }
+
+
 }
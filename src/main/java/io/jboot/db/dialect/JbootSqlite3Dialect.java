@@ -60,4 +60,10 @@ public class JbootSqlite3Dialect extends Sqlite3Dialect implements JbootDialect
     }
 
 
+    @Override
+    public int getMaxInParasCount() {
+        return 999;
+    }
+
+
 }
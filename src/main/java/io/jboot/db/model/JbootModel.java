@@ -231,11 +231,16 @@ public class JbootModel<M extends JbootModel<M>> extends Model<M> {
     }
 
 
-    M _setConfigName(String configName) {
+    public M _setConfigName(String configName) {
         this.datasourceName = configName;
         return (M) this;
     }
 
+
+    public String _getConfigName() {
+        return datasourceName;
+    }
+
     @Override
     protected Config _getConfig() {
         if (datasourceName != null) {
@@ -261,23 +266,15 @@ public class JbootModel<M extends JbootModel<M>> extends Model<M> {
 
     @Override
     public boolean save() {
-        if (_hasColumn(column_created) && get(column_created) == null) {
-            set(column_created, new Date());
-        }
-
-
-        // 生成主键，只对单一主键的表生成，如果是多主键，不生成。
-        String[] pkeys = _getPrimaryKeys();
-        if (pkeys != null && pkeys.length == 1 && get(pkeys[0]) == null) {
-            Object value = config.getPrimarykeyValueGenerator().genValue(this, _getPrimaryType());
-            if (value != null) {
-                set(pkeys[0], value);
-            }
-        }
-
+        prepareForSave();
+        return doSave();
+    }
 
-        filter(FILTER_BY_SAVE);
 
+    /**
+     * 执行 insert，并把数据库生成的主键设置到 model 中
+     */
+    private boolean doSave() {
         Config config = _getConfig();
         Table table = _getTable();
 
@@ -314,6 +311,40 @@ public class JbootModel<M extends JbootModel<M>> extends Model<M> {
     }
 
 
+    /**
+     * 保存之前设置创建时间、生成主键等，save() 和 batchSync() 都会调用
+     */
+    protected void prepareForSave() {
+        if (_hasColumn(column_created) && get(column_created) == null) {
+            set(column_created, new Date());
+        }
+
+
+        // 生成主键，只对单一主键的表生成，如果是多主键，不生成。
+        String[] pkeys = _getPrimaryKeys();
+        if (pkeys != null && pkeys.length == 1 && get(pkeys[0]) == null) {
+            Object value = config.getPrimarykeyValueGenerator().genValue(this, _getPrimaryType());
+            if (value != null) {
+                set(pkeys[0], value);
+            }
+        }
+
+
+        filter(FILTER_BY_SAVE);
+    }
+
+
+    /**
+     * 批量更新之前设置修改时间，单条更新时的 filter 由 Model.update() 执行
+     */
+    protected void prepareForBatchUpdate() {
+        if (_hasColumn(column_modified)) {
+            set(column_modified, new Date());
+        }
+        filter(FILTER_BY_UPDATE);
+    }
+
+
     @Override
     protected void filter(int filterBy) {
         config.getFilter().filter(this, filterBy);
@@ -444,6 +475,149 @@ public class JbootModel<M extends JbootModel<M>> extends Model<M> {
     }
 
 
+    /**
+     * 在同一个事务里批量删除、保存和更新数据，用于 JbootServiceBase.syncModels() 等需要同时批量修改大量数据的场景
+     * <p>
+     * 删除通过 pk in (...) 完成（数量过多时根据 JbootDialect.getMaxInParasCount() 分批），保存和更新通过 jdbc batch 完成，
+     * 事务提交后批量清除被删除和被更新数据的 id 缓存
+     * <p>
+     * 批量保存按 model 的字段分组、批量更新按 model 被修改的字段分组，每组分别执行 jdbc batch，
+     * 避免以第一个 model 的字段生成 sql 导致其他 model 丢失更新或者写入 null
+     * <p>
+     * 以下情况不使用 jdbc batch，而是在同一个事务里逐条执行：
+     * 1、model 复写了 save()、update() 或者 delete() 时，逐条调用对应的方法，保证子类中的逻辑（例如清除缓存、审计）依然执行
+     * 2、保存的 model 没有主键值（例如数据库自增主键）时，逐条 insert，并把数据库生成的主键设置到 model 中
+     *
+     * @param saveModels   需要保存的数据，可以为 null
+     * @param updateModels 需要更新的数据，可以为 null
+     * @param deleteModels 需要删除的数据，可以为 null
+     * @return
+     */
+    public boolean batchSync(List<M> saveModels, List<M> updateModels, List<M> deleteModels) {
+        boolean hasSave = saveModels != null && !saveModels.isEmpty();
+        boolean hasUpdate = updateModels != null && !updateModels.isEmpty();
+        boolean hasDelete = deleteModels != null && !deleteModels.isEmpty();
+        if (!hasSave && !hasUpdate && !hasDelete) {
+            return true;
+        }
+
+        Class<?> modelClass = _getUsefulClass();
+        boolean saveByRow = hasSave && ClassUtil.isMethodOverridden(modelClass, JbootModel.class, "save");
+        boolean updateByRow = hasUpdate && ClassUtil.isMethodOverridden(modelClass, JbootModel.class, "update");
+        boolean deleteByRow = hasDelete && ClassUtil.isMethodOverridden(modelClass, JbootModel.class, "delete");
+
+        String[] primaryKeys = _getPrimaryKeys();
+        List<M> batchSaveModels = new ArrayList<>();
+        List<M> rowSaveModels = new ArrayList<>();
+        if (hasSave && !saveByRow) {
+            for (M model : saveModels) {
+                model.prepareForSave();
+                // 没有主键值时，需要逐条 insert 才能拿到数据库生成的主键
+                if (hasNullIdValue(model, primaryKeys)) {
+                    rowSaveModels.add(model);
+                } else {
+                    batchSaveModels.add(model);
+                }
+            }
+        }
+
+        if (hasUpdate && !updateByRow) {
+            for (M model : updateModels) {
+                model.prepareForBatchUpdate();
+            }
+        }
+
+        DbPro db = Db.use(_getConfig().getName());
+        boolean success = db.tx(() -> {
+            if (deleteByRow) {
+                for (M model : deleteModels) {
+                    model.delete();
+                }
+            } else if (hasDelete) {
+                int batchSize = Math.max(1, _getDialect().getMaxInParasCount() / primaryKeys.length);
+                List<Object[]> idValuesList = new ArrayList<>(Math.min(batchSize, deleteModels.size()));
+                for (M model : deleteModels) {
+                    idValuesList.add(getIdValues(model, primaryKeys));
+                    if (idValuesList.size() >= batchSize) {
+                        deleteByColumns(buildIdValuesColumns(primaryKeys, idValuesList));
+                        idValuesList.clear();
+                    }
+                }
+                if (!idValuesList.isEmpty()) {
+                    deleteByColumns(buildIdValuesColumns(primaryKeys, idValuesList));
+                }
+            }
+            if (saveByRow) {
+                for (M model : saveModels) {
+                    model.save();
+                }
+            } else if (hasSave) {
+                for (JbootModel<?> model : rowSaveModels) {
+                    model.doSave();
+                }
+                for (List<M> group : groupByColumns(batchSaveModels, false)) {
+                    db.batchSave(group, group.size());
+                }
+            }
+            if (updateByRow) {
+                for (M model : updateModels) {
+                    model.update();
+                }
+            } else if (hasUpdate) {
+                for (List<M> group : groupByColumns(updateModels, true)) {
+                    db.batchUpdate(group, group.size());
+                }
+            }
+            return true;
+        });
+
+        if (success && idCacheEnable && (hasUpdate || hasDelete)) {
+            Set<String> cacheKeys = new HashSet<>();
+            if (hasUpdate) {
+                for (M model : updateModels) {
+                    cacheKeys.add(buildIdCacheKey(getIdValues(model, primaryKeys)));
+                }
+            }
+            if (hasDelete) {
+                for (M model : deleteModels) {
+                    cacheKeys.add(buildIdCacheKey(getIdValues(model, primaryKeys)));
+                }
+            }
+            try {
+                config.getIdCache().removeAll(_getTableName(), cacheKeys);
+            } catch (Exception ex) {
+                LOG.error("Remove cache is error by name [" + _getTableName() + "] and keys " + cacheKeys, ex);
+            }
+        }
+
+        return success;
+    }
+
+
+    /**
+     * DbPro.batchSave() 和 batchUpdate() 以第一个 model 的字段生成 sql，所以需要按字段分组
+     *
+     * @param models
+     * @param byModifyFlag true 按被修改的字段分组（用于更新），false 按所有字段分组（用于保存）
+     * @return
+     */
+    private List<List<M>> groupByColumns(List<M> models, boolean byModifyFlag) {
+        Map<Set<String>, List<M>> groups = new LinkedHashMap<>();
+        for (M model : models) {
+            Set<String> columns = byModifyFlag
+                    ? new HashSet<>(model._getModifyFlag())
+                    : new HashSet<>(Arrays.asList(model._getAttrNames()));
+
+            // 没有被修改的字段，不需要更新
+            if (byModifyFlag && columns.isEmpty()) {
+                continue;
+            }
+            groups.computeIfAbsent(columns, k -> new ArrayList<>()).add(model);
+        }
+        return new ArrayList<>(groups.values());
+    }
+
+
     @Override
     public boolean update() {
         if (_hasColumn(column_modified)) {
@@ -546,55 +720,208 @@ public class JbootModel<M extends JbootModel<M>> extends Model<M> {
     }
 
 
+    /**
+     * 根据多个主键查询数据列表，返回的顺序和传入的 id 顺序一致，数据库中不存在的数据不会返回
+     * <p>
+     * 开启 id 缓存时，会先从缓存中批量获取，只有缓存中不存在的数据才会通过 in 查询去数据库中查询，并批量放入缓存
+     * 复合主键时，每个 id 需要传入主键值的数组，例如：findListByIds(new Object[]{1, "a"}, new Object[]{2, "b"})
+     *
+     * @param ids
+     * @return
+     */
     public List<M> findListByIds(Object... ids) {
         if (ids == null || ids.length == 0) {
             return null;
         }
 
-        List<M> list = new ArrayList<>();
+        int primaryKeyCount = _getPrimaryKeys().length;
+        List<Object[]> idValuesList = new ArrayList<>(ids.length);
         for (Object id : ids) {
-            if (id.getClass() == int[].class) {
-                findListByIds(list, (int[]) id);
-            } else if (id.getClass() == long[].class) {
-                findListByIds(list, (long[]) id);
-            } else if (id.getClass() == short[].class) {
-                findListByIds(list, (short[]) id);
+            addIdValues(idValuesList, id, primaryKeyCount);
+        }
+
+        //去掉重复的 id，key 和 id 缓存的 key 保持一致
+        Map<String, Object[]> idValuesMap = new LinkedHashMap<>();
+        for (Object[] idValues : idValuesList) {
+            idValuesMap.putIfAbsent(buildIdCacheKey(idValues), idValues);
+        }
+
+        Map<Object, M> models = idCacheEnable
+                ? loadListByCache(idValuesMap)
+                : loadListByIdValues(idValuesMap.values());
+
+        boolean copy = idCacheEnable && config.isIdCacheByCopyEnable();
+        List<M> list = new ArrayList<>(idValuesList.size());
+        for (Object[] idValues : idValuesList) {
+            M model = models.get(buildIdCacheKey(idValues));
+            if (model != null) {
+                list.add(copy ? model.copy() : model);
+            }
+        }
+        return list;
+    }
+
+
+    private void addIdValues(List<Object[]> idValuesList, Object id, int primaryKeyCount) {
+        if (id == null) {
+            return;
+        }
+
+        if (id.getClass() == int[].class) {
+            for (int value : (int[]) id) {
+                idValuesList.add(new Object[]{value});
+            }
+        } else if (id.getClass() == long[].class) {
+            for (long value : (long[]) id) {
+                idValuesList.add(new Object[]{value});
+            }
+        } else if (id.getClass() == short[].class) {
+            for (short value : (short[]) id) {
+                idValuesList.add(new Object[]{value});
+            }
+        } else if (id instanceof Object[]) {
+            Object[] values = (Object[]) id;
+            if (primaryKeyCount == 1) {
+                for (Object value : values) {
+                    addIdValues(idValuesList, value, primaryKeyCount);
+                }
             } else {
-                M model = findById(id);
-                if (model != null) {
-                    list.add(model);
+                if (values.length != primaryKeyCount) {
+                    throw new IllegalArgumentException("idValues.length != _getPrimaryKeys().length");
                 }
+                idValuesList.add(values);
+            }
+        } else {
+            if (primaryKeyCount != 1) {
+                throw new IllegalArgumentException("the table \"" + _getTableName() + "\" has multiple primary keys, every id must be an Object[] of primary key values.");
             }
+            idValuesList.add(new Object[]{id});
         }
-        return list;
     }
 
-    private void findListByIds(List<M> list, int[] ids) {
-        for (int id : ids) {
-            M model = findById(id);
-            if (model != null) {
-                list.add(model);
+
+    protected Map<Object, M> loadListByCache(Map<String, Object[]> idValuesMap) {
+
+        //临时关闭 id 缓存的情况
+        if (JbootModelHintManager.me().isClosedIdCache(getClass())) {
+            try {
+                return loadListByIdValues(idValuesMap.values());
+            } finally {
+                JbootModelHintManager.me().clearIdCacheFlag();
+            }
+        }
+
+        try {
+            return config.getIdCache().getAll(_getTableName()
+                    , idValuesMap.keySet()
+                    , keys -> {
+                        List<Object[]> missingIdValues = new ArrayList<>(keys.size());
+                        for (Object key : keys) {
+                            missingIdValues.add(idValuesMap.get(key));
+                        }
+                        return loadListByIdValues(missingIdValues);
+                    }
+                    , config.getIdCacheTime());
+        } catch (Exception ex) {
+            LOG.error("Jboot load model list [" + ClassUtil.getUsefulClass(getClass()) + "] by cache is error, safe deleted them in cache.", ex);
+            try {
+                config.getIdCache().removeAll(_getTableName(), idValuesMap.keySet());
+            } catch (Exception e) {
+                LOG.error("Remove cache is error by name [" + _getTableName() + "] and keys " + idValuesMap.keySet(), e);
             }
         }
+
+        return loadListByIdValues(idValuesMap.values());
     }
 
-    private void findListByIds(List<M> list, long[] ids) {
-        for (long id : ids) {
-            M model = findById(id);
-            if (model != null) {
-                list.add(model);
+
+    /**
+     * 通过 in 查询（复合主键时通过 or 分组查询）批量从数据库中加载数据，
+     * 每条 sql 的参数数量不会超过 JbootDialect.getMaxInParasCount()
+     *
+     * @param idValuesList
+     * @return key 为 buildIdCacheKey 生成的 key
+     */
+    protected Map<Object, M> loadListByIdValues(Collection<Object[]> idValuesList) {
+        Map<Object, M> result = new HashMap<>();
+        if (idValuesList.isEmpty()) {
+            return result;
+        }
+
+        String[] primaryKeys = _getPrimaryKeys();
+        int batchSize = Math.max(1, _getDialect().getMaxInParasCount() / primaryKeys.length);
+
+        List<Object[]> batch = new ArrayList<>(Math.min(batchSize, idValuesList.size()));
+        for (Object[] idValues : idValuesList) {
+            batch.add(idValues);
+            if (batch.size() >= batchSize) {
+                loadListByIdValues(result, primaryKeys, batch);
+                batch.clear();
             }
         }
+
+        if (!batch.isEmpty()) {
+            loadListByIdValues(result, primaryKeys, batch);
+        }
+
+        return result;
     }
 
 
-    private void findListByIds(List<M> list, short[] ids) {
-        for (short id : ids) {
-            M model = findById(id);
-            if (model != null) {
-                list.add(model);
+    private void loadListByIdValues(Map<Object, M> result, String[] primaryKeys, List<Object[]> batch) {
+        Columns columns = buildIdValuesColumns(primaryKeys, batch);
+        String sql = _getDialect().forFindByColumns(null, null, _getTableName(), "*", columns.getList(), null, null);
+        List<M> models = find(sql, columns.getValueArray());
+        for (M model : models) {
+            result.put(buildIdCacheKey(getIdValues(model, primaryKeys)), model);
+        }
+    }
+
+
+    /**
+     * 单一主键时生成 pk in (...) 的条件，复合主键时生成 (pk1 = ? and pk2 = ?) or (...) 的条件
+     */
+    private Columns buildIdValuesColumns(String[] primaryKeys, List<Object[]> idValuesList) {
+        Columns columns = Columns.create();
+        if (primaryKeys.length == 1) {
+            Object[] values = new Object[idValuesList.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = idValuesList.get(i)[0];
+            }
+            columns.in(primaryKeys[0], values);
+        } else {
+            for (int i = 0; i < idValuesList.size(); i++) {
+                Object[] idValues = idValuesList.get(i);
+                Columns group = Columns.create();
+                for (int j = 0; j < primaryKeys.length; j++) {
+                    group.eq(primaryKeys[j], idValues[j]);
+                }
+                if (i > 0) {
+                    columns.or();
+                }
+                columns.group(group);
             }
         }
+        return columns;
+    }
+
+
+    private static boolean hasNullIdValue(JbootModel<?> model, String[] primaryKeys) {
+        for (String primaryKey : primaryKeys) {
+            if (model.get(primaryKey) == null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    private static Object[] getIdValues(JbootModel<?> model, String[] primaryKeys) {
+        Object[] idValues = new Object[primaryKeys.length];
+        for (int i = 0; i < primaryKeys.length; i++) {
+            idValues[i] = model.get(primaryKeys[i]);
+        }
+        return idValues;
     }
 
 
@@ -666,6 +993,39 @@ public class JbootModel<M extends JbootModel<M>> extends Model<M> {
         return findListByColumns(columns, orderBy, count, null);
     }
 
+    /**
+     * 查询 column 的值在 values 里的所有数据，values 过多时会根据 JbootDialect.getMaxInParasCount() 分批查询
+     *
+     * @param column
+     * @param values
+     * @return
+     */
+    public List<M> findListByColumnIn(String column, Collection values) {
+        if (values == null || values.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        int batchSize = Math.max(1, _getDialect().getMaxInParasCount());
+        if (values.size() <= batchSize) {
+            return findListByColumns(Columns.create().in(column, values));
+        }
+
+        List<M> list = new ArrayList<>();
+        List<Object> batch = new ArrayList<>(batchSize);
+        for (Object value : values) {
+            batch.add(value);
+            if (batch.size() >= batchSize) {
+                list.addAll(findListByColumns(Columns.create().in(column, batch)));
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            list.addAll(findListByColumns(Columns.create().in(column, batch)));
+        }
+        return list;
+    }
+
+
     public List<M> findListByColumns(Columns columns, String orderBy, Integer count, String loadColumns) {
         if (StrUtil.isBlank(loadColumns) && this.loadColumns != null) {
             loadColumns = this.loadColumns;
@@ -16,20 +16,17 @@
 package io.jboot.service;
 
 import com.jfinal.kit.LogKit;
-import com.jfinal.plugin.activerecord.Db;
 import com.jfinal.plugin.activerecord.Model;
 import com.jfinal.plugin.activerecord.Page;
 import io.jboot.db.model.Columns;
 import io.jboot.db.model.JbootModel;
 import io.jboot.utils.ClassUtil;
 import io.jboot.utils.ObjectFunc;
-import io.jboot.utils.ObjectUtil;
 
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * JbootServiceBase 类
@@ -45,6 +42,9 @@ public class JbootServiceBase<M extends JbootModel<M>>
 
     protected JbootModel<M> DAO = null;
 
+    // 子类是否复写了 joinByValue、findById、joinManyByValue 或 findListByColumns，key 为 类名#方法名
+    private static final Map<String, Boolean> overriddenCache = new ConcurrentHashMap<>();
+
     public JbootServiceBase() {
         DAO = initDao();
     }
@@ -163,7 +163,8 @@ public class JbootServiceBase<M extends JbootModel<M>>
 
 
     /**
-     * 根据多个 id 查找多个对象
+     * 根据多个 id 查找多个对象，返回的顺序和 ids 的顺序一致
+     * 会先从 id 缓存中批量获取，缓存中不存在的数据再通过一条 in 查询从数据库中获取
      *
      * @param ids
      * @return
@@ -317,6 +318,9 @@ public class JbootServiceBase<M extends JbootModel<M>>
 
     /**
      * 同步 model 数据到数据库
+     * <p>
+     * 通过 compareAttrGetters 的值对比数据库中已经存在的数据：不存在的保存，已存在的更新，多余的删除，
+     * 所有修改会在同一个事务里批量执行
      *
      * @param columns
      * @param syncModels
@@ -334,26 +338,54 @@ public class JbootServiceBase<M extends JbootModel<M>>
 
         List<M> existModels = findListByColumns(columns);
         if (existModels == null || existModels.isEmpty()) {
-            Db.batchSave(new ArrayList<>(syncModels), syncModels.size());
+            DAO.batchSync(new ArrayList<>(syncModels), null, null);
             return;
         }
 
+        if (compareAttrGetters == null || compareAttrGetters.length == 0) {
+            throw new IllegalArgumentException("compareAttrGetters must not be null");
+        }
 
+        Map<List<Object>, M> existModelMap = new HashMap<>(existModels.size());
         for (M existModel : existModels) {
-            if (!ObjectUtil.isContainsObject(syncModels, existModel, compareAttrGetters)) {
-                existModel.delete();
-            }
+            existModelMap.putIfAbsent(buildCompareKey(existModel, compareAttrGetters), existModel);
         }
 
-
+        Set<List<Object>> syncKeys = new HashSet<>(syncModels.size());
+        List<M> saveModels = new ArrayList<>();
+        Map<List<Object>, M> updateModels = new LinkedHashMap<>();
         for (M syncModel : syncModels) {
-            M existModel = ObjectUtil.getContainsObject(existModels, syncModel, compareAttrGetters);
+            List<Object> key = buildCompareKey(syncModel, compareAttrGetters);
+            syncKeys.add(key);
+
+            M existModel = existModelMap.get(key);
             if (existModel == null) {
-                syncModel.save();
+                saveModels.add(syncModel);
             } else {
-                existModel._setAttrs(syncModel).update();
+                updateModels.put(key, existModel._setAttrs(syncModel));
+            }
+        }
+
+        List<M> deleteModels = new ArrayList<>();
+        for (M existModel : existModels) {
+            if (!syncKeys.contains(buildCompareKey(existModel, compareAttrGetters))) {
+                deleteModels.add(existModel);
+            }
+        }
+
+        DAO.batchSync(saveModels, new ArrayList<>(updateModels.values()), deleteModels);
+    }
+
+
+    private List<Object> buildCompareKey(M model, ObjectFunc<M>[] compareAttrGetters) {
+        Object[] values = new Object[compareAttrGetters.length];
+        for (int i = 0; i < compareAttrGetters.length; i++) {
+            if (compareAttrGetters[i] == null) {
+                throw new IllegalArgumentException("compareAttrGetter must not be null");
             }
+            values[i] = compareAttrGetters[i].get(model);
         }
+        return Arrays.asList(values);
     }
 
 
@@ -384,4 +416,89 @@ public class JbootServiceBase<M extends JbootModel<M>>
     protected <M extends JbootModel> List<M> joinManyByValue(String columnName, Object value, M sourceModel) {
         return (List<M>) findListByColumns(Columns.create(columnName, value));
     }
+
+
+    /**
+     * 复写 JbootServiceJoinerImpl 的方法，通过 findListByIds 批量查询（会优先从 id 缓存中批量获取）
+     * 子类复写了 joinByValue 或 findById（或者 DAO 复写了 findById）时返回 null，
+     * 逐个调用 joinByValue，从而使用复写的 findById
+     *
+     * @param columnValues
+     * @return
+     */
+    @Override
+    protected Map<Object, JbootModel> joinByValues(Collection<Object> columnValues) {
+        if (isOverridden("joinByValue", Object.class, JbootModel.class)
+                || isOverridden("findById", Object.class)
+                || isDaoFindByIdOverridden()) {
+            return null;
+        }
+
+        List<M> models = findListByIds(columnValues.toArray());
+
+        Map<String, M> modelMap = new HashMap<>(models.size());
+        for (M model : models) {
+            modelMap.put(String.valueOf((Object) model._getIdValue()), model);
+        }
+
+        Map<Object, JbootModel> result = new HashMap<>(columnValues.size());
+        for (Object value : columnValues) {
+            M model = modelMap.get(value.toString());
+            if (model != null) {
+                result.put(value, model);
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     * 复写 JbootServiceJoinerImpl 的方法，通过 in 查询批量获取
+     * 子类复写了 joinManyByValue 或 findListByColumns 时返回 null，逐个调用 joinManyByValue，
+     * 从而使用子类的 findListByColumns（以及其上的拦截器，例如 @Cacheable）
+     *
+     * @param columnName
+     * @param values
+     * @return
+     */
+    @Override
+    protected Map<Object, List<JbootModel>> joinManyByValues(String columnName, Collection<Object> values) {
+        if (isOverridden("joinManyByValue", String.class, Object.class, JbootModel.class)
+                || isOverridden("findListByColumns", Columns.class)) {
+            return null;
+        }
+
+        List<M> models = DAO.findListByColumnIn(columnName, values);
+
+        Map<String, List<JbootModel>> modelsMap = new HashMap<>();
+        for (M model : models) {
+            modelsMap.computeIfAbsent(String.valueOf((Object) model.get(columnName)), k -> new ArrayList<>()).add(model);
+        }
+
+        Map<Object, List<JbootModel>> result = new HashMap<>(values.size());
+        for (Object value : values) {
+            List<JbootModel> list = modelsMap.get(value.toString());
+            if (list != null) {
+                result.put(value, list);
+            }
+        }
+        return result;
+    }
+
+
+    private boolean isDaoFindByIdOverridden() {
+        Class<?> daoClass = ClassUtil.getUsefulClass(DAO.getClass());
+        return overriddenCache.computeIfAbsent(daoClass.getName() + "#findById",
+                key -> ClassUtil.isMethodOverridden(daoClass, JbootModel.class, "findById", Object.class));
+    }
+
+
+    /**
+     * 判断子类（不包括 aop 生成的代理类）是否复写了 JbootServiceBase 的某个方法
+     */
+    private boolean isOverridden(String methodName, Class<?>... parameterTypes) {
+        Class<?> usefulClass = ClassUtil.getUsefulClass(getClass());
+        return overriddenCache.computeIfAbsent(usefulClass.getName() + "#" + methodName,
+                key -> ClassUtil.isMethodOverridden(usefulClass, JbootServiceBase.class, methodName, parameterTypes));
+    }
 }
@@ -25,8 +25,7 @@ import io.jboot.utils.ArrayUtil;
 import io.jboot.utils.ObjectFunc;
 import io.jboot.utils.StrUtil;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 
 
 public abstract class JbootServiceJoinerImpl implements JbootServiceJoiner {
@@ -61,42 +60,43 @@ public abstract class JbootServiceJoinerImpl implements JbootServiceJoiner {
 
     @Override
     public <M extends JbootModel> List<M> join(List<M> models, String columnName) {
-        if (ArrayUtil.isNotEmpty(models)) {
-            for (JbootModel m : models) {
-                join(m, columnName);
-            }
-        }
-        return models;
+        return join(models, columnName, null, null);
     }
 
 
     @Override
     public <M extends JbootModel> List<M> join(List<M> models, String columnName, String[] attrs) {
-        if (ArrayUtil.isNotEmpty(models)) {
-            for (JbootModel m : models) {
-                join(m, columnName, attrs);
-            }
-        }
-        return models;
+        return join(models, columnName, null, attrs);
     }
 
 
     @Override
     public <M extends JbootModel> List<M> join(List<M> models, String columnName, String joinName) {
-        if (ArrayUtil.isNotEmpty(models)) {
-            for (JbootModel m : models) {
-                join(m, columnName, joinName);
-            }
-        }
-        return models;
+        return join(models, columnName, joinName, null);
     }
 
 
     @Override
     public <M extends JbootModel> List<M> join(List<M> models, String columnName, String joinName, String[] attrs) {
         if (ArrayUtil.isNotEmpty(models)) {
-            for (JbootModel m : models) {
-                join(m, columnName, joinName, attrs);
+            Map<Object, JbootModel> joinModels = models.size() > 1
+                    ? joinByValues(collectValues(models, m -> m.get(columnName)))
+                    : null;
+
+            //子类不支持批量查询时，逐个查询
+            if (joinModels == null) {
+                for (JbootModel m : models) {
+                    join(m, columnName, joinName, attrs);
+                }
+            } else {
+                for (JbootModel m : models) {
+                    Object value = m == null ? null : m.get(columnName);
+                    if (value != null) {
+                        // 同一个 join 的数据可能被多个 model 使用，每个 model 使用自己的副本
+                        JbootModel joinModel = joinModels.get(value);
+                        putJoinModel(m, joinModel == null || ArrayUtil.isNotEmpty(attrs) ? joinModel : joinModel.copy(), joinName, attrs);
+                    }
+                }
             }
         }
         return models;
@@ -157,15 +157,40 @@ public abstract class JbootServiceJoinerImpl implements JbootServiceJoiner {
         if (value == null) {
             return model;
         }
-        JbootModel m = joinByValue(value, model);
-        if (m != null) {
-            joinName = StrUtil.isNotBlank(joinName) ? joinName : StrKit.firstCharToLowerCase(m.getClass().getSimpleName());
-            model.put(joinName, ArrayUtil.isNotEmpty(attrs) ? m.copy().keep(attrs) : m);
-        }
+        putJoinModel(model, joinByValue(value, model), joinName, attrs);
         return model;
     }
 
 
+    private void putJoinModel(JbootModel model, JbootModel joinModel, String joinName, String[] attrs) {
+        if (joinModel != null) {
+            joinName = StrUtil.isNotBlank(joinName) ? joinName : StrKit.firstCharToLowerCase(joinModel.getClass().getSimpleName());
+            model.put(joinName, ArrayUtil.isNotEmpty(attrs) ? joinModel.copy().keep(attrs) : joinModel);
+        }
+    }
+
+
+    /**
+     * 收集 models 里不重复的值，用于批量查询
+     *
+     * @param models
+     * @param valueGetter
+     * @return
+     */
+    protected <M extends JbootModel> Set<Object> collectValues(List<M> models, ObjectFunc<M> valueGetter) {
+        Set<Object> values = new LinkedHashSet<>();
+        for (M m : models) {
+            if (m != null) {
+                Object value = valueGetter.get(m);
+                if (value != null) {
+                    values.add(value);
+                }
+            }
+        }
+        return values;
+    }
+
+
     /**
      * 可以让子类去复写 joinByColumnValue ，比如默认只 join 部分字段等，或者不是根据主键进行查询等
      * 一般情况下，传入的 columnValue 是主键的值，但是也有可能不是，要看场景，如果不是的情况下可以通过 sourceModel 来进行判断
@@ -176,6 +201,20 @@ public abstract class JbootServiceJoinerImpl implements JbootServiceJoiner {
     protected abstract JbootModel joinByValue(Object columnValue, JbootModel sourceModel);
 
 
+    /**
+     * 批量查询 join 的数据，用于 join(List...) 和 join(Page...) 时避免逐条查询，
+     * 返回 null 表示不支持批量查询，此时会逐个调用 joinByValue 查询
+     * <p>
+     * 注意：JbootServiceBase 的子类复写了 joinByValue 或 findById 而没有复写该方法时，会逐个调用 joinByValue
+     *
+     * @param columnValues 不重复的值
+     * @return key 为 columnValues 里的值
+     */
+    protected Map<Object, JbootModel> joinByValues(Collection<Object> columnValues) {
+        return null;
+    }
+
+
 /////////////////joinMany start/////////////////////////////
 
 
@@ -208,45 +247,25 @@ public abstract class JbootServiceJoinerImpl implements JbootServiceJoiner {
 
     @Override
     public <M extends JbootModel> List<M> joinMany(List<M> models, String targetColumnName) {
-        if (ArrayUtil.isNotEmpty(models)) {
-            for (M m : models) {
-                joinMany(m, targetColumnName);
-            }
-        }
-        return models;
+        return joinMany(models, null, targetColumnName, null, null);
     }
 
 
     @Override
     public <M extends JbootModel> List<M> joinMany(List<M> models, String targetColumnName, String[] attrs) {
-        if (ArrayUtil.isNotEmpty(models)) {
-            for (M m : models) {
-                joinMany(m, targetColumnName, attrs);
-            }
-        }
-        return models;
+        return joinMany(models, null, targetColumnName, null, attrs);
     }
 
 
     @Override
     public <M extends JbootModel> List<M> joinMany(List<M> models, String targetColumnName, String joinName) {
-        if (ArrayUtil.isNotEmpty(models)) {
-            for (M m : models) {
-                joinMany(m, targetColumnName, joinName);
-            }
-        }
-        return models;
+        return joinMany(models, null, targetColumnName, joinName, null);
     }
 
 
     @Override
     public <M extends JbootModel> List<M> joinMany(List<M> models, String targetColumnName, String joinName, String[] attrs) {
-        if (ArrayUtil.isNotEmpty(models)) {
-            for (M m : models) {
-                joinMany(m, targetColumnName, joinName, attrs);
-            }
-        }
-        return models;
+        return joinMany(models, null, targetColumnName, joinName, attrs);
     }
 
 
@@ -301,42 +320,44 @@ public abstract class JbootServiceJoinerImpl implements JbootServiceJoiner {
 
     @Override
     public <M extends JbootModel> List<M> joinMany(List<M> models, ObjectFunc<M> modelValueGetter, String targetColumnName) {
-        if (ArrayUtil.isNotEmpty(models)) {
-            for (M m : models) {
-                joinMany(m, modelValueGetter, targetColumnName);
-            }
-        }
-        return models;
+        return joinMany(models, modelValueGetter, targetColumnName, null, null);
     }
 
 
     @Override
     public <M extends JbootModel> List<M> joinMany(List<M> models, ObjectFunc<M> modelValueGetter, String targetColumnName, String[] attrs) {
-        if (ArrayUtil.isNotEmpty(models)) {
-            for (M m : models) {
-                joinMany(m, modelValueGetter, targetColumnName, attrs);
-            }
-        }
-        return models;
+        return joinMany(models, modelValueGetter, targetColumnName, null, attrs);
     }
 
 
     @Override
     public <M extends JbootModel> List<M> joinMany(List<M> models, ObjectFunc<M> modelValueGetter, String targetColumnName, String joinName) {
-        if (ArrayUtil.isNotEmpty(models)) {
-            for (M m : models) {
-                joinMany(m, modelValueGetter, targetColumnName, joinName);
-            }
-        }
-        return models;
+        return joinMany(models, modelValueGetter, targetColumnName, joinName, null);
     }
 
 
     @Override
     public <M extends JbootModel> List<M> joinMany(List<M> models, ObjectFunc<M> modelValueGetter, String targetColumnName, String joinName, String[] attrs) {
         if (ArrayUtil.isNotEmpty(models)) {
-            for (M m : models) {
-                joinMany(m, modelValueGetter, targetColumnName, joinName, attrs);
+            ObjectFunc<M> valueGetter = modelValueGetter != null ? modelValueGetter : m -> m._getIdValue();
+            Map<Object, List<JbootModel>> joinModels = models.size() > 1
+                    ? joinManyByValues(targetColumnName, collectValues(models, valueGetter))
+                    : null;
+
+            //子类不支持批量查询时，逐个查询
+            if (joinModels == null) {
+                for (M m : models) {
+                    joinMany(m, modelValueGetter, targetColumnName, joinName, attrs);
+                }
+            } else {
+                for (M m : models) {
+                    Object value = m == null ? null : valueGetter.get(m);
+                    if (value != null) {
+                        // 同一个 join 的数据可能被多个 model 使用，每个 model 使用自己的副本
+                        List<JbootModel> joinList = joinModels.get(value);
+                        putJoinList(m, joinList == null || ArrayUtil.isNotEmpty(attrs) ? joinList : copyModelList(joinList), joinName, attrs);
+                    }
+                }
             }
         }
         return models;
@@ -370,13 +391,16 @@ public abstract class JbootServiceJoinerImpl implements JbootServiceJoiner {
             return model;
         }
 
-        List<M> list = joinManyByValue(targetColumnName, value, model);
+        putJoinList(model, joinManyByValue(targetColumnName, value, model), joinName, attrs);
+        return model;
+    }
+
+
+    private void putJoinList(JbootModel model, List<? extends JbootModel> list, String joinName, String[] attrs) {
         if (list != null && !list.isEmpty()) {
             joinName = StrUtil.isNotBlank(joinName) ? joinName : StrKit.firstCharToLowerCase(list.get(0).getClass().getSimpleName()) + "List";
             model.put(joinName, ArrayUtil.isNotEmpty(attrs) ? keepModelListAttrs(list, attrs) : list);
         }
-
-        return model;
     }
 
 
@@ -392,9 +416,33 @@ public abstract class JbootServiceJoinerImpl implements JbootServiceJoiner {
     }
 
 
+    private static List<JbootModel> copyModelList(List<JbootModel> list) {
+        List<JbootModel> retList = new ArrayList<>(list.size());
+        for (JbootModel model : list) {
+            retList.add(model.copy());
+        }
+        return retList;
+    }
+
+
     protected abstract <M extends JbootModel> List<M> joinManyByValue(String columnName, Object value, M sourceModel);
 
 
+    /**
+     * 批量查询 joinMany 的数据，用于 joinMany(List...) 和 joinMany(Page...) 时避免逐条查询，
+     * 返回 null 表示不支持批量查询，此时会逐个调用 joinManyByValue 查询
+     * <p>
+     * 注意：JbootServiceBase 的子类复写了 joinManyByValue 或 findListByColumns 而没有复写该方法时，会逐个调用 joinManyByValue
+     *
+     * @param columnName
+     * @param values     不重复的值
+     * @return key 为 values 里的值
+     */
+    protected Map<Object, List<JbootModel>> joinManyByValues(String columnName, Collection<Object> values) {
+        return null;
+    }
+
+
 /////////////////joinMany end/////////////////////////////
 
 
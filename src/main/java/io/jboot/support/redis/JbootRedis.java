@@ -18,6 +18,7 @@ package io.jboot.support.redis;
 import redis.clients.jedis.BinaryJedisPubSub;
 import redis.clients.jedis.JedisPubSub;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -117,6 +118,21 @@ public interface JbootRedis {
     @SuppressWarnings("rawtypes")
     public List mget(Object... keys);
 
+    /**
+     * 通过 pipeline 批量设置多个 key-value 对，并为每个 key 设置相同的生存时间
+     * seconds 小于等于 0 时，key 永不过期
+     * 默认逐个执行 SETEX 或者 SET
+     */
+    public default void msetex(Map<Object, Object> keysValues, int seconds) {
+        for (Map.Entry<Object, Object> entry : keysValues.entrySet()) {
+            if (seconds > 0) {
+                setex(entry.getKey(), seconds, entry.getValue());
+            } else {
+                set(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
     /**
      * 将 key 中储存的数字值减一。
      * 如果 key 不存在，那么 key 的值会先被初始化为 0 ，然后再执行 DECR 操作。
@@ -234,6 +250,18 @@ public interface JbootRedis {
      */
     public Long ttl(Object key);
 
+    /**
+     * 通过 pipeline 批量返回多个 key 的剩余生存时间，单位秒，返回的顺序和 keys 的顺序一致
+     * 默认逐个执行 TTL
+     */
+    public default List<Long> mttl(Object... keys) {
+        List<Long> ttls = new ArrayList<>(keys.length);
+        for (Object key : keys) {
+            ttls.add(ttl(key));
+        }
+        return ttls;
+    }
+
     /**
      * 这个命令类似于 TTL 命令，但它以毫秒为单位返回 key 的剩余生存时间，而不是像 TTL 命令那样，以秒为单位。
      */
@@ -405,6 +433,23 @@ public interface JbootRedis {
      */
     public <T> T rpop(Object key);
 
+    /**
+     * 从列表 key 的尾部一次移除并返回最多 count 个元素，返回的顺序与依次执行 RPOP 相同
+     * 通过 lua 脚本原子执行，不依赖 redis 6.2 的 RPOP count 参数
+     * 默认逐个执行 RPOP，不保证原子性
+     */
+    public default List rpop(Object key, int count) {
+        List<Object> values = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Object value = rpop(key);
+            if (value == null) {
+                break;
+            }
+            values.add(value);
+        }
+        return values;
+    }
+
     /**
      * 命令 RPOPLPUSH 在一个原子时间内，执行以下两个动作：
      * 将列表 source 中的最后一个元素(尾元素)弹出，并返回给客户端。
@@ -660,6 +705,21 @@ public interface JbootRedis {
     public List valueListFromBytesList(Collection<byte[]> data);
 
     Object eval(String script, int keyCount, String... params);
+
+    /**
+     * 加载 lua 脚本到 redis 的脚本缓存，返回脚本的 sha1，之后可以通过 evalsha 执行，避免每次都传输整个脚本
+     * 不支持时返回 null，调用方应改为通过 eval 执行
+     */
+    default String scriptLoad(String script) {
+        return null;
+    }
+
+    /**
+     * 通过 sha1 执行已经加载的 lua 脚本，脚本不存在（例如 redis 重启）时会抛出 NOSCRIPT 错误
+     */
+    default Object evalsha(String sha1, int keyCount, String... params) {
+        throw new UnsupportedOperationException("evalsha is not supported by " + getClass().getName());
+    }
 }
 
 
@@ -32,6 +32,13 @@ import java.util.Set;
  */
 public abstract class JbootRedisBase implements JbootRedis {
 
+    // 从列表尾部弹出最多 ARGV[1] 个元素
+    protected static final byte[] RPOP_COUNT_SCRIPT = ("local items = redis.call('lrange',KEYS[1],-tonumber(ARGV[1]),-1)" +
+            "\nif #items > 0 then" +
+            "\nredis.call('ltrim',KEYS[1],0,-#items-1)" +
+            "\nend" +
+            "\nreturn items").getBytes();
+
     private final JbootSerializer serializer;
     private boolean close = false;
 
@@ -129,6 +136,19 @@ public abstract class JbootRedisBase implements JbootRedis {
     }
 
 
+    /**
+     * lrange 返回的是从左到右的顺序，转换为依次 RPOP 的顺序
+     */
+    protected List rpopCountResult(List<byte[]> data) {
+        if (data == null || data.isEmpty()) {
+            return new ArrayList();
+        }
+        List<Object> values = new ArrayList<>(data.size());
+        for (int i = data.size() - 1; i >= 0; i--) {
+            values.add(valueFromBytes(data.get(i)));
+        }
+        return values;
+    }
 }
 
 
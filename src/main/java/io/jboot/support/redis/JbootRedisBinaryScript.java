@@ -0,0 +1,31 @@
+/**
+ * Copyright (c) 2015-2021, Michael Yang 杨福海 (fuhai999@gmail.com).
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.jboot.support.redis;
+
+/**
+ * 支持参数为二进制数据（例如序列化之后的值）的 lua 脚本的 redis 客户端，目前只有 jedis 的实现支持
+ * <p>
+ * 脚本返回的字符串为 byte[]，脚本通过 {@link JbootRedis#scriptLoad(String)} 加载
+ */
+public interface JbootRedisBinaryScript {
+
+    Object eval(byte[] script, int keyCount, byte[]... params);
+
+    /**
+     * 通过 sha1 执行已经加载的 lua 脚本，脚本不存在（例如 redis 重启）时会抛出 NOSCRIPT 错误
+     */
+    Object evalsha(byte[] sha1, int keyCount, byte[]... params);
+}
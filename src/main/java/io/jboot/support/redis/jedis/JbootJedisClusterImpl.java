@@ -18,12 +18,14 @@ package io.jboot.support.redis.jedis;
 import com.jfinal.log.Log;
 import io.jboot.exception.JbootException;
 import io.jboot.support.redis.JbootRedisBase;
+import io.jboot.support.redis.JbootRedisBinaryScript;
 import io.jboot.support.redis.JbootRedisConfig;
 import io.jboot.support.redis.RedisScanResult;
 import io.jboot.utils.StrUtil;
 import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
 import redis.clients.jedis.*;
 import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.util.JedisClusterCRC16;
 
 import java.util.*;
 import java.util.Map.Entry;
@@ -32,7 +34,7 @@ import java.util.Map.Entry;
  * 参考： com.jfinal.plugin.redis
  * JbootRedis 命令文档: http://redisdoc.com/
  */
-public class JbootJedisClusterImpl extends JbootRedisBase {
+public class JbootJedisClusterImpl extends JbootRedisBase implements JbootRedisBinaryScript {
 
     protected JedisCluster jedisCluster;
     private int timeout = 2000;
@@ -198,7 +200,22 @@ public class JbootJedisClusterImpl extends JbootRedisBase {
      */
     public Long del(Object... keys) {
 
-        return jedisCluster.del(keysToBytesArray(keys));
+        byte[][] keysBytesArray = keysToBytesArray(keys);
+
+        // 集群模式下 del 多个 key 时必须在同一个 slot，按 slot 分组后再删除
+        Map<Integer, List<Integer>> slotIndexes = groupBySlot(keysBytesArray);
+        if (slotIndexes.size() <= 1) {
+            return jedisCluster.del(keysBytesArray);
+        }
+
+        long count = 0;
+        for (List<Integer> indexes : slotIndexes.values()) {
+            Long deleted = jedisCluster.del(slotKeys(keysBytesArray, indexes));
+            if (deleted != null) {
+                count += deleted;
+            }
+        }
+        return count;
 
     }
 
@@ -262,11 +279,61 @@ public class JbootJedisClusterImpl extends JbootRedisBase {
     public List mget(Object... keys) {
 
         byte[][] keysBytesArray = keysToBytesArray(keys);
-        List<byte[]> data = jedisCluster.mget(keysBytesArray);
+
+        // 集群模式下 mget 的 key 必须在同一个 slot，按 slot 分组后再合并结果
+        Map<Integer, List<Integer>> slotIndexes = groupBySlot(keysBytesArray);
+
+        if (slotIndexes.size() <= 1) {
+            return valueListFromBytesList(jedisCluster.mget(keysBytesArray));
+        }
+
+        List<byte[]> data = new ArrayList<>(Collections.nCopies(keysBytesArray.length, (byte[]) null));
+        for (List<Integer> indexes : slotIndexes.values()) {
+            List<byte[]> slotData = jedisCluster.mget(slotKeys(keysBytesArray, indexes));
+            for (int i = 0; i < indexes.size(); i++) {
+                data.set(indexes.get(i), slotData.get(i));
+            }
+        }
         return valueListFromBytesList(data);
 
     }
 
+    /**
+     * 按 slot 对 key 进行分组，value 为 key 在数组中的位置
+     */
+    private static Map<Integer, List<Integer>> groupBySlot(byte[][] keysBytesArray) {
+        Map<Integer, List<Integer>> slotIndexes = new HashMap<>();
+        for (int i = 0; i < keysBytesArray.length; i++) {
+            slotIndexes.computeIfAbsent(JedisClusterCRC16.getSlot(keysBytesArray[i]), k -> new ArrayList<>()).add(i);
+        }
+        return slotIndexes;
+    }
+
+    private static byte[][] slotKeys(byte[][] keysBytesArray, List<Integer> indexes) {
+        byte[][] slotKeys = new byte[indexes.size()][];
+        for (int i = 0; i < slotKeys.length; i++) {
+            slotKeys[i] = keysBytesArray[indexes.get(i)];
+        }
+        return slotKeys;
+    }
+
+    /**
+     * 集群模式下 key 可能分布在不同的节点，逐个设置
+     */
+    @Override
+    public void msetex(Map<Object, Object> keysValues, int seconds) {
+        if (keysValues == null || keysValues.isEmpty()) {
+            return;
+        }
+        for (Entry<Object, Object> entry : keysValues.entrySet()) {
+            if (seconds > 0) {
+                jedisCluster.setex(keyToBytes(entry.getKey()), seconds, valueToBytes(entry.getValue()));
+            } else {
+                jedisCluster.set(keyToBytes(entry.getKey()), valueToBytes(entry.getValue()));
+            }
+        }
+    }
+
     /**
      * 将 key 中储存的数字值减一。
      * 如果 key 不存在，那么 key 的值会先被初始化为 0 ，然后再执行 DECR 操作。
@@ -458,6 +525,18 @@ public class JbootJedisClusterImpl extends JbootRedisBase {
 
     }
 
+    /**
+     * 集群模式下 key 可能分布在不同的节点，逐个获取
+     */
+    @Override
+    public List<Long> mttl(Object... keys) {
+        List<Long> ttls = new ArrayList<>(keys.length);
+        for (Object key : keys) {
+            ttls.add(jedisCluster.ttl(keyToBytes(key)));
+        }
+        return ttls;
+    }
+
     /**
      * 这个命令类似于 TTL 命令，但它以毫秒为单位返回 key 的剩余生存时间，而不是像 TTL 命令那样，以秒为单位。
      */
@@ -755,6 +834,14 @@ public class JbootJedisClusterImpl extends JbootRedisBase {
 
     }
 
+    /**
+     * 从列表 key 的尾部一次移除并返回最多 count 个元素
+     */
+    public List rpop(Object key, int count) {
+        List<byte[]> data = (List<byte[]>) jedisCluster.eval(RPOP_COUNT_SCRIPT, 1, keyToBytes(key), String.valueOf(count).getBytes());
+        return rpopCountResult(data);
+    }
+
     /**
      * 命令 RPOPLPUSH 在一个原子时间内，执行以下两个动作：
      * 将列表 source 中的最后一个元素(尾元素)弹出，并返回给客户端。
@@ -842,8 +929,18 @@ public class JbootJedisClusterImpl extends JbootRedisBase {
     @SuppressWarnings("rawtypes")
     public List brpop(Integer timeout, Object... keys) {
 
+        //这里注意：第一个为key，第二个为value
         List<byte[]> data = jedisCluster.brpop(timeout, keysToBytesArray(keys));
-        return valueListFromBytesList(data);
+
+        if (data != null && data.size() == 2) {
+            List<Object> objects = new ArrayList<>();
+            objects.add(new String(data.get(0)));
+            objects.add(valueFromBytes(data.get(1)));
+            return objects;
+        }
+
+        //其他情况
+        return null;
 
     }
 
@@ -1243,6 +1340,41 @@ public class JbootJedisClusterImpl extends JbootRedisBase {
         return jedisCluster.eval(script, keyCount, params);
     }
 
+    @Override
+    public Object eval(byte[] script, int keyCount, byte[]... params) {
+        return jedisCluster.eval(script, keyCount, params);
+    }
+
+    /**
+     * 集群模式下，key 可能分布在任意节点，所以需要在所有节点上加载脚本
+     */
+    @Override
+    public String scriptLoad(String script) {
+        String sha1 = null;
+        Map<String, JedisPool> clusterNodes = jedisCluster.getClusterNodes();
+        for (JedisPool jp : clusterNodes.values()) {
+            Jedis jedis = jp.getResource();
+            try {
+                sha1 = jedis.scriptLoad(script);
+            } catch (Exception e) {
+                LOG.error(e.toString(), e);
+            } finally {
+                jedis.close();
+            }
+        }
+        return sha1;
+    }
+
+    @Override
+    public Object evalsha(String sha1, int keyCount, String... params) {
+        return jedisCluster.evalsha(sha1, keyCount, params);
+    }
+
+    @Override
+    public Object evalsha(byte[] sha1, int keyCount, byte[]... params) {
+        return jedisCluster.evalsha(sha1, keyCount, params);
+    }
+
     public JedisCluster getJedisCluster() {
         return jedisCluster;
     }
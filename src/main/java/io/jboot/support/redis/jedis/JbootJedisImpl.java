@@ -18,6 +18,7 @@ package io.jboot.support.redis.jedis;
 import com.jfinal.log.Log;
 import io.jboot.exception.JbootIllegalConfigException;
 import io.jboot.support.redis.JbootRedisBase;
+import io.jboot.support.redis.JbootRedisBinaryScript;
 import io.jboot.support.redis.JbootRedisConfig;
 import io.jboot.support.redis.RedisScanResult;
 import io.jboot.utils.StrUtil;
@@ -31,7 +32,7 @@ import java.util.Map.Entry;
  * 参考： com.jfinal.plugin.redis
  * JbootRedis 命令文档: http://redisdoc.com/
  */
-public class JbootJedisImpl extends JbootRedisBase {
+public class JbootJedisImpl extends JbootRedisBase implements JbootRedisBinaryScript {
 
     protected JedisPool jedisPool;
     protected JbootRedisConfig config;
@@ -294,6 +295,31 @@ public class JbootJedisImpl extends JbootRedisBase {
         }
     }
 
+    /**
+     * 通过 pipeline 批量设置多个 key-value 对，并为每个 key 设置相同的生存时间
+     * seconds 小于等于 0 时，key 永不过期
+     */
+    @Override
+    public void msetex(Map<Object, Object> keysValues, int seconds) {
+        if (keysValues == null || keysValues.isEmpty()) {
+            return;
+        }
+        Jedis jedis = getJedis();
+        try {
+            Pipeline pipeline = jedis.pipelined();
+            for (Entry<Object, Object> entry : keysValues.entrySet()) {
+                if (seconds > 0) {
+                    pipeline.setex(keyToBytes(entry.getKey()), seconds, valueToBytes(entry.getValue()));
+                } else {
+                    pipeline.set(keyToBytes(entry.getKey()), valueToBytes(entry.getValue()));
+                }
+            }
+            pipeline.sync();
+        } finally {
+            returnResource(jedis);
+        }
+    }
+
     /**
      * 将 key 中储存的数字值减一。
      * 如果 key 不存在，那么 key 的值会先被初始化为 0 ，然后再执行 DECR 操作。
@@ -556,6 +582,30 @@ public class JbootJedisImpl extends JbootRedisBase {
         }
     }
 
+    /**
+     * 通过 pipeline 批量返回多个 key 的剩余生存时间，单位秒，返回的顺序和 keys 的顺序一致
+     */
+    @Override
+    public List<Long> mttl(Object... keys) {
+        Jedis jedis = getJedis();
+        try {
+            Pipeline pipeline = jedis.pipelined();
+            List<Response<Long>> responses = new ArrayList<>(keys.length);
+            for (Object key : keys) {
+                responses.add(pipeline.ttl(keyToBytes(key)));
+            }
+            pipeline.sync();
+
+            List<Long> ttls = new ArrayList<>(keys.length);
+            for (Response<Long> response : responses) {
+                ttls.add(response.get());
+            }
+            return ttls;
+        } finally {
+            returnResource(jedis);
+        }
+    }
+
     /**
      * 这个命令类似于 TTL 命令，但它以毫秒为单位返回 key 的剩余生存时间，而不是像 TTL 命令那样，以秒为单位。
      */
@@ -948,6 +998,21 @@ public class JbootJedisImpl extends JbootRedisBase {
         }
     }
 
+    /**
+     * 从列表 key 的尾部一次移除并返回最多 count 个元素
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public List rpop(Object key, int count) {
+        Jedis jedis = getJedis();
+        try {
+            List<byte[]> data = (List<byte[]>) jedis.eval(RPOP_COUNT_SCRIPT, 1, keyToBytes(key), String.valueOf(count).getBytes());
+            return rpopCountResult(data);
+        } finally {
+            returnResource(jedis);
+        }
+    }
+
     /**
      * 命令 RPOPLPUSH 在一个原子时间内，执行以下两个动作：
      * 将列表 source 中的最后一个元素(尾元素)弹出，并返回给客户端。
@@ -1056,8 +1121,19 @@ public class JbootJedisImpl extends JbootRedisBase {
     public List brpop(Integer timeout, Object... keys) {
         Jedis jedis = getJedis();
         try {
+
+            //这里注意：第一个为key，第二个为value
             List<byte[]> data = jedis.brpop(timeout, keysToBytesArray(keys));
-            return valueListFromBytesList(data);
+
+            if (data != null && data.size() == 2) {
+                List<Object> objects = new ArrayList<>();
+                objects.add(new String(data.get(0)));
+                objects.add(valueFromBytes(data.get(1)));
+                return objects;
+            }
+
+            //其他情况
+            return null;
         } finally {
             returnResource(jedis);
         }
@@ -1573,6 +1649,46 @@ public class JbootJedisImpl extends JbootRedisBase {
         }
     }
 
+    @Override
+    public Object eval(byte[] script, int keyCount, byte[]... params) {
+        Jedis jedis = getJedis();
+        try {
+            return jedis.eval(script, keyCount, params);
+        } finally {
+            returnResource(jedis);
+        }
+    }
+
+    @Override
+    public String scriptLoad(String script) {
+        Jedis jedis = getJedis();
+        try {
+            return jedis.scriptLoad(script);
+        } finally {
+            returnResource(jedis);
+        }
+    }
+
+    @Override
+    public Object evalsha(String sha1, int keyCount, String... params) {
+        Jedis jedis = getJedis();
+        try {
+            return jedis.evalsha(sha1, keyCount, params);
+        } finally {
+            returnResource(jedis);
+        }
+    }
+
+    @Override
+    public Object evalsha(byte[] sha1, int keyCount, byte[]... params) {
+        Jedis jedis = getJedis();
+        try {
+            return jedis.evalsha(sha1, keyCount, params);
+        } finally {
+            returnResource(jedis);
+        }
+    }
+
     public Jedis getJedis() {
         try {
             return jedisPool.getResource();
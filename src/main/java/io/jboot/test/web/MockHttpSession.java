@@ -16,17 +16,19 @@
 package io.jboot.test.web;
 
 import io.jboot.web.session.JbootHttpSession;
+import io.jboot.web.session.JbootSessionData;
 
 import javax.servlet.ServletContext;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 public class MockHttpSession extends JbootHttpSession {
 
     protected static Map<String, Map<String, Object>> storeCache = new HashMap<>();
 
     public MockHttpSession(String id, ServletContext servletContext) {
-        super(id, servletContext, createSessionStore(id), null);
+        super(id, servletContext, new MockSessionData(createSessionStore(id)), null);
     }
 
     private static Map<String, Object> createSessionStore(String sessionId) {
@@ -38,4 +40,40 @@ public class MockHttpSession extends JbootHttpSession {
         return store;
     }
 
+
+    private static class MockSessionData implements JbootSessionData {
+
+        private final Map<String, Object> store;
+
+        MockSessionData(Map<String, Object> store) {
+            this.store = store;
+        }
+
+        @Override
+        public Object getAttribute(String name) {
+            return store.get(name);
+        }
+
+        @Override
+        public Set<String> getAttributeNames() {
+            return store.keySet();
+        }
+
+        @Override
+        public boolean save(Map<String, Object> changedAttributes, Set<String> deletedAttributes, int maxInactiveInterval) {
+            store.putAll(changedAttributes);
+            store.keySet().removeAll(deletedAttributes);
+            return !store.isEmpty();
+        }
+
+        @Override
+        public void touch(int maxInactiveInterval) {
+        }
+
+        @Override
+        public void remove() {
+            store.clear();
+        }
+    }
+
 }
@@ -273,6 +273,28 @@ public class ClassUtil {
     }
 
 
+    /**
+     * 判断 clazz（或者它和 baseClass 之间的父类）是否复写了 baseClass 中的方法
+     *
+     * @param clazz
+     * @param baseClass      不检查 baseClass 本身以及它的父类
+     * @param methodName
+     * @param parameterTypes
+     * @return
+     */
+    public static boolean isMethodOverridden(Class<?> clazz, Class<?> baseClass, String methodName, Class<?>... parameterTypes) {
+        for (Class<?> c = getUsefulClass(clazz); c != null && c != baseClass; c = c.getSuperclass()) {
+            try {
+                c.getDeclaredMethod(methodName, parameterTypes);
+                return true;
+            } catch (NoSuchMethodException e) {
+                // 继续检查父类
+            }
+        }
+        return false;
+    }
+
+
     public static ClassType getClassType(Type type, Class<?> runClass) {
         if (type instanceof Class) {
             return new ClassType((Class<?>) type);
@@ -15,7 +15,6 @@
  */
 package io.jboot.web;
 
-import com.google.common.base.Joiner;
 import com.jfinal.aop.Interceptor;
 import com.jfinal.aop.InterceptorManager;
 import com.jfinal.config.Routes;
@@ -23,13 +22,13 @@ import com.jfinal.core.Action;
 import com.jfinal.core.ActionKey;
 import com.jfinal.core.Controller;
 import com.jfinal.core.NotAction;
-import io.jboot.utils.AntPathMatcher;
 import io.jboot.utils.ArrayUtil;
 
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -40,7 +39,7 @@ import java.util.concurrent.ConcurrentHashMap;
 public class PathVariableActionMapping extends JbootActionMapping {
     private static final String PATH_VARIABLE_URL_PATTERN = ".*\\{[a-zA-Z0-9]+\\}.*";
     protected Map<String, Action> pathVariableUrlMapping = new ConcurrentHashMap<>();
-    private static final AntPathMatcher antPathMatcher = new AntPathMatcher();
+    private volatile PathVariableRouter pathVariableRouter = new PathVariableRouter();
 
     public PathVariableActionMapping(Routes routes) {
         super(routes);
@@ -49,6 +48,7 @@ public class PathVariableActionMapping extends JbootActionMapping {
     @Override
     protected void buildActionMapping() {
         mapping.clear();
+        PathVariableRouter router = new PathVariableRouter();
         Class<?> dc;
         InterceptorManager interMan = InterceptorManager.me();
         for (Routes routes : getRoutesList()) {
@@ -84,11 +84,6 @@ public class PathVariableActionMapping extends JbootActionMapping {
                         if ("".equals(actionKey)) {
                             throw new IllegalArgumentException(controllerClass.getName() + "." + methodName + "(): The argument of ActionKey can not be blank.");
                         }
-                        if (actionKey.matches(PATH_VARIABLE_URL_PATTERN)) {
-                            Action pathVariableAction = new Action(controllerPath, actionKey, controllerClass, method, methodName, actionInters,
-                                    route.getFinalViewPath(routes.getBaseViewPath()));
-                            pathVariableUrlMapping.put(actionKey, pathVariableAction);
-                        }
                         if (actionKey.startsWith(SLASH)) {
                             //actionKey = actionKey
                         } else if (actionKey.startsWith("./")) {
@@ -96,6 +91,12 @@ public class PathVariableActionMapping extends JbootActionMapping {
                         } else {
                             actionKey = SLASH + actionKey;
                         }
+                        if (actionKey.matches(PATH_VARIABLE_URL_PATTERN)) {
+                            Action pathVariableAction = new Action(controllerPath, actionKey, controllerClass, method, methodName, actionInters,
+                                    route.getFinalViewPath(routes.getBaseViewPath()));
+                            pathVariableUrlMapping.put(actionKey, pathVariableAction);
+                            router.addRoute(actionKey, pathVariableAction);
+                        }
 //                        if (!actionKey.startsWith(SLASH)) {
 //                            actionKey = SLASH + actionKey;
 //                        }
@@ -159,6 +160,7 @@ public class PathVariableActionMapping extends JbootActionMapping {
             }
         }
         routes.clear();
+        pathVariableRouter = router;
 
         // support url = controllerPath + urlParas with "/" of controllerPath
         Action action = mapping.get("/");
@@ -186,19 +188,19 @@ public class PathVariableActionMapping extends JbootActionMapping {
         if (action != null) {
             return action;
         }
-        for (String pattern : pathVariableUrlMapping.keySet()) {
-            //判断是否有匹配包含路径参数的URL映射
-            if (antPathMatcher.match(pattern, url)) {
-                Action pathVariableUrlAction = pathVariableUrlMapping.get(pattern);
-                Map<String, String> pathVariableValues = antPathMatcher.extractUriTemplateVariables(pattern, url);
-                urlPara[0] = null;
-                if (urlPara.length > 1) {
-                    //urlPara[1]作为路径参数传入controller
-                    urlPara[1] = Joiner.on("&").withKeyValueSeparator("=").join(pathVariableValues);
-                }
-                return pathVariableUrlAction;
+
+        //判断是否有匹配包含路径参数的URL映射
+        Map<String, String> pathVariableValues = new LinkedHashMap<>();
+        Action pathVariableUrlAction = pathVariableRouter.match(url, pathVariableValues);
+        if (pathVariableUrlAction != null) {
+            urlPara[0] = null;
+            if (urlPara.length > 1) {
+                //urlPara[1]作为路径参数传入controller
+                urlPara[1] = buildParaString(pathVariableValues);
             }
+            return pathVariableUrlAction;
         }
+
         // --------
         int i = url.lastIndexOf('/');
         if (i != -1) {
@@ -210,4 +212,16 @@ public class PathVariableActionMapping extends JbootActionMapping {
 
         return action;
     }
+
+
+    private static String buildParaString(Map<String, String> pathVariableValues) {
+        StringBuilder paras = new StringBuilder();
+        for (Map.Entry<String, String> entry : pathVariableValues.entrySet()) {
+            if (paras.length() > 0) {
+                paras.append('&');
+            }
+            paras.append(entry.getKey()).append('=').append(entry.getValue());
+        }
+        return paras.toString();
+    }
 }
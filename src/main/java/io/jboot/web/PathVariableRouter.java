@@ -0,0 +1,269 @@
+/**
+ * Copyright (c) 2015-2021, Michael Yang 杨福海 (fuhai999@gmail.com).
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.jboot.web;
+
+import com.jfinal.core.Action;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 路径参数的路由，通过 "/" 把 url 分为多段，构建成一颗树，匹配时的时间复杂度只和 url 的段数相关
+ * <p>
+ * 每一段的匹配优先级：静态路径 > {var} > 包含变量或通配符的路径（例如 {name}.json）> * > **
+ */
+public class PathVariableRouter {
+
+    private static final String SLASH = "/";
+    // 和 AntPathMatcher 的 GLOB_PATTERN 一致，变量的正则中可以包含 {}，例如 {id:\d{3}}
+    private static final Pattern VARIABLE_PATTERN = Pattern.compile("\\?|\\*|\\{((?:\\{[^/]+?}|[^/{}]|\\\\[{}])+?)}");
+
+    private final Node root = new Node();
+
+
+    /**
+     * 添加路由，相同的路径只会保留第一个添加的 action
+     *
+     * @param path   例如：/user/{id}/detail
+     * @param action
+     * @return 是否添加成功
+     */
+    public boolean addRoute(String path, Action action) {
+        Node node = root;
+        List<String> variableNames = new ArrayList<>();
+
+        for (String segment : split(path)) {
+            if ("**".equals(segment)) {
+                if (node.wildcardsChild == null) {
+                    node.wildcardsChild = new Node();
+                }
+                node = node.wildcardsChild;
+            } else if ("*".equals(segment)) {
+                if (node.wildcardChild == null) {
+                    node.wildcardChild = new Node();
+                }
+                node = node.wildcardChild;
+            } else if (isVariableSegment(segment)) {
+                if (node.variableChild == null) {
+                    node.variableChild = new Node();
+                }
+                node = node.variableChild;
+                variableNames.add(segment.substring(1, segment.length() - 1));
+            } else if (VARIABLE_PATTERN.matcher(segment).find()) {
+                Node child = node.patternChildren.get(segment);
+                if (child == null) {
+                    child = new Node();
+                    child.pattern = compileSegment(segment, child);
+                    node.patternChildren.put(segment, child);
+                }
+                node = child;
+                variableNames.addAll(child.patternVariableNames);
+            } else {
+                node = node.staticChildren.computeIfAbsent(segment, k -> new Node());
+            }
+        }
+
+        Route route = new Route(action, variableNames.toArray(new String[0]));
+        if (path.endsWith(SLASH) && path.length() > 1) {
+            if (node.slashRoute != null) {
+                return false;
+            }
+            node.slashRoute = route;
+        } else {
+            if (node.route != null) {
+                return false;
+            }
+            node.route = route;
+        }
+        return true;
+    }
+
+
+    /**
+     * 匹配 url
+     *
+     * @param url
+     * @param variables 用于存放匹配到的路径参数
+     * @return 没有匹配到任何路由时返回 null
+     */
+    public Action match(String url, Map<String, String> variables) {
+        List<String> segments = split(url);
+        List<String> values = new ArrayList<>();
+        Route route = match(root, segments, 0, url.endsWith(SLASH) && url.length() > 1, values);
+        if (route == null) {
+            return null;
+        }
+
+        for (int i = 0; i < route.variableNames.length; i++) {
+            variables.put(route.variableNames[i], values.get(i));
+        }
+        return route.action;
+    }
+
+
+    private Route match(Node node, List<String> segments, int index, boolean endsWithSlash, List<String> values) {
+        if (index == segments.size()) {
+            Route route = endsWithSlash ? node.slashRoute : node.route;
+            if (route != null) {
+                return route;
+            }
+            // ** 可以匹配 0 段
+            return node.wildcardsChild != null ? match(node.wildcardsChild, segments, index, endsWithSlash, values) : null;
+        }
+
+        String segment = segments.get(index);
+
+        Node child = node.staticChildren.get(segment);
+        if (child != null) {
+            Route route = match(child, segments, index + 1, endsWithSlash, values);
+            if (route != null) {
+                return route;
+            }
+        }
+
+        if (node.variableChild != null) {
+            values.add(segment);
+            Route route = match(node.variableChild, segments, index + 1, endsWithSlash, values);
+            if (route != null) {
+                return route;
+            }
+            values.remove(values.size() - 1);
+        }
+
+        for (Node patternChild : node.patternChildren.values()) {
+            Matcher matcher = patternChild.pattern.matcher(segment);
+            if (matcher.matches()) {
+                int size = values.size();
+                for (int i = 1; i <= matcher.groupCount(); i++) {
+                    values.add(matcher.group(i));
+                }
+                Route route = match(patternChild, segments, index + 1, endsWithSlash, values);
+                if (route != null) {
+                    return route;
+                }
+                values.subList(size, values.size()).clear();
+            }
+        }
+
+        if (node.wildcardChild != null) {
+            Route route = match(node.wildcardChild, segments, index + 1, endsWithSlash, values);
+            if (route != null) {
+                return route;
+            }
+        }
+
+        if (node.wildcardsChild != null) {
+            for (int i = index; i <= segments.size(); i++) {
+                Route route = match(node.wildcardsChild, segments, i, endsWithSlash, values);
+                if (route != null) {
+                    return route;
+                }
+            }
+        }
+
+        return null;
+    }
+
+
+    private static boolean isVariableSegment(String segment) {
+        return segment.length() > 2
+                && segment.charAt(0) == '{'
+                && segment.charAt(segment.length() - 1) == '}'
+                && segment.indexOf('{', 1) == -1
+                && segment.indexOf(':') == -1;
+    }
+
+
+    /**
+     * 把包含变量或通配符的段编译为正则，例如 {name}.json 编译为 (.*)\.json
+     */
+    private static Pattern compileSegment(String segment, Node node) {
+        StringBuilder regex = new StringBuilder();
+        Matcher matcher = VARIABLE_PATTERN.matcher(segment);
+        int end = 0;
+        while (matcher.find()) {
+            regex.append(Pattern.quote(segment.substring(end, matcher.start())));
+            String match = matcher.group();
+            if ("?".equals(match)) {
+                regex.append('.');
+            } else if ("*".equals(match)) {
+                regex.append(".*");
+            } else {
+                String variable = matcher.group(1);
+                int colonIndex = variable.indexOf(':');
+                if (colonIndex == -1) {
+                    regex.append("(.*)");
+                    node.patternVariableNames.add(variable);
+                } else {
+                    regex.append('(').append(variable.substring(colonIndex + 1)).append(')');
+                    node.patternVariableNames.add(variable.substring(0, colonIndex));
+                }
+            }
+            end = matcher.end();
+        }
+        regex.append(Pattern.quote(segment.substring(end)));
+        return Pattern.compile(regex.toString());
+    }
+
+
+    private static List<String> split(String path) {
+        List<String> segments = new ArrayList<>();
+        int start = 0;
+        int length = path.length();
+        for (int i = 0; i <= length; i++) {
+            if (i == length || path.charAt(i) == '/') {
+                if (i > start) {
+                    segments.add(path.substring(start, i));
+                }
+                start = i + 1;
+            }
+        }
+        return segments;
+    }
+
+
+    private static class Node {
+
+        private final Map<String, Node> staticChildren = new LinkedHashMap<>();
+        private final Map<String, Node> patternChildren = new LinkedHashMap<>();
+        private Node variableChild;
+        private Node wildcardChild;
+        private Node wildcardsChild;
+
+        // 包含变量的段，例如 {name}.json
+        private Pattern pattern;
+        private final List<String> patternVariableNames = new ArrayList<>();
+
+        private Route route;
+        private Route slashRoute;
+    }
+
+
+    private static class Route {
+
+        private final Action action;
+        private final String[] variableNames;
+
+        Route(Action action, String[] variableNames) {
+            this.action = action;
+            this.variableNames = variableNames;
+        }
+    }
+}
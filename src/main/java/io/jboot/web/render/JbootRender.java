@@ -22,11 +22,9 @@ import com.jfinal.template.Engine;
 import io.jboot.Jboot;
 import io.jboot.utils.StrUtil;
 import io.jboot.web.render.cdn.JbootWebCdnConfig;
-import io.jboot.ext.MixedByteArrayOutputStream;
-import io.jboot.web.render.cdn.CdnUtil;
+import io.jboot.web.render.cdn.CdnWriter;
 
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Map;
@@ -86,11 +84,10 @@ public class JbootRender extends Render {
     }
 
     private void renderWithCdn(Map<Object, Object> data) throws IOException {
-        MixedByteArrayOutputStream baos = new MixedByteArrayOutputStream();
-        getEngine().getTemplate(view).render(data, baos);
-
-        PrintWriter responseWriter = response.getWriter();
-        responseWriter.write(CdnUtil.toHtml(baos.getInputStream(), cdnConfig.getDomain()));
+        // 边渲染边替换，不需要缓存整个页面再解析
+        CdnWriter cdnWriter = new CdnWriter(response.getWriter(), cdnConfig.getDomain());
+        getEngine().getTemplate(view).render(data, cdnWriter);
+        cdnWriter.finish();
     }
 
 
@@ -15,6 +15,7 @@
  */
 package io.jboot.web.render.cdn;
 
+import com.jfinal.config.Constants;
 import com.jfinal.core.JFinal;
 import io.jboot.utils.StrUtil;
 import org.jsoup.Jsoup;
@@ -32,11 +33,18 @@ import java.util.Iterator;
  */
 public class CdnUtil {
 
-    private static String charSet =  JFinal.me().getConstants().getEncoding();
+    private static String getCharSet() {
+        // JFinal 还没有启动时（例如单元测试）使用默认编码
+        Constants constants = JFinal.me().getConstants();
+        return constants != null ? constants.getEncoding() : "UTF-8";
+    }
 
 
+    /**
+     * 解析整个 html 后替换 cdn 地址，渲染时请使用 {@link CdnWriter} 进行流式替换
+     */
     public static String toHtml(InputStream content, String domain) throws IOException {
-        Document doc = Jsoup.parse(content,charSet,"");
+        Document doc = Jsoup.parse(content, getCharSet(), "");
 
         Elements jsElements = doc.select("script[src]");
         replace(jsElements, "src", domain);
@@ -0,0 +1,295 @@
+/**
+ * Copyright (c) 2015-2021, Michael Yang 杨福海 (fuhai999@gmail.com).
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.jboot.web.render.cdn;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 以流的方式替换 html 中的静态资源地址为 cdn 地址，不需要把整个页面解析为 DOM
+ * <p>
+ * 只缓存当前正在扫描的标签，其他内容直接写入到 writer 中：
+ * script[src]、img[src]、link[href] 中以 / 开头（不包括 //）的地址会被添加 cdn 域名，
+ * 有 cdn-exclude 属性的标签不替换；注释以及 script、style、textarea、title 等标签中的内容
+ * 和 Jsoup 一样作为纯文本处理，不进行替换
+ */
+public class CdnWriter extends Writer {
+
+    // 标签超过该长度时不再替换，直接输出
+    private static final int MAX_TAG_LENGTH = 16 * 1024;
+
+    // 内容不是 html 的标签，直到对应的结束标签之前都作为纯文本
+    private static final Set<String> RAW_TEXT_TAGS = new HashSet<>(Arrays.asList(
+            "script", "style", "textarea", "title", "xmp", "iframe", "noembed", "noframes"));
+
+    private static final int STATE_TEXT = 0;
+    private static final int STATE_TAG = 1;
+    private static final int STATE_COMMENT = 2;
+    private static final int STATE_RAW_TEXT = 3;
+
+    private final Writer writer;
+    private final String domain;
+
+    private int state = STATE_TEXT;
+
+    // 正在扫描的标签
+    private final StringBuilder tag = new StringBuilder(256);
+    // 标签中属性值的引号
+    private char quote;
+    // 标签中上一个非空白字符
+    private char lastNonSpace;
+
+    // 注释中连续的 '-' 的数量
+    private int commentDashes;
+
+    // RAW_TEXT_TAGS 的结束标签，以及已经匹配的长度
+    private String rawTextEndTag;
+    private int rawTextMatched;
+
+
+    public CdnWriter(Writer writer, String domain) {
+        this.writer = writer;
+        this.domain = domain;
+    }
+
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        int end = off + len;
+        // 还未输出的、不需要替换的内容的开始位置
+        int runStart = off;
+        for (int i = off; i < end; i++) {
+            char c = cbuf[i];
+            switch (state) {
+                case STATE_TEXT:
+                    if (c == '<') {
+                        writer.write(cbuf, runStart, i - runStart);
+                        state = STATE_TAG;
+                        tag.append(c);
+                        quote = 0;
+                        lastNonSpace = c;
+                    }
+                    break;
+                case STATE_TAG:
+                    appendTag(c);
+                    runStart = i + 1;
+                    break;
+                case STATE_COMMENT:
+                    if (c == '>' && commentDashes >= 2) {
+                        state = STATE_TEXT;
+                    }
+                    commentDashes = c == '-' ? commentDashes + 1 : 0;
+                    break;
+                default:
+                    matchRawTextEnd(c);
+                    break;
+            }
+        }
+
+        if (state != STATE_TAG && runStart < end) {
+            writer.write(cbuf, runStart, end - runStart);
+        }
+    }
+
+
+    private void appendTag(char c) throws IOException {
+        tag.append(c);
+
+        // "<" 之后不是标签名称，例如 "a < b"；"<<" 时第二个 "<" 可能是标签的开始
+        if (tag.length() == 2 && !isTagStart(c)) {
+            if (c == '<') {
+                writer.write('<');
+                tag.setLength(1);
+                return;
+            }
+            writeTagAsText();
+            return;
+        }
+
+        if (tag.length() == 4 && tag.charAt(1) == '!' && tag.charAt(2) == '-' && tag.charAt(3) == '-') {
+            writeTagAsText();
+            state = STATE_COMMENT;
+            commentDashes = 0;
+            return;
+        }
+
+        if (quote != 0) {
+            if (c == quote) {
+                quote = 0;
+            }
+        } else if ((c == '"' || c == '\'') && lastNonSpace == '=') {
+            quote = c;
+        } else if (c == '>') {
+            finishTag();
+            return;
+        }
+
+        if (!Character.isWhitespace(c)) {
+            lastNonSpace = c;
+        }
+
+        if (tag.length() > MAX_TAG_LENGTH) {
+            writeTagAsText();
+        }
+    }
+
+
+    private static boolean isTagStart(char c) {
+        return Character.isLetter(c) || c == '/' || c == '!' || c == '?';
+    }
+
+
+    private void writeTagAsText() throws IOException {
+        writer.append(tag);
+        tag.setLength(0);
+        state = STATE_TEXT;
+    }
+
+
+    private void finishTag() throws IOException {
+        String html = tag.toString();
+        tag.setLength(0);
+        state = STATE_TEXT;
+
+        int nameEnd = 1;
+        while (nameEnd < html.length() && isTagNameChar(html.charAt(nameEnd))) {
+            nameEnd++;
+        }
+        String name = html.substring(1, nameEnd).toLowerCase();
+
+        if ("script".equals(name) || "img".equals(name)) {
+            writer.write(rewrite(html, nameEnd, "src"));
+        } else if ("link".equals(name)) {
+            writer.write(rewrite(html, nameEnd, "href"));
+        } else {
+            writer.write(html);
+        }
+
+        if (RAW_TEXT_TAGS.contains(name) && !html.endsWith("/>")) {
+            state = STATE_RAW_TEXT;
+            rawTextEndTag = "</" + name;
+            rawTextMatched = 0;
+        }
+    }
+
+
+    private static boolean isTagNameChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '-' || c == ':';
+    }
+
+
+    /**
+     * 在需要替换的属性值前面添加 cdn 域名
+     */
+    private String rewrite(String html, int start, String attrName) {
+        int valueStart = -1;
+        int i = start;
+        int len = html.length();
+        while (i < len) {
+            char c = html.charAt(i);
+            if (Character.isWhitespace(c) || c == '/' || c == '>') {
+                i++;
+                continue;
+            }
+
+            // 属性名
+            int nameStart = i;
+            while (i < len && !Character.isWhitespace(html.charAt(i)) && html.charAt(i) != '=' && html.charAt(i) != '>' && html.charAt(i) != '/') {
+                i++;
+            }
+            String name = html.substring(nameStart, i);
+            if ("cdn-exclude".equalsIgnoreCase(name)) {
+                return html;
+            }
+
+            while (i < len && Character.isWhitespace(html.charAt(i))) {
+                i++;
+            }
+            if (i >= len || html.charAt(i) != '=') {
+                continue;
+            }
+            i++;
+            while (i < len && Character.isWhitespace(html.charAt(i))) {
+                i++;
+            }
+
+            // 属性值
+            int vStart;
+            if (i < len && (html.charAt(i) == '"' || html.charAt(i) == '\'')) {
+                char q = html.charAt(i);
+                vStart = i + 1;
+                int vEnd = html.indexOf(q, vStart);
+                i = vEnd < 0 ? len : vEnd + 1;
+            } else {
+                vStart = i;
+                while (i < len && !Character.isWhitespace(html.charAt(i)) && html.charAt(i) != '>') {
+                    i++;
+                }
+            }
+
+            if (valueStart < 0 && attrName.equalsIgnoreCase(name)) {
+                valueStart = vStart;
+            }
+        }
+
+        if (valueStart < 0 || valueStart >= len
+                || html.charAt(valueStart) != '/'
+                || (valueStart + 1 < len && html.charAt(valueStart + 1) == '/')) {
+            return html;
+        }
+
+        return html.substring(0, valueStart) + domain + html.substring(valueStart);
+    }
+
+
+    private void matchRawTextEnd(char c) {
+        char expected = rawTextEndTag.charAt(rawTextMatched);
+        if (Character.toLowerCase(c) == expected) {
+            if (++rawTextMatched == rawTextEndTag.length()) {
+                state = STATE_TEXT;
+            }
+        } else {
+            rawTextMatched = c == '<' ? 1 : 0;
+        }
+    }
+
+
+    /**
+     * 输出还未结束的标签，不关闭 writer
+     */
+    public void finish() throws IOException {
+        if (tag.length() > 0) {
+            writeTagAsText();
+        }
+        writer.flush();
+    }
+
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+
+    @Override
+    public void close() throws IOException {
+        finish();
+        writer.close();
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright (c) 2015-2021, Michael Yang 杨福海 (fuhai999@gmail.com).
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.jboot.web.session;
+
+import io.jboot.components.cache.JbootCache;
+
+import java.util.*;
+
+/**
+ * 使用 JbootCache 存储 session，整个 session 的数据作为一个 Map 保存
+ */
+public class JbootCacheSessionStore extends JbootSessionStoreBase {
+
+    private final JbootCache cache;
+    private final String cacheName;
+
+    public JbootCacheSessionStore(JbootSessionConfig config, JbootCache cache) {
+        super(config);
+        this.cache = cache;
+        this.cacheName = config.getCacheName();
+    }
+
+
+    @Override
+    public JbootSessionData open(String sessionId) {
+        return new CacheSessionData(sessionId);
+    }
+
+
+    private class CacheSessionData implements JbootSessionData {
+
+        private final String sessionId;
+        private Map<String, Object> store;
+
+        CacheSessionData(String sessionId) {
+            this.sessionId = sessionId;
+        }
+
+        private Map<String, Object> getStore() {
+            if (store == null) {
+                Map<String, Object> map = cache.get(cacheName, sessionId);
+                store = map != null ? map : Collections.emptyMap();
+            }
+            return store;
+        }
+
+        @Override
+        public Object getAttribute(String name) {
+            return getStore().get(name);
+        }
+
+        @Override
+        public Set<String> getAttributeNames() {
+            return getStore().keySet();
+        }
+
+        @Override
+        public boolean save(Map<String, Object> changedAttributes, Set<String> deletedAttributes, int maxInactiveInterval) {
+            Map<String, Object> snapshot = new HashMap<>(getStore());
+            snapshot.putAll(changedAttributes);
+            for (String name : deletedAttributes) {
+                snapshot.remove(name);
+            }
+
+            // 数据已经全部被删除了
+            if (snapshot.isEmpty()) {
+                remove();
+                return false;
+            }
+
+            cache.put(cacheName, sessionId, snapshot, maxInactiveInterval);
+            store = snapshot;
+            touched(sessionId, maxInactiveInterval);
+            return true;
+        }
+
+        @Override
+        public void touch(int maxInactiveInterval) {
+            if (needTouch(sessionId, maxInactiveInterval)) {
+                cache.setTtl(cacheName, sessionId, maxInactiveInterval);
+                touched(sessionId, maxInactiveInterval);
+            }
+        }
+
+        @Override
+        public void remove() {
+            cache.remove(cacheName, sessionId);
+            removed(sessionId);
+        }
+    }
+}
@@ -37,21 +37,20 @@ public class JbootHttpSession implements HttpSession {
 
     private final Map<String, Object> newAttributes = Maps.newHashMap();
     private final Set<String> deleteAttribute = Sets.newHashSet();
-    private final Map<String, Object> sessionStore;
+    // 存储中的数据，第一次访问时才加载
+    private final JbootSessionData sessionData;
 
     private volatile boolean invalid = false;
     private volatile boolean dataChanged = false;
-    private volatile boolean empty = false;
 
     private volatile HttpSession originSession;
 
-    public JbootHttpSession(String id, ServletContext servletContext, Map<String, Object> sessionStore, HttpSession originSession) {
+    public JbootHttpSession(String id, ServletContext servletContext, JbootSessionData sessionData, HttpSession originSession) {
         this.id = id;
         this.servletContext = servletContext;
-        this.sessionStore = sessionStore;
+        this.sessionData = sessionData;
         this.createdAt = System.currentTimeMillis();
         this.lastAccessedAt = createdAt;
-        this.empty = sessionStore.isEmpty();
         this.originSession = originSession;
     }
 
@@ -101,7 +100,7 @@ public class JbootHttpSession implements HttpSession {
         } else if (deleteAttribute.contains(name)) {
             return null;
         }
-        return sessionStore.get(name);
+        return sessionData.getAttribute(name);
     }
 
     @Override
@@ -112,7 +111,7 @@ public class JbootHttpSession implements HttpSession {
     @Override
     public Enumeration<String> getAttributeNames() {
         checkValid();
-        Set<String> names = Sets.newHashSet(sessionStore.keySet());
+        Set<String> names = Sets.newHashSet(sessionData.getAttributeNames());
         names.addAll(newAttributes.keySet());
         names.removeAll(deleteAttribute);
         return Collections.enumeration(names);
@@ -121,7 +120,7 @@ public class JbootHttpSession implements HttpSession {
     @Override
     public String[] getValueNames() {
         checkValid();
-        Set<String> names = Sets.newHashSet(sessionStore.keySet());
+        Set<String> names = Sets.newHashSet(sessionData.getAttributeNames());
         names.addAll(newAttributes.keySet());
         names.removeAll(deleteAttribute);
         return names.toArray(new String[0]);
@@ -137,7 +136,6 @@ public class JbootHttpSession implements HttpSession {
 
         newAttributes.put(name, value);
         deleteAttribute.remove(name);
-        empty = false;
         dataChanged = true;
 
         if (originSession != null) {
@@ -154,11 +152,11 @@ public class JbootHttpSession implements HttpSession {
     @Override
     public void removeAttribute(String name) {
         checkValid();
-        if (empty && newAttributes.isEmpty()) {
+        if (deleteAttribute.contains(name)) {
             return;
         }
 
-        if (!newAttributes.containsKey(name) && !sessionStore.containsKey(name)) {
+        if (!newAttributes.containsKey(name) && sessionData.getAttribute(name) == null) {
             return;
         }
 
@@ -197,9 +195,41 @@ public class JbootHttpSession implements HttpSession {
     }
 
 
+    /**
+     * 同步上层 session 的数据，只写入 sessionStore，不修改上层 session
+     */
+    void syncAttribute(String name, Object value) {
+        if (value != null) {
+            newAttributes.put(name, value);
+            deleteAttribute.remove(name);
+            dataChanged = true;
+        }
+    }
+
+
+    /**
+     * 把修改的数据保存到存储中，只保存变化的部分
+     *
+     * @return session 中是否还有数据
+     */
+    public boolean saveChanges() {
+        return sessionData.save(newAttributes, deleteAttribute, maxInactiveInterval);
+    }
+
+
+    public JbootSessionData getSessionData() {
+        return sessionData;
+    }
+
+
     public Map<String, Object> snapshot() {
         Map<String, Object> snap = new HashMap<>();
-        snap.putAll(sessionStore);
+        for (String name : sessionData.getAttributeNames()) {
+            Object value = sessionData.getAttribute(name);
+            if (value != null) {
+                snap.put(name, value);
+            }
+        }
         snap.putAll(newAttributes);
         for (String name : deleteAttribute) {
             snap.remove(name);
@@ -218,6 +248,11 @@ public class JbootHttpSession implements HttpSession {
     }
 
     public boolean isEmpty() {
-        return empty;
+        if (!newAttributes.isEmpty()) {
+            return false;
+        }
+        Set<String> names = Sets.newHashSet(sessionData.getAttributeNames());
+        names.removeAll(deleteAttribute);
+        return names.isEmpty();
     }
 }
@@ -0,0 +1,335 @@
+/**
+ * Copyright (c) 2015-2021, Michael Yang 杨福海 (fuhai999@gmail.com).
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.jboot.web.session;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.jboot.exception.JbootIllegalConfigException;
+import io.jboot.support.redis.JbootRedis;
+import io.jboot.support.redis.JbootRedisBinaryScript;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 使用 Redis hash 存储 session，每个属性是 hash 中的一个 field：
+ * <p>
+ * 1、修改 session 时只 HSET/HDEL 变化的属性
+ * 2、属性在第一次访问时才通过 HGET 加载并反序列化
+ * 3、每次修改都会生成新的版本号，本地的 near cache 在版本号相同的时候直接使用，不再访问 Redis 读取属性
+ * 4、保存时通过 lua 脚本比较版本号（compare-and-set），期间没有其他请求修改过 session 时，
+ * 当前请求已经加载的属性才会带到新版本的 near cache 中
+ * <p>
+ * 保存时需要执行参数为二进制数据的 lua 脚本，只支持实现了 {@link JbootRedisBinaryScript} 的 redis 客户端（jedis）
+ */
+public class JbootRedisSessionStore extends JbootSessionStoreBase {
+
+    // 保存版本号的 field
+    static final String VERSION_FIELD = "__jboot_session_version";
+
+    // near cache 中，表示 Redis 中不存在该属性
+    private static final Object NULL_VALUE = new Object();
+
+    /**
+     * 保存 session，返回 1：保存前的版本号和期望的一致；0：期间被其他请求修改过；-1：属性已经全部删除，session 被删除
+     * <p>
+     * KEYS[1]：session 的 key
+     * ARGV[1]：版本号的 field，ARGV[2]：期望的版本号（不存在时为空），ARGV[3]：新的版本号，ARGV[4]：过期时间（秒），
+     * ARGV[5]：删除的属性数量 n，之后是 n 个删除的属性，再之后是修改的属性和值
+     */
+    private static final String SAVE_SCRIPT = "local current = redis.call('HGET', KEYS[1], ARGV[1]) " +
+            "local deleteCount = tonumber(ARGV[5]) " +
+            "for i = 6, 5 + deleteCount do redis.call('HDEL', KEYS[1], ARGV[i]) end " +
+            "if deleteCount > 0 and #ARGV == 5 + deleteCount and redis.call('HLEN', KEYS[1]) <= 1 then " +
+            "  redis.call('DEL', KEYS[1]) " +
+            "  return -1 " +
+            "end " +
+            "for i = 6 + deleteCount, #ARGV, 2 do redis.call('HSET', KEYS[1], ARGV[i], ARGV[i + 1]) end " +
+            "redis.call('HSET', KEYS[1], ARGV[1], ARGV[3]) " +
+            "redis.call('EXPIRE', KEYS[1], ARGV[4]) " +
+            "if current and current == ARGV[2] then return 1 end " +
+            "return 0";
+
+    private static final byte[] SAVE_SCRIPT_BYTES = SAVE_SCRIPT.getBytes(StandardCharsets.UTF_8);
+
+    private final JbootRedis redis;
+    private final JbootRedisBinaryScript script;
+    private final String keyPrefix;
+    private final Cache<String, NearEntry> nearCache;
+
+    // SAVE_SCRIPT 加载到 redis 之后的 sha1，为空时还没有加载
+    private volatile byte[] saveScriptSha1;
+
+    public JbootRedisSessionStore(JbootSessionConfig config, JbootRedis redis) {
+        super(config);
+        if (!(redis instanceof JbootRedisBinaryScript)) {
+            throw new JbootIllegalConfigException("redis session store only support jedis, but current redis is "
+                    + redis.getClass().getName() + ", please config jboot.redis.type=jedis.");
+        }
+        this.redis = redis;
+        this.script = (JbootRedisBinaryScript) redis;
+        this.keyPrefix = config.getCacheName() + ":";
+        this.nearCache = config.getNearCacheSize() > 0
+                ? Caffeine.newBuilder()
+                .maximumSize(config.getNearCacheSize())
+                .expireAfterAccess(Math.max(config.getMaxInactiveInterval(), 1), TimeUnit.SECONDS)
+                .build()
+                : null;
+    }
+
+
+    /**
+     * 通过 evalsha 执行保存的脚本，脚本只会传输一次；redis 重启等原因导致脚本丢失时，
+     * 通过 eval 执行，eval 同时会把脚本重新加载到 redis 中
+     */
+    private Object evalSaveScript(byte[][] args) {
+        byte[] sha1 = saveScriptSha1;
+        if (sha1 == null) {
+            String loaded = redis.scriptLoad(SAVE_SCRIPT);
+
+            // 部分 redis 实现不支持 scriptLoad
+            if (loaded == null) {
+                return script.eval(SAVE_SCRIPT_BYTES, 1, args);
+            }
+            sha1 = loaded.getBytes(StandardCharsets.UTF_8);
+            saveScriptSha1 = sha1;
+        }
+
+        try {
+            return script.evalsha(sha1, 1, args);
+        } catch (RuntimeException ex) {
+            // 不依赖具体 redis 客户端的异常类型
+            if (ex.getMessage() == null || !ex.getMessage().startsWith("NOSCRIPT")) {
+                throw ex;
+            }
+            return script.eval(SAVE_SCRIPT_BYTES, 1, args);
+        }
+    }
+
+
+    @Override
+    public JbootSessionData open(String sessionId) {
+        return new RedisSessionData(sessionId);
+    }
+
+
+    /**
+     * 版本号的类型由序列化方式决定，不一定是 Long
+     */
+    private static Long toVersion(Object value) {
+        return value == null ? null : ((Number) value).longValue();
+    }
+
+
+    private static long newVersion() {
+        long version;
+        do {
+            version = ThreadLocalRandom.current().nextLong();
+        } while (version == 0);
+        return version;
+    }
+
+
+    /**
+     * 某个版本的 session 在本地缓存的属性
+     */
+    private static class NearEntry {
+
+        private final long version;
+        private final Map<String, Object> values = new ConcurrentHashMap<>();
+        private volatile Set<String> names;
+
+        NearEntry(long version) {
+            this.version = version;
+        }
+    }
+
+
+    private class RedisSessionData implements JbootSessionData {
+
+        private final String sessionId;
+        private final String key;
+
+        // 是否已经从 Redis 中读取过版本号
+        private boolean versionLoaded;
+        // Redis 中不存在该 session 时为 null
+        private Long version;
+        // 当前请求使用的属性缓存，版本号和 Redis 中一致
+        private NearEntry entry;
+
+        RedisSessionData(String sessionId) {
+            this.sessionId = sessionId;
+            this.key = keyPrefix + sessionId;
+        }
+
+
+        /**
+         * 第一次访问时，读取版本号（和需要的属性一起读取，只需要一次网络请求）
+         */
+        private void loadVersion(String name) {
+            Object value = null;
+            if (name == null) {
+                version = toVersion(redis.hget(key, VERSION_FIELD));
+            } else {
+                List values = redis.hmget(key, VERSION_FIELD, name);
+                version = toVersion(values.get(0));
+                value = values.get(1);
+            }
+            versionLoaded = true;
+
+            NearEntry cached = nearCache == null ? null : nearCache.getIfPresent(sessionId);
+            if (cached != null && version != null && cached.version == version) {
+                entry = cached;
+                return;
+            }
+
+            entry = new NearEntry(version == null ? 0 : version);
+            if (name != null) {
+                entry.values.put(name, value == null ? NULL_VALUE : value);
+            }
+            if (nearCache != null && version != null) {
+                nearCache.put(sessionId, entry);
+            } else if (nearCache != null) {
+                nearCache.invalidate(sessionId);
+            }
+        }
+
+
+        @Override
+        public Object getAttribute(String name) {
+            if (!versionLoaded) {
+                loadVersion(name);
+            }
+
+            if (version == null) {
+                return null;
+            }
+
+            Object value = entry.values.get(name);
+            if (value == null) {
+                value = redis.hget(key, name);
+                entry.values.put(name, value == null ? NULL_VALUE : value);
+            }
+            return value == NULL_VALUE ? null : value;
+        }
+
+
+        @Override
+        public Set<String> getAttributeNames() {
+            if (!versionLoaded) {
+                loadVersion(null);
+            }
+
+            if (version == null) {
+                return Collections.emptySet();
+            }
+
+            Set<String> names = entry.names;
+            if (names == null) {
+                names = new HashSet<>();
+                Set<Object> fields = redis.hkeys(key);
+                if (fields != null) {
+                    for (Object field : fields) {
+                        if (!VERSION_FIELD.equals(field)) {
+                            names.add(String.valueOf(field));
+                        }
+                    }
+                }
+                entry.names = names;
+            }
+            return names;
+        }
+
+
+        @Override
+        public boolean save(Map<String, Object> changedAttributes, Set<String> deletedAttributes, int maxInactiveInterval) {
+            long newVersion = newVersion();
+
+            List<byte[]> args = new ArrayList<>(5 + deletedAttributes.size() + changedAttributes.size() * 2);
+            args.add(redis.keyToBytes(key));
+            args.add(redis.valueToBytes(VERSION_FIELD));
+            // 没有读取过版本号时，当前请求没有加载过属性，不需要比较
+            args.add(versionLoaded && version != null ? redis.valueToBytes(version) : new byte[0]);
+            args.add(redis.valueToBytes(newVersion));
+            args.add(String.valueOf(maxInactiveInterval).getBytes());
+            args.add(String.valueOf(deletedAttributes.size()).getBytes());
+            for (String name : deletedAttributes) {
+                args.add(redis.valueToBytes(name));
+            }
+            for (Map.Entry<String, Object> e : changedAttributes.entrySet()) {
+                args.add(redis.valueToBytes(e.getKey()));
+                args.add(redis.valueToBytes(e.getValue()));
+            }
+
+            Object result = evalSaveScript(args.toArray(new byte[args.size()][]));
+            long code = result instanceof Number ? ((Number) result).longValue() : 0;
+
+            // 数据已经全部被删除了（只剩下版本号）
+            if (code < 0) {
+                removed(sessionId);
+                if (nearCache != null) {
+                    nearCache.invalidate(sessionId);
+                }
+                return false;
+            }
+
+            touched(sessionId, maxInactiveInterval);
+
+            if (nearCache != null) {
+                NearEntry newEntry = new NearEntry(newVersion);
+                // 期间没有其他请求修改过时，当前请求中已经加载的属性，在新的版本中依然有效；
+                // 否则只保留本次修改的属性，其他属性在下次访问时重新从 Redis 中加载
+                if (code == 1 && entry != null) {
+                    newEntry.values.putAll(entry.values);
+                    if (entry.names != null) {
+                        Set<String> names = new HashSet<>(entry.names);
+                        names.addAll(changedAttributes.keySet());
+                        names.removeAll(deletedAttributes);
+                        newEntry.names = names;
+                    }
+                }
+                newEntry.values.putAll(changedAttributes);
+                for (String name : deletedAttributes) {
+                    newEntry.values.put(name, NULL_VALUE);
+                }
+                nearCache.put(sessionId, newEntry);
+            }
+            return true;
+        }
+
+
+        @Override
+        public void touch(int maxInactiveInterval) {
+            if (needTouch(sessionId, maxInactiveInterval)) {
+                redis.expire(key, maxInactiveInterval);
+                touched(sessionId, maxInactiveInterval);
+            }
+        }
+
+
+        @Override
+        public void remove() {
+            redis.del(key);
+            removed(sessionId);
+            if (nearCache != null) {
+                nearCache.invalidate(sessionId);
+            }
+        }
+    }
+}
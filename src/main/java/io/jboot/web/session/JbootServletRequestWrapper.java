@@ -19,12 +19,12 @@ import io.jboot.Jboot;
 import io.jboot.components.cache.JbootCache;
 import io.jboot.components.cache.JbootCacheConfig;
 import io.jboot.components.cache.JbootCacheManager;
+import io.jboot.exception.JbootIllegalConfigException;
+import io.jboot.support.redis.JbootRedis;
 import io.jboot.utils.StrUtil;
 
 import javax.servlet.http.*;
 import java.util.Enumeration;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.UUID;
 
 
@@ -37,13 +37,25 @@ public class JbootServletRequestWrapper extends HttpServletRequestWrapper {
     private static String cookiePath = config.getCookieContextPath();
     private static String cookieDomain = config.getCookieDomain();
     private static int cookieMaxAge = config.getCookieMaxAge();
-    private static String cacheName = config.getCacheName();
     private static String cacheType = config.getCacheType();
 
-    private static JbootCache jbootCache = JbootCacheManager.me()
-            .getCache(StrUtil.isBlank(cacheType) || JbootCacheConfig.TYPE_NONE.equals(cacheType)
-                    ? JbootCacheConfig.TYPE_CAFFEINE
-                    : cacheType);
+    private static JbootSessionStore sessionStore = createSessionStore();
+
+    private static JbootSessionStore createSessionStore() {
+        if (JbootSessionStore.TYPE_REDIS.equalsIgnoreCase(config.getStoreType())) {
+            JbootRedis redis = Jboot.getRedis();
+            if (redis == null) {
+                throw new JbootIllegalConfigException("can not get redis, please check your redis config for session store.");
+            }
+            return new JbootRedisSessionStore(config, redis);
+        }
+
+        JbootCache jbootCache = JbootCacheManager.me()
+                .getCache(StrUtil.isBlank(cacheType) || JbootCacheConfig.TYPE_NONE.equals(cacheType)
+                        ? JbootCacheConfig.TYPE_CAFFEINE
+                        : cacheType);
+        return new JbootCacheSessionStore(config, jbootCache);
+    }
 
 
     private HttpServletResponse response;
@@ -73,41 +85,34 @@ public class JbootServletRequestWrapper extends HttpServletRequestWrapper {
 
         String sessionId = getCookie(cookieName);
         if (sessionId != null) {
-            jbootSession = new JbootHttpSession(sessionId, originRequest.getServletContext(), createSessionStore(sessionId), originSession);
+            jbootSession = new JbootHttpSession(sessionId, originRequest.getServletContext(), sessionStore.open(sessionId), originSession);
             jbootSession.setMaxInactiveInterval(maxInactiveInterval);
+            syncOriginSessionData(jbootSession);
         } else if (create || originSession != null) {
             sessionId = UUID.randomUUID().toString().replace("-", "");
-            jbootSession = new JbootHttpSession(sessionId, originRequest.getServletContext(), createSessionStore(sessionId), originSession);
+            jbootSession = new JbootHttpSession(sessionId, originRequest.getServletContext(), sessionStore.open(sessionId), originSession);
             jbootSession.setMaxInactiveInterval(maxInactiveInterval);
+            syncOriginSessionData(jbootSession);
             setCookie(cookieName, sessionId, cookieMaxAge);
         }
 
         return jbootSession;
     }
 
-    private Map<String, Object> createSessionStore(String sessionId) {
-        Map<String, Object> store = jbootCache.get(cacheName, sessionId);
-        if (store == null) {
-            store = new HashMap<>();
-            syncOriginSessionData(store);
-            jbootCache.put(cacheName, sessionId, store);
-        }
-        return store;
-    }
-
 
     /**
      * 同步上层 session 到 sessionStore
      * @// TODO: 2021/6/3 若上层动态修改了 上层自己的 session，会导致 Controller 的 session 和 上层 session 不同步的情况
      * @// TODO: 2021/6/3 临时的解决方案需要用户手动通过 Controller 来修改 session 数据
-     * @param store
+     * @param session
      */
-    private void syncOriginSessionData(Map<String, Object> store) {
-        if (this.originSession != null) {
+    private void syncOriginSessionData(JbootHttpSession session) {
+        //只有 sessionStore 中还没有数据时才同步
+        if (this.originSession != null && session.isEmpty()) {
             Enumeration<String> names = originSession.getAttributeNames();
             while (names.hasMoreElements()) {
                 String name = names.nextElement();
-                store.put(name, originSession.getAttribute(name));
+                session.syncAttribute(name, originSession.getAttribute(name));
             }
         }
     }
@@ -123,25 +128,21 @@ public class JbootServletRequestWrapper extends HttpServletRequestWrapper {
 
         //session 已经被整体删除，用户调用了session.invalidate()
         if (!jbootSession.isValid()) {
-            jbootCache.remove(cacheName, jbootSession.getId());
+            jbootSession.getSessionData().remove();
             setCookie(cookieName, null, 0);
         }
 
-        //session 已经被修改(session数据的增删改查)
+        //session 已经被修改(session数据的增删改查)，只保存变化的部分
         else if (jbootSession.isDataChanged()) {
-            Map<String, Object> snapshot = jbootSession.snapshot();
             // 数据已经全部被删除了
-            if (snapshot.isEmpty()) {
-                jbootCache.remove(cacheName, jbootSession.getId());
+            if (!jbootSession.saveChanges()) {
                 setCookie(cookieName, null, 0);
-            } else {
-                jbootCache.put(cacheName, jbootSession.getId(), snapshot, maxInactiveInterval);
             }
         }
 
-        //更新session存储时间
+        //更新session存储时间，剩余时间足够时不会访问存储
         else {
-            jbootCache.setTtl(cacheName, jbootSession.getId(), maxInactiveInterval);
+            jbootSession.getSessionData().touch(maxInactiveInterval);
         }
     }
 
@@ -27,6 +27,8 @@ public class JbootSessionConfig {
     public final static int DEFAULT_COOKIE_MAX_AGE = -1;
     public final static String DEFAULT_SESSION_COOKIE_NAME = "_JSID";
     public final static String DEFAULT_SESSION_CACHE_NAME = "JBOOTSESSION";
+    public final static double DEFAULT_TTL_REFRESH_THRESHOLD = 0.8;
+    public final static int DEFAULT_NEAR_CACHE_SIZE = 10000;
 
 
     private String cookieName = DEFAULT_SESSION_COOKIE_NAME;
@@ -38,6 +40,13 @@ public class JbootSessionConfig {
     private String cacheName = DEFAULT_SESSION_CACHE_NAME;
     private String cacheType = Jboot.config(JbootCacheConfig.class).getType();
 
+    // session 的存储方式：cache（默认，使用 JbootCache 保存整个 session）、redis（使用 redis hash 保存，只写入变化的属性）
+    private String storeType = JbootSessionStore.TYPE_CACHE;
+    // 剩余过期时间少于 maxInactiveInterval 的该比例时，才刷新过期时间，设置为 1 时每次请求都刷新
+    private double ttlRefreshThreshold = DEFAULT_TTL_REFRESH_THRESHOLD;
+    // redis 存储时，本地缓存 session 属性的数量，设置为 0 时不缓存
+    private int nearCacheSize = DEFAULT_NEAR_CACHE_SIZE;
+
 
     public String getCookieName() {
         return cookieName;
@@ -95,4 +104,28 @@ public class JbootSessionConfig {
         this.cacheType = cacheType;
     }
 
+    public String getStoreType() {
+        return storeType;
+    }
+
+    public void setStoreType(String storeType) {
+        this.storeType = storeType;
+    }
+
+    public double getTtlRefreshThreshold() {
+        return ttlRefreshThreshold;
+    }
+
+    public void setTtlRefreshThreshold(double ttlRefreshThreshold) {
+        this.ttlRefreshThreshold = ttlRefreshThreshold;
+    }
+
+    public int getNearCacheSize() {
+        return nearCacheSize;
+    }
+
+    public void setNearCacheSize(int nearCacheSize) {
+        this.nearCacheSize = nearCacheSize;
+    }
+
 }
@@ -0,0 +1,48 @@
+/**
+ * Copyright (c) 2015-2021, Michael Yang 杨福海 (fuhai999@gmail.com).
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.jboot.web.session;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 某一次 http 请求中，某个 session 在存储中的数据，只在当前请求中使用
+ */
+public interface JbootSessionData {
+
+    Object getAttribute(String name);
+
+    Set<String> getAttributeNames();
+
+    /**
+     * 保存修改过的数据，只写入变化的部分
+     *
+     * @param changedAttributes   新增或者修改的数据
+     * @param deletedAttributes   删除的数据
+     * @param maxInactiveInterval
+     * @return session 中是否还有数据，没有数据时 session 会被删除
+     */
+    boolean save(Map<String, Object> changedAttributes, Set<String> deletedAttributes, int maxInactiveInterval);
+
+    /**
+     * 数据没有变化时，刷新 session 的过期时间（剩余时间足够时不会访问存储）
+     *
+     * @param maxInactiveInterval
+     */
+    void touch(int maxInactiveInterval);
+
+    void remove();
+}
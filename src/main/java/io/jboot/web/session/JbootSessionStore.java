@@ -0,0 +1,33 @@
+/**
+ * Copyright (c) 2015-2021, Michael Yang 杨福海 (fuhai999@gmail.com).
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.jboot.web.session;
+
+/**
+ * 分布式 session 的存储
+ */
+public interface JbootSessionStore {
+
+    String TYPE_CACHE = "cache";
+    String TYPE_REDIS = "redis";
+
+    /**
+     * 打开某个 session 的数据，数据在第一次访问时才加载
+     *
+     * @param sessionId
+     * @return
+     */
+    JbootSessionData open(String sessionId);
+}
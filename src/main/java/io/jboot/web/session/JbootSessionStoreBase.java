@@ -0,0 +1,59 @@
+/**
+ * Copyright (c) 2015-2021, Michael Yang 杨福海 (fuhai999@gmail.com).
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.jboot.web.session;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.util.concurrent.TimeUnit;
+
+public abstract class JbootSessionStoreBase implements JbootSessionStore {
+
+    // sessionId -> 本节点最后一次刷新过期时间后，session 的过期时间点
+    private final Cache<String, Long> expireAtCache;
+    private final double ttlRefreshThreshold;
+
+    public JbootSessionStoreBase(JbootSessionConfig config) {
+        this.ttlRefreshThreshold = config.getTtlRefreshThreshold();
+        this.expireAtCache = Caffeine.newBuilder()
+                .maximumSize(Math.max(config.getNearCacheSize(), 1024))
+                .expireAfterWrite(Math.max(config.getMaxInactiveInterval(), 1), TimeUnit.SECONDS)
+                .build();
+    }
+
+
+    /**
+     * 剩余的过期时间少于 maxInactiveInterval * ttlRefreshThreshold 时，才需要刷新过期时间
+     */
+    protected boolean needTouch(String sessionId, int maxInactiveInterval) {
+        Long expireAt = expireAtCache.getIfPresent(sessionId);
+        if (expireAt == null) {
+            return true;
+        }
+        long remaining = expireAt - System.currentTimeMillis();
+        return remaining < maxInactiveInterval * 1000L * ttlRefreshThreshold;
+    }
+
+
+    protected void touched(String sessionId, int maxInactiveInterval) {
+        expireAtCache.put(sessionId, System.currentTimeMillis() + maxInactiveInterval * 1000L);
+    }
+
+
+    protected void removed(String sessionId) {
+        expireAtCache.invalidate(sessionId);
+    }
+}
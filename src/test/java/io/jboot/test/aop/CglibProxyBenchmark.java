@@ -0,0 +1,67 @@
+package io.jboot.test.aop;
+
+import com.jfinal.aop.Before;
+import com.jfinal.aop.Interceptor;
+import com.jfinal.aop.Invocation;
+import io.jboot.aop.cglib.JbootCglibCallback;
+import io.jboot.aop.cglib.JbootCglibProxyFactory;
+import net.sf.cglib.proxy.Enhancer;
+
+/**
+ * 对比每次调用都通过 InterceptorCache 查找拦截器（JbootCglibCallback）
+ * 和创建代理类时就绑定好拦截器链（JbootCglibProxyFactory）两种方式的性能
+ */
+public class CglibProxyBenchmark {
+
+    private static final int WARMUP = 2_000_000;
+    private static final int ITERATIONS = 20_000_000;
+
+    public static void main(String[] args) {
+        BenchService oldProxy = (BenchService) Enhancer.create(BenchService.class, new JbootCglibCallback());
+        BenchService newProxy = new JbootCglibProxyFactory().get(BenchService.class);
+
+        for (int i = 0; i < 3; i++) {
+            run("callback  plain  ", () -> oldProxy.plain(1));
+            run("filter    plain  ", () -> newProxy.plain(1));
+            run("callback  before ", () -> oldProxy.intercepted(1));
+            run("filter    before ", () -> newProxy.intercepted(1));
+            System.out.println();
+        }
+    }
+
+    private static void run(String name, Runnable runnable) {
+        for (int i = 0; i < WARMUP; i++) {
+            runnable.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            runnable.run();
+        }
+        long time = System.nanoTime() - start;
+        System.out.println(name + ": " + (time / ITERATIONS) + " ns/op, total " + (time / 1000_000) + " ms");
+    }
+
+
+    public static class BenchService {
+
+        private long counter;
+
+        public long plain(int value) {
+            return counter += value;
+        }
+
+        @Before(CountInterceptor.class)
+        public long intercepted(int value) {
+            return counter += value;
+        }
+    }
+
+
+    public static class CountInterceptor implements Interceptor {
+
+        @Override
+        public void intercept(Invocation inv) {
+            inv.invoke();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package io.jboot.test.aop;
+
+import com.jfinal.aop.*;
+import io.jboot.aop.JbootAopFactory;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * 拦截器注入了它所拦截的 service，创建代理类时不能构建拦截器链，否则会无限递归
+ */
+public class SelfInjectInterceptorTest {
+
+    @BeforeClass
+    public static void init() {
+        AopManager.me().setInjectDependency(true);
+        AopManager.me().setAopFactory(JbootAopFactory.me());
+    }
+
+    @Test
+    public void testSelfInjectInterceptor() {
+        SelfService service = Aop.get(SelfService.class);
+        Assert.assertEquals("intercepted:hello", service.hello());
+        Assert.assertSame(service, SelfInjectInterceptor.injectedService);
+    }
+
+
+    public static class SelfService {
+
+        @Before(SelfInjectInterceptor.class)
+        public String hello() {
+            return "hello";
+        }
+    }
+
+
+    public static class SelfInjectInterceptor implements Interceptor {
+
+        private static volatile SelfService injectedService;
+
+        @Inject
+        private SelfService service;
+
+        @Override
+        public void intercept(Invocation inv) {
+            injectedService = service;
+            inv.invoke();
+            inv.setReturnValue("intercepted:" + inv.getReturnValue());
+        }
+    }
+}
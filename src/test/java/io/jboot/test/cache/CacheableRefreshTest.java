@@ -0,0 +1,138 @@
+package io.jboot.test.cache;
+
+import com.jfinal.aop.Aop;
+import com.jfinal.aop.AopManager;
+import com.jfinal.aop.Before;
+import com.jfinal.aop.Interceptor;
+import com.jfinal.aop.Invocation;
+import io.jboot.aop.JbootAopFactory;
+import io.jboot.components.cache.AopCache;
+import io.jboot.components.cache.annotation.Cacheable;
+import io.jboot.components.cache.caffeine.CaffeineCacheImpl;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @Cacheable 的 staleWhileRevalidate 和 refreshAheadBeta：过期或者提前刷新时先返回旧的数据，
+ * 由后台线程通过代理对象重新调用方法（方法不是 public 时也可以，并且经过相同的拦截器）更新缓存
+ */
+public class CacheableRefreshTest {
+
+    @BeforeClass
+    public static void init() {
+        AopManager.me().setInjectDependency(true);
+        AopManager.me().setAopFactory(JbootAopFactory.me());
+        AopCache.setAopCache(new CaffeineCacheImpl());
+    }
+
+
+    @Test
+    public void testStaleWhileRevalidate() throws Exception {
+        RefreshService service = Aop.get(RefreshService.class);
+
+        Assert.assertEquals(1, service.stale());
+        Assert.assertEquals(1, service.stale());
+
+        // 过期之后依然返回旧的数据，同时在后台刷新
+        Thread.sleep(1200);
+        Assert.assertEquals(1, service.stale());
+
+        Assert.assertEquals(2, waitForValue(service::stale, 2));
+        Assert.assertEquals(2, service.staleCount.get());
+    }
+
+
+    @Test
+    public void testRefreshAhead() throws Exception {
+        RefreshService service = Aop.get(RefreshService.class);
+
+        Assert.assertEquals(1, service.ahead());
+
+        // 缓存还有 60 秒才过期，beta 很大时几乎每次访问都会提前刷新
+        Assert.assertTrue(waitForValue(service::ahead, 2) >= 2);
+    }
+
+
+    @Test
+    public void testRefreshWithInterceptors() throws Exception {
+        RefreshService service = Aop.get(RefreshService.class);
+
+        Assert.assertEquals("tenant:1", service.tenant());
+
+        Thread.sleep(1200);
+        Assert.assertEquals("tenant:1", service.tenant());
+
+        // 后台刷新时同样经过 TenantInterceptor
+        long deadline = System.currentTimeMillis() + 5000;
+        String value = service.tenant();
+        while (!"tenant:2".equals(value) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            value = service.tenant();
+        }
+        Assert.assertEquals("tenant:2", value);
+    }
+
+
+    private static int waitForValue(ValueGetter getter, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        int value = getter.get();
+        while (value < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            value = getter.get();
+        }
+        return value;
+    }
+
+
+    interface ValueGetter {
+        int get();
+    }
+
+
+    public static class TenantInterceptor implements Interceptor {
+
+        static final ThreadLocal<String> TENANT = new ThreadLocal<>();
+
+        @Override
+        public void intercept(Invocation inv) {
+            TENANT.set("tenant");
+            try {
+                inv.invoke();
+            } finally {
+                TENANT.remove();
+            }
+        }
+    }
+
+
+    public static class RefreshService {
+
+        private final AtomicInteger staleCount = new AtomicInteger();
+        private final AtomicInteger aheadCount = new AtomicInteger();
+        private final AtomicInteger tenantCount = new AtomicInteger();
+
+        @Cacheable(name = "refreshTest", liveSeconds = 1, staleWhileRevalidate = 60)
+        protected int stale() {
+            return staleCount.incrementAndGet();
+        }
+
+        @Cacheable(name = "refreshTest", liveSeconds = 60, refreshAheadBeta = 100000)
+        protected int ahead() {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return aheadCount.incrementAndGet();
+        }
+
+        @Before(TenantInterceptor.class)
+        @Cacheable(name = "refreshTest", liveSeconds = 1, staleWhileRevalidate = 60)
+        protected String tenant() {
+            return TenantInterceptor.TENANT.get() + ":" + tenantCount.incrementAndGet();
+        }
+    }
+}
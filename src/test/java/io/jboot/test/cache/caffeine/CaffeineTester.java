@@ -8,6 +8,11 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 public class CaffeineTester {
 
     private static final String cacheName = "cachename";
@@ -50,6 +55,60 @@ public class CaffeineTester {
     }
 
 
+    @Test
+    public void testLoadOnce() throws InterruptedException {
+        JbootCache cache = Jboot.getCache();
+        cache.remove(cacheName, "loadKey");
+
+        AtomicInteger loadCount = new AtomicInteger();
+        CountDownLatch latch = new CountDownLatch(10);
+        List<Object> values = Collections.synchronizedList(new ArrayList<>());
+        for (int i = 0; i < 10; i++) {
+            new Thread(() -> {
+                try {
+                    values.add(cache.get(cacheName, "loadKey", () -> {
+                        loadCount.incrementAndGet();
+                        try {
+                            Thread.sleep(500);
+                        } catch (InterruptedException e) {
+                            e.printStackTrace();
+                        }
+                        return "loadValue";
+                    }));
+                } catch (Throwable ex) {
+                    values.add(ex);
+                } finally {
+                    latch.countDown();
+                }
+            }).start();
+        }
+
+        // 在主线程中断言，子线程中的断言失败不会导致测试失败
+        Assert.assertTrue("load timeout", latch.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(Collections.nCopies(10, "loadValue"), new ArrayList<>(values));
+        Assert.assertEquals(1, loadCount.get());
+    }
+
+
+    @Test
+    public void testGetAll() {
+        JbootCache cache = Jboot.getCache();
+        cache.removeAll(cacheName, Arrays.asList("k1", "k2", "k3"));
+        cache.put(cacheName, "k1", "v1");
+
+        Map<Object, String> values = cache.getAll(cacheName, Arrays.asList("k1", "k2", "k3"), keys -> {
+            Assert.assertEquals(Arrays.asList("k2", "k3"), keys);
+            Map<Object, String> loaded = new HashMap<>();
+            loaded.put("k2", "v2");
+            return loaded;
+        }, 0);
+
+        Assert.assertEquals(2, values.size());
+        Assert.assertEquals("v2", cache.get(cacheName, "k2"));
+        Assert.assertNull(values.get("k3"));
+    }
+
+
     @Before
     public void config() {
         JbootApplication.setBootArg("jboot.cache.type", "caffeine");
@@ -0,0 +1,91 @@
+package io.jboot.test.cdn;
+
+import io.jboot.web.render.cdn.CdnUtil;
+import io.jboot.web.render.cdn.CdnWriter;
+import org.jsoup.Jsoup;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * CdnWriter 流式替换的结果和 CdnUtil.toHtml 解析整个 html 后替换的结果一致，
+ * 分段写入时每段的长度不影响结果
+ */
+public class CdnWriterTest {
+
+    private static final String DOMAIN = "https://cdn.example.com";
+
+    private static final int[] CHUNK_SIZES = {1, 2, 3, 7, Integer.MAX_VALUE};
+
+
+    @Test
+    public void testRewrite() throws IOException {
+        assertSameAsJsoup("<html><head>"
+                + "<script src=\"/js/app.js\"></script>"
+                + "<link rel=\"stylesheet\" href=\"/css/app.css\">"
+                + "<link href='//other.com/a.css'>"
+                + "</head><body>"
+                + "<img src=/img/a.png><IMG SRC=\"/img/b.png\"/>"
+                + "<img src=\"http://other.com/c.png\"><a href=\"/page\">a < b << c</a><<img src=\"/img/d.png\">"
+                + "</body></html>");
+    }
+
+
+    @Test
+    public void testQuotedGreaterThan() throws IOException {
+        assertSameAsJsoup("<body><img alt=\"a > b\" title='c>d' src=\"/img/a.png\">"
+                + "<img data-x=\"<img src=/no.png>\" src=\"/img/b.png\"></body>");
+    }
+
+
+    @Test
+    public void testComment() throws IOException {
+        assertSameAsJsoup("<body><!-- <img src=\"/img/a.png\"> -- > --><img src=\"/img/b.png\">"
+                + "<!----><script src=\"/js/a.js\"></script></body>");
+    }
+
+
+    @Test
+    public void testRawText() throws IOException {
+        assertSameAsJsoup("<html><head>"
+                + "<title>&lt;img src=\"/t.png\"&gt; <img src=\"/img/title.png\"></title>"
+                + "<script>var html = '<img src=\"/img/a.png\">' + \"</scr\" + \"ipt>\";</script>"
+                + "<style>a:after{content:'<link href=\"/a.css\">'}</style>"
+                + "</head><body>"
+                + "<textarea><script src=\"/js/a.js\"></script></TEXTAREA>"
+                + "<SCRIPT type=\"text/html\"><img src=\"/img/b.png\"></Script>"
+                + "<img src=\"/img/c.png\">"
+                + "</body></html>");
+    }
+
+
+    @Test
+    public void testCdnExclude() throws IOException {
+        assertSameAsJsoup("<body><img cdn-exclude src=\"/img/a.png\">"
+                + "<script src=\"/js/a.js\" cdn-exclude=\"true\"></script>"
+                + "<link href=\"/css/a.css\" CDN-EXCLUDE>"
+                + "<img src=\"/img/b.png\"></body>");
+    }
+
+
+    private static void assertSameAsJsoup(String html) throws IOException {
+        String expected = CdnUtil.toHtml(new ByteArrayInputStream(html.getBytes(StandardCharsets.UTF_8)), DOMAIN);
+
+        for (int chunkSize : CHUNK_SIZES) {
+            StringWriter out = new StringWriter();
+            CdnWriter writer = new CdnWriter(out, DOMAIN);
+            char[] chars = html.toCharArray();
+            for (int off = 0; off < chars.length; off += chunkSize) {
+                writer.write(chars, off, Math.min(chunkSize, chars.length - off));
+            }
+            writer.finish();
+
+            String actual = Jsoup.parse(out.toString(), "").toString();
+            Assert.assertEquals("chunk size: " + chunkSize, expected, actual);
+        }
+    }
+}
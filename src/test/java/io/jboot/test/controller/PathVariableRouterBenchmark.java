@@ -0,0 +1,79 @@
+package io.jboot.test.controller;
+
+import com.jfinal.aop.Interceptor;
+import com.jfinal.core.Action;
+import io.jboot.utils.AntPathMatcher;
+import io.jboot.web.PathVariableRouter;
+
+import java.lang.reflect.Method;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 对比 1000 个路径参数路由下，逐个 AntPathMatcher 匹配和 PathVariableRouter 匹配的性能，
+ * 匹配结果的正确性见 PathVariableRouterTest
+ */
+public class PathVariableRouterBenchmark {
+
+    private static final int ROUTES = 1000;
+    private static final int ITERATIONS = 200_000;
+
+    public static void main(String[] args) throws Exception {
+        Method method = PathController.class.getMethod("ping");
+        Map<String, Action> patterns = new ConcurrentHashMap<>();
+        PathVariableRouter router = new PathVariableRouter();
+
+        for (int i = 0; i < ROUTES; i++) {
+            String pattern;
+            switch (i % 3) {
+                case 0:
+                    pattern = "/api/module" + i + "/{id}";
+                    break;
+                case 1:
+                    pattern = "/api/module" + i + "/{id}/detail/{name}";
+                    break;
+                default:
+                    pattern = "/api/module" + i + "/{name}.json";
+                    break;
+            }
+            Action action = new Action("/api", pattern, PathController.class, method, "ping", new Interceptor[0], "/");
+            patterns.put(pattern, action);
+            router.addRoute(pattern, action);
+        }
+
+        String[] urls = new String[]{
+                "/api/module3/100",
+                "/api/module502/100/detail/michael",
+                "/api/module998/abc.json",
+                "/api/not/exists/url"
+        };
+
+        AntPathMatcher matcher = new AntPathMatcher();
+
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS / 100; i++) {
+                for (String url : urls) {
+                    for (Map.Entry<String, Action> entry : patterns.entrySet()) {
+                        if (matcher.match(entry.getKey(), url)) {
+                            matcher.extractUriTemplateVariables(entry.getKey(), url);
+                            break;
+                        }
+                    }
+                }
+            }
+            long antTime = (System.nanoTime() - start) / (ITERATIONS / 100 * urls.length);
+
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                for (String url : urls) {
+                    router.match(url, new LinkedHashMap<>());
+                }
+            }
+            long routerTime = (System.nanoTime() - start) / (ITERATIONS * urls.length);
+
+            System.out.println("AntPathMatcher: " + antTime + " ns/op, PathVariableRouter: " + routerTime + " ns/op");
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package io.jboot.test.controller;
+
+import com.jfinal.aop.Interceptor;
+import com.jfinal.core.Action;
+import io.jboot.web.PathVariableRouter;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * PathVariableRouter 的匹配优先级：静态路径 > {var} > {name}.json 等包含变量的段 > * > **，
+ * 以及正则变量和末尾的 "/"
+ */
+public class PathVariableRouterTest {
+
+    private PathVariableRouter router;
+
+    @Before
+    public void init() throws Exception {
+        router = new PathVariableRouter();
+        Method method = PathController.class.getMethod("ping");
+        String[] routes = {
+                "/user/list",
+                "/user/{id}",
+                "/user/{id}/detail",
+                "/file/{name}.json",
+                "/file/{name}-{version}.js",
+                "/file/*",
+                "/file/**",
+                "/order/{id:\\d{3}}",
+                "/order/{year:\\d{4}}-{month:\\d{2}}",
+                "/shop/{id}",
+                "/shop/{id}/",
+                "/a/static/c",
+                "/a/{x}/b",
+        };
+        for (String route : routes) {
+            Assert.assertTrue(route, router.addRoute(route, new Action("/", route, PathController.class, method, "ping", new Interceptor[0], "/")));
+        }
+    }
+
+
+    @Test
+    public void testDuplicateRoute() throws Exception {
+        Method method = PathController.class.getMethod("ping");
+        Assert.assertFalse(router.addRoute("/user/{id}", new Action("/", "/user/{id}", PathController.class, method, "ping", new Interceptor[0], "/")));
+        Assert.assertFalse(router.addRoute("/user/{name}", new Action("/", "/user/{name}", PathController.class, method, "ping", new Interceptor[0], "/")));
+    }
+
+
+    @Test
+    public void testPrecedence() {
+        assertMatch("/user/list", "/user/list", Collections.emptyMap());
+        assertMatch("/user/1", "/user/{id}", map("id", "1"));
+        assertMatch("/user/1/detail", "/user/{id}/detail", map("id", "1"));
+        // {var} 优先于 {name}.json
+        assertMatch("/user/a.json", "/user/{id}", map("id", "a.json"));
+
+        assertMatch("/file/a.json", "/file/{name}.json", map("name", "a"));
+        assertMatch("/file/app-1.2.js", "/file/{name}-{version}.js", map("name", "app", "version", "1.2"));
+        assertMatch("/file/a.txt", "/file/*", Collections.emptyMap());
+        assertMatch("/file/a/b/c", "/file/**", Collections.emptyMap());
+        // ** 可以匹配 0 段
+        assertMatch("/file", "/file/**", Collections.emptyMap());
+
+        // 静态路径后面匹配不到时，回退到 {var}
+        assertMatch("/a/static/b", "/a/{x}/b", map("x", "static"));
+        assertMatch("/a/static/c", "/a/static/c", Collections.emptyMap());
+
+        assertNoMatch("/not/exists");
+    }
+
+
+    @Test
+    public void testRegexVariable() {
+        assertMatch("/order/123", "/order/{id:\\d{3}}", map("id", "123"));
+        assertMatch("/order/2021-08", "/order/{year:\\d{4}}-{month:\\d{2}}", map("year", "2021", "month", "08"));
+        assertNoMatch("/order/1234");
+        assertNoMatch("/order/12a");
+    }
+
+
+    @Test
+    public void testTrailingSlash() {
+        assertMatch("/shop/1", "/shop/{id}", map("id", "1"));
+        assertMatch("/shop/1/", "/shop/{id}/", map("id", "1"));
+        assertNoMatch("/user/1/");
+    }
+
+
+    private void assertMatch(String url, String expectedRoute, Map<String, String> expectedVariables) {
+        Map<String, String> variables = new LinkedHashMap<>();
+        Action action = router.match(url, variables);
+        Assert.assertNotNull(url, action);
+        Assert.assertEquals(url, expectedRoute, action.getActionKey());
+        Assert.assertEquals(url, expectedVariables, variables);
+    }
+
+
+    private void assertNoMatch(String url) {
+        Assert.assertNull(url, router.match(url, new HashMap<>()));
+    }
+
+
+    private static Map<String, String> map(String... keyAndValues) {
+        Map<String, String> map = new HashMap<>();
+        for (int i = 0; i < keyAndValues.length; i += 2) {
+            map.put(keyAndValues[i], keyAndValues[i + 1]);
+        }
+        return map;
+    }
+}
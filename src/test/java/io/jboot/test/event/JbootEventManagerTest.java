@@ -0,0 +1,188 @@
+package io.jboot.test.event;
+
+import io.jboot.components.event.JbootEvent;
+import io.jboot.components.event.JbootEventBatchListener;
+import io.jboot.components.event.JbootEventConfig;
+import io.jboot.components.event.JbootEventManager;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按 key 顺序执行、合并以及顺序执行队列满了之后的等待
+ */
+public class JbootEventManagerTest {
+
+    private static final int PRODUCERS = 4;
+    private static final int KEYS_PER_PRODUCER = 8;
+    private static final int EVENTS_PER_KEY = 200;
+
+
+    @Test
+    public void testOrderPerKey() throws Exception {
+        // 很小的队列，让发布事件的线程和顺序执行的线程都会遇到队列满的情况
+        JbootEventManager manager = new JbootEventManager(createConfig(4, 8));
+
+        Map<Object, List<Integer>> executed = new ConcurrentHashMap<>();
+        int totalKeys = PRODUCERS * KEYS_PER_PRODUCER * 2;
+        CountDownLatch done = new CountDownLatch(totalKeys * EVENTS_PER_KEY);
+
+        manager.registerListener(event -> {
+            record(executed, event, done);
+            // 在顺序执行的线程里再次发布事件到其他 key
+            manager.pulish(new JbootEvent("nested", event.getData(), "n" + event.getKey()));
+        }, true, true, 0, "order");
+        manager.registerListener(event -> record(executed, event, done), true, true, 0, "nested");
+
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < PRODUCERS; p++) {
+            int producer = p;
+            producers.add(new Thread(() -> {
+                for (int seq = 0; seq < EVENTS_PER_KEY; seq++) {
+                    for (int k = 0; k < KEYS_PER_PRODUCER; k++) {
+                        manager.pulish(new JbootEvent("order", seq, "p" + producer + "-" + k));
+                    }
+                }
+            }));
+        }
+
+        producers.forEach(Thread::start);
+        for (Thread producer : producers) {
+            producer.join(TimeUnit.SECONDS.toMillis(30));
+        }
+
+        Assert.assertTrue("publish timeout", done.await(30, TimeUnit.SECONDS));
+        Assert.assertEquals(totalKeys, executed.size());
+
+        List<Integer> expected = new ArrayList<>();
+        for (int seq = 0; seq < EVENTS_PER_KEY; seq++) {
+            expected.add(seq);
+        }
+        for (Map.Entry<Object, List<Integer>> entry : executed.entrySet()) {
+            Assert.assertEquals("key: " + entry.getKey(), expected, entry.getValue());
+        }
+    }
+
+
+    @Test
+    public void testCoalesce() throws Exception {
+        JbootEventManager manager = new JbootEventManager(createConfig(2, 16));
+
+        List<List<Integer>> batches = new CopyOnWriteArrayList<>();
+        List<Integer> lastEvents = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(2);
+
+        manager.registerListener(new JbootEventBatchListener() {
+            @Override
+            public void onEvents(List<JbootEvent> events) {
+                List<Integer> values = new ArrayList<>();
+                for (JbootEvent event : events) {
+                    values.add(event.getData());
+                }
+                batches.add(values);
+                done.countDown();
+            }
+
+            @Override
+            public void onEvent(JbootEvent event) {
+            }
+        }, true, true, 500, "coalesce");
+
+        manager.registerListener(event -> {
+            lastEvents.add(event.getData());
+            done.countDown();
+        }, true, true, 500, "coalesce");
+
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            manager.pulish(new JbootEvent("coalesce", i, "key"));
+            expected.add(i);
+        }
+
+        Assert.assertTrue("coalesce timeout", done.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(Collections.singletonList(expected), batches);
+        Assert.assertEquals(Collections.singletonList(19), lastEvents);
+    }
+
+
+    @Test
+    public void testWaitWhenLaneFull() throws Exception {
+        // 只有一个顺序执行的线程，最多等待 2 个事件
+        JbootEventManager manager = new JbootEventManager(createConfig(1, 2));
+
+        List<Integer> executed = new CopyOnWriteArrayList<>();
+        CountDownLatch firstStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(5);
+
+        manager.registerListener(event -> {
+            int value = event.getData();
+            if (value == 0) {
+                firstStarted.countDown();
+                await(release);
+                // 队列已满，在顺序执行的线程里再次发布事件不能等待自己
+                manager.pulish(new JbootEvent("nested", -1, "key"));
+            }
+            executed.add(value);
+            done.countDown();
+        }, true, true, 0, "full");
+        manager.registerListener(event -> {
+            executed.add(event.getData());
+            done.countDown();
+        }, true, true, 0, "nested");
+
+        CountDownLatch published = new CountDownLatch(1);
+        Thread publisher = new Thread(() -> {
+            manager.pulish(new JbootEvent("full", 0, "key"));
+            await(firstStarted);
+            for (int i = 1; i <= 3; i++) {
+                manager.pulish(new JbootEvent("full", i, "key"));
+            }
+            published.countDown();
+        });
+        publisher.start();
+
+        // 第 3 个事件等待队列空出位置
+        Assert.assertFalse("publisher should wait when the lane is full", published.await(500, TimeUnit.MILLISECONDS));
+
+        release.countDown();
+        Assert.assertTrue("publish timeout", published.await(10, TimeUnit.SECONDS));
+        Assert.assertTrue("deliver timeout", done.await(10, TimeUnit.SECONDS));
+
+        Assert.assertEquals(Arrays.asList(0, 1, 2), executed.subList(0, 3));
+        Assert.assertTrue(executed.containsAll(Arrays.asList(3, -1)));
+    }
+
+
+    private static JbootEventConfig createConfig(int orderedThreads, int queueSize) {
+        JbootEventConfig config = new JbootEventConfig();
+        config.setOrderedThreads(orderedThreads);
+        config.setAsyncQueueSize(queueSize);
+        return config;
+    }
+
+
+    private static void record(Map<Object, List<Integer>> executed, JbootEvent event, CountDownLatch done) {
+        // 相同 key 只会在同一个线程里执行，这里不需要同步
+        executed.computeIfAbsent(event.getKey(), k -> new ArrayList<>()).add(event.getData());
+        done.countDown();
+    }
+
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
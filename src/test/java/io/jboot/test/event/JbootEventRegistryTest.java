@@ -0,0 +1,114 @@
+package io.jboot.test.event;
+
+import io.jboot.components.event.JbootEvent;
+import io.jboot.components.event.JbootEventConfig;
+import io.jboot.components.event.JbootEventListener;
+import io.jboot.components.event.JbootEventManager;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 通配符匹配，以及注册、取消注册之后已经缓存的 action 重新匹配
+ */
+public class JbootEventRegistryTest {
+
+    @Test
+    public void testWildcardAndUnregister() {
+        JbootEventManager manager = new JbootEventManager(new JbootEventConfig());
+        List<String> received = new CopyOnWriteArrayList<>();
+
+        manager.registerListener(new RecordListener("exact", received), false, "user:login");
+        manager.registerListener(new PrefixListener("prefix", received), false, "user:*");
+        manager.registerListener(new AllListener("all", received), false, "*");
+
+        manager.pulish(new JbootEvent("user:login", null));
+        Collections.sort(received);
+        Assert.assertEquals(Arrays.asList("all", "exact", "prefix"), received);
+
+        received.clear();
+        manager.pulish(new JbootEvent("order:create", null));
+        Assert.assertEquals(Collections.singletonList("all"), received);
+
+        // order:create 已经缓存，取消注册之后必须重新匹配
+        manager.unRegisterListener(AllListener.class);
+        received.clear();
+        manager.pulish(new JbootEvent("order:create", null));
+        manager.pulish(new JbootEvent("user:logout", null));
+        Assert.assertEquals(Collections.singletonList("prefix"), received);
+    }
+
+
+    @Test
+    public void testRegisterWhilePublishing() throws Exception {
+        JbootEventManager manager = new JbootEventManager(new JbootEventConfig());
+        AtomicInteger count = new AtomicInteger();
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+
+        Thread publisher = new Thread(() -> {
+            try {
+                while (running.get()) {
+                    manager.pulish(new JbootEvent("action" + (count.get() % 10), null));
+                }
+            } catch (Throwable ex) {
+                error.set(ex);
+            }
+        });
+        publisher.start();
+
+        for (int i = 0; i < 200; i++) {
+            manager.registerListener(new RecordListener("r", Collections.synchronizedList(new ArrayList<>())), false, "action*");
+            manager.unRegisterListener(RecordListener.class);
+        }
+
+        manager.registerListener(event -> count.incrementAndGet(), false, "action*");
+        long deadline = System.currentTimeMillis() + 5000;
+        while (count.get() < 100 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        running.set(false);
+        publisher.join(5000);
+
+        Assert.assertNull(error.get());
+        Assert.assertTrue(count.get() >= 100);
+    }
+
+
+    public static class RecordListener implements JbootEventListener {
+
+        private final String name;
+        private final List<String> received;
+
+        public RecordListener(String name, List<String> received) {
+            this.name = name;
+            this.received = received;
+        }
+
+        @Override
+        public void onEvent(JbootEvent event) {
+            received.add(name);
+        }
+    }
+
+    public static class PrefixListener extends RecordListener {
+        public PrefixListener(String name, List<String> received) {
+            super(name, received);
+        }
+    }
+
+    public static class AllListener extends RecordListener {
+        public AllListener(String name, List<String> received) {
+            super(name, received);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package io.jboot.test.gateway;
+
+import io.jboot.components.gateway.JbootGatewayConfig;
+import io.jboot.components.gateway.JbootGatewayManager;
+import io.jboot.test.web.MockHttpServletRequest;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * JbootGatewayManager.matchingConfig() 的匹配结果必须和按注册顺序逐个调用 JbootGatewayConfig.matches() 的结果一致
+ */
+public class GatewayRouteIndexTest {
+
+    // 很小的字符集，让前缀、后缀、包含等条件经常互相重叠
+    private static final String ALPHABET = "ab/.";
+
+    private final JbootGatewayManager manager = JbootGatewayManager.me();
+
+
+    @Before
+    @After
+    public void clear() {
+        // 移除 jboot.properties 等已经注册的配置，getConfigMap() 是只读的快照
+        if (manager.getConfigMap() != null) {
+            manager.getConfigMap().keySet().forEach(manager::removeConfig);
+        }
+    }
+
+
+    @Test
+    public void testSameAsLinearScan() {
+        for (long seed = 0; seed < 500; seed++) {
+            Random random = new Random(seed);
+
+            List<JbootGatewayConfig> configs = new ArrayList<>();
+            int configCount = 1 + random.nextInt(12);
+            for (int i = 0; i < configCount; i++) {
+                configs.add(randomConfig(random, i));
+            }
+            configs.forEach(manager::registerConfig);
+
+            for (int i = 0; i < 200; i++) {
+                HttpServletRequest request = randomRequest(random);
+                Assert.assertSame("seed: " + seed + ", path: " + request.getServletPath()
+                                + ", host: " + request.getServerName() + ", query: " + request.getQueryString()
+                        , linearMatch(configs, request), manager.matchingConfig(request));
+            }
+            clear();
+        }
+    }
+
+
+    @Test
+    public void testEmptyIndex() {
+        Assert.assertNull(manager.matchingConfig(randomRequest(new Random(0))));
+        Assert.assertNull(manager.matchingConfig(null));
+    }
+
+
+    @Test
+    public void testRemoveAndReregister() {
+        JbootGatewayConfig first = new JbootGatewayConfig();
+        first.setName("first");
+        first.setEnable(true);
+        first.setPathStartsWith(new String[]{"/a"});
+        JbootGatewayConfig second = new JbootGatewayConfig();
+        second.setName("second");
+        second.setEnable(true);
+        second.setPathStartsWith(new String[]{"/a/b"});
+        manager.registerConfig(first);
+        manager.registerConfig(second);
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setServletPath("/a/b/c");
+
+        // 多个配置同时匹配时，先注册的优先
+        Assert.assertSame(first, manager.matchingConfig(request));
+
+        manager.removeConfig("first");
+        Assert.assertSame(second, manager.matchingConfig(request));
+
+        // 重新注册之后排在后面
+        manager.registerConfig(first);
+        Assert.assertSame(second, manager.matchingConfig(request));
+    }
+
+
+    /**
+     * 修改之前 JbootGatewayManager.matchingConfig() 的实现
+     */
+    private static JbootGatewayConfig linearMatch(List<JbootGatewayConfig> configs, HttpServletRequest request) {
+        for (JbootGatewayConfig config : configs) {
+            if (config.isEnable() && config.matches(request)) {
+                return config;
+            }
+        }
+        return null;
+    }
+
+
+    private static JbootGatewayConfig randomConfig(Random random, int i) {
+        JbootGatewayConfig config = new JbootGatewayConfig();
+        config.setName("config" + i);
+        config.setEnable(random.nextInt(5) > 0);
+
+        config.setPathEquals(randomStrings(random));
+        config.setPathContains(randomStrings(random));
+        config.setPathStartsWith(randomStrings(random));
+        config.setPathEndsWith(randomStrings(random));
+
+        config.setHostEquals(randomStrings(random));
+        config.setHostContains(randomStrings(random));
+        config.setHostStartsWith(randomStrings(random));
+        config.setHostEndsWith(randomStrings(random));
+
+        config.setQueryContains(randomStrings(random));
+        if (random.nextInt(4) == 0) {
+            Map<String, String> queryEquals = new HashMap<>();
+            for (int j = random.nextInt(3); j >= 0; j--) {
+                queryEquals.put(randomString(random, 1, 2), randomString(random, 0, 2));
+            }
+            config.setQueryEquals(queryEquals);
+        }
+        return config;
+    }
+
+
+    private static HttpServletRequest randomRequest(Random random) {
+        String host = randomString(random, 0, 6);
+        MockHttpServletRequest request = new MockHttpServletRequest() {
+            @Override
+            public String getServerName() {
+                return host;
+            }
+        };
+        request.setServletPath(randomString(random, 0, 8));
+
+        if (random.nextBoolean()) {
+            StringBuilder query = new StringBuilder();
+            for (int j = random.nextInt(3); j >= 0; j--) {
+                if (query.length() > 0) {
+                    query.append('&');
+                }
+                query.append(randomString(random, 1, 2));
+                if (random.nextInt(3) > 0) {
+                    query.append('=').append(randomString(random, 0, 2));
+                }
+            }
+            request.setQueryString(query.toString());
+        }
+        return request;
+    }
+
+
+    private static String[] randomStrings(Random random) {
+        // 大多数条件为空，和实际的配置一致
+        if (random.nextInt(3) > 0) {
+            return null;
+        }
+        String[] strings = new String[1 + random.nextInt(3)];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = randomString(random, 0, 4);
+        }
+        return strings;
+    }
+
+
+    private static String randomString(Random random, int minLength, int maxLength) {
+        int length = minLength + random.nextInt(maxLength - minLength + 1);
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return sb.toString();
+    }
+}
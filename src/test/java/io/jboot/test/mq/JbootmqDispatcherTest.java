@@ -0,0 +1,83 @@
+package io.jboot.test.mq;
+
+import io.jboot.components.mq.JbootmqConfig;
+import io.jboot.components.mq.JbootmqDispatcher;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 顺序执行的 channel：多个 key 并发投递时（包括在监听器里再次投递），相同 key 的消息必须按投递顺序执行
+ */
+public class JbootmqDispatcherTest {
+
+    private static final String CHANNEL = "orderedChannel";
+
+    private static final int PRODUCERS = 4;
+    private static final int KEYS_PER_PRODUCER = 8;
+    private static final int MESSAGES_PER_KEY = 200;
+
+
+    @Test
+    public void testOrderPerKey() throws Exception {
+        JbootmqConfig config = new JbootmqConfig();
+        config.setOrderedChannel(CHANNEL);
+        config.setOrderedThreads(4);
+        // 很小的队列，让投递的线程和顺序执行的线程都会遇到队列满的情况
+        config.setDispatchQueueSize(8);
+        JbootmqDispatcher dispatcher = new JbootmqDispatcher(config);
+
+        Map<String, List<Integer>> executed = new ConcurrentHashMap<>();
+        int totalKeys = PRODUCERS * KEYS_PER_PRODUCER * 2;
+        CountDownLatch done = new CountDownLatch(totalKeys * MESSAGES_PER_KEY);
+
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < PRODUCERS; p++) {
+            int producer = p;
+            producers.add(new Thread(() -> {
+                for (int seq = 0; seq < MESSAGES_PER_KEY; seq++) {
+                    for (int k = 0; k < KEYS_PER_PRODUCER; k++) {
+                        String key = "p" + producer + "-" + k;
+                        String nestedKey = "n" + producer + "-" + k;
+                        int value = seq;
+                        dispatcher.execute(CHANNEL, key, () -> {
+                            record(executed, key, value, done);
+
+                            // 在顺序执行的线程里再次投递到其他 key
+                            dispatcher.execute(CHANNEL, nestedKey, () -> record(executed, nestedKey, value, done));
+                        });
+                    }
+                }
+            }));
+        }
+
+        producers.forEach(Thread::start);
+        for (Thread producer : producers) {
+            producer.join(TimeUnit.SECONDS.toMillis(30));
+        }
+
+        Assert.assertTrue("dispatch timeout", done.await(30, TimeUnit.SECONDS));
+        Assert.assertEquals(totalKeys, executed.size());
+
+        List<Integer> expected = new ArrayList<>();
+        for (int seq = 0; seq < MESSAGES_PER_KEY; seq++) {
+            expected.add(seq);
+        }
+        for (Map.Entry<String, List<Integer>> entry : executed.entrySet()) {
+            Assert.assertEquals("key: " + entry.getKey(), expected, entry.getValue());
+        }
+    }
+
+
+    private static void record(Map<String, List<Integer>> executed, String key, int value, CountDownLatch done) {
+        // 相同 key 只会在同一个线程里执行，这里不需要同步
+        executed.computeIfAbsent(key, k -> new ArrayList<>()).add(value);
+        done.countDown();
+    }
+}
@@ -0,0 +1,43 @@
+package io.jboot.test.mq.redisstream;
+
+
+import io.jboot.Jboot;
+import io.jboot.app.JbootApplication;
+
+/**
+ * 启动多个实例时（修改 undertow.port），enqueue 的消息只会被其中一个实例收到，publish 的消息每个实例都会收到
+ * 实例处理消息期间被强制停止，未 ack 的消息会在 claimIdleMillis 之后被其他实例重新处理
+ */
+public class RedisStreamMqReceiver {
+
+    public static void main(String[] args) {
+
+        //Undertow端口号配置
+        JbootApplication.setBootArg("undertow.port", "8001");
+
+        //设置 mq 的相关信息
+        JbootApplication.setBootArg("jboot.mq.type", "redisstream");
+        JbootApplication.setBootArg("jboot.mq.channel", "channel1,myChannel");
+        JbootApplication.setBootArg("jboot.mq.redisstream.host", "127.0.0.1");
+        JbootApplication.setBootArg("jboot.mq.redisstream.group", "receiver");
+        JbootApplication.setBootArg("jboot.mq.redisstream.claimIdleMillis", "10000");
+        JbootApplication.setBootArg("jboot.mq.redisstream.claimIntervalMillis", "5000");
+
+        //启动应用程序
+        JbootApplication.run(args);
+
+        //添加监听
+        Jboot.getMq().addMessageListener((channel, message) -> {
+            System.out.println("listener1 receive msg : " + message + ", from channel : " + channel);
+        });
+
+        // 只监听 myChannel 这个通道
+        Jboot.getMq().addMessageListener((channel, message) -> {
+            System.out.println("listener2 receive msg : " + message + ", from channel : " + channel);
+        }, "myChannel");
+
+        Jboot.getMq().startListening();
+
+        System.out.println("RedisStreamMqReceiver started.");
+    }
+}
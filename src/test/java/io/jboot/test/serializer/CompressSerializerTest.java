@@ -0,0 +1,109 @@
+package io.jboot.test.serializer;
+
+import io.jboot.components.serializer.CompressSerializer;
+import io.jboot.components.serializer.JbootSerializer;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+public class CompressSerializerTest {
+
+    /**
+     * 直接返回 byte[] 的序列化，用于控制压缩前的原始数据
+     */
+    private static final JbootSerializer RAW = new JbootSerializer() {
+        @Override
+        public byte[] serialize(Object obj) {
+            return (byte[]) obj;
+        }
+
+        @Override
+        public Object deserialize(byte[] bytes) {
+            return bytes;
+        }
+    };
+
+
+    @Test
+    public void testBelowThreshold() {
+        // threshold 为 0 时，很小的数据也不能出错，小于 64 字节的数据不压缩
+        CompressSerializer serializer = new CompressSerializer(RAW, 0, Deflater.BEST_SPEED);
+        for (int length = 0; length < 200; length++) {
+            byte[] raw = new byte[length];
+            byte[] bytes = serializer.serialize(raw);
+            if (length < 64) {
+                Assert.assertArrayEquals(raw, bytes);
+            }
+            if (length > 0) {
+                Assert.assertArrayEquals(raw, (byte[]) serializer.deserialize(bytes));
+            }
+        }
+
+        byte[] raw = repeatText(1000);
+        serializer = new CompressSerializer(RAW, raw.length + 1, Deflater.BEST_SPEED);
+        Assert.assertArrayEquals(raw, serializer.serialize(raw));
+    }
+
+
+    @Test
+    public void testAboveThreshold() {
+        CompressSerializer serializer = new CompressSerializer(RAW, 128, Deflater.BEST_SPEED);
+        byte[] raw = repeatText(10000);
+
+        byte[] bytes = serializer.serialize(raw);
+        Assert.assertTrue(bytes.length < raw.length);
+        Assert.assertEquals((byte) 0xC5, bytes[0]);
+        Assert.assertArrayEquals(raw, (byte[]) serializer.deserialize(bytes));
+    }
+
+
+    @Test
+    public void testNotShrinking() {
+        CompressSerializer serializer = new CompressSerializer(RAW, 128, Deflater.BEST_SPEED);
+        byte[] raw = randomBytes(4096, 1);
+
+        // 随机数据压缩后不会变小，原样保存
+        byte[] bytes = serializer.serialize(raw);
+        Assert.assertArrayEquals(raw, bytes);
+        Assert.assertArrayEquals(raw, (byte[]) serializer.deserialize(bytes));
+    }
+
+
+    @Test
+    public void testRawDataStartsWithHeader() {
+        CompressSerializer serializer = new CompressSerializer(RAW, 128, Deflater.BEST_SPEED);
+        for (int length : new int[]{1, 2, 6, 100, 4096}) {
+            for (long seed = 0; seed < 20; seed++) {
+                byte[] raw = randomBytes(length, seed);
+                raw[0] = (byte) 0xC5;
+
+                byte[] bytes = serializer.serialize(raw);
+                Assert.assertArrayEquals(raw, bytes);
+                Assert.assertArrayEquals(raw, (byte[]) serializer.deserialize(bytes));
+            }
+        }
+
+        // 第一个字节是 HEADER，之后是一个合法的长度，但不是 zlib 数据
+        byte[] raw = new byte[]{(byte) 0xC5, 3, 'a', 'b', 'c'};
+        Assert.assertArrayEquals(raw, (byte[]) serializer.deserialize(serializer.serialize(raw)));
+    }
+
+
+    private static byte[] repeatText(int length) {
+        StringBuilder sb = new StringBuilder(length);
+        while (sb.length() < length) {
+            sb.append("jboot compress serializer ");
+        }
+        return sb.substring(0, length).getBytes(StandardCharsets.UTF_8);
+    }
+
+
+    private static byte[] randomBytes(int length, long seed) {
+        byte[] bytes = new byte[length];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,181 @@
+package io.jboot.test.serializer;
+
+import com.jfinal.plugin.activerecord.Model;
+import com.jfinal.plugin.activerecord.Page;
+import com.jfinal.plugin.activerecord.Record;
+import com.jfinal.plugin.activerecord.Table;
+import com.jfinal.plugin.activerecord.TableMapping;
+import io.jboot.components.serializer.KryoSerializer;
+import io.jboot.components.serializer.ModelSerializer;
+import io.jboot.db.model.JbootModel;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+
+public class ModelSerializerTest {
+
+    private static final ModelSerializer serializer = new ModelSerializer(new KryoSerializer(null));
+
+
+    public static class User extends JbootModel<User> {
+    }
+
+
+    private static volatile boolean notModelInitialized = false;
+
+    // 类名和 User 的长度一样，用于替换序列化数据中的类名
+    public static class Evil {
+        static {
+            notModelInitialized = true;
+        }
+    }
+
+
+    @BeforeClass
+    public static void init() {
+        Table table = new Table("user", "id", User.class);
+        Map<String, Class<?>> columnTypes = new HashMap<>();
+        columnTypes.put("id", Long.class);
+        columnTypes.put("name", String.class);
+        columnTypes.put("balance", BigDecimal.class);
+        columnTypes.put("created", Timestamp.class);
+        table.setColumnTypeMap(columnTypes);
+        TableMapping.me().putTable(table);
+    }
+
+
+    @Test
+    public void testModelWithJoinColumns() {
+        User user = newUser(1);
+        // 不在表结构中的列，例如 join 进来的数据
+        user.put("author_name", "michael");
+        user.put("tags", new ArrayList<>(Arrays.asList("a", "b")));
+        user._setConfigName("slave");
+
+        User result = (User) serializer.deserialize(serializer.serialize(user));
+        Assert.assertEquals(attrs(user), attrs(result));
+        Assert.assertEquals("slave", result._getConfigName());
+    }
+
+
+    @Test
+    public void testRecord() {
+        Record record = new Record()
+                .set("id", 1L)
+                .set("name", "jboot")
+                .set("rate", 0.5d)
+                .set("enable", true)
+                .set("time", LocalDateTime.of(2021, 1, 2, 3, 4, 5, 6))
+                .set("empty", null);
+
+        Record result = (Record) serializer.deserialize(serializer.serialize(record));
+        Assert.assertEquals(record.getColumns(), result.getColumns());
+    }
+
+
+    @Test
+    public void testPage() {
+        List<User> users = Arrays.asList(newUser(1), newUser(2), newUser(3));
+        Page<User> page = new Page<>(users, 2, 3, 5, 14);
+
+        Page<User> result = (Page<User>) serializer.deserialize(serializer.serialize(page));
+        Assert.assertEquals(2, result.getPageNumber());
+        Assert.assertEquals(3, result.getPageSize());
+        Assert.assertEquals(5, result.getTotalPage());
+        Assert.assertEquals(14, result.getTotalRow());
+        Assert.assertEquals(users.size(), result.getList().size());
+        for (int i = 0; i < users.size(); i++) {
+            Assert.assertEquals(attrs(users.get(i)), attrs(result.getList().get(i)));
+        }
+    }
+
+
+    @Test
+    public void testMixedList() {
+        List<Object> list = new ArrayList<>();
+        list.add(newUser(1));
+        list.add(new Record().set("id", 2L).set("title", "record"));
+        list.add(null);
+        list.add(newUser(3));
+        list.add(new Record().set("id", 4L).set("title", "same shape"));
+
+        List<Object> result = (List<Object>) serializer.deserialize(serializer.serialize(list));
+        Assert.assertEquals(list.size(), result.size());
+        Assert.assertEquals(attrs((User) list.get(0)), attrs((User) result.get(0)));
+        Assert.assertEquals(((Record) list.get(1)).getColumns(), ((Record) result.get(1)).getColumns());
+        Assert.assertNull(result.get(2));
+        Assert.assertEquals(attrs((User) list.get(3)), attrs((User) result.get(3)));
+        Assert.assertEquals(((Record) list.get(4)).getColumns(), ((Record) result.get(4)).getColumns());
+    }
+
+
+    @Test
+    public void testDelegate() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("key", "value");
+        map.put("number", 1);
+
+        byte[] bytes = serializer.serialize(map);
+        Assert.assertArrayEquals(serializer.getDelegate().serialize(map), bytes);
+        Assert.assertEquals(map, serializer.deserialize(bytes));
+
+        // 不是 Model 或者 Record 的 List
+        List<String> strings = new ArrayList<>(Arrays.asList("a", "b"));
+        Assert.assertEquals(strings, serializer.deserialize(serializer.serialize(strings)));
+    }
+
+
+    @Test
+    public void testSchemaChanged() {
+        String className = User.class.getName();
+        byte[] bytes = serializer.serialize(newUser(1));
+
+        // magic(2) + version(1) + tag(1) + classIndex(1) + 类名长度(1) + 类名 之后是表结构的指纹
+        int fingerprintOffset = 6 + className.getBytes(StandardCharsets.UTF_8).length;
+        bytes[fingerprintOffset] ^= 0x5A;
+
+        Assert.assertNull(serializer.deserialize(bytes));
+        // 相同的类再次遇到时只警告一次，依然返回 null
+        Assert.assertNull(serializer.deserialize(bytes));
+    }
+
+
+    @Test
+    public void testNotModelClass() {
+        byte[] bytes = serializer.serialize(newUser(1));
+
+        // 把数据中的类名替换为不是 Model 的类，不能初始化或者创建该类
+        byte[] userName = User.class.getName().getBytes(StandardCharsets.UTF_8);
+        byte[] evilName = Evil.class.getName().getBytes(StandardCharsets.UTF_8);
+        Assert.assertEquals(userName.length, evilName.length);
+        System.arraycopy(evilName, 0, bytes, 6, evilName.length);
+
+        Assert.assertNull(serializer.deserialize(bytes));
+        Assert.assertFalse(notModelInitialized);
+    }
+
+
+    private static Map<String, Object> attrs(Model<?> model) {
+        Map<String, Object> attrs = new HashMap<>();
+        for (Map.Entry<String, Object> entry : model._getAttrsEntrySet()) {
+            attrs.put(entry.getKey(), entry.getValue());
+        }
+        return attrs;
+    }
+
+
+    private static User newUser(long id) {
+        User user = new User();
+        user.put("id", id);
+        user.put("name", "user" + id);
+        user.put("balance", new BigDecimal("12.30"));
+        user.put("created", new Timestamp(1600000000123L));
+        return user;
+    }
+}
@@ -0,0 +1,147 @@
+package io.jboot.test.serializer;
+
+import io.jboot.components.serializer.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * 对比 FST、Kryo、FastJson 以及注册类、流式读写等模式下的序列化结果大小和性能
+ */
+public class SerializerBenchmark {
+
+    private static final int ITERATIONS = 200_000;
+
+    public static void main(String[] args) throws Exception {
+        List<Class<?>> registerClasses = Arrays.asList(Payload.class, ArrayList.class, HashMap.class);
+
+        Map<String, JbootSerializer> serializers = new LinkedHashMap<>();
+        serializers.put("fastjson", new FastJsonSerializer());
+        serializers.put("fst", new FstSerializer(null));
+        serializers.put("fst-registered", new FstSerializer(registerClasses));
+        serializers.put("kryo", new KryoSerializer(null));
+        serializers.put("kryo-registered", new KryoSerializer(registerClasses));
+
+        Payload payload = Payload.create();
+
+        for (Map.Entry<String, JbootSerializer> entry : serializers.entrySet()) {
+            byte[] bytes = entry.getValue().serialize(payload);
+            if (!payload.equals(entry.getValue().deserialize(bytes))) {
+                throw new IllegalStateException("deserialize error by " + entry.getKey());
+            }
+            System.out.println(entry.getKey() + " size: " + bytes.length + " bytes");
+        }
+
+        for (int round = 0; round < 3; round++) {
+            System.out.println("------ round " + round);
+            for (Map.Entry<String, JbootSerializer> entry : serializers.entrySet()) {
+                JbootSerializer serializer = entry.getValue();
+                long start = System.nanoTime();
+                for (int i = 0; i < ITERATIONS; i++) {
+                    serializer.deserialize(serializer.serialize(payload));
+                }
+                printOps(entry.getKey(), start);
+
+                if (serializer instanceof JbootStreamSerializer) {
+                    JbootStreamSerializer streamSerializer = (JbootStreamSerializer) serializer;
+                    ByteArrayOutputStream outputStream = new ByteArrayOutputStream(1024);
+                    start = System.nanoTime();
+                    for (int i = 0; i < ITERATIONS; i++) {
+                        outputStream.reset();
+                        streamSerializer.serialize(payload, outputStream);
+                        streamSerializer.deserialize(ByteBuffer.wrap(outputStream.toByteArray()));
+                    }
+                    printOps(entry.getKey() + "-stream", start);
+                }
+            }
+        }
+    }
+
+    private static void printOps(String name, long start) {
+        long time = System.nanoTime() - start;
+        System.out.println(name + ": " + (ITERATIONS * 1000_000_000L / time) + " ops/s");
+    }
+
+
+    public static class Payload implements Serializable {
+
+        private String id;
+        private int age;
+        private long created;
+        private List<String> tags;
+        private Map<String, Integer> scores;
+
+        public static Payload create() {
+            Payload payload = new Payload();
+            payload.setId("aaaa10001");
+            payload.setAge(18);
+            payload.setCreated(1600000000000L);
+            payload.setTags(new ArrayList<>(Arrays.asList("java", "jboot", "jfinal")));
+            Map<String, Integer> scores = new HashMap<>();
+            scores.put("math", 98);
+            scores.put("english", 87);
+            payload.setScores(scores);
+            return payload;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public int getAge() {
+            return age;
+        }
+
+        public void setAge(int age) {
+            this.age = age;
+        }
+
+        public long getCreated() {
+            return created;
+        }
+
+        public void setCreated(long created) {
+            this.created = created;
+        }
+
+        public List<String> getTags() {
+            return tags;
+        }
+
+        public void setTags(List<String> tags) {
+            this.tags = tags;
+        }
+
+        public Map<String, Integer> getScores() {
+            return scores;
+        }
+
+        public void setScores(Map<String, Integer> scores) {
+            this.scores = scores;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Payload)) {
+                return false;
+            }
+            Payload that = (Payload) o;
+            return age == that.age && created == that.created && Objects.equals(id, that.id)
+                    && Objects.equals(tags, that.tags) && Objects.equals(scores, that.scores);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(id, age, created, tags, scores);
+        }
+    }
+}
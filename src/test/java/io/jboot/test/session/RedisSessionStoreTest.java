@@ -0,0 +1,134 @@
+package io.jboot.test.session;
+
+import io.jboot.app.JbootApplication;
+import io.jboot.support.redis.JbootRedis;
+import io.jboot.support.redis.JbootRedisManager;
+import io.jboot.utils.StrUtil;
+import io.jboot.web.session.JbootRedisSessionStore;
+import io.jboot.web.session.JbootSessionConfig;
+import io.jboot.web.session.JbootSessionData;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+/**
+ * JbootRedisSessionStore：保存时的 compare-and-set 脚本、属性全部删除后删除 session，以及 near cache 的版本号，
+ * 需要本地的 redis（127.0.0.1:6379）
+ */
+public class RedisSessionStoreTest {
+
+    private static final String CACHE_NAME = "jboot-session-test";
+    private static final int MAX_INACTIVE_INTERVAL = 60;
+
+    private JbootRedis redis;
+
+    @Before
+    public void config() {
+        JbootApplication.setBootArg("jboot.redis.host", "127.0.0.1");
+        JbootApplication.setBootArg("jboot.redis.port", "6379");
+        redis = JbootRedisManager.me().getRedis();
+    }
+
+
+    @Test
+    public void testSaveAndLoad() {
+        JbootRedisSessionStore store = createStore();
+        String sessionId = StrUtil.uuid();
+
+        Assert.assertTrue(store.open(sessionId).save(attrs("name", "jboot", "count", 1), Collections.emptySet(), MAX_INACTIVE_INTERVAL));
+
+        // 另外一个节点，没有 near cache 的数据
+        JbootSessionData data = createStore().open(sessionId);
+        Assert.assertEquals("jboot", data.getAttribute("name"));
+        Assert.assertEquals(1, (int) data.getAttribute("count"));
+        Assert.assertNull(data.getAttribute("none"));
+        Assert.assertEquals(new HashSet<>(Arrays.asList("name", "count")), data.getAttributeNames());
+
+        store.open(sessionId).remove();
+        Assert.assertFalse(redis.exists(key(sessionId)));
+    }
+
+
+    @Test
+    public void testDeleteAllAttributes() {
+        JbootRedisSessionStore store = createStore();
+        String sessionId = StrUtil.uuid();
+        store.open(sessionId).save(attrs("a", 1, "b", 2), Collections.emptySet(), MAX_INACTIVE_INTERVAL);
+
+        // 只删除部分属性时 session 依然存在
+        Assert.assertTrue(store.open(sessionId).save(Collections.emptyMap(), Collections.singleton("a"), MAX_INACTIVE_INTERVAL));
+        Assert.assertTrue(redis.exists(key(sessionId)));
+
+        // 删除所有属性后 session 被删除
+        Assert.assertFalse(store.open(sessionId).save(Collections.emptyMap(), Collections.singleton("b"), MAX_INACTIVE_INTERVAL));
+        Assert.assertFalse(redis.exists(key(sessionId)));
+        Assert.assertTrue(store.open(sessionId).getAttributeNames().isEmpty());
+    }
+
+
+    @Test
+    public void testNearCacheUsedWhenVersionNotChanged() {
+        JbootRedisSessionStore store = createStore();
+        String sessionId = StrUtil.uuid();
+        store.open(sessionId).save(attrs("name", "jboot"), Collections.emptySet(), MAX_INACTIVE_INTERVAL);
+
+        // 版本号没有变化，直接修改 redis 中的属性，本节点依然使用 near cache 中的数据
+        redis.hset(key(sessionId), "name", "changed");
+        Assert.assertEquals("jboot", store.open(sessionId).getAttribute("name"));
+
+        // 其他节点修改之后版本号发生变化，本节点重新从 redis 中读取
+        createStore().open(sessionId).save(attrs("other", 1), Collections.emptySet(), MAX_INACTIVE_INTERVAL);
+        Assert.assertEquals("changed", store.open(sessionId).getAttribute("name"));
+
+        store.open(sessionId).remove();
+    }
+
+
+    @Test
+    public void testConcurrentModify() {
+        JbootRedisSessionStore store = createStore();
+        String sessionId = StrUtil.uuid();
+        store.open(sessionId).save(attrs("a", 1, "b", 1), Collections.emptySet(), MAX_INACTIVE_INTERVAL);
+
+        // 两个请求同时读取了 session
+        JbootSessionData first = store.open(sessionId);
+        JbootSessionData second = createStore().open(sessionId);
+        Assert.assertEquals(1, (int) first.getAttribute("a"));
+        Assert.assertEquals(1, (int) second.getAttribute("a"));
+
+        // 第二个请求先修改了 a，第一个请求之后修改 b，版本号比较失败
+        second.save(attrs("a", 2), Collections.emptySet(), MAX_INACTIVE_INTERVAL);
+        first.save(attrs("b", 2), Collections.emptySet(), MAX_INACTIVE_INTERVAL);
+
+        // 第一个请求中旧的 a 不能带到新版本的 near cache 中
+        JbootSessionData data = store.open(sessionId);
+        Assert.assertEquals(2, (int) data.getAttribute("a"));
+        Assert.assertEquals(2, (int) data.getAttribute("b"));
+
+        store.open(sessionId).remove();
+    }
+
+
+    private JbootRedisSessionStore createStore() {
+        JbootSessionConfig config = new JbootSessionConfig();
+        config.setCacheName(CACHE_NAME);
+        config.setMaxInactiveInterval(MAX_INACTIVE_INTERVAL);
+        return new JbootRedisSessionStore(config, redis);
+    }
+
+
+    private static String key(String sessionId) {
+        return CACHE_NAME + ":" + sessionId;
+    }
+
+
+    private static Map<String, Object> attrs(Object... keyAndValues) {
+        Map<String, Object> attrs = new HashMap<>();
+        for (int i = 0; i < keyAndValues.length; i += 2) {
+            attrs.put((String) keyAndValues[i], keyAndValues[i + 1]);
+        }
+        return attrs;
+    }
+}